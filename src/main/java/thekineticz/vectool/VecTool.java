@@ -1,5 +1,6 @@
 package thekineticz.vectool;
 
+import thekineticz.vectool.cli.VecBatchTool;
 import thekineticz.vectool.gui.VecToolGUI;
 
 import javax.swing.*;
@@ -33,10 +34,15 @@ public class VecTool {
 
     /**
      * The entry point for the Application.
+     * With no arguments the GUI is opened, otherwise the arguments are passed to the headless VecBatchTool.
      *
-     * @param args String array arguments (Ignored)
+     * @param args String array arguments, such as "validate drawings/".
      */
     public static void main(String[] args) {
+        if (args.length > 0) {
+            System.exit(VecBatchTool.run(args, System.out, System.err));
+        }
+
         try {
             UIManager.setLookAndFeel(UIManager.getCrossPlatformLookAndFeelClassName());
         } catch (Exception e) {
@@ -0,0 +1,506 @@
+package thekineticz.vectool.cli;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.CommandBuffer;
+import thekineticz.vectool.vec.VecFile;
+import thekineticz.vectool.vec.VecFileValidator;
+import thekineticz.vectool.vec.VecRasterizer;
+import thekineticz.vectool.vec.VecValidationReport;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecTextFormatter;
+import thekineticz.vectool.vec.stream.VecCommandSource;
+import thekineticz.vectool.vec.stream.VecWriterSink;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.PrintStream;
+import java.nio.file.Files;
+import java.nio.file.Path;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.*;
+import java.util.stream.Collectors;
+import java.util.stream.Stream;
+
+/**
+ * Headless command line tool that validates, converts or renders to PNG every vec file in a set of files and
+ * directory trees, using one worker thread per core. It only uses the vec packages, so it runs without a display.
+ */
+public class VecBatchTool {
+
+    public static final int EXIT_SUCCESS = 0;
+    public static final int EXIT_FAILURE = 1;
+    public static final int EXIT_USAGE = 2;
+
+    private static final String USAGE = String.join(System.lineSeparator(),
+            "Usage: vectool validate [options] <file or directory>...",
+            "       vectool convert --to <vec|vecb|vec.gz> [options] <file or directory>...",
+            "       vectool render [options] <file or directory>...",
+            "Options:",
+            "  --threads <n>      Number of files to process at once (default: number of cores)",
+            "  --max-errors <n>   Number of errors to print for each invalid file (validate only, default: 20)",
+            "  --out <directory>  Directory to write converted files or images to, keeping their relative paths (convert and render only)",
+            "  --precision <n>    Decimal places to round coordinates to in text output (convert only)",
+            "  --size <w>[x<h>]   Width and height of the images in pixels (render only, default: 256)");
+
+    private static final int DEFAULT_MAX_ERRORS = 20;
+    private static final int DEFAULT_IMAGE_SIZE = 256;
+    private static final double BYTES_PER_MEGABYTE = 1024 * 1024;
+
+    private final PrintStream out;
+    private final PrintStream err;
+
+    private String mode;
+    private String targetExtension;
+    private File outputDirectory;
+    private int precision = VecTextFormatter.SHORTEST;
+    private int threads = Runtime.getRuntime().availableProcessors();
+    private int maxErrors = DEFAULT_MAX_ERRORS;
+    private int imageWidth = DEFAULT_IMAGE_SIZE;
+    private int imageHeight = DEFAULT_IMAGE_SIZE;
+    private final ArrayList<File> roots = new ArrayList<>();
+
+    /**
+     * Creates a new batch tool.
+     *
+     * @param out The stream results are printed to.
+     * @param err The stream usage errors are printed to.
+     */
+    private VecBatchTool(PrintStream out, PrintStream err) {
+        this.out = out;
+        this.err = err;
+    }
+
+    /**
+     * The result of processing one file.
+     */
+    private static class FileResult {
+
+        private final File file;
+        private final long bytes;
+        private final long commands;
+        private final long nanos;
+        private final String report;
+        private final boolean isSuccessful;
+
+        /**
+         * Creates a new file result.
+         *
+         * @param file         The processed file.
+         * @param bytes        The size of the file.
+         * @param commands     The number of commands read.
+         * @param nanos        The time spent processing the file.
+         * @param report       Details to print below the result, or null.
+         * @param isSuccessful Whether the file was valid, converted or rendered.
+         */
+        private FileResult(File file, long bytes, long commands, long nanos, String report, boolean isSuccessful) {
+            this.file = file;
+            this.bytes = bytes;
+            this.commands = commands;
+            this.nanos = nanos;
+            this.report = report;
+            this.isSuccessful = isSuccessful;
+        }
+    }
+
+    /**
+     * Runs the tool.
+     *
+     * @param args The command line arguments.
+     * @param out  The stream results are printed to.
+     * @param err  The stream usage errors are printed to.
+     * @return The exit status: EXIT_SUCCESS, EXIT_FAILURE if any file failed, or EXIT_USAGE if the arguments are
+     * invalid.
+     */
+    public static int run(String[] args, PrintStream out, PrintStream err) {
+        VecBatchTool tool = new VecBatchTool(out, err);
+
+        try {
+            tool.parseArguments(args);
+        } catch (IllegalArgumentException e) {
+            err.println(e.getMessage());
+            err.println(USAGE);
+            return EXIT_USAGE;
+        }
+
+        return tool.processAll();
+    }
+
+    /**
+     * Reads the mode, options and paths from the command line arguments.
+     *
+     * @param args The command line arguments.
+     * @throws IllegalArgumentException Thrown if the arguments are invalid.
+     */
+    private void parseArguments(String[] args) {
+        if (args.length == 0 || !List.of("validate", "convert", "render").contains(args[0])) {
+            throw new IllegalArgumentException("Expected a mode of validate, convert or render.");
+        }
+        mode = args[0];
+
+        for (int i = 1; i < args.length; i++) {
+            switch (args[i]) {
+                case "--threads":
+                    threads = parsePositive(args, ++i);
+                    break;
+                case "--max-errors":
+                    maxErrors = parsePositive(args, ++i);
+                    break;
+                case "--out":
+                    outputDirectory = new File(getValue(args, ++i));
+                    break;
+                case "--precision":
+                    precision = Integer.parseInt(getValue(args, ++i));
+                    if (precision < 0 || precision > VecTextFormatter.MAX_PRECISION) {
+                        throw new IllegalArgumentException(String.format("Precision must be between 0 and %d.", VecTextFormatter.MAX_PRECISION));
+                    }
+                    break;
+                case "--to":
+                    targetExtension = getValue(args, ++i);
+                    if (!List.of(VecFile.FILE_EXTENSION, VecFile.BINARY_FILE_EXTENSION, VecFile.COMPRESSED_FILE_EXTENSION).contains(targetExtension)) {
+                        throw new IllegalArgumentException("Unknown output format: " + targetExtension);
+                    }
+                    break;
+                case "--size":
+                    parseSize(args, ++i);
+                    break;
+                default:
+                    if (args[i].startsWith("--")) {
+                        throw new IllegalArgumentException("Unknown option: " + args[i]);
+                    }
+                    roots.add(new File(args[i]));
+            }
+        }
+
+        if (roots.isEmpty()) {
+            throw new IllegalArgumentException("Expected at least one file or directory.");
+        } else if (mode.equals("convert") && targetExtension == null) {
+            throw new IllegalArgumentException("Convert requires an output format given with --to.");
+        } else if (mode.equals("render")) {
+            if (targetExtension != null) {
+                throw new IllegalArgumentException("Render always writes " + VecRasterizer.PNG_FORMAT + " images, so it doesn't take --to.");
+            }
+            targetExtension = VecRasterizer.PNG_FORMAT;
+        }
+    }
+
+    /**
+     * Gets the value of an option.
+     *
+     * @param args  The command line arguments.
+     * @param index The index of the value.
+     * @return The value.
+     * @throws IllegalArgumentException Thrown if the value is missing.
+     */
+    private static String getValue(String[] args, int index) {
+        if (index >= args.length) {
+            throw new IllegalArgumentException("Missing value for " + args[index - 1]);
+        }
+        return args[index];
+    }
+
+    /**
+     * Gets the value of an option that must be a positive integer.
+     *
+     * @param args  The command line arguments.
+     * @param index The index of the value.
+     * @return The value.
+     * @throws IllegalArgumentException Thrown if the value is missing or isn't a positive integer.
+     */
+    private static int parsePositive(String[] args, int index) {
+        String value = getValue(args, index);
+        try {
+            int number = Integer.parseInt(value);
+            if (number > 0) {
+                return number;
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(String.format("Expected a positive number for %s, got %s", args[index - 1], value));
+    }
+
+    /**
+     * Reads the image size, given either as one number for a square or as a width and height separated by an x.
+     *
+     * @param args  The command line arguments.
+     * @param index The index of the value.
+     * @throws IllegalArgumentException Thrown if the value is missing or isn't a valid size.
+     */
+    private void parseSize(String[] args, int index) {
+        String value = getValue(args, index);
+        String[] parts = value.toLowerCase().split("x", -1);
+        try {
+            if (parts.length <= 2) {
+                imageWidth = Integer.parseInt(parts[0]);
+                imageHeight = parts.length == 2 ? Integer.parseInt(parts[1]) : imageWidth;
+                if (imageWidth > 0 && imageHeight > 0) {
+                    return;
+                }
+            }
+        } catch (NumberFormatException ignored) {
+        }
+        throw new IllegalArgumentException(String.format("Expected a size like 256 or 320x240 for %s, got %s", args[index - 1], value));
+    }
+
+    /**
+     * Finds every vec file under the roots, and processes them in parallel. Results are printed in the order of
+     * the files, as soon as each is ready.
+     *
+     * @return The exit status.
+     */
+    private int processAll() {
+        List<File[]> files;
+        try {
+            files = findFiles();
+        } catch (IOException e) {
+            err.println("Couldn't list files: " + e.getMessage());
+            return EXIT_FAILURE;
+        }
+
+        ExecutorService executor = Executors.newFixedThreadPool(Math.min(threads, Math.max(files.size(), 1)));
+        ArrayList<Future<FileResult>> futures = new ArrayList<>();
+        for (File[] file : files) {
+            futures.add(executor.submit(() -> process(file[0], file[1])));
+        }
+        executor.shutdown();
+
+        long start = System.nanoTime();
+        long totalBytes = 0;
+        long totalCommands = 0;
+        int failures = 0;
+
+        for (int i = 0; i < futures.size(); i++) {
+            FileResult result;
+            try {
+                result = futures.get(i).get();
+            } catch (InterruptedException e) {
+                executor.shutdownNow();
+                Thread.currentThread().interrupt();
+                return EXIT_FAILURE;
+            } catch (ExecutionException e) {
+                //Unexpected errors only fail their own file
+                File file = files.get(i)[0];
+                result = new FileResult(file, file.length(), 0, 0, String.valueOf(e.getCause()), false);
+            }
+
+            printResult(result);
+            totalBytes += result.bytes;
+            totalCommands += result.commands;
+            if (!result.isSuccessful) {
+                failures++;
+            }
+        }
+
+        long elapsed = System.nanoTime() - start;
+        out.printf("%d files, %d failed, %d commands, %.1f MB in %d ms (%.1f MB/s)%n", files.size(), failures, totalCommands,
+                totalBytes / BYTES_PER_MEGABYTE, TimeUnit.NANOSECONDS.toMillis(elapsed), getThroughput(totalBytes, elapsed));
+
+        return failures == 0 ? EXIT_SUCCESS : EXIT_FAILURE;
+    }
+
+    /**
+     * Finds every vec file under the roots in a stable order, along with where each will be converted to.
+     * Files given directly are used whatever their extension.
+     *
+     * @return Pairs of the input file, and the output file or null when validating.
+     * @throws IOException Thrown if a directory can't be listed.
+     */
+    private List<File[]> findFiles() throws IOException {
+        ArrayList<File[]> files = new ArrayList<>();
+
+        for (File root : roots) {
+            if (!root.isDirectory()) {
+                files.add(new File[]{root, getOutputFile(root.getAbsoluteFile().getParentFile(), root)});
+                continue;
+            }
+
+            Path rootPath = root.toPath();
+            try (Stream<Path> paths = Files.walk(rootPath)) {
+                for (Path path : paths.filter(Files::isRegularFile).sorted().collect(Collectors.toList())) {
+                    File file = path.toFile();
+                    if (isVecFileName(file.getName())) {
+                        files.add(new File[]{file, getOutputFile(root, file)});
+                    }
+                }
+            }
+        }
+
+        return files;
+    }
+
+    /**
+     * Gets where a file will be converted to, keeping its path relative to its root inside the output directory.
+     *
+     * @param root The root the file was found under.
+     * @param file The input file.
+     * @return The output file, or null when validating.
+     */
+    private File getOutputFile(File root, File file) {
+        if (targetExtension == null) {
+            return null;
+        }
+
+        String name = removeExtension(file.getName()) + "." + targetExtension;
+        if (outputDirectory == null) {
+            return new File(file.getAbsoluteFile().getParentFile(), name);
+        }
+
+        Path relative = root.getAbsoluteFile().toPath().relativize(file.getAbsoluteFile().toPath());
+        Path parent = relative.getParent();
+        return new File(parent == null ? outputDirectory : new File(outputDirectory, parent.toString()), name);
+    }
+
+    /**
+     * Checks whether a file name has one of the vec file extensions.
+     *
+     * @param name The file name.
+     * @return Whether the file is a vec file.
+     */
+    private static boolean isVecFileName(String name) {
+        File file = new File(name);
+        return VecFile.isBinaryFile(file) || VecFile.isCompressedFile(file) || name.toLowerCase().endsWith("." + VecFile.FILE_EXTENSION);
+    }
+
+    /**
+     * Removes the vec extension from a file name.
+     *
+     * @param name The file name.
+     * @return The name without its extension.
+     */
+    private static String removeExtension(String name) {
+        if (VecFile.isCompressedFile(new File(name))) {
+            return name.substring(0, name.length() - VecFile.COMPRESSED_FILE_EXTENSION.length() - 1);
+        }
+
+        int index = name.lastIndexOf('.');
+        return index > 0 ? name.substring(0, index) : name;
+    }
+
+    /**
+     * Processes a file in the current mode.
+     *
+     * @param file       The input file.
+     * @param outputFile The output file, or null when validating.
+     * @return The result.
+     * @throws IOException Thrown if the file can't be read while validating.
+     */
+    private FileResult process(File file, File outputFile) throws IOException {
+        switch (mode) {
+            case "validate":
+                return validate(file);
+            case "convert":
+                return convert(file, outputFile);
+            default:
+                return render(file, outputFile);
+        }
+    }
+
+    /**
+     * Validates a file.
+     *
+     * @param file The file.
+     * @return The result.
+     * @throws IOException Thrown if the file can't be read.
+     */
+    private FileResult validate(File file) throws IOException {
+        long start = System.nanoTime();
+        VecValidationReport report = VecFileValidator.validate(file, maxErrors);
+        long elapsed = System.nanoTime() - start;
+
+        String details = null;
+        if (!report.isValid()) {
+            details = report.getErrorCount() + " errors" + System.lineSeparator() + report;
+        }
+        return new FileResult(file, file.length(), report.getCommandCount(), elapsed, details, report.isValid());
+    }
+
+    /**
+     * Converts a file by streaming its commands into the output format. A partly written output file is deleted if
+     * the input is invalid.
+     *
+     * @param file       The input file.
+     * @param outputFile The output file.
+     * @return The result.
+     */
+    private FileResult convert(File file, File outputFile) {
+        long start = System.nanoTime();
+
+        if (outputFile.getAbsoluteFile().equals(file.getAbsoluteFile())) {
+            return new FileResult(file, file.length(), 0, 0, "Already in the output format.", false);
+        }
+
+        long commands;
+        try {
+            File parent = outputFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Couldn't create directory " + parent);
+            }
+
+            try (VecCommandSource source = VecCommandSource.fromFile(file); VecWriterSink sink = new VecWriterSink(outputFile, precision)) {
+                commands = source.pushTo(sink);
+            }
+        } catch (VecCommandException | IOException e) {
+            outputFile.delete();
+            return new FileResult(file, file.length(), 0, System.nanoTime() - start, e.getMessage(), false);
+        }
+
+        return new FileResult(file, file.length(), commands, System.nanoTime() - start, "-> " + outputFile.getPath(), true);
+    }
+
+    /**
+     * Renders a file to a PNG image. The commands are read in full first, since they have to be indexed before any
+     * tile can be drawn. A partly written image is deleted if the input is invalid.
+     *
+     * @param file       The input file.
+     * @param outputFile The image file.
+     * @return The result.
+     */
+    private FileResult render(File file, File outputFile) {
+        long start = System.nanoTime();
+
+        CommandBuffer commands = new CommandBuffer();
+        try {
+            File parent = outputFile.getAbsoluteFile().getParentFile();
+            if (!parent.isDirectory() && !parent.mkdirs()) {
+                throw new IOException("Couldn't create directory " + parent);
+            }
+
+            try (VecCommandSource source = VecCommandSource.fromFile(file)) {
+                for (VecCommand command = source.read(); command != null; command = source.read()) {
+                    commands.add(command);
+                }
+            }
+            new VecRasterizer(commands).renderToPng(imageWidth, imageHeight, outputFile);
+        } catch (VecCommandException | IOException e) {
+            outputFile.delete();
+            return new FileResult(file, file.length(), commands.size(), System.nanoTime() - start, e.getMessage(), false);
+        }
+
+        return new FileResult(file, file.length(), commands.size(), System.nanoTime() - start, "-> " + outputFile.getPath(), true);
+    }
+
+    /**
+     * Prints the result of one file.
+     *
+     * @param result The result.
+     */
+    private void printResult(FileResult result) {
+        out.printf("%s %s: %d commands, %.1f MB in %d ms (%.1f MB/s)%n", result.isSuccessful ? "OK  " : "FAIL", result.file.getPath(),
+                result.commands, result.bytes / BYTES_PER_MEGABYTE, TimeUnit.NANOSECONDS.toMillis(result.nanos), getThroughput(result.bytes, result.nanos));
+
+        if (result.report != null) {
+            out.println("    " + result.report.replace(System.lineSeparator(), System.lineSeparator() + "    "));
+        }
+    }
+
+    /**
+     * Calculates a throughput.
+     *
+     * @param bytes The number of bytes processed.
+     * @param nanos The time it took.
+     * @return The throughput in megabytes per second.
+     */
+    private static double getThroughput(long bytes, long nanos) {
+        return nanos == 0 ? 0 : bytes / BYTES_PER_MEGABYTE / (nanos / 1e9);
+    }
+}
@@ -5,6 +5,16 @@ package thekineticz.vectool.exception;
  */
 public class VecCommandException extends Exception {
 
+    /**
+     * The token index of an exception that isn't about a particular token of the command line.
+     */
+    public static final int UNKNOWN_TOKEN = -1;
+
+    //Validating many bad lines shouldn't pay for a stack trace each, so this can be turned off per thread
+    private static final ThreadLocal<Boolean> isStackTraceSuppressed = ThreadLocal.withInitial(() -> false);
+
+    private int tokenIndex = UNKNOWN_TOKEN;
+
     /**
      * Creates a standard VecCommandException.
      */
@@ -21,6 +31,17 @@ public class VecCommandException extends Exception {
         super(message);
     }
 
+    /**
+     * Creates a new VecCommandException with a custom error message about a token of the command line.
+     *
+     * @param message    The error message.
+     * @param tokenIndex The index of the token that caused the error, which is the token count if a token is missing.
+     */
+    public VecCommandException(String message, int tokenIndex) {
+        super(message);
+        this.tokenIndex = tokenIndex;
+    }
+
     /**
      * Creates a VecCommandException with an exception that caused it to be thrown.
      *
@@ -39,4 +60,56 @@ public class VecCommandException extends Exception {
     public VecCommandException(String message, Throwable cause) {
         super(message, cause);
     }
+
+    /**
+     * Creates a VecCommandException about a token of the command line, with the original exception that led to it
+     * being thrown.
+     *
+     * @param message    The error message.
+     * @param tokenIndex The index of the token that caused the error.
+     * @param cause      The original exception.
+     */
+    public VecCommandException(String message, int tokenIndex, Throwable cause) {
+        super(message, cause);
+        this.tokenIndex = tokenIndex;
+    }
+
+    /**
+     * Gets the index of the token of the command line that caused the error.
+     *
+     * @return The token index, or UNKNOWN_TOKEN.
+     */
+    public int getTokenIndex() {
+        return tokenIndex;
+    }
+
+    /**
+     * Sets whether VecCommandExceptions created on the current thread record a stack trace.
+     * Callers that only report the messages of many exceptions can turn stack traces off, and must restore the
+     * previous setting from isStackTraceSuppressed when they are done.
+     *
+     * @param isSuppressed Whether stack traces are skipped.
+     */
+    public static void setStackTraceSuppressed(boolean isSuppressed) {
+        isStackTraceSuppressed.set(isSuppressed);
+    }
+
+    /**
+     * Checks whether VecCommandExceptions created on the current thread skip recording a stack trace.
+     *
+     * @return Whether stack traces are skipped.
+     */
+    public static boolean isStackTraceSuppressed() {
+        return isStackTraceSuppressed.get();
+    }
+
+    /**
+     * Records the stack trace, unless stack traces are suppressed on the current thread.
+     *
+     * @return This exception.
+     */
+    @Override
+    public synchronized Throwable fillInStackTrace() {
+        return isStackTraceSuppressed.get() ? this : super.fillInStackTrace();
+    }
 }
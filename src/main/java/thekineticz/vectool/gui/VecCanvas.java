@@ -1,22 +1,42 @@
 package thekineticz.vectool.gui;
 
+import thekineticz.vectool.vec.CheckpointedRaster;
+import thekineticz.vectool.vec.CommandBuffer;
 import thekineticz.vectool.vec.VecFile;
 import thekineticz.vectool.vec.commands.*;
 import thekineticz.vectool.vec.common.Position;
-import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecRenderer;
+import thekineticz.vectool.vec.common.VecViewport;
 
 import javax.swing.*;
 import java.awt.*;
+import java.awt.event.MouseAdapter;
+import java.awt.event.MouseEvent;
+import java.awt.event.MouseWheelEvent;
 import java.util.ArrayList;
 
 /**
  * Custom square JPanel for drawing a VEC image.
+ * The mouse wheel zooms in and out around the mouse, and dragging with the middle button pans.
  */
 class VecCanvas extends JPanel {
 
+    //The zoom factor for one notch of the mouse wheel or one step of the zoom menu items
+    static final double ZOOM_STEP = 1.25;
+
     private VecFile vecFile;
     private VecToolGUI.VecCanvasEditor editor;
 
+    //The committed commands rendered at the current canvas size, so previews don't redraw the whole file
+    private CheckpointedRaster backBuffer;
+
+    //The region the last preview was drawn over, which has to be repainted when the preview moves
+    private Rectangle previewBounds;
+
+    //The part of the image that is shown, and where the last middle button drag event was
+    private VecViewport viewport = VecViewport.FULL;
+    private Point panPoint;
+
     /**
      * Create a new VecCanvas tied to a VecFile.
      *
@@ -25,6 +45,173 @@ class VecCanvas extends JPanel {
     VecCanvas(VecFile vecFile, VecToolGUI.VecCanvasEditor editor) {
         this.vecFile = vecFile;
         this.editor = editor;
+        vecFile.addCommandListener(this::commandsChanged);
+
+        MouseAdapter viewportListener = new MouseAdapter() {
+            @Override
+            public void mousePressed(MouseEvent event) {
+                if (SwingUtilities.isMiddleMouseButton(event)) {
+                    panPoint = event.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseDragged(MouseEvent event) {
+                if (SwingUtilities.isMiddleMouseButton(event) && panPoint != null) {
+                    setViewport(viewport.pan((double) (event.getX() - panPoint.x) / getWidth(), (double) (event.getY() - panPoint.y) / getHeight()));
+                    panPoint = event.getPoint();
+                }
+            }
+
+            @Override
+            public void mouseReleased(MouseEvent event) {
+                if (SwingUtilities.isMiddleMouseButton(event)) {
+                    panPoint = null;
+                }
+            }
+
+            @Override
+            public void mouseWheelMoved(MouseWheelEvent event) {
+                double factor = Math.pow(ZOOM_STEP, -event.getPreciseWheelRotation());
+                setViewport(viewport.zoomAbout(factor, (double) event.getX() / getWidth(), (double) event.getY() / getHeight()));
+            }
+        };
+        addMouseListener(viewportListener);
+        addMouseMotionListener(viewportListener);
+        addMouseWheelListener(viewportListener);
+    }
+
+    /**
+     * Gets the part of the image that is shown.
+     *
+     * @return The viewport.
+     */
+    VecViewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Changes the part of the image that is shown. The back buffer is drawn again from the visible commands on the
+     * next paint.
+     *
+     * @param viewport The viewport.
+     */
+    void setViewport(VecViewport viewport) {
+        if (viewport.equals(this.viewport)) {
+            return;
+        }
+
+        this.viewport = viewport;
+        backBuffer = null;
+        previewBounds = null;
+        repaint();
+    }
+
+    /**
+     * Zooms in or out around the centre of the canvas.
+     *
+     * @param factor The factor to multiply the zoom by, which zooms out if it is less than 1.
+     */
+    void zoom(double factor) {
+        setViewport(viewport.zoomAbout(factor, 0.5, 0.5));
+    }
+
+    /**
+     * Converts a pixel of the canvas to the position in the image shown there.
+     *
+     * @param pixelX The x coordinate of the pixel.
+     * @param pixelY The y coordinate of the pixel.
+     * @return The position.
+     */
+    Position toPosition(int pixelX, int pixelY) {
+        return new Position(viewport.fromViewX((double) pixelX / getWidth()), viewport.fromViewY((double) pixelY / getHeight()));
+    }
+
+    /**
+     * Gets the distance in the image covered by one pixel of the canvas at the current zoom.
+     *
+     * @return The distance.
+     */
+    double getPixelSize() {
+        return 1 / (getWidth() * viewport.getZoom());
+    }
+
+    /**
+     * Brings the back buffer up to date after the commands of the VecFile change, and repaints only the tiles that
+     * changed.
+     *
+     * @param firstChangedIndex The index of the first command that may have changed.
+     */
+    private void commandsChanged(int firstChangedIndex) {
+        if (backBuffer == null) {
+            repaint();
+            return;
+        }
+
+        backBuffer.invalidateFrom(firstChangedIndex);
+        updateBackBuffer();
+        for (Rectangle region : backBuffer.takeDirtyRegions()) {
+            repaint(region);
+        }
+    }
+
+    /**
+     * Brings the back buffer up to date with the commands of the VecFile.
+     */
+    private void updateBackBuffer() {
+        //Paged files are too large to index in memory
+        if (vecFile.getCommands() instanceof CommandBuffer) {
+            backBuffer.setSpatialIndex(vecFile.getSpatialIndex());
+        } else {
+            backBuffer.setSpatialIndex(null);
+        }
+        backBuffer.update(vecFile.getCommands());
+    }
+
+    /**
+     * Repaints the regions covered by the editor's preview and the one before it.
+     * Should be called whenever the preview changes.
+     */
+    void repaintPreview() {
+        Rectangle bounds = getPreviewBounds();
+        if (previewBounds != null) {
+            repaint(previewBounds);
+        }
+        if (bounds != null) {
+            repaint(bounds);
+        }
+        previewBounds = bounds;
+    }
+
+    /**
+     * Gets the region of the canvas that the editor's preview covers, with a pixel on each side for its outline.
+     *
+     * @return The region, or null if there is no preview.
+     */
+    private Rectangle getPreviewBounds() {
+        if (editor.getPositionBuffer().isEmpty() || editor.getMousePosition() == null) {
+            return null;
+        }
+
+        Rectangle bounds = new Rectangle(toPixel(editor.getMousePosition()));
+        for (Position position : editor.getPositionBuffer()) {
+            bounds.add(toPixel(position));
+        }
+        bounds.grow(1, 1);
+        bounds.width++;
+        bounds.height++;
+        return bounds;
+    }
+
+    /**
+     * Scales a position to the size of the canvas through the viewport, in the same way as VecRenderer.
+     *
+     * @param position The position.
+     * @return The pixel.
+     */
+    private Point toPixel(Position position) {
+        return new Point((int) Math.round(getWidth() * viewport.toViewX(position.getX())),
+                (int) Math.round(getHeight() * viewport.toViewY(position.getY())));
     }
 
     /**
@@ -48,202 +235,61 @@ class VecCanvas extends JPanel {
 
     /**
      * Overrides the paint function to draw a VecFile on the canvas during repainting.
-     * If an editor action is currently underway, a preview will also be drawn.
+     * The file is drawn from the back buffer, which is kept up to date as commands change and is only rendered from
+     * scratch when the size of the canvas or the viewport changes, and then only from the visible commands.
+     * Only the clipped region of it is copied to the screen.
+     * If an editor action is currently underway, a preview will be drawn over it.
      *
      * @param g Graphics parameter; automatically passed during repainting.
      */
     @Override
     public void paint(Graphics g) {
-        //Fill background colour
-        g.setColor(Color.WHITE);
-        g.fillRect(0, 0, getWidth(), getHeight());
-
-        Color penColour = Color.BLACK;
-        Color fillColour = null;
-
-        //Draw the shapes as defined by the VEC file
-        for (VecCommand command : vecFile.getCommands()) {
-            if (command instanceof PlotCommand) {
-                plotPoint(g, (PlotCommand) command, penColour);
-            } else if (command instanceof LineCommand) {
-                drawLine(g, ((LineCommand) command).getPositions(), penColour);
-            } else if (command instanceof RectangleCommand) {
-                drawRectangle(g, ((RectangleCommand) command).getPositions(), penColour, fillColour);
-            } else if (command instanceof EllipseCommand) {
-                drawEllipse(g, ((EllipseCommand) command).getPositions(), penColour, fillColour);
-            } else if (command instanceof PolygonCommand) {
-                drawPolygon(g, ((PolygonCommand) command).getVertices(), penColour, fillColour);
-            } else if (command instanceof PenCommand) {
-                penColour = ColourHexConverter.hex2rgb(((PenCommand) command).getColour());
-            } else if (command instanceof FillCommand) {
-                fillColour = ColourHexConverter.hex2rgb(((FillCommand) command).getColour());
-            }
+        if (getWidth() <= 0 || getHeight() <= 0) {
+            return;
         }
 
+        if (backBuffer == null || backBuffer.getImage().getWidth() != getWidth() || backBuffer.getImage().getHeight() != getHeight()) {
+            backBuffer = new CheckpointedRaster(getWidth(), getHeight(), CheckpointedRaster.DEFAULT_CHECKPOINT_BUDGET, viewport, true);
+            updateBackBuffer();
+
+            //The whole canvas is being painted anyway
+            backBuffer.takeDirtyRegions();
+        }
+        g.drawImage(backBuffer.getImage(), 0, 0, null);
+
+        VecRenderer renderer = new VecRenderer(g, getWidth(), getHeight(), viewport);
+
         //Preview edits from the VecCanvasEditor
         if (!editor.getPositionBuffer().isEmpty()) {
+            renderer.setPenColour(editor.getNextPenColour());
+            renderer.setFillColour(editor.getNextFillColour());
+
             if (editor.getActiveTool() == LineCommand.class) {
                 ArrayList<Position> positions = new ArrayList<>();
                 positions.add(editor.getPositionBuffer().get(0));
                 positions.add(editor.getMousePosition());
 
-                drawLine(g, positions, editor.getNextPenColour());
+                renderer.drawLine(positions);
             } else if (editor.getActiveTool() == RectangleCommand.class) {
                 ArrayList<Position> positions = new ArrayList<>();
                 positions.add(editor.getPositionBuffer().get(0));
                 positions.add(editor.getMousePosition());
 
-                drawRectangle(g, positions, editor.getNextPenColour(), editor.getNextFillColour());
+                renderer.drawRectangle(positions);
             } else if (editor.getActiveTool() == EllipseCommand.class) {
                 ArrayList<Position> positions = new ArrayList<>();
                 positions.add(editor.getPositionBuffer().get(0));
                 positions.add(editor.getMousePosition());
 
-                drawEllipse(g, positions, editor.getNextPenColour(), editor.getNextFillColour());
+                renderer.drawEllipse(positions);
             } else if (editor.getActiveTool() == PolygonCommand.class) {
                 ArrayList<Position> positions = new ArrayList<>(editor.getPositionBuffer());
                 positions.add(editor.getMousePosition());
 
                 for (int i = 1; i < positions.size(); i++) {
-                    drawLine(g, new ArrayList<>(positions.subList(i - 1, i + 1)), editor.getNextPenColour());
+                    renderer.drawLine(positions.subList(i - 1, i + 1));
                 }
             }
         }
     }
-
-    /**
-     * Plots a single pixel on the canvas.
-     *
-     * @param g         Graphics parameter from paint function.
-     * @param command   PlotCommand reference.
-     * @param penColour The colour of the pixel being plotted.
-     */
-    private void plotPoint(Graphics g, PlotCommand command, Color penColour) {
-        Position position = command.getPosition();
-        int x = (int) Math.round(getWidth() * position.getX());
-        int y = (int) Math.round(getHeight() * position.getY());
-
-        g.setColor(penColour);
-        g.drawLine(x, y, x, y);
-    }
-
-    /**
-     * Draws a line on the canvas.
-     *
-     * @param g         Graphics parameter from paint function.
-     * @param positions The line endpoints.
-     * @param penColour The colour of the line being drawn.
-     */
-    private void drawLine(Graphics g, ArrayList<Position> positions, Color penColour) {
-        int x1 = (int) Math.round(getWidth() * positions.get(0).getX());
-        int y1 = (int) Math.round(getHeight() * positions.get(0).getY());
-        int x2 = (int) Math.round(getWidth() * positions.get(1).getX());
-        int y2 = (int) Math.round(getHeight() * positions.get(1).getY());
-
-        g.setColor(penColour);
-        g.drawLine(x1, y1, x2, y2);
-    }
-
-    /**
-     * Draws a rectangle on the canvas.
-     *
-     * @param g          Graphics parameter from paint function.
-     * @param positions  The rectangle corners.
-     * @param penColour  The colour of the rectangle border.
-     * @param fillColour The fill colour of the rectangle.
-     */
-    private void drawRectangle(Graphics g, ArrayList<Position> positions, Color penColour, Color fillColour) {
-        int x1 = (int) Math.round(getWidth() * positions.get(0).getX());
-        int y1 = (int) Math.round(getHeight() * positions.get(0).getY());
-        int x2 = (int) Math.round(getWidth() * positions.get(1).getX());
-        int y2 = (int) Math.round(getHeight() * positions.get(1).getY());
-
-        //Force (x1, y1) to be top-left and (x2, y2) to be bottom-right
-        if (x1 > x2) {
-            //Swap x1 and x2
-            x1 += x2;
-            x2 = x1 - x2;
-            x1 -= x2;
-        }
-
-        if (y1 > y2) {
-            //Swap y1 and y2
-            y1 += y2;
-            y2 = y1 - y2;
-            y1 -= y2;
-        }
-
-        if (fillColour != null) {
-            g.setColor(fillColour);
-            g.fillRect(x1, y1, x2 - x1, y2 - y1);
-        }
-        g.setColor(penColour);
-        g.drawRect(x1, y1, x2 - x1, y2 - y1);
-    }
-
-    /**
-     * Draws an ellipse on the canvas.
-     *
-     * @param g          Graphics parameter from paint function.
-     * @param positions  The ellipse corners.
-     * @param penColour  The colour of the ellipse border.
-     * @param fillColour The fill colour of the ellipse.
-     */
-    private void drawEllipse(Graphics g, ArrayList<Position> positions, Color penColour, Color fillColour) {
-        int x1 = (int) Math.round(getWidth() * positions.get(0).getX());
-        int y1 = (int) Math.round(getHeight() * positions.get(0).getY());
-        int x2 = (int) Math.round(getWidth() * positions.get(1).getX());
-        int y2 = (int) Math.round(getHeight() * positions.get(1).getY());
-
-        //Force (x1, y1) to be top-left and (x2, y2) to be bottom-right
-        if (x1 > x2) {
-            //Swap x1 and x2
-            x1 += x2;
-            x2 = x1 - x2;
-            x1 -= x2;
-        }
-
-        if (y1 > y2) {
-            //Swap y1 and y2
-            y1 += y2;
-            y2 = y1 - y2;
-            y1 -= y2;
-        }
-
-        if (fillColour != null) {
-            g.setColor(fillColour);
-            g.fillOval(x1, y1, x2 - x1, y2 - y1);
-        }
-        g.setColor(penColour);
-        g.drawOval(x1, y1, x2 - x1, y2 - y1);
-    }
-
-    /**
-     * Draws a polygon on the canvas.
-     *
-     * @param g          Graphics parameter from paint function.
-     * @param vertices   The polygon vertices.
-     * @param penColour  The colour of the polygon border.
-     * @param fillColour The fill colour of the polygon.
-     */
-    private void drawPolygon(Graphics g, ArrayList<Position> vertices, Color penColour, Color fillColour) {
-        int n = vertices.size();
-        int[] xPoints = new int[n];
-        int[] yPoints = new int[n];
-
-        for (int i = 0; i < n; i++) {
-            Position vertex = vertices.get(i);
-            xPoints[i] = (int) Math.round(getWidth() * vertex.getX());
-            yPoints[i] = (int) Math.round(getHeight() * vertex.getY());
-        }
-
-        Polygon polygon = new Polygon(xPoints, yPoints, n);
-
-        if (fillColour != null) {
-            g.setColor(fillColour);
-            g.fillPolygon(polygon);
-        }
-        g.setColor(penColour);
-        g.drawPolygon(polygon);
-    }
 }
@@ -3,16 +3,25 @@ package thekineticz.vectool.gui;
 import thekineticz.vectool.VecTool;
 import thekineticz.vectool.exception.VecCommandException;
 import thekineticz.vectool.vec.VecFile;
+import thekineticz.vectool.vec.VecFileLoader;
+import thekineticz.vectool.vec.VecFileSnapshot;
 import thekineticz.vectool.vec.commands.*;
 import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecViewport;
 
 import javax.swing.*;
-import javax.swing.filechooser.FileNameExtensionFilter;
+import javax.swing.filechooser.FileFilter;
 import java.awt.*;
 import java.awt.event.*;
 import java.io.File;
 import java.io.IOException;
 import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
 
 /**
  * VecTool GUI main class.
@@ -21,16 +30,29 @@ public class VecToolGUI extends JFrame {
 
     private static final String TITLE = "VECtor Design Tool";
     private static final String DEFAULT_FILENAME = "untitled";
-    private static final FileNameExtensionFilter FILE_FILTER = new FileNameExtensionFilter("VEC File (*.vec)", VecFile.FILE_EXTENSION);
+    private static final FileFilter FILE_FILTER = new VecFileFilter();
     private static final Dimension DEFAULT_WINDOW_SIZE = new Dimension(1000, 800);
+    private static final int OPEN_BATCH_SIZE = 8192;
 
     private VecToolGUIMenuBar menuBar;
     private VecToolbar toolbar;
     private JPanel canvasPanel;
     private VecCanvas vecCanvas;
+    private JPanel statusBar;
+    private JLabel statusLabel;
+    private JProgressBar saveProgressBar;
 
     private VecFile vecFile = null;
 
+    //Saves are written one at a time, in the order they were made, away from the event-dispatching thread
+    private final ExecutorService saveExecutor = Executors.newSingleThreadExecutor(runnable -> {
+        Thread thread = new Thread(runnable, "VecTool save");
+        thread.setDaemon(true);
+        return thread;
+    });
+    private int pendingSaveCount = 0;
+    private OpenWorker openWorker = null;
+
     /**
      * Creates and shows the VecTool GUI.
      * For safety, this should be invoked from the event-dispatching thread.
@@ -56,6 +78,15 @@ public class VecToolGUI extends JFrame {
         canvasPanel.setBackground(Color.LIGHT_GRAY);
         add(canvasPanel, BorderLayout.CENTER);
 
+        //Set up status bar, which is only shown while saving
+        statusLabel = new JLabel();
+        saveProgressBar = new JProgressBar(0, 100);
+        statusBar = new JPanel(new FlowLayout(FlowLayout.LEFT));
+        statusBar.add(statusLabel);
+        statusBar.add(saveProgressBar);
+        statusBar.setVisible(false);
+        add(statusBar, BorderLayout.SOUTH);
+
         //Override window close operation to custom function.
         setDefaultCloseOperation(JFrame.DO_NOTHING_ON_CLOSE);
         addWindowListener(new WindowAdapter() {
@@ -70,9 +101,16 @@ public class VecToolGUI extends JFrame {
     }
 
     /**
-     * Removes an existing canvas from the canvas panel.
+     * Removes an existing canvas from the canvas panel, stops loading its file if it is still loading, and closes
+     * the VecFile it shows.
      */
     private void removeCanvas() {
+        if (openWorker != null) {
+            openWorker.cancel(false);
+            openWorker = null;
+        }
+        vecFile.close();
+
         canvasPanel.remove(vecCanvas);
         canvasPanel.revalidate();
         canvasPanel.repaint();
@@ -113,7 +151,7 @@ public class VecToolGUI extends JFrame {
 
         //Ready to proceed if file successfully saves or user chooses not to save.
         if (choice == JOptionPane.OK_OPTION) {
-            return vecFile.isNewFile() ? saveVecFileAs() : saveVecFile();
+            return vecFile.isNewFile() ? saveVecFileAs(true) : saveVecFile(true);
         } else return choice != JOptionPane.CANCEL_OPTION;
     }
 
@@ -128,6 +166,13 @@ public class VecToolGUI extends JFrame {
             }
         }
 
+        //Let any saves that are still being written finish first
+        if (pendingSaveCount > 0) {
+            JDialog waitDialog = createWaitDialog("Waiting for saves to finish...");
+            saveExecutor.execute(() -> SwingUtilities.invokeLater(waitDialog::dispose));
+            waitDialog.setVisible(true);
+        }
+
         VecTool.close();
         System.exit(0);
     }
@@ -135,54 +180,110 @@ public class VecToolGUI extends JFrame {
     /**
      * Saves the VecFile to it's original file.
      *
-     * @return Whether the operation was successful.
+     * @param isWaiting Whether to wait for the save to finish, rather than writing it in the background.
+     * @return Whether the operation was successful, or was started successfully if not waiting.
      */
-    private boolean saveVecFile() {
+    private boolean saveVecFile(boolean isWaiting) {
         try {
-            vecFile.save();
-            return true;
+            return startSave(vecFile, vecFile.createSaveSnapshot(), false, isWaiting);
         } catch (IOException e) {
+            showSaveError(false);
+            saveVecFileAs(isWaiting);
+        }
+
+        return false;
+    }
+
+    /**
+     * Shows the error dialog for a save that failed.
+     *
+     * @param isSaveAs Whether the save was to a new location.
+     */
+    private void showSaveError(boolean isSaveAs) {
+        if (isSaveAs) {
+            JOptionPane.showMessageDialog(
+                    this,
+                    "IO Error while writing to file.",
+                    "Error",
+                    JOptionPane.ERROR_MESSAGE
+            );
+        } else {
             JOptionPane.showMessageDialog(
                     this,
                     "An error occurred while trying to save the file.\nPlease save to a new location.",
                     "Error",
                     JOptionPane.ERROR_MESSAGE
             );
+        }
+    }
 
-            saveVecFileAs();
+    /**
+     * Starts writing a snapshot of a VecFile on the save thread.
+     * The VecFile can keep being edited while it is written.
+     *
+     * @param target    The VecFile the snapshot was taken from.
+     * @param snapshot  The snapshot.
+     * @param isSaveAs  Whether the snapshot is being saved to a new location.
+     * @param isWaiting Whether to wait for the save to finish behind a modal dialog.
+     * @return Whether the save was successful if waiting, otherwise true.
+     */
+    private boolean startSave(VecFile target, VecFileSnapshot snapshot, boolean isSaveAs, boolean isWaiting) {
+        JDialog waitDialog = isWaiting ? createWaitDialog(String.format("Saving %s...", snapshot.getFile().getName())) : null;
+        SaveWorker worker = new SaveWorker(target, snapshot, isSaveAs, waitDialog);
+
+        pendingSaveCount++;
+        statusLabel.setText(String.format("Saving %s...", snapshot.getFile().getName()));
+        saveProgressBar.setValue(0);
+        statusBar.setVisible(true);
+        saveExecutor.execute(worker);
+
+        //The modal dialog keeps handling events until the worker closes it
+        if (waitDialog != null) {
+            waitDialog.setVisible(true);
+            return worker.isSuccessful;
         }
 
-        return false;
+        return true;
+    }
+
+    /**
+     * Creates a modal dialog with a progress bar, which the user can't close.
+     *
+     * @param message The message shown in the dialog.
+     * @return The dialog, which hasn't been shown yet.
+     */
+    private JDialog createWaitDialog(String message) {
+        JProgressBar progressBar = new JProgressBar();
+        progressBar.setIndeterminate(true);
+
+        JPanel panel = new JPanel(new BorderLayout(0, 10));
+        panel.setBorder(BorderFactory.createEmptyBorder(15, 15, 15, 15));
+        panel.add(new JLabel(message), BorderLayout.NORTH);
+        panel.add(progressBar, BorderLayout.CENTER);
+
+        JDialog dialog = new JDialog(this, TITLE, true);
+        dialog.setDefaultCloseOperation(JDialog.DO_NOTHING_ON_CLOSE);
+        dialog.add(panel);
+        dialog.pack();
+        dialog.setLocationRelativeTo(this);
+        return dialog;
     }
 
     /**
      * Saves the VecFile to a new file.
      *
-     * @return Whether the operation was successful.
+     * @param isWaiting Whether to wait for the save to finish, rather than writing it in the background.
+     * @return Whether the operation was successful, or was started successfully if not waiting.
      */
-    private boolean saveVecFileAs() {
+    private boolean saveVecFileAs(boolean isWaiting) {
         JFileChooser fileChooser = new JFileChooser();
         fileChooser.setDialogType(JFileChooser.SAVE_DIALOG);
-        fileChooser.setSelectedFile(new File(String.format("%s.%s", vecFile.getFilename(), VecFile.FILE_EXTENSION)));
+        fileChooser.setSelectedFile(new File(String.format("%s.%s", vecFile.getFilename(), vecFile.getExtension())));
         fileChooser.setFileFilter(FILE_FILTER);
 
         if (fileChooser.showSaveDialog(this) == JFileChooser.APPROVE_OPTION) {
             File file = fileChooser.getSelectedFile();
-
-            try {
-                vecFile.saveAs(file);
-                setTitle(String.format("%s - %s", vecFile.getFilename(), TITLE));
-                menuBar.saveFileButton.setEnabled(true);
-                return true;
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(
-                        this,
-                        "IO Error while writing to file.",
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE
-                );
-            }
-
+            return startSave(vecFile, vecFile.createSaveSnapshot(file), true, isWaiting);
         }
 
         return false;
@@ -234,33 +335,19 @@ public class VecToolGUI extends JFrame {
                 removeCanvas();
             }
 
-            try {
-                vecFile = new VecFile(file);
-                setTitle(String.format("%s - %s", vecFile.getFilename(), TITLE));
+            //Show the canvas straight away, and fill it in as the file is read
+            vecFile = VecFile.createLoading(file);
+            setTitle(String.format("%s - %s", vecFile.getFilename(), TITLE));
 
-                menuBar.closeFileButton.setEnabled(true);
-                menuBar.saveFileButton.setEnabled(true);
-                menuBar.saveAsFileButton.setEnabled(true);
-                menuBar.undoLastButton.setEnabled(!vecFile.getCommands().isEmpty());
-                toolbar.colourSelector.setPenColour(ColourHexConverter.hex2rgb(vecFile.getLatestPenColour()));
-                toolbar.colourSelector.setFillColour(ColourHexConverter.hex2rgb(vecFile.getLatestFillColour()));
+            menuBar.closeFileButton.setEnabled(true);
+            menuBar.saveFileButton.setEnabled(false);
+            menuBar.saveAsFileButton.setEnabled(false);
+            menuBar.undoLastButton.setEnabled(false);
+            toolbar.colourSelector.reset();
 
-                createCanvas(vecFile);
-            } catch (VecCommandException e) {
-                JOptionPane.showMessageDialog(
-                        this,
-                        String.format("Invalid line in file.\nError: %s", e.getMessage()),
-                        "Error in file",
-                        JOptionPane.ERROR_MESSAGE
-                );
-            } catch (IOException e) {
-                JOptionPane.showMessageDialog(
-                        this,
-                        "IO Error while reading from file.",
-                        "Error",
-                        JOptionPane.ERROR_MESSAGE
-                );
-            }
+            createCanvas(vecFile);
+            openWorker = new OpenWorker(vecFile, file);
+            openWorker.execute();
         }
     }
 
@@ -274,6 +361,13 @@ public class VecToolGUI extends JFrame {
             }
         }
 
+        discardVecFile();
+    }
+
+    /**
+     * Closes the file without prompting to save it.
+     */
+    private void discardVecFile() {
         if (vecCanvas != null) {
             removeCanvas();
         }
@@ -287,6 +381,237 @@ public class VecToolGUI extends JFrame {
         toolbar.colourSelector.reset();
     }
 
+    /**
+     * Inner class for the file chooser filter, which only shows directories and files in one of the VEC formats.
+     * A filter on the last extension alone would also show every other gzip file.
+     */
+    private static class VecFileFilter extends FileFilter {
+
+        /**
+         * Checks whether a file is shown by the file chooser.
+         *
+         * @param file The file.
+         * @return Whether the file is a directory or a text, binary or compressed VEC file.
+         */
+        @Override
+        public boolean accept(File file) {
+            return file.isDirectory()
+                    || file.getName().endsWith("." + VecFile.FILE_EXTENSION)
+                    || VecFile.isBinaryFile(file)
+                    || VecFile.isCompressedFile(file);
+        }
+
+        /**
+         * Gets the description of the filter.
+         *
+         * @return The description.
+         */
+        @Override
+        public String getDescription() {
+            return "VEC File (*.vec, *.vecb, *.vec.gz)";
+        }
+    }
+
+    /**
+     * Inner class for reading a VecFile on a worker thread, adding each batch of commands to the canvas as it is read.
+     */
+    private class OpenWorker extends SwingWorker<VecFileLoader, List<VecCommand>> {
+
+        private final VecFile target;
+        private final File file;
+        private final ProgressMonitor progressMonitor;
+        private volatile VecFileLoader loader;
+
+        /**
+         * Creates a new open worker.
+         *
+         * @param target The VecFile the commands are added to.
+         * @param file   The file being opened.
+         */
+        OpenWorker(VecFile target, File file) {
+            this.target = target;
+            this.file = file;
+
+            progressMonitor = new ProgressMonitor(VecToolGUI.this, String.format("Opening %s...", file.getName()), null, 0, 100);
+            addPropertyChangeListener(event -> {
+                if ("progress".equals(event.getPropertyName())) {
+                    progressMonitor.setProgress((Integer) event.getNewValue());
+                }
+                if (progressMonitor.isCanceled() && !isDone()) {
+                    discardVecFile();
+                }
+            });
+        }
+
+        /**
+         * Reads the file in batches, publishing each one.
+         *
+         * @return The loader that read the file.
+         * @throws VecCommandException Thrown if an issue occurs while parsing a command.
+         * @throws IOException         Thrown if an issue occurs during file IO.
+         */
+        @Override
+        protected VecFileLoader doInBackground() throws VecCommandException, IOException {
+            try (VecFileLoader loader = new VecFileLoader(file)) {
+                while (!isCancelled() && !loader.isFinished()) {
+                    List<VecCommand> batch = loader.readBatch(OPEN_BATCH_SIZE);
+                    if (!batch.isEmpty()) {
+                        publish(batch);
+                    }
+                    setProgress((int) (loader.getProgress() * 100));
+                }
+
+                //done may have already run if the worker was cancelled, so it can only discard the loader after this
+                this.loader = loader;
+                if (isCancelled()) {
+                    loader.discardPagedCommands();
+                }
+                return loader;
+            }
+        }
+
+        /**
+         * Adds the batches read since the last update to the VecFile and redraws the canvas.
+         *
+         * @param batches The batches of commands.
+         */
+        @Override
+        protected void process(List<List<VecCommand>> batches) {
+            if (isCancelled()) {
+                return;
+            }
+
+            for (List<VecCommand> batch : batches) {
+                target.addLoadedCommands(batch);
+            }
+        }
+
+        /**
+         * Completes loading the VecFile, or closes it if it couldn't be read.
+         */
+        @Override
+        protected void done() {
+            progressMonitor.close();
+            if (isCancelled() || target != vecFile) {
+                if (loader != null) {
+                    loader.discardPagedCommands();
+                }
+                return;
+            }
+            openWorker = null;
+
+            try {
+                target.finishLoading(get());
+
+                menuBar.saveFileButton.setEnabled(true);
+                menuBar.saveAsFileButton.setEnabled(true);
+                menuBar.undoLastButton.setEnabled(!vecFile.getCommands().isEmpty());
+                toolbar.colourSelector.setPenColour(VecColour.toColor(vecFile.getLatestPenRgb()));
+                toolbar.colourSelector.setFillColour(VecColour.toColor(vecFile.getLatestFillRgb()));
+                vecCanvas.repaint();
+            } catch (InterruptedException | ExecutionException e) {
+                discardVecFile();
+
+                if (e.getCause() instanceof VecCommandException) {
+                    JOptionPane.showMessageDialog(
+                            VecToolGUI.this,
+                            String.format("Invalid line in file.\nError: %s", e.getCause().getMessage()),
+                            "Error in file",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                } else {
+                    JOptionPane.showMessageDialog(
+                            VecToolGUI.this,
+                            "IO Error while reading from file.",
+                            "Error",
+                            JOptionPane.ERROR_MESSAGE
+                    );
+                }
+            }
+        }
+    }
+
+    /**
+     * Inner class for writing a snapshot of a VecFile on the save thread, and completing the save on the
+     * event-dispatching thread once it has been written.
+     */
+    private class SaveWorker extends SwingWorker<Void, Integer> {
+
+        private final VecFile target;
+        private final VecFileSnapshot snapshot;
+        private final boolean isSaveAs;
+        private final JDialog waitDialog;
+        private boolean isSuccessful = false;
+
+        /**
+         * Creates a new save worker.
+         *
+         * @param target     The VecFile the snapshot was taken from.
+         * @param snapshot   The snapshot.
+         * @param isSaveAs   Whether the snapshot is being saved to a new location.
+         * @param waitDialog The dialog to close once the save is finished, or null.
+         */
+        SaveWorker(VecFile target, VecFileSnapshot snapshot, boolean isSaveAs, JDialog waitDialog) {
+            this.target = target;
+            this.snapshot = snapshot;
+            this.isSaveAs = isSaveAs;
+            this.waitDialog = waitDialog;
+        }
+
+        /**
+         * Writes the snapshot, publishing the percentage written.
+         *
+         * @return Nothing.
+         * @throws IOException Thrown if an error occurs while writing to file.
+         */
+        @Override
+        protected Void doInBackground() throws IOException {
+            snapshot.write((written, total) -> publish((int) (written * 100L / total)));
+            return null;
+        }
+
+        /**
+         * Shows the latest progress in the status bar.
+         *
+         * @param percentages The percentages published since the last update.
+         */
+        @Override
+        protected void process(List<Integer> percentages) {
+            saveProgressBar.setValue(percentages.get(percentages.size() - 1));
+        }
+
+        /**
+         * Completes or abandons the save, and reports any error.
+         */
+        @Override
+        protected void done() {
+            pendingSaveCount--;
+            statusBar.setVisible(pendingSaveCount > 0);
+
+            if (waitDialog != null) {
+                waitDialog.dispose();
+            }
+
+            try {
+                get();
+                target.completeSave(snapshot);
+                isSuccessful = true;
+
+                if (target == vecFile) {
+                    setTitle(String.format("%s - %s", vecFile.getFilename(), TITLE));
+                    menuBar.saveFileButton.setEnabled(true);
+                }
+            } catch (InterruptedException | ExecutionException e) {
+                target.abandonSave(snapshot);
+                showSaveError(isSaveAs);
+
+                if (!isSaveAs && target == vecFile) {
+                    saveVecFileAs(waitDialog != null);
+                }
+            }
+        }
+    }
+
     /**
      * Inner class for the menu bar of the VecToolGUI.
      */
@@ -303,6 +628,11 @@ public class VecToolGUI extends JFrame {
         JMenu editMenu;
         JMenuItem undoLastButton;
 
+        JMenu viewMenu;
+        JMenuItem zoomInButton;
+        JMenuItem zoomOutButton;
+        JMenuItem resetZoomButton;
+
         /**
          * Creates a new menu bar.
          */
@@ -363,9 +693,33 @@ public class VecToolGUI extends JFrame {
 
             editMenu.add(undoLastButton);
 
+            //Setup View menu
+            viewMenu = new JMenu("View");
+            viewMenu.setMnemonic(KeyEvent.VK_V);
+
+            zoomInButton = new JMenuItem("Zoom in");
+            zoomInButton.setMnemonic(KeyEvent.VK_I);
+            zoomInButton.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_EQUALS, InputEvent.CTRL_DOWN_MASK));
+            zoomInButton.addActionListener(this);
+
+            zoomOutButton = new JMenuItem("Zoom out");
+            zoomOutButton.setMnemonic(KeyEvent.VK_O);
+            zoomOutButton.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_MINUS, InputEvent.CTRL_DOWN_MASK));
+            zoomOutButton.addActionListener(this);
+
+            resetZoomButton = new JMenuItem("Show whole image");
+            resetZoomButton.setMnemonic(KeyEvent.VK_W);
+            resetZoomButton.setAccelerator(KeyStroke.getKeyStroke(KeyEvent.VK_0, InputEvent.CTRL_DOWN_MASK));
+            resetZoomButton.addActionListener(this);
+
+            viewMenu.add(zoomInButton);
+            viewMenu.add(zoomOutButton);
+            viewMenu.add(resetZoomButton);
+
             //Setup menu bar
             add(fileMenu);
             add(editMenu);
+            add(viewMenu);
         }
 
         /**
@@ -382,15 +736,22 @@ public class VecToolGUI extends JFrame {
             } else if (event.getSource() == closeFileButton) {
                 closeVecFile();
             } else if (event.getSource() == saveFileButton) {
-                saveVecFile();
+                saveVecFile(false);
             } else if (event.getSource() == saveAsFileButton) {
-                saveVecFileAs();
+                saveVecFileAs(false);
             } else if (event.getSource() == undoLastButton) {
                 vecFile.undoLatestCommand();
-                vecCanvas.repaint();
                 undoLastButton.setEnabled(!vecFile.getCommands().isEmpty());
             } else if (event.getSource() == exitButton) {
                 exitGUI();
+            } else if (vecCanvas == null) {
+                return;
+            } else if (event.getSource() == zoomInButton) {
+                vecCanvas.zoom(VecCanvas.ZOOM_STEP);
+            } else if (event.getSource() == zoomOutButton) {
+                vecCanvas.zoom(1 / VecCanvas.ZOOM_STEP);
+            } else if (event.getSource() == resetZoomButton) {
+                vecCanvas.setViewport(VecViewport.FULL);
             }
         }
     }
@@ -466,13 +827,11 @@ public class VecToolGUI extends JFrame {
          */
         private void addPlot(Position position) {
             try {
-                vecFile.addCommand(new PenCommand(ColourHexConverter.rgb2hex(getNextPenColour())));
+                vecFile.addCommand(new PenCommand(VecColour.fromColor(getNextPenColour())));
                 vecFile.addCommand(new PlotCommand(position));
             } catch (VecCommandException e) {
                 e.printStackTrace();
             }
-
-            vecCanvas.repaint();
         }
 
         /**
@@ -480,13 +839,11 @@ public class VecToolGUI extends JFrame {
          */
         private void addLine() {
             try {
-                vecFile.addCommand(new PenCommand(ColourHexConverter.rgb2hex(getNextPenColour())));
+                vecFile.addCommand(new PenCommand(VecColour.fromColor(getNextPenColour())));
                 vecFile.addCommand(new LineCommand(new ArrayList<>(positionBuffer)));
             } catch (VecCommandException e) {
                 e.printStackTrace();
             }
-
-            vecCanvas.repaint();
         }
 
         /**
@@ -494,14 +851,12 @@ public class VecToolGUI extends JFrame {
          */
         private void addRectangle() {
             try {
-                vecFile.addCommand(new PenCommand(ColourHexConverter.rgb2hex(getNextPenColour())));
-                vecFile.addCommand(new FillCommand(ColourHexConverter.rgb2hex(getNextFillColour())));
+                vecFile.addCommand(new PenCommand(VecColour.fromColor(getNextPenColour())));
+                vecFile.addCommand(new FillCommand(VecColour.fromColor(getNextFillColour())));
                 vecFile.addCommand(new RectangleCommand(new ArrayList<>(positionBuffer)));
             } catch (VecCommandException e) {
                 e.printStackTrace();
             }
-
-            vecCanvas.repaint();
         }
 
         /**
@@ -509,14 +864,12 @@ public class VecToolGUI extends JFrame {
          */
         private void addEllipse() {
             try {
-                vecFile.addCommand(new PenCommand(ColourHexConverter.rgb2hex(getNextPenColour())));
-                vecFile.addCommand(new FillCommand(ColourHexConverter.rgb2hex(getNextFillColour())));
+                vecFile.addCommand(new PenCommand(VecColour.fromColor(getNextPenColour())));
+                vecFile.addCommand(new FillCommand(VecColour.fromColor(getNextFillColour())));
                 vecFile.addCommand(new EllipseCommand(new ArrayList<>(positionBuffer)));
             } catch (VecCommandException e) {
                 e.printStackTrace();
             }
-
-            vecCanvas.repaint();
         }
 
         /**
@@ -524,14 +877,12 @@ public class VecToolGUI extends JFrame {
          */
         private void addPolygon() {
             try {
-                vecFile.addCommand(new PenCommand(ColourHexConverter.rgb2hex(getNextPenColour())));
-                vecFile.addCommand(new FillCommand(ColourHexConverter.rgb2hex(getNextFillColour())));
+                vecFile.addCommand(new PenCommand(VecColour.fromColor(getNextPenColour())));
+                vecFile.addCommand(new FillCommand(VecColour.fromColor(getNextFillColour())));
                 vecFile.addCommand(new PolygonCommand(new ArrayList<>(positionBuffer)));
             } catch (VecCommandException e) {
                 e.printStackTrace();
             }
-
-            vecCanvas.repaint();
         }
 
         /**
@@ -543,11 +894,16 @@ public class VecToolGUI extends JFrame {
          */
         @Override
         public void mousePressed(MouseEvent event) {
+            //Commands can't be added until the whole file has been read, and the middle button pans the canvas
+            if (vecFile.isLoading() || SwingUtilities.isMiddleMouseButton(event)) {
+                return;
+            }
+
             if (previousTool != null && !previousTool.equals(activeTool)) {
                 positionBuffer.clear();
             }
 
-            Position eventPosition = new Position((double) event.getX() / vecCanvas.getWidth(), (double) event.getY() / vecCanvas.getHeight());
+            Position eventPosition = vecCanvas.toPosition(event.getX(), event.getY());
 
             if (toolbar.toolSelector.plotToolButton.isSelected()) {
                 previousTool = PlotCommand.class;
@@ -565,7 +921,7 @@ public class VecToolGUI extends JFrame {
                 positionBuffer.add(eventPosition);
             } else if (toolbar.toolSelector.polygonToolButton.isSelected()) {
                 activeTool = PolygonCommand.class;
-                if (!positionBuffer.isEmpty() && eventPosition.getDistance(positionBuffer.get(0)) < (double) SNAP_THRESHOLD / getWidth()) {
+                if (!positionBuffer.isEmpty() && eventPosition.getDistance(positionBuffer.get(0)) < SNAP_THRESHOLD * vecCanvas.getPixelSize()) {
                     previousTool = PolygonCommand.class;
                     addPolygon();
                     menuBar.undoLastButton.setEnabled(true);
@@ -576,6 +932,8 @@ public class VecToolGUI extends JFrame {
                     positionBuffer.add(eventPosition);
                 }
             }
+
+            vecCanvas.repaintPreview();
         }
 
         /**
@@ -586,7 +944,11 @@ public class VecToolGUI extends JFrame {
          */
         @Override
         public void mouseReleased(MouseEvent event) {
-            Position eventPosition = new Position((double) event.getX() / vecCanvas.getWidth(), (double) event.getY() / vecCanvas.getHeight());
+            if (vecFile.isLoading() || SwingUtilities.isMiddleMouseButton(event)) {
+                return;
+            }
+
+            Position eventPosition = vecCanvas.toPosition(event.getX(), event.getY());
 
             if (toolbar.toolSelector.lineToolButton.isSelected() && positionBuffer.size() == 1) {
                 previousTool = LineCommand.class;
@@ -607,6 +969,8 @@ public class VecToolGUI extends JFrame {
                 menuBar.undoLastButton.setEnabled(true);
                 positionBuffer.clear();
             }
+
+            vecCanvas.repaintPreview();
         }
 
         /**
@@ -618,24 +982,27 @@ public class VecToolGUI extends JFrame {
          */
         @Override
         public void mouseDragged(MouseEvent event) {
-            mousePosition = new Position((double) event.getX() / vecCanvas.getWidth(), (double) event.getY() / vecCanvas.getHeight());
+            if (vecFile.isLoading() || SwingUtilities.isMiddleMouseButton(event)) {
+                return;
+            }
+
+            mousePosition = vecCanvas.toPosition(event.getX(), event.getY());
 
             if (toolbar.toolSelector.plotToolButton.isSelected()) {
                 activeTool = PlotCommand.class;
                 addPlot(mousePosition);
-                vecCanvas.repaint();
             } else if (toolbar.toolSelector.lineToolButton.isSelected()) {
                 activeTool = LineCommand.class;
-                vecCanvas.repaint();
+                vecCanvas.repaintPreview();
             } else if (toolbar.toolSelector.rectangleToolButton.isSelected()) {
                 activeTool = RectangleCommand.class;
-                vecCanvas.repaint();
+                vecCanvas.repaintPreview();
             } else if (toolbar.toolSelector.ellipseToolButton.isSelected()) {
                 activeTool = EllipseCommand.class;
-                vecCanvas.repaint();
+                vecCanvas.repaintPreview();
             } else if (toolbar.toolSelector.polygonToolButton.isSelected() && !positionBuffer.isEmpty()) {
                 activeTool = PolygonCommand.class;
-                vecCanvas.repaint();
+                vecCanvas.repaintPreview();
             }
         }
 
@@ -647,11 +1014,11 @@ public class VecToolGUI extends JFrame {
          */
         @Override
         public void mouseMoved(MouseEvent event) {
-            mousePosition = new Position((double) event.getX() / vecCanvas.getWidth(), (double) event.getY() / vecCanvas.getHeight());
+            mousePosition = vecCanvas.toPosition(event.getX(), event.getY());
 
             if (toolbar.toolSelector.polygonToolButton.isSelected() && !positionBuffer.isEmpty()) {
                 activeTool = PolygonCommand.class;
-                vecCanvas.repaint();
+                vecCanvas.repaintPreview();
             }
         }
 
@@ -0,0 +1,664 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandRegistry;
+import thekineticz.vectool.vec.common.VecCommandType;
+import thekineticz.vectool.vec.common.VecRenderer;
+import thekineticz.vectool.vec.common.VecViewport;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * An image of a list of commands that is kept up to date incrementally.
+ * Appended commands are drawn on top of the existing image, and when commands are removed the image is restored
+ * from the latest checkpoint before them and only the commands after it are drawn again.
+ * Checkpoints are copies of the image taken every so many commands, and the interval between them is doubled
+ * whenever they would take up more memory than the budget allows.
+ * <p>
+ * The image is divided into square tiles, and the tiles that each drawn command covers are recorded. Only the tiles
+ * covered by removed commands are restored and drawn again, and every tile that has changed is reported by
+ * takeDirtyRegions, so that only those parts of the image need to be repainted.
+ * <p>
+ * The image can show just the part of the commands inside a viewport. Given a spatial index, large batches of
+ * commands are drawn by asking the index which of them are visible, so drawing a zoomed in view takes time in
+ * proportion to what can be seen rather than to the number of commands. Commands that the index finds hidden under
+ * a later opaque shape aren't drawn. Each checkpoint remembers the last shape that hides a command it is missing, and
+ * is discarded if an undo removes that shape, so that no command an undo uncovers is ever missing from the image.
+ * <p>
+ * The coordinates of buffered commands are scaled to pixels once, when they are first drawn, and kept for working
+ * out their tiles and drawing them again after an undo. They stay valid for the life of the raster, since a new
+ * raster is made whenever the size or viewport changes.
+ */
+public class CheckpointedRaster {
+
+    /**
+     * The default amount of memory that checkpoints may use, in bytes.
+     */
+    public static final long DEFAULT_CHECKPOINT_BUDGET = 64L * 1024 * 1024;
+
+    /**
+     * The number of commands between checkpoints before any have been thinned out.
+     */
+    public static final int MIN_CHECKPOINT_INTERVAL = 1024;
+
+    /**
+     * The width and height of a tile in pixels. The last tile in each row and column also covers any pixels beyond
+     * MAX_TILES tiles.
+     */
+    public static final int TILE_SIZE = 64;
+
+    private static final int MAX_TILES = 256;
+
+    //Below this many new commands, drawing each one is quicker than asking the spatial index which are visible
+    private static final int INDEXED_RENDER_THRESHOLD = 256;
+    private static final Color BACKGROUND_COLOUR = Color.WHITE;
+
+    //The tile bounds of commands that don't draw anything inside the image, which are the only empty bounds
+    private static final int NO_TILES = 1;
+
+    private final BufferedImage image;
+    private final Graphics2D graphics;
+    private final int maxCheckpoints;
+    private final VecViewport viewport;
+    private final ArrayList<Checkpoint> checkpoints = new ArrayList<>();
+    private VecRenderer renderer;
+    private int checkpointInterval = MIN_CHECKPOINT_INTERVAL;
+
+    //The tiles covered by each drawn command, packed as 8 bit minimum and maximum tile columns and rows
+    private int[] commandTiles = new int[MIN_CHECKPOINT_INTERVAL];
+    private final int tileColumns;
+    private final int tileRows;
+    private final boolean[] dirtyTiles;
+    private final double[] commandBounds = new double[4];
+
+    //The coordinates of drawn commands in pixels, laid out like the coordinates of the command buffer. Commands
+    //that don't draw inside the image may never have theirs scaled
+    private int[] deviceCoordinates = new int[0];
+
+    //Finds the commands to replay after an undo without checking every one, if the raster has been given one
+    private SpatialIndex spatialIndex;
+
+    //The index of the last opaque shape that hides a command skipped so far, which has to stay to keep the image valid
+    private int lastOccluder = -1;
+
+    //The number of commands drawn on the image, and how many of them are still known to be the same
+    private int renderedCount;
+    private int validCount;
+
+    /**
+     * Creates a new blank raster.
+     *
+     * @param width            The width of the image in pixels.
+     * @param height           The height of the image in pixels.
+     * @param checkpointBudget The maximum amount of memory that checkpoints may use, in bytes.
+     */
+    public CheckpointedRaster(int width, int height, long checkpointBudget) {
+        this(width, height, checkpointBudget, VecViewport.FULL, false);
+    }
+
+    /**
+     * Creates a new blank raster of the part of the commands inside a viewport.
+     *
+     * @param width            The width of the image in pixels.
+     * @param height           The height of the image in pixels.
+     * @param checkpointBudget The maximum amount of memory that checkpoints may use, in bytes.
+     * @param viewport         The viewport whose window fills the image.
+     * @param isLevelOfDetail  Whether the renderer's level of detail is on.
+     */
+    public CheckpointedRaster(int width, int height, long checkpointBudget, VecViewport viewport, boolean isLevelOfDetail) {
+        image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        graphics = image.createGraphics();
+        this.viewport = viewport;
+        maxCheckpoints = (int) Math.min(Integer.MAX_VALUE, checkpointBudget / (4L * width * height));
+        tileColumns = Math.min(MAX_TILES, (width + TILE_SIZE - 1) / TILE_SIZE);
+        tileRows = Math.min(MAX_TILES, (height + TILE_SIZE - 1) / TILE_SIZE);
+        dirtyTiles = new boolean[tileColumns * tileRows];
+
+        graphics.setColor(BACKGROUND_COLOUR);
+        graphics.fillRect(0, 0, width, height);
+        renderer = new VecRenderer(image, graphics, viewport);
+        renderer.setLevelOfDetail(isLevelOfDetail);
+    }
+
+    /**
+     * A copy of the image and the renderer's colours after a number of commands were drawn.
+     */
+    private static class Checkpoint {
+
+        private final int commandCount;
+        private final BufferedImage pixels;
+        private final Color penColour;
+        private final Color fillColour;
+        private final int lastOccluder;
+
+        /**
+         * Creates a new checkpoint.
+         *
+         * @param commandCount The number of commands drawn on the image.
+         * @param pixels       The copy of the image.
+         * @param penColour    The pen colour after the commands.
+         * @param fillColour   The fill colour after the commands.
+         * @param lastOccluder The index of the last shape hiding a command that wasn't drawn, or -1.
+         */
+        Checkpoint(int commandCount, BufferedImage pixels, Color penColour, Color fillColour, int lastOccluder) {
+            this.commandCount = commandCount;
+            this.pixels = pixels;
+            this.penColour = penColour;
+            this.fillColour = fillColour;
+            this.lastOccluder = lastOccluder;
+        }
+    }
+
+    /**
+     * Gets the image. It only shows the commands after update has been called.
+     *
+     * @return The image.
+     */
+    public BufferedImage getImage() {
+        return image;
+    }
+
+    /**
+     * Gets the number of commands drawn on the image.
+     *
+     * @return The number of commands.
+     */
+    public int getRenderedCount() {
+        return renderedCount;
+    }
+
+    /**
+     * Gets the number of checkpoints being kept.
+     *
+     * @return The number of checkpoints.
+     */
+    int getCheckpointCount() {
+        return checkpoints.size();
+    }
+
+    /**
+     * Gets the viewport whose window fills the image.
+     *
+     * @return The viewport.
+     */
+    public VecViewport getViewport() {
+        return viewport;
+    }
+
+    /**
+     * Gives the raster a spatial index over the commands it draws, so that only the visible commands, or the ones
+     * inside the restored tiles after an undo, are looked at. The index must be kept in sync with the commands
+     * before each update.
+     *
+     * @param spatialIndex The spatial index, or null to check every command.
+     */
+    public void setSpatialIndex(SpatialIndex spatialIndex) {
+        this.spatialIndex = spatialIndex;
+    }
+
+    /**
+     * Marks every command from an index onwards as changed, so they are drawn again by the next update.
+     * This matches VecFile.CommandListener, so a raster can listen to a VecFile directly.
+     *
+     * @param firstChangedIndex The index of the first command that may have changed.
+     */
+    public void invalidateFrom(int firstChangedIndex) {
+        validCount = Math.min(validCount, firstChangedIndex);
+    }
+
+    /**
+     * Brings the image up to date with a list of commands, drawing only the commands that have been added or
+     * changed since the last update.
+     *
+     * @param commands The commands.
+     */
+    public void update(List<VecCommand> commands) {
+        int target = commands.size();
+        validCount = Math.min(validCount, target);
+
+        if (validCount < renderedCount) {
+            rollBack(commands, validCount);
+        }
+
+        if (commandTiles.length < target) {
+            commandTiles = Arrays.copyOf(commandTiles, Math.max(target, 2 * commandTiles.length));
+        }
+        if (commands instanceof CommandBuffer) {
+            int coordinateCount = ((CommandBuffer) commands).getCoordinateOffset(target);
+            if (deviceCoordinates.length < coordinateCount) {
+                deviceCoordinates = Arrays.copyOf(deviceCoordinates, Math.max(coordinateCount, 2 * deviceCoordinates.length));
+            }
+        }
+
+        //The indexes of the new commands that can be seen, if there are enough to be worth asking the index
+        int[] visible = null;
+        int nextVisible = 0;
+        if (spatialIndex != null && spatialIndex.size() >= target && target - renderedCount >= INDEXED_RENDER_THRESHOLD) {
+            visible = queryIndex(new Rectangle(0, 0, image.getWidth(), image.getHeight()), renderedCount, target);
+        }
+
+        while (renderedCount < target) {
+            int nextCheckpoint = (renderedCount / checkpointInterval + 1) * checkpointInterval;
+            int end = Math.min(target, nextCheckpoint);
+
+            if (visible == null && commands instanceof CommandBuffer) {
+                //Drawing the whole range at once lets the buffer pass runs of plots to the renderer together
+                CommandBuffer buffer = (CommandBuffer) commands;
+                buffer.toDevice(renderedCount, end, renderer, deviceCoordinates);
+                int runStart = renderedCount;
+                for (int i = renderedCount; i < end; i++) {
+                    if (isOccluded(i, target)) {
+                        buffer.renderDevice(runStart, i, deviceCoordinates, renderer);
+                        runStart = i + 1;
+                    }
+                    commandTiles[i] = getDeviceTiles(buffer, i);
+                    markDirty(commandTiles[i]);
+                }
+                buffer.renderDevice(runStart, end, deviceCoordinates, renderer);
+            } else if (visible == null) {
+                for (int i = renderedCount; i < end; i++) {
+                    commandTiles[i] = renderCommand(commands, i, isOccluded(i, target));
+                    markDirty(commandTiles[i]);
+                }
+            } else {
+                //Commands the index doesn't find draw nothing inside the image
+                Arrays.fill(commandTiles, renderedCount, end, NO_TILES);
+                for (; nextVisible < visible.length && visible[nextVisible] < end; nextVisible++) {
+                    int index = visible[nextVisible];
+                    renderer.setPenColour(spatialIndex.getPenColour(index));
+                    renderer.setFillColour(spatialIndex.getFillColour(index));
+                    commandTiles[index] = renderCommand(commands, index, isOccluded(index, target));
+                    markDirty(commandTiles[index]);
+                }
+                renderer.setPenColour(spatialIndex.getPenColour(end - 1));
+                renderer.setFillColour(spatialIndex.getFillColour(end - 1));
+            }
+            renderedCount = end;
+
+            if (end == nextCheckpoint) {
+                addCheckpoint();
+            }
+        }
+
+        validCount = renderedCount;
+    }
+
+    /**
+     * Gets the parts of the image that have changed since this was last called, and marks them as unchanged.
+     *
+     * @return The changed regions, which are runs of whole tiles.
+     */
+    public List<Rectangle> takeDirtyRegions() {
+        ArrayList<Rectangle> regions = new ArrayList<>();
+
+        for (int row = 0; row < tileRows; row++) {
+            int column = 0;
+            while (column < tileColumns) {
+                if (!dirtyTiles[row * tileColumns + column]) {
+                    column++;
+                    continue;
+                }
+
+                int runStart = column;
+                while (column < tileColumns && dirtyTiles[row * tileColumns + column]) {
+                    dirtyTiles[row * tileColumns + column] = false;
+                    column++;
+                }
+                regions.add(getTileRegion(runStart, row, column - 1, row));
+            }
+        }
+
+        return regions;
+    }
+
+    /**
+     * Checks whether the spatial index, if there is one, finds a command hidden under an opaque shape that will also
+     * be drawn. If so, the shape is recorded as one that the image depends on.
+     *
+     * @param index The index of the command.
+     * @param to    The index after the last command that will be drawn.
+     * @return Whether the command can be skipped.
+     */
+    private boolean isOccluded(int index, int to) {
+        if (spatialIndex == null || spatialIndex.size() < to || !spatialIndex.isOccluded(index, to)) {
+            return false;
+        }
+        lastOccluder = Math.max(lastOccluder, spatialIndex.getOccluder(index));
+        return true;
+    }
+
+    /**
+     * Draws a single command and works out which tiles it covers.
+     *
+     * @param commands   The commands.
+     * @param index      The index of the command.
+     * @param isOccluded Whether the command is hidden, in which case its tiles are worked out without drawing it.
+     * @return The packed tile bounds of the command.
+     */
+    private int renderCommand(List<VecCommand> commands, int index, boolean isOccluded) {
+        if (commands instanceof CommandBuffer) {
+            CommandBuffer buffer = (CommandBuffer) commands;
+            buffer.toDevice(index, index + 1, renderer, deviceCoordinates);
+            if (!isOccluded) {
+                buffer.renderDevice(index, index + 1, deviceCoordinates, renderer);
+            }
+            return getDeviceTiles(buffer, index);
+        }
+
+        VecCommand command = commands.get(index);
+        VecCommandType type = VecCommandRegistry.forCommand(command);
+        if (type != null && !isOccluded) {
+            type.render(command, renderer);
+        }
+        return SpatialIndex.getBounds(command, commandBounds) ? getTiles(commandBounds) : NO_TILES;
+    }
+
+    /**
+     * Draws a command that has been drawn before again, using its device coordinates if it is buffered.
+     *
+     * @param commands The commands.
+     * @param index    The index of the command.
+     */
+    private void replayCommand(List<VecCommand> commands, int index) {
+        if (!(commands instanceof CommandBuffer)) {
+            renderCommand(commands, index, false);
+            return;
+        }
+
+        CommandBuffer buffer = (CommandBuffer) commands;
+        byte opcode = buffer.getOpcode(index);
+        if (commandTiles[index] == NO_TILES && opcode != CommandBuffer.OP_PEN && opcode != CommandBuffer.OP_FILL) {
+            //The shape draws nothing inside the image, so its device coordinates may never have been worked out
+            return;
+        }
+        buffer.renderDevice(index, index + 1, deviceCoordinates, renderer);
+    }
+
+    /**
+     * Restores the tiles covered by the commands after a number of commands to the latest checkpoint at or before
+     * them, and draws the commands from the checkpoint onwards again over those tiles only.
+     * The checkpoints after it are discarded.
+     *
+     * @param commands     The commands.
+     * @param commandCount The number of commands that are still valid.
+     */
+    private void rollBack(List<VecCommand> commands, int commandCount) {
+        //Checkpoints missing a command that the removed commands hid can't be used either
+        while (!checkpoints.isEmpty() && (checkpoints.get(checkpoints.size() - 1).commandCount > commandCount
+                || checkpoints.get(checkpoints.size() - 1).lastOccluder >= commandCount)) {
+            checkpoints.remove(checkpoints.size() - 1);
+        }
+
+        //Everything outside the removed commands' tiles already shows only the remaining commands
+        int removedTiles = NO_TILES;
+        for (int i = commandCount; i < renderedCount; i++) {
+            removedTiles = unionTiles(removedTiles, commandTiles[i]);
+            markDirty(commandTiles[i]);
+        }
+
+        if (removedTiles == NO_TILES) {
+            //Only colour commands were removed, so no pixels change
+            graphics.setClip(new Rectangle());
+        } else {
+            graphics.setClip(getTileRegion(removedTiles & 0xFF, (removedTiles >>> 8) & 0xFF,
+                    (removedTiles >>> 16) & 0xFF, removedTiles >>> 24));
+        }
+
+        int replayFrom = 0;
+        if (checkpoints.isEmpty()) {
+            graphics.setColor(BACKGROUND_COLOUR);
+            graphics.fillRect(0, 0, image.getWidth(), image.getHeight());
+            renderer.setPenColour(VecFile.DEFAULT_PEN_RGB);
+            renderer.setFillColour(VecFile.DEFAULT_FILL_RGB);
+            lastOccluder = -1;
+        } else {
+            Checkpoint checkpoint = checkpoints.get(checkpoints.size() - 1);
+            graphics.drawImage(checkpoint.pixels, 0, 0, null);
+            renderer.setPenColour(checkpoint.penColour);
+            renderer.setFillColour(checkpoint.fillColour);
+            replayFrom = checkpoint.commandCount;
+            lastOccluder = checkpoint.lastOccluder;
+        }
+        renderer.graphicsChanged();
+
+        if (spatialIndex != null && spatialIndex.size() >= commandCount && replayFrom < commandCount) {
+            replayIndexed(commands, graphics.getClipBounds(), replayFrom, commandCount);
+        } else {
+            //Colour commands cover no tiles, but still have to be replayed to leave the renderer with the right colours
+            for (int i = replayFrom; i < commandCount; i++) {
+                if ((commandTiles[i] == NO_TILES || intersectsTiles(commandTiles[i], removedTiles)) && !isOccluded(i, commandCount)) {
+                    replayCommand(commands, i);
+                }
+            }
+        }
+
+        graphics.setClip(null);
+        renderer.graphicsChanged();
+        renderedCount = commandCount;
+    }
+
+    /**
+     * Draws only the commands in a range that the spatial index finds inside a region, in order, giving each the
+     * colours it would have if every command before it had been drawn.
+     *
+     * @param commands The commands.
+     * @param region   The region in pixels, which may be empty if only the colours need restoring.
+     * @param from     The index of the first command.
+     * @param to       The index after the last command.
+     */
+    private void replayIndexed(List<VecCommand> commands, Rectangle region, int from, int to) {
+        if (!region.isEmpty()) {
+            for (int index : queryIndex(region, from, to)) {
+                if (isOccluded(index, to)) {
+                    continue;
+                }
+                renderer.setPenColour(spatialIndex.getPenColour(index));
+                renderer.setFillColour(spatialIndex.getFillColour(index));
+                replayCommand(commands, index);
+            }
+        }
+
+        renderer.setPenColour(spatialIndex.getPenColour(to - 1));
+        renderer.setFillColour(spatialIndex.getFillColour(to - 1));
+    }
+
+    /**
+     * Asks the spatial index for the commands in a range that may draw inside a region of the image.
+     *
+     * @param region The region in pixels.
+     * @param from   The index of the first command.
+     * @param to     The index after the last command.
+     * @return The indexes of the commands, in the order they are drawn.
+     */
+    private int[] queryIndex(Rectangle region, int from, int to) {
+        //Allow for outlines and rounding to pixels on every side
+        double minX = viewport.fromViewX((region.x - 2.0) / image.getWidth());
+        double minY = viewport.fromViewY((region.y - 2.0) / image.getHeight());
+        double maxX = viewport.fromViewX((region.x + region.width + 2.0) / image.getWidth());
+        double maxY = viewport.fromViewY((region.y + region.height + 2.0) / image.getHeight());
+        return spatialIndex.query(minX, minY, maxX, maxY, from, to);
+    }
+
+    /**
+     * Marks the tiles in packed tile bounds as changed.
+     *
+     * @param tiles The packed tile bounds.
+     */
+    private void markDirty(int tiles) {
+        for (int row = (tiles >>> 8) & 0xFF; row <= tiles >>> 24; row++) {
+            for (int column = tiles & 0xFF; column <= ((tiles >>> 16) & 0xFF); column++) {
+                dirtyTiles[row * tileColumns + column] = true;
+            }
+        }
+    }
+
+    /**
+     * Works out which tiles a shape with the given bounds covers, allowing a pixel on each side for its outline.
+     *
+     * @param bounds The min x, min y, max x and max y of the shape.
+     * @return The packed tile bounds, or NO_TILES if the shape is entirely outside the image.
+     */
+    private int getTiles(double[] bounds) {
+        return getPixelTiles(Math.round(image.getWidth() * clampView(viewport.toViewX(bounds[0]))) - 1,
+                Math.round(image.getHeight() * clampView(viewport.toViewY(bounds[1]))) - 1,
+                Math.round(image.getWidth() * clampView(viewport.toViewX(bounds[2]))) + 1,
+                Math.round(image.getHeight() * clampView(viewport.toViewY(bounds[3]))) + 1);
+    }
+
+    /**
+     * Limits a view coordinate to a little way past the image on either side, so that unbounded shapes don't
+     * overflow when rounded to pixels.
+     *
+     * @param viewCoordinate The view coordinate.
+     * @return The limited coordinate.
+     */
+    private static double clampView(double viewCoordinate) {
+        return Math.max(-1, Math.min(2, viewCoordinate));
+    }
+
+    /**
+     * Works out which tiles a buffered command covers from its device coordinates, allowing a pixel on each side
+     * for its outline.
+     *
+     * @param buffer The command buffer.
+     * @param index  The index of the command.
+     * @return The packed tile bounds, or NO_TILES if the command doesn't draw anything inside the image.
+     */
+    private int getDeviceTiles(CommandBuffer buffer, int index) {
+        byte opcode = buffer.getOpcode(index);
+        if (opcode == CommandBuffer.OP_PEN || opcode == CommandBuffer.OP_FILL) {
+            return NO_TILES;
+        } else if (opcode == CommandBuffer.OP_OTHER) {
+            return packTiles(0, 0, tileColumns - 1, tileRows - 1);
+        }
+
+        int left = Integer.MAX_VALUE;
+        int top = Integer.MAX_VALUE;
+        int right = Integer.MIN_VALUE;
+        int bottom = Integer.MIN_VALUE;
+        for (int i = buffer.getCoordinateOffset(index); i < buffer.getCoordinateOffset(index + 1); i += 2) {
+            left = Math.min(left, deviceCoordinates[i]);
+            top = Math.min(top, deviceCoordinates[i + 1]);
+            right = Math.max(right, deviceCoordinates[i]);
+            bottom = Math.max(bottom, deviceCoordinates[i + 1]);
+        }
+        return getPixelTiles(left - 1L, top - 1L, right + 1L, bottom + 1L);
+    }
+
+    /**
+     * Works out which tiles a range of pixels covers.
+     *
+     * @param left   The leftmost pixel.
+     * @param top    The topmost pixel.
+     * @param right  The rightmost pixel.
+     * @param bottom The bottommost pixel.
+     * @return The packed tile bounds, or NO_TILES if the pixels are entirely outside the image.
+     */
+    private int getPixelTiles(long left, long top, long right, long bottom) {
+        if (right < 0 || bottom < 0 || left >= image.getWidth() || top >= image.getHeight()) {
+            return NO_TILES;
+        }
+        return packTiles(getTile(left, tileColumns), getTile(top, tileRows), getTile(right, tileColumns), getTile(bottom, tileRows));
+    }
+
+    /**
+     * Finds the tile column or row that a pixel is in, clamping pixels outside the image to the nearest tile.
+     *
+     * @param pixel     The pixel x or y coordinate.
+     * @param tileCount The number of tile columns or rows.
+     * @return The tile column or row.
+     */
+    private static int getTile(long pixel, int tileCount) {
+        return (int) Math.max(0, Math.min(tileCount - 1, pixel / TILE_SIZE));
+    }
+
+    /**
+     * Gets the region of the image covered by a range of tiles.
+     *
+     * @param left   The first tile column.
+     * @param top    The first tile row.
+     * @param right  The last tile column.
+     * @param bottom The last tile row.
+     * @return The region in pixels.
+     */
+    private Rectangle getTileRegion(int left, int top, int right, int bottom) {
+        int x = left * TILE_SIZE;
+        int y = top * TILE_SIZE;
+        int endX = right == tileColumns - 1 ? image.getWidth() : (right + 1) * TILE_SIZE;
+        int endY = bottom == tileRows - 1 ? image.getHeight() : (bottom + 1) * TILE_SIZE;
+        return new Rectangle(x, y, endX - x, endY - y);
+    }
+
+    /**
+     * Packs a range of tiles into one int.
+     *
+     * @param left   The first tile column.
+     * @param top    The first tile row.
+     * @param right  The last tile column.
+     * @param bottom The last tile row.
+     * @return The packed tile bounds.
+     */
+    private static int packTiles(int left, int top, int right, int bottom) {
+        return left | (top << 8) | (right << 16) | (bottom << 24);
+    }
+
+    /**
+     * Gets the smallest range of tiles that contains two others.
+     *
+     * @param a The first packed tile bounds.
+     * @param b The second packed tile bounds.
+     * @return The packed tile bounds containing both.
+     */
+    private static int unionTiles(int a, int b) {
+        if (a == NO_TILES) {
+            return b;
+        } else if (b == NO_TILES) {
+            return a;
+        }
+        return packTiles(Math.min(a & 0xFF, b & 0xFF), Math.min((a >>> 8) & 0xFF, (b >>> 8) & 0xFF),
+                Math.max((a >>> 16) & 0xFF, (b >>> 16) & 0xFF), Math.max(a >>> 24, b >>> 24));
+    }
+
+    /**
+     * Checks whether two ranges of tiles overlap.
+     *
+     * @param a The first packed tile bounds.
+     * @param b The second packed tile bounds.
+     * @return Whether they share a tile.
+     */
+    private static boolean intersectsTiles(int a, int b) {
+        if (a == NO_TILES || b == NO_TILES) {
+            return false;
+        }
+        return (a & 0xFF) <= ((b >>> 16) & 0xFF) && (b & 0xFF) <= ((a >>> 16) & 0xFF)
+                && ((a >>> 8) & 0xFF) <= (b >>> 24) && ((b >>> 8) & 0xFF) <= (a >>> 24);
+    }
+
+    /**
+     * Takes a checkpoint of the image as it is now, first thinning out the existing checkpoints if there isn't
+     * room in the budget for another.
+     */
+    private void addCheckpoint() {
+        if (maxCheckpoints == 0) {
+            return;
+        }
+
+        if (checkpoints.size() == maxCheckpoints) {
+            checkpointInterval *= 2;
+            checkpoints.removeIf(checkpoint -> checkpoint.commandCount % checkpointInterval != 0);
+
+            //The current count may no longer fall on the doubled interval
+            if (renderedCount % checkpointInterval != 0) {
+                return;
+            }
+        }
+
+        BufferedImage pixels = new BufferedImage(image.getWidth(), image.getHeight(), BufferedImage.TYPE_INT_RGB);
+        image.copyData(pixels.getRaster());
+        checkpoints.add(new Checkpoint(renderedCount, pixels, renderer.getPenColour(), renderer.getFillColour(), lastOccluder));
+    }
+}
@@ -0,0 +1,566 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.*;
+
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Objects;
+import java.util.RandomAccess;
+
+/**
+ * A list of commands stored in columns of primitive arrays rather than as command objects.
+ * Every command has an opcode and a colour slot, and shape commands have their coordinates stored one after
+ * another in a single pool of doubles. This uses a fraction of the memory of a list of command objects, each with
+ * its own list of positions.
+ * <p>
+ * Command objects are only created when a command is read with get. The opcode, colour and coordinate accessors,
+ * along with render and appendTo, read the columns directly without allocating, so large drawings can be drawn
+ * and saved without creating a command object each. Colours are stored as packed 0xRRGGBB values, and commands
+ * of types that aren't built in are kept as objects. Only the last command can be removed, which is all that
+ * VecFile needs.
+ */
+public class CommandBuffer extends AbstractList<VecCommand> implements RandomAccess {
+
+    public static final byte OP_PLOT = 0;
+    public static final byte OP_LINE = 1;
+    public static final byte OP_RECTANGLE = 2;
+    public static final byte OP_ELLIPSE = 3;
+    public static final byte OP_POLYGON = 4;
+    public static final byte OP_PEN = 5;
+    public static final byte OP_FILL = 6;
+    public static final byte OP_OTHER = 7;
+
+    private static final int INITIAL_CAPACITY = 16;
+
+    private byte[] opcodes;
+    private int[] colours;
+    private int[] offsets;
+    private double[] coordinates;
+    private int size;
+
+    //Commands of types that aren't built in, which the colour column of OP_OTHER commands indexes
+    private final ArrayList<VecCommand> otherCommands;
+
+    /**
+     * Creates a new empty buffer.
+     */
+    public CommandBuffer() {
+        opcodes = new byte[INITIAL_CAPACITY];
+        colours = new int[INITIAL_CAPACITY];
+        offsets = new int[INITIAL_CAPACITY + 1];
+        coordinates = new double[INITIAL_CAPACITY * 2];
+        otherCommands = new ArrayList<>();
+    }
+
+    /**
+     * Creates a copy of another buffer, with arrays trimmed to its size.
+     *
+     * @param other The buffer.
+     */
+    private CommandBuffer(CommandBuffer other) {
+        size = other.size;
+        opcodes = Arrays.copyOf(other.opcodes, size);
+        colours = Arrays.copyOf(other.colours, size);
+        offsets = Arrays.copyOf(other.offsets, size + 1);
+        coordinates = Arrays.copyOf(other.coordinates, other.offsets[size]);
+        otherCommands = new ArrayList<>(other.otherCommands);
+    }
+
+    /**
+     * Creates a copy of the buffer that won't see any later changes and can be read from another thread.
+     *
+     * @return The copy of the buffer.
+     */
+    public CommandBuffer copy() {
+        return new CommandBuffer(this);
+    }
+
+    /**
+     * Gets the number of commands.
+     *
+     * @return The number of commands.
+     */
+    @Override
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Adds a command to the end of the buffer, storing it in the columns.
+     *
+     * @param command The command.
+     * @return Always true.
+     */
+    @Override
+    public boolean add(VecCommand command) {
+        ensureCapacity(size + 1);
+        int offset = offsets[size];
+        Class<?> type = command.getClass();
+
+        if (type == PlotCommand.class) {
+            Position position = ((PlotCommand) command).getPosition();
+            ensureCoordinateCapacity(offset + 2);
+            coordinates[offset] = position.getX();
+            coordinates[offset + 1] = position.getY();
+            opcodes[size] = OP_PLOT;
+            offset += 2;
+        } else if (type == LineCommand.class || type == RectangleCommand.class || type == EllipseCommand.class) {
+            offset = addPositions(((ShapeCommand) command).getPositions(), offset);
+            opcodes[size] = type == LineCommand.class ? OP_LINE : type == RectangleCommand.class ? OP_RECTANGLE : OP_ELLIPSE;
+        } else if (type == PolygonCommand.class) {
+            offset = addPositions(((PolygonCommand) command).getVertices(), offset);
+            opcodes[size] = OP_POLYGON;
+        } else if (type == PenCommand.class) {
+            colours[size] = ((PenCommand) command).getRgb();
+            opcodes[size] = OP_PEN;
+        } else if (type == FillCommand.class) {
+            colours[size] = ((FillCommand) command).getRgb();
+            opcodes[size] = OP_FILL;
+        } else {
+            colours[size] = otherCommands.size();
+            otherCommands.add(command);
+            opcodes[size] = OP_OTHER;
+        }
+
+        offsets[size + 1] = offset;
+        size++;
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Adds every command of another buffer to the end of this one, copying the columns directly.
+     *
+     * @param other The buffer.
+     */
+    public void append(CommandBuffer other) {
+        append(other, 0, other.size);
+    }
+
+    /**
+     * Adds a range of the commands of another buffer to the end of this one, copying the columns directly.
+     *
+     * @param other The buffer.
+     * @param from  The index of the first command to add.
+     * @param to    The index after the last command to add.
+     * @throws IndexOutOfBoundsException Thrown if the range isn't within the other buffer.
+     */
+    public void append(CommandBuffer other, int from, int to) {
+        Objects.checkFromToIndex(from, to, other.size);
+        int count = to - from;
+        int coordinateOffset = offsets[size];
+        int otherCoordinateOffset = other.offsets[from];
+        int otherCoordinates = other.offsets[to] - otherCoordinateOffset;
+        ensureCapacity(size + count);
+        ensureCoordinateCapacity(coordinateOffset + otherCoordinates);
+
+        System.arraycopy(other.opcodes, from, opcodes, size, count);
+        System.arraycopy(other.colours, from, colours, size, count);
+        System.arraycopy(other.coordinates, otherCoordinateOffset, coordinates, coordinateOffset, otherCoordinates);
+        for (int i = 1; i <= count; i++) {
+            offsets[size + i] = coordinateOffset + other.offsets[from + i] - otherCoordinateOffset;
+        }
+
+        //The other commands are numbered after the ones already here
+        for (int i = 0; i < count; i++) {
+            if (opcodes[size + i] == OP_OTHER) {
+                colours[size + i] = otherCommands.size();
+                otherCommands.add(other.otherCommands.get(other.colours[from + i]));
+            }
+        }
+
+        size += count;
+        modCount++;
+    }
+
+    /**
+     * Gets a command, creating a new command object from the columns.
+     *
+     * @param index The index of the command.
+     * @return The command.
+     */
+    @Override
+    public VecCommand get(int index) {
+        checkIndex(index);
+
+        try {
+            switch (opcodes[index]) {
+                case OP_PLOT:
+                    return new PlotCommand(new Position(coordinates[offsets[index]], coordinates[offsets[index] + 1]));
+                case OP_LINE:
+                    return new LineCommand(getPositions(index));
+                case OP_RECTANGLE:
+                    return new RectangleCommand(getPositions(index));
+                case OP_ELLIPSE:
+                    return new EllipseCommand(getPositions(index));
+                case OP_POLYGON:
+                    return new PolygonCommand(getPositions(index));
+                case OP_PEN:
+                    return new PenCommand(colours[index]);
+                case OP_FILL:
+                    return new FillCommand(colours[index]);
+                default:
+                    return otherCommands.get(colours[index]);
+            }
+        } catch (VecCommandException e) {
+            //Only valid commands are ever stored
+            throw new IllegalStateException(e);
+        }
+    }
+
+    /**
+     * Removes the last command in the buffer.
+     *
+     * @param index The index of the command, which must be the last one.
+     * @return The removed command.
+     * @throws UnsupportedOperationException Thrown if the command isn't the last one.
+     */
+    @Override
+    public VecCommand remove(int index) {
+        if (index != size - 1) {
+            throw new UnsupportedOperationException("Only the last command of a command buffer can be removed.");
+        }
+
+        VecCommand command = get(index);
+        if (opcodes[index] == OP_OTHER) {
+            otherCommands.remove(otherCommands.size() - 1);
+        }
+        size--;
+        modCount++;
+        return command;
+    }
+
+    /**
+     * Removes every command. The capacity of the columns is kept.
+     */
+    @Override
+    public void clear() {
+        size = 0;
+        otherCommands.clear();
+        modCount++;
+    }
+
+    /**
+     * Gets the opcode of a command.
+     *
+     * @param index The index of the command.
+     * @return One of the OP_ constants.
+     */
+    public byte getOpcode(int index) {
+        checkIndex(index);
+        return opcodes[index];
+    }
+
+    /**
+     * Gets the number of positions of a shape command.
+     *
+     * @param index The index of the command.
+     * @return The number of positions, which is 0 for colour commands and commands that aren't built in.
+     */
+    public int getPositionCount(int index) {
+        checkIndex(index);
+        return (offsets[index + 1] - offsets[index]) / 2;
+    }
+
+    /**
+     * Gets the x coordinate of a position of a shape command.
+     *
+     * @param index    The index of the command.
+     * @param position The index of the position in the command.
+     * @return The x coordinate.
+     */
+    public double getX(int index, int position) {
+        return coordinates[getCoordinateIndex(index, position)];
+    }
+
+    /**
+     * Gets the y coordinate of a position of a shape command.
+     *
+     * @param index    The index of the command.
+     * @param position The index of the position in the command.
+     * @return The y coordinate.
+     */
+    public double getY(int index, int position) {
+        return coordinates[getCoordinateIndex(index, position) + 1];
+    }
+
+    /**
+     * Gets the colour of a pen or fill command.
+     *
+     * @param index The index of the command.
+     * @return The packed 0xRRGGBB colour, or VecColour.NONE for a fill command that turns fill off.
+     * @throws IllegalArgumentException Thrown if the command isn't a pen or fill command.
+     */
+    public int getColour(int index) {
+        checkIndex(index);
+        if (opcodes[index] != OP_PEN && opcodes[index] != OP_FILL) {
+            throw new IllegalArgumentException(String.format("Command %d is not a colour command.", index));
+        }
+        return colours[index];
+    }
+
+    /**
+     * Finds the index of the last command with an opcode, before a given index.
+     *
+     * @param opcode The opcode.
+     * @param before The index to search back from, exclusive.
+     * @return The index of the command, or -1 if there isn't one.
+     */
+    public int lastIndexOfOpcode(byte opcode, int before) {
+        for (int i = Math.min(before, size) - 1; i >= 0; i--) {
+            if (opcodes[i] == opcode) {
+                return i;
+            }
+        }
+        return -1;
+    }
+
+    /**
+     * Draws a range of commands with a renderer, reading the columns directly.
+     *
+     * @param from     The index of the first command.
+     * @param to       The index after the last command.
+     * @param renderer The renderer.
+     */
+    public void render(int from, int to, VecRenderer renderer) {
+        for (int i = from; i < to; i++) {
+            int offset = offsets[i];
+
+            switch (opcodes[i]) {
+                case OP_PLOT:
+                    //The coordinates of a run of plots are next to each other, so they are plotted together
+                    int runEnd = i + 1;
+                    while (runEnd < to && opcodes[runEnd] == OP_PLOT) {
+                        runEnd++;
+                    }
+                    renderer.plot(coordinates, offset, runEnd - i);
+                    i = runEnd - 1;
+                    break;
+                case OP_LINE:
+                    renderer.drawLine(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2], coordinates[offset + 3]);
+                    break;
+                case OP_RECTANGLE:
+                    renderer.drawRectangle(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2], coordinates[offset + 3]);
+                    break;
+                case OP_ELLIPSE:
+                    renderer.drawEllipse(coordinates[offset], coordinates[offset + 1], coordinates[offset + 2], coordinates[offset + 3]);
+                    break;
+                case OP_POLYGON:
+                    renderer.drawPolygon(coordinates, offset, (offsets[i + 1] - offset) / 2);
+                    break;
+                case OP_PEN:
+                    renderer.setPenColour(colours[i]);
+                    break;
+                case OP_FILL:
+                    renderer.setFillColour(colours[i]);
+                    break;
+                default:
+                    VecCommand command = otherCommands.get(colours[i]);
+                    VecCommandType type = VecCommandRegistry.forCommand(command);
+                    if (type != null) {
+                        type.render(command, renderer);
+                    }
+            }
+        }
+    }
+
+    /**
+     * Gets where a command's coordinates start in the coordinate column. Arrays of device coordinates made by
+     * toDevice use the same layout, so this is also where the command's device coordinates start.
+     *
+     * @param index The index of the command, or the size of the buffer for the end of the last command.
+     * @return The index of the command's first x coordinate.
+     */
+    int getCoordinateOffset(int index) {
+        return offsets[index];
+    }
+
+    /**
+     * Scales the coordinates of a range of commands to pixels with a renderer, in the same layout as the
+     * coordinate column.
+     *
+     * @param from     The index of the first command.
+     * @param to       The index after the last command.
+     * @param renderer The renderer whose scaling is used.
+     * @param device   The array the device coordinates are written to, at least getCoordinateOffset(to) long.
+     */
+    void toDevice(int from, int to, VecRenderer renderer, int[] device) {
+        for (int i = offsets[from]; i < offsets[to]; i += 2) {
+            device[i] = renderer.toDeviceX(coordinates[i]);
+            device[i + 1] = renderer.toDeviceY(coordinates[i + 1]);
+        }
+    }
+
+    /**
+     * Draws a range of commands with a renderer from device coordinates made by toDevice, so that no coordinates
+     * have to be scaled again. Commands that aren't built in are drawn from their own positions as usual.
+     *
+     * @param from     The index of the first command.
+     * @param to       The index after the last command.
+     * @param device   The device coordinates.
+     * @param renderer The renderer.
+     */
+    void renderDevice(int from, int to, int[] device, VecRenderer renderer) {
+        for (int i = from; i < to; i++) {
+            int offset = offsets[i];
+
+            switch (opcodes[i]) {
+                case OP_PLOT:
+                    int runEnd = i + 1;
+                    while (runEnd < to && opcodes[runEnd] == OP_PLOT) {
+                        runEnd++;
+                    }
+                    renderer.plotDevice(device, offset, runEnd - i);
+                    i = runEnd - 1;
+                    break;
+                case OP_LINE:
+                    renderer.drawDeviceLine(device[offset], device[offset + 1], device[offset + 2], device[offset + 3]);
+                    break;
+                case OP_RECTANGLE:
+                    renderer.drawDeviceRectangle(device[offset], device[offset + 1], device[offset + 2], device[offset + 3]);
+                    break;
+                case OP_ELLIPSE:
+                    renderer.drawDeviceEllipse(device[offset], device[offset + 1], device[offset + 2], device[offset + 3]);
+                    break;
+                case OP_POLYGON:
+                    renderer.drawDevicePolygon(device, offset, (offsets[i + 1] - offset) / 2);
+                    break;
+                default:
+                    render(i, i + 1, renderer);
+            }
+        }
+    }
+
+    /**
+     * Appends a command in its string form to a formatter, reading the columns directly.
+     *
+     * @param index     The index of the command.
+     * @param formatter The formatter.
+     */
+    public void appendTo(int index, VecTextFormatter formatter) {
+        checkIndex(index);
+
+        switch (opcodes[index]) {
+            case OP_PLOT:
+                appendShape(PlotCommand.COMMAND_NAME, index, formatter);
+                break;
+            case OP_LINE:
+                appendShape(LineCommand.COMMAND_NAME, index, formatter);
+                break;
+            case OP_RECTANGLE:
+                appendShape(RectangleCommand.COMMAND_NAME, index, formatter);
+                break;
+            case OP_ELLIPSE:
+                appendShape(EllipseCommand.COMMAND_NAME, index, formatter);
+                break;
+            case OP_POLYGON:
+                appendShape(PolygonCommand.COMMAND_NAME, index, formatter);
+                break;
+            case OP_PEN:
+                formatter.append(PenCommand.COMMAND_NAME).append(' ').appendColour(colours[index]);
+                break;
+            case OP_FILL:
+                formatter.append(FillCommand.COMMAND_NAME).append(' ').appendColour(colours[index]);
+                break;
+            default:
+                VecCommandRegistry.serialize(otherCommands.get(colours[index]), formatter);
+        }
+    }
+
+    /**
+     * Appends a shape command's name and coordinates to a formatter.
+     *
+     * @param name      The name of the command.
+     * @param index     The index of the command.
+     * @param formatter The formatter.
+     */
+    private void appendShape(String name, int index, VecTextFormatter formatter) {
+        formatter.append(name);
+        for (int i = offsets[index]; i < offsets[index + 1]; i++) {
+            formatter.append(' ').append(coordinates[i]);
+        }
+    }
+
+    /**
+     * Copies positions into the coordinate pool.
+     *
+     * @param positions The positions.
+     * @param offset    The index in the pool to copy them to.
+     * @return The index in the pool after the positions.
+     */
+    private int addPositions(ArrayList<Position> positions, int offset) {
+        ensureCoordinateCapacity(offset + positions.size() * 2);
+        for (Position position : positions) {
+            coordinates[offset++] = position.getX();
+            coordinates[offset++] = position.getY();
+        }
+        return offset;
+    }
+
+    /**
+     * Creates the positions of a shape command from the coordinate pool.
+     *
+     * @param index The index of the command.
+     * @return The positions.
+     */
+    private ArrayList<Position> getPositions(int index) {
+        ArrayList<Position> positions = new ArrayList<>(getPositionCount(index));
+        for (int i = offsets[index]; i < offsets[index + 1]; i += 2) {
+            positions.add(new Position(coordinates[i], coordinates[i + 1]));
+        }
+        return positions;
+    }
+
+    /**
+     * Gets the index in the coordinate pool of the x coordinate of a position.
+     *
+     * @param index    The index of the command.
+     * @param position The index of the position in the command.
+     * @return The index in the pool.
+     */
+    private int getCoordinateIndex(int index, int position) {
+        if (position < 0 || position >= getPositionCount(index)) {
+            throw new IndexOutOfBoundsException(String.format("Position %d out of bounds for command %d", position, index));
+        }
+        return offsets[index] + position * 2;
+    }
+
+    /**
+     * Checks that a command index is in the buffer.
+     *
+     * @param index The index of the command.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, size));
+        }
+    }
+
+    /**
+     * Grows the command columns to hold a number of commands.
+     *
+     * @param capacity The number of commands.
+     */
+    private void ensureCapacity(int capacity) {
+        if (opcodes.length < capacity) {
+            int newCapacity = Math.max(capacity, opcodes.length + (opcodes.length >> 1));
+            opcodes = Arrays.copyOf(opcodes, newCapacity);
+            colours = Arrays.copyOf(colours, newCapacity);
+            offsets = Arrays.copyOf(offsets, newCapacity + 1);
+        }
+    }
+
+    /**
+     * Grows the coordinate pool to hold a number of coordinates.
+     *
+     * @param capacity The number of coordinates.
+     */
+    private void ensureCoordinateCapacity(int capacity) {
+        if (coordinates.length < capacity) {
+            coordinates = Arrays.copyOf(coordinates, Math.max(capacity, coordinates.length + (coordinates.length >> 1)));
+        }
+    }
+}
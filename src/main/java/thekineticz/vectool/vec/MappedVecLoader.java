@@ -0,0 +1,458 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.FillCommand;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.charset.Charset;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Loads large vec files by memory-mapping them and parsing newline-aligned chunks in parallel.
+ * The parsed chunks are stitched back together in file order, so the result is identical to reading the file
+ * line by line. A file can also be opened as a ParallelCommandReader, which hands out each chunk once it is parsed.
+ */
+class MappedVecLoader {
+
+    /**
+     * Files at least this large are loaded in parallel; smaller files are not worth the overhead.
+     */
+    static final long PARALLEL_THRESHOLD = 8L * 1024 * 1024;
+
+    private static final int CHUNK_SIZE = 4 * 1024 * 1024;
+    private static final int SCAN_BUFFER_SIZE = 8 * 1024;
+
+    /**
+     * Parses every command in a vec file and appends them to a list in file order.
+     *
+     * @param file     The vec file.
+     * @param commands The list the commands are added to.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command. If several lines are invalid,
+     *                             the error of the first one in the file is thrown.
+     * @throws IOException         Thrown if an issue occurs during file IO.
+     */
+    static void load(File file, List<VecCommand> commands) throws VecCommandException, IOException {
+        try (ParallelCommandReader reader = open(file)) {
+            reader.readAll(commands);
+        }
+    }
+
+    /**
+     * Starts parsing every chunk of a vec file in parallel, so the commands can be read in file order while the
+     * later chunks are still being parsed.
+     *
+     * @param file The vec file.
+     * @return The reader, which must be closed once it is no longer needed.
+     * @throws IOException Thrown if an issue occurs during file IO.
+     */
+    static ParallelCommandReader open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        try {
+            return new ChunkReader(channel, startChunks(channel, 0));
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Validates every command in a vec file and builds an index of where each page of commands starts,
+     * without keeping any of the commands.
+     *
+     * @param file     The vec file.
+     * @param pageSize The maximum number of commands in a page.
+     * @return The paged list backed by the file.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command. If several lines are invalid,
+     *                             the error of the first one in the file is thrown.
+     * @throws IOException         Thrown if an issue occurs during file IO.
+     */
+    static PagedCommandList index(File file, int pageSize) throws VecCommandException, IOException {
+        long length = file.length();
+        ChunkTask[] chunks = scan(file, pageSize);
+
+        int pageCount = 0;
+        for (ChunkTask chunk : chunks) {
+            pageCount += chunk.pageCount;
+        }
+
+        //Pages never cross chunk boundaries, so a chunk may end with a short page
+        long[] pageOffsets = new long[pageCount + 1];
+        int[] pageFirstIndices = new int[pageCount + 1];
+        byte[] pageColours = new byte[pageCount];
+        int page = 0;
+        long commandCount = 0;
+
+        for (ChunkTask chunk : chunks) {
+            for (int i = 0; i < chunk.pageCount; i++) {
+                pageOffsets[page] = chunk.pageOffsets[i];
+                pageFirstIndices[page] = (int) (commandCount + (long) i * pageSize);
+                pageColours[page] = chunk.pageColours[i];
+                page++;
+            }
+            commandCount += chunk.lineCount;
+        }
+
+        if (commandCount > Integer.MAX_VALUE) {
+            throw new IOException("File contains too many commands.");
+        }
+
+        pageOffsets[pageCount] = length;
+        pageFirstIndices[pageCount] = (int) commandCount;
+        return new PagedCommandList(file, pageOffsets, pageFirstIndices, pageColours);
+    }
+
+    /**
+     * Splits a file into chunks and runs a chunk task on each of them in parallel.
+     *
+     * @param file     The vec file.
+     * @param pageSize The page size when indexing, or 0 to keep the parsed commands.
+     * @return The completed chunk tasks in file order.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command in any chunk.
+     * @throws IOException         Thrown if an issue occurs during file IO.
+     */
+    private static ChunkTask[] scan(File file, int pageSize) throws VecCommandException, IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ChunkTask[] chunks = startChunks(channel, pageSize);
+
+            try {
+                for (ChunkTask chunk : chunks) {
+                    chunk.finish();
+                }
+            } catch (VecCommandException | IOException e) {
+                cancelChunks(chunks, 0);
+                throw e;
+            }
+
+            return chunks;
+        }
+    }
+
+    /**
+     * Splits a file into chunks and submits a chunk task for each of them to the common pool.
+     *
+     * @param channel  The channel of the file, which must stay open until every task is done.
+     * @param pageSize The page size when indexing, or 0 to keep the parsed commands.
+     * @return The chunk tasks in file order.
+     * @throws IOException Thrown if an issue occurs during file IO.
+     */
+    private static ChunkTask[] startChunks(FileChannel channel, int pageSize) throws IOException {
+        long[] boundaries = findChunkBoundaries(channel);
+        ChunkTask[] chunks = new ChunkTask[boundaries.length - 1];
+
+        for (int i = 0; i < chunks.length; i++) {
+            chunks[i] = new ChunkTask(channel, boundaries[i], boundaries[i + 1], pageSize);
+            ForkJoinPool.commonPool().execute(chunks[i]);
+        }
+
+        return chunks;
+    }
+
+    /**
+     * Cancels the chunk tasks that haven't started yet. Tasks that have already started finish on their own.
+     *
+     * @param chunks The chunk tasks.
+     * @param from   The index of the first task to cancel.
+     */
+    private static void cancelChunks(ChunkTask[] chunks, int from) {
+        for (int i = from; i < chunks.length; i++) {
+            chunks[i].cancel(false);
+        }
+    }
+
+    /**
+     * Splits a file into chunks of roughly CHUNK_SIZE bytes, moving every boundary to just after a line feed.
+     *
+     * @param channel The channel of the file.
+     * @return The chunk boundaries, starting with 0 and ending with the file size.
+     * @throws IOException Thrown if an issue occurs during file IO.
+     */
+    private static long[] findChunkBoundaries(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ArrayList<Long> boundaries = new ArrayList<>();
+        ByteBuffer scanBuffer = ByteBuffer.allocate(SCAN_BUFFER_SIZE);
+        boundaries.add(0L);
+
+        long position = CHUNK_SIZE;
+        while (position < size) {
+            long boundary = size;
+
+            //Look for the end of the line that the tentative boundary falls in
+            search:
+            while (position < size) {
+                scanBuffer.clear();
+                int read = channel.read(scanBuffer, position);
+                if (read < 0) {
+                    break;
+                }
+
+                for (int i = 0; i < read; i++) {
+                    if (scanBuffer.get(i) == '\n') {
+                        boundary = position + i + 1;
+                        break search;
+                    }
+                }
+                position += read;
+            }
+
+            if (boundary < size) {
+                boundaries.add(boundary);
+            }
+            position = boundary + CHUNK_SIZE;
+        }
+
+        boundaries.add(size);
+
+        long[] result = new long[boundaries.size()];
+        for (int i = 0; i < result.length; i++) {
+            result[i] = boundaries.get(i);
+        }
+        return result;
+    }
+
+    /**
+     * Parses every line of a mapped region that starts at the beginning of a line and ends at the end of a line,
+     * splitting on line feeds, carriage returns and carriage return line feed pairs like BufferedReader.readLine.
+     *
+     * @param buffer  The mapped region.
+     * @param handler The handler that is given every parsed command.
+     * @throws VecCommandException Thrown if a line is not a valid vec command.
+     */
+    static void parseLines(ByteBuffer buffer, CommandHandler handler) throws VecCommandException {
+        VecCommandTokenizer tokenizer = new VecCommandTokenizer();
+        int limit = buffer.limit();
+        int lineStart = 0;
+        boolean isAscii = true;
+
+        for (int i = 0; i < limit; i++) {
+            byte b = buffer.get(i);
+            if (b == '\n' || b == '\r') {
+                handler.handle(parseLine(buffer, tokenizer, lineStart, i, isAscii), lineStart);
+                if (b == '\r' && i + 1 < limit && buffer.get(i + 1) == '\n') {
+                    i++;
+                }
+                lineStart = i + 1;
+                isAscii = true;
+            } else if (b < 0) {
+                isAscii = false;
+            }
+        }
+
+        //Only the end of the file can have a line without a terminator
+        if (lineStart < limit) {
+            handler.handle(parseLine(buffer, tokenizer, lineStart, limit, isAscii), lineStart);
+        }
+    }
+
+    /**
+     * Parses a single line of a mapped region.
+     * Lines containing non-ASCII bytes are decoded with the default charset, as FileReader would.
+     *
+     * @param buffer    The mapped region.
+     * @param tokenizer The tokenizer used for the region.
+     * @param lineStart The index of the first byte of the line.
+     * @param lineEnd   The index of the line terminator.
+     * @param isAscii   Whether every byte of the line is ASCII.
+     * @return The parsed command.
+     * @throws VecCommandException Thrown if the line is not a valid vec command.
+     */
+    private static VecCommand parseLine(ByteBuffer buffer, VecCommandTokenizer tokenizer, int lineStart, int lineEnd, boolean isAscii) throws VecCommandException {
+        if (isAscii) {
+            tokenizer.reset(buffer, lineStart, lineEnd - lineStart);
+        } else {
+            ByteBuffer line = buffer.duplicate();
+            line.position(lineStart).limit(lineEnd);
+            tokenizer.reset(Charset.defaultCharset().decode(line));
+        }
+
+        return VecFile.parseVecCommand(tokenizer);
+    }
+
+    /**
+     * Receives the commands parsed from a mapped region.
+     */
+    interface CommandHandler {
+
+        /**
+         * Handles a parsed command.
+         *
+         * @param command   The command.
+         * @param lineStart The index of the first byte of the command's line in the mapped region.
+         */
+        void handle(VecCommand command, int lineStart);
+    }
+
+    /**
+     * Hands out the commands of every chunk of a file in file order, as each chunk finishes parsing.
+     */
+    private static class ChunkReader implements ParallelCommandReader {
+
+        private final FileChannel channel;
+        private final ChunkTask[] chunks;
+        private int nextChunk;
+
+        /**
+         * Creates a new chunk reader.
+         *
+         * @param channel The channel of the file, which is closed with the reader.
+         * @param chunks  The chunk tasks, which have already been started.
+         */
+        ChunkReader(FileChannel channel, ChunkTask[] chunks) {
+            this.channel = channel;
+            this.chunks = chunks;
+        }
+
+        /**
+         * Waits for the next chunk to be parsed.
+         *
+         * @return The commands of the chunk, or null once every chunk has been read.
+         * @throws VecCommandException Thrown if an issue occurs while parsing a command in the chunk.
+         * @throws IOException         Thrown if an issue occurs during file IO.
+         */
+        @Override
+        public CommandBuffer next() throws VecCommandException, IOException {
+            if (nextChunk == chunks.length) {
+                return null;
+            }
+
+            ChunkTask chunk = chunks[nextChunk];
+            chunk.finish();
+            nextChunk++;
+
+            //The reader's caller keeps the commands, so the chunk doesn't need to
+            CommandBuffer commands = chunk.commands;
+            chunk.commands = null;
+            return commands;
+        }
+
+        /**
+         * Gets how much of the file has been read.
+         *
+         * @return The fraction of the chunks that have been read, between 0 and 1.
+         */
+        @Override
+        public double getProgress() {
+            return chunks.length == 0 ? 1 : (double) nextChunk / chunks.length;
+        }
+
+        /**
+         * Cancels the chunks that haven't been read and closes the file.
+         *
+         * @throws IOException Thrown if an issue occurs while closing the file.
+         */
+        @Override
+        public void close() throws IOException {
+            cancelChunks(chunks, nextChunk);
+            channel.close();
+        }
+    }
+
+    /**
+     * Parses the lines of a single newline-aligned chunk of a file.
+     * The commands are either kept, or only validated while the offset of every page is recorded.
+     * Errors are stored rather than thrown so the loader can report the first error in file order.
+     */
+    private static class ChunkTask extends RecursiveAction implements CommandHandler {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private final int pageSize;
+        //Parsed commands are stored in columns straight away, so the command objects of a chunk never all exist at once
+        private CommandBuffer commands = new CommandBuffer();
+        private long[] pageOffsets = new long[0];
+        private byte[] pageColours = new byte[0];
+        private int pageCount;
+        private int lineCount;
+        private VecCommandException commandError;
+        private IOException ioError;
+
+        /**
+         * Creates a new chunk task.
+         *
+         * @param channel  The channel of the file.
+         * @param start    The offset of the first byte of the chunk.
+         * @param end      The offset after the last byte of the chunk.
+         * @param pageSize The page size when indexing, or 0 to keep the parsed commands.
+         */
+        ChunkTask(FileChannel channel, long start, long end, int pageSize) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+            this.pageSize = pageSize;
+        }
+
+        /**
+         * Waits for the chunk to be parsed, and throws the error it stopped at if there was one.
+         *
+         * @throws VecCommandException Thrown if an issue occurred while parsing a command.
+         * @throws IOException         Thrown if an issue occurred during file IO.
+         */
+        void finish() throws VecCommandException, IOException {
+            join();
+
+            if (ioError != null) {
+                throw ioError;
+            } else if (commandError != null) {
+                throw commandError;
+            }
+        }
+
+        /**
+         * Maps the chunk and parses every line in it.
+         */
+        @Override
+        protected void compute() {
+            try {
+                MappedByteBuffer buffer = channel.map(FileChannel.MapMode.READ_ONLY, start, end - start);
+                parseLines(buffer, this);
+            } catch (VecCommandException e) {
+                commandError = e;
+            } catch (IOException e) {
+                ioError = e;
+            }
+        }
+
+        /**
+         * Keeps a parsed command, or records where a new page starts and which colours it sets when indexing.
+         *
+         * @param command   The command.
+         * @param lineStart The index of the first byte of the command's line in the chunk.
+         */
+        @Override
+        public void handle(VecCommand command, int lineStart) {
+            if (pageSize == 0) {
+                commands.add(command);
+                return;
+            }
+
+            if (lineCount % pageSize == 0) {
+                if (pageCount == pageOffsets.length) {
+                    pageOffsets = Arrays.copyOf(pageOffsets, Math.max(16, pageCount * 2));
+                    pageColours = Arrays.copyOf(pageColours, pageOffsets.length);
+                }
+                pageOffsets[pageCount++] = start + lineStart;
+            }
+
+            //Lets the latest colours be found without decoding every page
+            if (command instanceof PenCommand) {
+                pageColours[pageCount - 1] |= PagedCommandList.PEN_PAGE;
+            } else if (command instanceof FillCommand) {
+                pageColours[pageCount - 1] |= PagedCommandList.FILL_PAGE;
+            }
+            lineCount++;
+        }
+    }
+}
@@ -0,0 +1,361 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.FillCommand;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.Closeable;
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.AbstractList;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * A list of the commands in a text vec file that is too large to hold in memory.
+ * The file is indexed by the byte offset of every page of commands, and pages are only parsed when one of their
+ * commands is needed. A bounded number of recently used pages are kept, so the memory used doesn't grow with the
+ * size of the file.
+ * <p>
+ * Commands added after the file was indexed are kept in memory, and only the last command can be removed,
+ * which is all that VecFile needs. The file stays open until the list is closed, so pages can still be read
+ * after the file has been replaced by a new one, but it must not be changed in place by anything else.
+ * Snapshots share the open file with the list they were taken from, and it is only closed once all of them are.
+ */
+class PagedCommandList extends AbstractList<VecCommand> implements Closeable {
+
+    /**
+     * Text files at least this large are opened as a paged list instead of being loaded into memory.
+     */
+    static final long PAGED_THRESHOLD = 256L * 1024 * 1024;
+
+    static final int PAGE_SIZE = 4096;
+    static final byte PEN_PAGE = 1;
+    static final byte FILL_PAGE = 2;
+
+    private static final int MAX_CACHED_PAGES = 64;
+
+    private final File file;
+    private final SharedChannel sharedChannel;
+    private final FileChannel channel;
+    private final long[] pageOffsets;
+    private final int[] pageFirstIndices;
+    private final byte[] pageColours;
+    private final CommandBuffer addedCommands;
+    private int fileCommandCount;
+    private int lastPage;
+    private boolean isClosed;
+
+    //Recently used pages in least to most recently used order
+    private final LinkedHashMap<Integer, List<VecCommand>> pages = new LinkedHashMap<Integer, List<VecCommand>>(MAX_CACHED_PAGES * 2, 0.75f, true) {
+        @Override
+        protected boolean removeEldestEntry(Map.Entry<Integer, List<VecCommand>> eldest) {
+            return size() > MAX_CACHED_PAGES;
+        }
+    };
+
+    /**
+     * Creates a new paged list from the index of a file.
+     *
+     * @param file             The text vec file.
+     * @param pageOffsets      The byte offset of the first line of every page, followed by the length of the file.
+     * @param pageFirstIndices The index of the first command of every page, followed by the number of commands.
+     * @param pageColours      Whether each page contains PEN_PAGE or FILL_PAGE commands, as a bit mask.
+     * @throws IOException Thrown if the file can't be opened.
+     */
+    PagedCommandList(File file, long[] pageOffsets, int[] pageFirstIndices, byte[] pageColours) throws IOException {
+        this.file = file;
+        this.sharedChannel = new SharedChannel(FileChannel.open(file.toPath(), StandardOpenOption.READ));
+        this.channel = sharedChannel.channel;
+        this.pageOffsets = pageOffsets;
+        this.pageFirstIndices = pageFirstIndices;
+        this.pageColours = pageColours;
+        this.fileCommandCount = pageFirstIndices[pageFirstIndices.length - 1];
+        this.addedCommands = new CommandBuffer();
+    }
+
+    /**
+     * Creates a copy of a paged list that shares its file and index, but has its own page cache.
+     *
+     * @param other The paged list.
+     */
+    private PagedCommandList(PagedCommandList other) {
+        this.file = other.file;
+        this.sharedChannel = other.sharedChannel.acquire();
+        this.channel = sharedChannel.channel;
+        this.pageOffsets = other.pageOffsets;
+        this.pageFirstIndices = other.pageFirstIndices;
+        this.pageColours = other.pageColours;
+        this.fileCommandCount = other.fileCommandCount;
+        this.addedCommands = other.addedCommands.copy();
+    }
+
+    /**
+     * A file channel shared by a paged list and its snapshots, which is closed once none of them are using it.
+     */
+    private static class SharedChannel {
+
+        private final FileChannel channel;
+        private int references = 1;
+
+        /**
+         * Creates a new shared channel, used by the list that opened it.
+         *
+         * @param channel The channel.
+         */
+        SharedChannel(FileChannel channel) {
+            this.channel = channel;
+        }
+
+        /**
+         * Records another list using the channel.
+         *
+         * @return This shared channel.
+         * @throws IllegalStateException Thrown if the channel has already been closed.
+         */
+        synchronized SharedChannel acquire() {
+            if (references == 0) {
+                throw new IllegalStateException("Paged VEC file has been closed.");
+            }
+            references++;
+            return this;
+        }
+
+        /**
+         * Records that a list has stopped using the channel, closing it if it was the last one.
+         *
+         * @throws IOException Thrown if an issue occurs while closing the channel.
+         */
+        synchronized void release() throws IOException {
+            if (--references == 0) {
+                channel.close();
+            }
+        }
+    }
+
+    /**
+     * Creates a copy of the list that won't see any later changes and can be read from another thread,
+     * without parsing or copying the commands that are still in the file. The copy must be closed separately.
+     *
+     * @return The copy of the list.
+     */
+    PagedCommandList snapshot() {
+        return new PagedCommandList(this);
+    }
+
+    /**
+     * Gets a command, parsing its page from the file if it isn't cached.
+     *
+     * @param index The index of the command.
+     * @return The command.
+     * @throws UncheckedIOException  Thrown if the page can't be read from the file.
+     * @throws IllegalStateException Thrown if the file has been changed since it was indexed.
+     */
+    @Override
+    public VecCommand get(int index) {
+        if (index < 0 || index >= size()) {
+            throw new IndexOutOfBoundsException(String.format("Index %d out of bounds for length %d", index, size()));
+        }
+
+        if (index >= fileCommandCount) {
+            return addedCommands.get(index - fileCommandCount);
+        }
+
+        int page = findPage(index);
+        return getPage(page).get(index - pageFirstIndices[page]);
+    }
+
+    /**
+     * Gets the number of commands, including those added since the file was indexed.
+     *
+     * @return The number of commands.
+     */
+    @Override
+    public int size() {
+        return fileCommandCount + addedCommands.size();
+    }
+
+    /**
+     * Adds a command to the end of the list, keeping it in memory.
+     *
+     * @param command The command.
+     * @return Always true.
+     */
+    @Override
+    public boolean add(VecCommand command) {
+        addedCommands.add(command);
+        modCount++;
+        return true;
+    }
+
+    /**
+     * Removes the last command in the list.
+     *
+     * @param index The index of the command, which must be the last one.
+     * @return The removed command.
+     * @throws UnsupportedOperationException Thrown if the command isn't the last one.
+     */
+    @Override
+    public VecCommand remove(int index) {
+        if (index != size() - 1) {
+            throw new UnsupportedOperationException("Only the last command of a paged file can be removed.");
+        }
+
+        VecCommand command = get(index);
+        if (!addedCommands.isEmpty()) {
+            addedCommands.remove(addedCommands.size() - 1);
+        } else {
+            fileCommandCount--;
+        }
+        modCount++;
+        return command;
+    }
+
+    /**
+     * Finds the index of the last command of a type, skipping pages of the file that are known not to contain it.
+     *
+     * @param type The class of the command.
+     * @return The index of the last command of the type, or -1 if there isn't one.
+     */
+    int lastIndexOfType(Class<? extends VecCommand> type) {
+        byte colourMask = type == PenCommand.class ? PEN_PAGE : type == FillCommand.class ? FILL_PAGE : (byte) -1;
+
+        for (int i = addedCommands.size() - 1; i >= 0; i--) {
+            if (type.isInstance(addedCommands.get(i))) {
+                return fileCommandCount + i;
+            }
+        }
+
+        if (fileCommandCount == 0) {
+            return -1;
+        }
+
+        for (int page = findPage(fileCommandCount - 1); page >= 0; page--) {
+            if ((pageColours[page] & colourMask) == 0) {
+                continue;
+            }
+
+            List<VecCommand> commands = getPage(page);
+            int last = Math.min(commands.size(), fileCommandCount - pageFirstIndices[page]) - 1;
+            for (int i = last; i >= 0; i--) {
+                if (type.isInstance(commands.get(i))) {
+                    return pageFirstIndices[page] + i;
+                }
+            }
+        }
+
+        return -1;
+    }
+
+    /**
+     * Stops using the file, closing it once no snapshot of the list is using it either. The list shouldn't be used
+     * afterwards, and closing it again has no effect.
+     *
+     * @throws IOException Thrown if an issue occurs while closing the file.
+     */
+    @Override
+    public synchronized void close() throws IOException {
+        if (!isClosed) {
+            isClosed = true;
+            sharedChannel.release();
+        }
+    }
+
+    /**
+     * Closes a list of commands if it is paged, ignoring any issue closing its file.
+     *
+     * @param commands The list of commands.
+     */
+    static void closeIfPaged(List<VecCommand> commands) {
+        if (commands instanceof PagedCommandList) {
+            try {
+                ((PagedCommandList) commands).close();
+            } catch (IOException e) {
+                //The file is only read from, so there is nothing left to lose
+            }
+        }
+    }
+
+    /**
+     * Checks whether the list reads its commands from a file.
+     *
+     * @param other The file.
+     * @return Whether the list is backed by the file.
+     */
+    boolean isBackedBy(File other) {
+        return file.getAbsoluteFile().toPath().normalize().equals(other.getAbsoluteFile().toPath().normalize());
+    }
+
+    /**
+     * Finds the page that contains a command in the file.
+     *
+     * @param index The index of the command.
+     * @return The index of the page.
+     */
+    private int findPage(int index) {
+        //Most accesses are sequential, so check the last page used first
+        if (index >= pageFirstIndices[lastPage] && index < pageFirstIndices[lastPage + 1]) {
+            return lastPage;
+        }
+
+        int page = Arrays.binarySearch(pageFirstIndices, index);
+        lastPage = page >= 0 ? page : -page - 2;
+        return lastPage;
+    }
+
+    /**
+     * Gets the commands of a page, parsing it from the file if it isn't cached.
+     *
+     * @param page The index of the page.
+     * @return The commands of the page.
+     */
+    private List<VecCommand> getPage(int page) {
+        List<VecCommand> commands = pages.get(page);
+        if (commands == null) {
+            commands = readPage(page);
+            pages.put(page, commands);
+        }
+        return commands;
+    }
+
+    /**
+     * Reads and parses every command of a page from the file.
+     *
+     * @param page The index of the page.
+     * @return The commands of the page.
+     */
+    private List<VecCommand> readPage(int page) {
+        int expectedCount = pageFirstIndices[page + 1] - pageFirstIndices[page];
+        ArrayList<VecCommand> commands = new ArrayList<>(expectedCount);
+
+        try {
+            ByteBuffer buffer = ByteBuffer.allocate((int) (pageOffsets[page + 1] - pageOffsets[page]));
+            while (buffer.hasRemaining()) {
+                if (channel.read(buffer, pageOffsets[page] + buffer.position()) < 0) {
+                    throw new IllegalStateException("Paged VEC file is shorter than when it was opened.");
+                }
+            }
+
+            buffer.flip();
+            MappedVecLoader.parseLines(buffer, (command, lineStart) -> commands.add(command));
+        } catch (IOException e) {
+            throw new UncheckedIOException("Failed to read a page of the VEC file.", e);
+        } catch (VecCommandException e) {
+            throw new IllegalStateException("Paged VEC file has been changed since it was opened.", e);
+        }
+
+        if (commands.size() != expectedCount) {
+            throw new IllegalStateException("Paged VEC file has been changed since it was opened.");
+        }
+
+        return commands;
+    }
+}
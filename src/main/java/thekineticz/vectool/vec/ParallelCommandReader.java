@@ -0,0 +1,66 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the commands of a file that is split into parts which are parsed in parallel.
+ * The parts are handed out in file order as soon as each one is parsed, so the commands at the start of the file
+ * can be used while the rest of it is still being parsed.
+ */
+interface ParallelCommandReader extends Closeable {
+
+    /**
+     * Waits for the next part of the file to be parsed.
+     *
+     * @return The commands of the part, or null once every part has been read.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command in the part.
+     * @throws IOException         Thrown if an issue occurs during file IO.
+     */
+    CommandBuffer next() throws VecCommandException, IOException;
+
+    /**
+     * Gets how much of the file has been read.
+     *
+     * @return The fraction of the parts that have been read, between 0 and 1.
+     */
+    double getProgress();
+
+    /**
+     * Reads every remaining part and appends their commands to a list in file order.
+     * Nothing is added until every part has been parsed, in case a later one is invalid.
+     *
+     * @param commands The list the commands are added to.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command. If several lines are invalid,
+     *                             the error of the first one in the file is thrown.
+     * @throws IOException         Thrown if an issue occurs during file IO.
+     */
+    default void readAll(List<VecCommand> commands) throws VecCommandException, IOException {
+        ArrayList<CommandBuffer> parts = new ArrayList<>();
+        int total = 0;
+        for (CommandBuffer part = next(); part != null; part = next()) {
+            parts.add(part);
+            total += part.size();
+        }
+
+        if (commands instanceof ArrayList) {
+            ((ArrayList<VecCommand>) commands).ensureCapacity(commands.size() + total);
+        }
+
+        for (int i = 0; i < parts.size(); i++) {
+            if (commands instanceof CommandBuffer) {
+                ((CommandBuffer) commands).append(parts.get(i));
+            } else {
+                commands.addAll(parts.get(i));
+            }
+
+            //Each part's columns can be freed as soon as they have been copied
+            parts.set(i, null);
+        }
+    }
+}
@@ -0,0 +1,528 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.vec.commands.FillCommand;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.commands.PlotCommand;
+import thekineticz.vectool.vec.commands.PolygonCommand;
+import thekineticz.vectool.vec.commands.RectangleCommand;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.ShapeCommand;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * A quadtree over the bounding boxes of a list of commands, for finding the commands that draw in part of the image
+ * without going through all of them.
+ * Commands can only be added to or removed from the end, like the commands of a VecFile, and update keeps the index
+ * in sync using the same first changed index that VecFile.CommandListener is given.
+ * <p>
+ * The pen and fill colours in effect at each command are also kept, so that the commands found can be drawn on their
+ * own while still looking as they would if every command before them had been drawn.
+ * Commands that aren't built in are treated as covering everything, since their bounds aren't known.
+ * <p>
+ * The index also finds the commands hidden under a later opaque shape, which are filled rectangles and filled
+ * polygons with the four corners of a rectangle. Such a shape sets every pixel inside its bounding box at any size,
+ * since its outline covers the edges that its fill leaves out, and every command draws inside its own bounding box.
+ * A command whose bounds are inside an opaque shape's bounds can therefore be skipped without changing a pixel, as
+ * long as the shape is drawn too.
+ */
+public class SpatialIndex {
+
+    private static final int MAX_DEPTH = 10;
+    private static final int NOT_INDEXED = -1;
+    private static final int NOT_OCCLUDED = Integer.MAX_VALUE;
+
+    private final ArrayList<Node> nodes = new ArrayList<>();
+    private int size;
+
+    //The bounds of each command as min x, min y, max x and max y, and the node it is in, or NOT_INDEXED
+    private double[] bounds = new double[4 * 1024];
+    private int[] commandNodes = new int[1024];
+    private int[] penColours = new int[1024];
+    private int[] fillColours = new int[1024];
+
+    //The index of the first opaque shape after each command that covers it, or NOT_OCCLUDED
+    private int[] occluders = new int[1024];
+
+    /**
+     * Creates a new empty index.
+     */
+    public SpatialIndex() {
+        nodes.add(new Node(0, 0, 1));
+    }
+
+    /**
+     * A square of the quadtree, holding the commands that fit in it but not in any one of its quarters.
+     */
+    private static class Node {
+
+        private final double x;
+        private final double y;
+        private final double size;
+        private int[] children;
+        private int[] commands = new int[0];
+        private int commandCount;
+
+        //The number of commands at the start of the node that are all hidden, which don't need checking again
+        private int occludedCount;
+
+        /**
+         * Creates a new empty node.
+         *
+         * @param x    The x coordinate of the top left corner.
+         * @param y    The y coordinate of the top left corner.
+         * @param size The width and height.
+         */
+        Node(double x, double y, double size) {
+            this.x = x;
+            this.y = y;
+            this.size = size;
+        }
+    }
+
+    /**
+     * Gets the number of commands in the index.
+     *
+     * @return The number of commands.
+     */
+    public int size() {
+        return size;
+    }
+
+    /**
+     * Brings the index in line with a list of commands, after the commands from an index onwards have changed.
+     *
+     * @param commands          The commands.
+     * @param firstChangedIndex The index of the first command that may have changed.
+     */
+    public void update(List<VecCommand> commands, int firstChangedIndex) {
+        if (size > Math.min(firstChangedIndex, commands.size())) {
+            while (size > Math.min(firstChangedIndex, commands.size())) {
+                removeLast();
+            }
+
+            //Commands that were only covered by removed shapes can be seen again
+            for (int i = 0; i < size; i++) {
+                if (occluders[i] >= size) {
+                    occluders[i] = NOT_OCCLUDED;
+                }
+            }
+            for (Node node : nodes) {
+                node.occludedCount = 0;
+            }
+        }
+
+        ensureCapacity(commands.size());
+        double[] commandBounds = new double[4];
+        for (int i = size; i < commands.size(); i++) {
+            int pen = i == 0 ? VecFile.DEFAULT_PEN_RGB : penColours[i - 1];
+            int fill = i == 0 ? VecFile.DEFAULT_FILL_RGB : fillColours[i - 1];
+
+            boolean isDrawn;
+            boolean isRectangular;
+            if (commands instanceof CommandBuffer) {
+                CommandBuffer buffer = (CommandBuffer) commands;
+                byte opcode = buffer.getOpcode(i);
+                if (opcode == CommandBuffer.OP_PEN) {
+                    pen = buffer.getColour(i);
+                } else if (opcode == CommandBuffer.OP_FILL) {
+                    fill = buffer.getColour(i);
+                }
+                isDrawn = getBounds(buffer, i, commandBounds);
+                isRectangular = opcode == CommandBuffer.OP_RECTANGLE
+                        || (opcode == CommandBuffer.OP_POLYGON && isRectangle(buffer, i));
+            } else {
+                VecCommand command = commands.get(i);
+                if (command instanceof PenCommand) {
+                    pen = ((PenCommand) command).getRgb();
+                } else if (command instanceof FillCommand) {
+                    fill = ((FillCommand) command).getRgb();
+                }
+                isDrawn = getBounds(command, commandBounds);
+                isRectangular = command instanceof RectangleCommand
+                        || (command instanceof PolygonCommand && isRectangle(((PolygonCommand) command).getVertices()));
+            }
+
+            penColours[i] = pen;
+            fillColours[i] = fill;
+            occluders[i] = NOT_OCCLUDED;
+            commandNodes[i] = isDrawn ? insert(i, commandBounds) : NOT_INDEXED;
+            size++;
+
+            if (isRectangular && fill != VecColour.NONE) {
+                occludeCoveredCommands(i, commandBounds);
+            }
+        }
+    }
+
+    /**
+     * Checks whether a command is hidden under an opaque shape, so that drawing it makes no difference.
+     *
+     * @param index The index of the command.
+     * @param to    The index after the last command that will be drawn, which the shape has to be before.
+     * @return Whether the command is hidden.
+     */
+    public boolean isOccluded(int index, int to) {
+        checkIndex(index);
+        return occluders[index] < to;
+    }
+
+    /**
+     * Gets the first opaque shape that hides a command.
+     *
+     * @param index The index of the command.
+     * @return The index of the shape, or -1 if the command isn't hidden.
+     */
+    public int getOccluder(int index) {
+        checkIndex(index);
+        return occluders[index] == NOT_OCCLUDED ? -1 : occluders[index];
+    }
+
+    /**
+     * Finds the commands in a range that may draw inside a region.
+     *
+     * @param minX The smallest x coordinate of the region.
+     * @param minY The smallest y coordinate of the region.
+     * @param maxX The largest x coordinate of the region.
+     * @param maxY The largest y coordinate of the region.
+     * @param from The index of the first command to look at.
+     * @param to   The index after the last command to look at.
+     * @return The indexes of the commands, in the order they are drawn.
+     */
+    public int[] query(double minX, double minY, double maxX, double maxY, int from, int to) {
+        int[] found = new int[16];
+        int foundCount = 0;
+
+        ArrayList<Node> stack = new ArrayList<>();
+        stack.add(nodes.get(0));
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+
+            for (int i = 0; i < node.commandCount; i++) {
+                int command = node.commands[i];
+                if (command >= from && command < to && bounds[4 * command] <= maxX && bounds[4 * command + 2] >= minX
+                        && bounds[4 * command + 1] <= maxY && bounds[4 * command + 3] >= minY) {
+                    if (foundCount == found.length) {
+                        found = Arrays.copyOf(found, 2 * foundCount);
+                    }
+                    found[foundCount++] = command;
+                }
+            }
+
+            if (node.children != null) {
+                for (int child : node.children) {
+                    Node childNode = nodes.get(child);
+                    if (childNode.x <= maxX && childNode.x + childNode.size >= minX
+                            && childNode.y <= maxY && childNode.y + childNode.size >= minY) {
+                        stack.add(childNode);
+                    }
+                }
+            }
+        }
+
+        //Restore painter's order, since the commands come out grouped by node
+        Arrays.sort(found, 0, foundCount);
+        return Arrays.copyOf(found, foundCount);
+    }
+
+    /**
+     * Gets the pen colour in effect when a command is drawn.
+     *
+     * @param index The index of the command.
+     * @return The packed pen colour.
+     */
+    public int getPenColour(int index) {
+        checkIndex(index);
+        return penColours[index];
+    }
+
+    /**
+     * Gets the fill colour in effect when a command is drawn.
+     *
+     * @param index The index of the command.
+     * @return The packed fill colour, or VecColour.NONE.
+     */
+    public int getFillColour(int index) {
+        checkIndex(index);
+        return fillColours[index];
+    }
+
+    /**
+     * Gets the bounding box of a buffered command.
+     *
+     * @param buffer The command buffer.
+     * @param index  The index of the command.
+     * @param bounds The array the min x, min y, max x and max y are written to.
+     * @return Whether the command draws anything, which colour commands don't.
+     */
+    static boolean getBounds(CommandBuffer buffer, int index, double[] bounds) {
+        byte opcode = buffer.getOpcode(index);
+        if (opcode == CommandBuffer.OP_PEN || opcode == CommandBuffer.OP_FILL) {
+            return false;
+        } else if (opcode == CommandBuffer.OP_OTHER) {
+            setUnbounded(bounds);
+            return true;
+        }
+
+        setEmpty(bounds);
+        for (int p = 0; p < buffer.getPositionCount(index); p++) {
+            addPoint(bounds, buffer.getX(index, p), buffer.getY(index, p));
+        }
+        return true;
+    }
+
+    /**
+     * Gets the bounding box of a command.
+     *
+     * @param command The command.
+     * @param bounds  The array the min x, min y, max x and max y are written to.
+     * @return Whether the command draws anything, which colour commands don't.
+     */
+    static boolean getBounds(VecCommand command, double[] bounds) {
+        List<Position> positions;
+        if (command instanceof PenCommand || command instanceof FillCommand) {
+            return false;
+        } else if (command instanceof PlotCommand) {
+            positions = List.of(((PlotCommand) command).getPosition());
+        } else if (command instanceof PolygonCommand) {
+            positions = ((PolygonCommand) command).getVertices();
+        } else if (command instanceof ShapeCommand) {
+            positions = ((ShapeCommand) command).getPositions();
+        } else {
+            setUnbounded(bounds);
+            return true;
+        }
+
+        setEmpty(bounds);
+        for (Position position : positions) {
+            addPoint(bounds, position.getX(), position.getY());
+        }
+        return true;
+    }
+
+    /**
+     * Checks whether a buffered polygon has the four corners of a rectangle, in order around it.
+     *
+     * @param buffer The command buffer.
+     * @param index  The index of the polygon.
+     * @return Whether the polygon is a rectangle.
+     */
+    private static boolean isRectangle(CommandBuffer buffer, int index) {
+        if (buffer.getPositionCount(index) != 4) {
+            return false;
+        }
+
+        double[] vertices = new double[8];
+        for (int p = 0; p < 4; p++) {
+            vertices[2 * p] = buffer.getX(index, p);
+            vertices[2 * p + 1] = buffer.getY(index, p);
+        }
+        return isRectangle(vertices);
+    }
+
+    /**
+     * Checks whether a polygon has the four corners of a rectangle, in order around it.
+     *
+     * @param positions The vertices of the polygon.
+     * @return Whether the polygon is a rectangle.
+     */
+    private static boolean isRectangle(List<Position> positions) {
+        if (positions.size() != 4) {
+            return false;
+        }
+
+        double[] vertices = new double[8];
+        for (int p = 0; p < 4; p++) {
+            vertices[2 * p] = positions.get(p).getX();
+            vertices[2 * p + 1] = positions.get(p).getY();
+        }
+        return isRectangle(vertices);
+    }
+
+    /**
+     * Checks whether four vertices are the corners of a rectangle, in order around it. Rounding to pixels keeps
+     * coordinates that are equal the same, so the polygon is drawn as a rectangle at any size.
+     *
+     * @param vertices The vertices as alternating x and y coordinates.
+     * @return Whether the vertices make a rectangle, which may be only a line or a point.
+     */
+    private static boolean isRectangle(double[] vertices) {
+        //Either the first edge is horizontal and the edges alternate from there, or the first edge is vertical
+        return (vertices[1] == vertices[3] && vertices[2] == vertices[4] && vertices[5] == vertices[7] && vertices[6] == vertices[0])
+                || (vertices[0] == vertices[2] && vertices[3] == vertices[5] && vertices[4] == vertices[6] && vertices[7] == vertices[1]);
+    }
+
+    /**
+     * Marks the earlier commands inside the bounds of an opaque shape as hidden by it, unless an earlier shape
+     * already hides them.
+     *
+     * @param index       The index of the opaque shape.
+     * @param shapeBounds The bounds of the shape.
+     */
+    private void occludeCoveredCommands(int index, double[] shapeBounds) {
+        ArrayList<Node> stack = new ArrayList<>();
+        stack.add(nodes.get(0));
+        while (!stack.isEmpty()) {
+            Node node = stack.remove(stack.size() - 1);
+
+            for (int i = node.occludedCount; i < node.commandCount; i++) {
+                int command = node.commands[i];
+                if (command < index && occluders[command] == NOT_OCCLUDED && bounds[4 * command] >= shapeBounds[0]
+                        && bounds[4 * command + 1] >= shapeBounds[1] && bounds[4 * command + 2] <= shapeBounds[2]
+                        && bounds[4 * command + 3] <= shapeBounds[3]) {
+                    occluders[command] = index;
+                }
+            }
+            while (node.occludedCount < node.commandCount && occluders[node.commands[node.occludedCount]] != NOT_OCCLUDED) {
+                node.occludedCount++;
+            }
+
+            if (node.children != null) {
+                for (int child : node.children) {
+                    Node childNode = nodes.get(child);
+                    if (childNode.x <= shapeBounds[2] && childNode.x + childNode.size >= shapeBounds[0]
+                            && childNode.y <= shapeBounds[3] && childNode.y + childNode.size >= shapeBounds[1]) {
+                        stack.add(childNode);
+                    }
+                }
+            }
+        }
+    }
+
+    /**
+     * Removes the last command from the index.
+     */
+    private void removeLast() {
+        size--;
+        if (commandNodes[size] != NOT_INDEXED) {
+            //Commands are added in order, so the last command is always the last one in its node
+            nodes.get(commandNodes[size]).commandCount--;
+        }
+    }
+
+    /**
+     * Adds a command to the smallest node that its bounds fit in, splitting nodes on the way down as needed.
+     *
+     * @param index         The index of the command.
+     * @param commandBounds The bounds of the command.
+     * @return The index of the node.
+     */
+    private int insert(int index, double[] commandBounds) {
+        System.arraycopy(commandBounds, 0, bounds, 4 * index, 4);
+
+        int nodeIndex = 0;
+        for (int depth = 0; depth < MAX_DEPTH; depth++) {
+            Node node = nodes.get(nodeIndex);
+            double half = node.size / 2;
+            int column = getQuarter(commandBounds[0], commandBounds[2], node.x, half);
+            int row = getQuarter(commandBounds[1], commandBounds[3], node.y, half);
+            if (column < 0 || row < 0) {
+                break;
+            }
+
+            if (node.children == null) {
+                node.children = new int[4];
+                for (int child = 0; child < 4; child++) {
+                    node.children[child] = nodes.size();
+                    nodes.add(new Node(node.x + (child % 2) * half, node.y + (child / 2) * half, half));
+                }
+            }
+            nodeIndex = node.children[row * 2 + column];
+        }
+
+        Node node = nodes.get(nodeIndex);
+        if (node.commandCount == node.commands.length) {
+            node.commands = Arrays.copyOf(node.commands, Math.max(4, 2 * node.commandCount));
+        }
+        node.commands[node.commandCount++] = index;
+        return nodeIndex;
+    }
+
+    /**
+     * Finds which half of a node a range of coordinates fits in.
+     *
+     * @param min   The smallest coordinate.
+     * @param max   The largest coordinate.
+     * @param start The coordinate of the node's top or left edge.
+     * @param half  Half the size of the node.
+     * @return 0 for the first half, 1 for the second, or -1 if the range doesn't fit in either.
+     */
+    private static int getQuarter(double min, double max, double start, double half) {
+        if (min >= start && max < start + half) {
+            return 0;
+        } else if (min >= start + half && max <= start + 2 * half) {
+            return 1;
+        }
+        return -1;
+    }
+
+    /**
+     * Grows the per command arrays to hold a number of commands.
+     *
+     * @param capacity The number of commands.
+     */
+    private void ensureCapacity(int capacity) {
+        if (commandNodes.length < capacity) {
+            int newCapacity = Math.max(capacity, 2 * commandNodes.length);
+            bounds = Arrays.copyOf(bounds, 4 * newCapacity);
+            commandNodes = Arrays.copyOf(commandNodes, newCapacity);
+            penColours = Arrays.copyOf(penColours, newCapacity);
+            fillColours = Arrays.copyOf(fillColours, newCapacity);
+            occluders = Arrays.copyOf(occluders, newCapacity);
+        }
+    }
+
+    /**
+     * Checks that an index is in the index.
+     *
+     * @param index The index of a command.
+     * @throws IndexOutOfBoundsException Thrown if the command isn't in the index.
+     */
+    private void checkIndex(int index) {
+        if (index < 0 || index >= size) {
+            throw new IndexOutOfBoundsException(String.format("Index: %d, Size: %d", index, size));
+        }
+    }
+
+    /**
+     * Sets bounds that contain nothing, ready for points to be added.
+     *
+     * @param bounds The bounds.
+     */
+    private static void setEmpty(double[] bounds) {
+        bounds[0] = Double.POSITIVE_INFINITY;
+        bounds[1] = Double.POSITIVE_INFINITY;
+        bounds[2] = Double.NEGATIVE_INFINITY;
+        bounds[3] = Double.NEGATIVE_INFINITY;
+    }
+
+    /**
+     * Sets bounds that contain everything.
+     *
+     * @param bounds The bounds.
+     */
+    private static void setUnbounded(double[] bounds) {
+        bounds[0] = Double.NEGATIVE_INFINITY;
+        bounds[1] = Double.NEGATIVE_INFINITY;
+        bounds[2] = Double.POSITIVE_INFINITY;
+        bounds[3] = Double.POSITIVE_INFINITY;
+    }
+
+    /**
+     * Grows bounds to contain a point.
+     *
+     * @param bounds The bounds.
+     * @param x      The x coordinate of the point.
+     * @param y      The y coordinate of the point.
+     */
+    private static void addPoint(double[] bounds, double x, double y) {
+        bounds[0] = Math.min(bounds[0], x);
+        bounds[1] = Math.min(bounds[1], y);
+        bounds[2] = Math.max(bounds[2], x);
+        bounds[3] = Math.max(bounds[3], y);
+    }
+}
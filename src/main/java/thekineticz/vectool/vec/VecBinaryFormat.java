@@ -0,0 +1,57 @@
+package thekineticz.vectool.vec;
+
+/**
+ * Constants shared by the binary vec reader and writer.
+ * <p>
+ * A binary vec file starts with the four magic bytes "VECB" and a version byte, followed by any number of blocks.
+ * Each block is laid out as a flags byte, a varint command count, a varint payload length, the payload and a
+ * big-endian CRC32 of everything in the block before it. Every command in the payload starts with an opcode byte.
+ * Colours are stored as packed 24-bit RGB values and coordinates are stored either as raw IEEE 754 doubles or, when
+ * the block has the delta flag set, as varint deltas of their shortest exact decimal mantissa.
+ * Blocks are independent of each other, so new blocks can be appended to an existing file.
+ */
+final class VecBinaryFormat {
+
+    static final String FILE_EXTENSION = "vecb";
+    static final byte[] MAGIC = {'V', 'E', 'C', 'B'};
+    static final int VERSION = 1;
+
+    static final int FLAG_DELTA_COORDINATES = 1;
+
+    static final int OP_TEXT = 0;
+    static final int OP_PLOT = 1;
+    static final int OP_LINE = 2;
+    static final int OP_RECTANGLE = 3;
+    static final int OP_ELLIPSE = 4;
+    static final int OP_POLYGON = 5;
+    static final int OP_PEN = 6;
+    static final int OP_FILL = 7;
+    static final int OP_FILL_OFF = 8;
+
+    /**
+     * The number of low bits of a delta coordinate header holding the decimal scale.
+     * A scale tag of 0 means the coordinate is stored as a raw double instead.
+     */
+    static final int SCALE_BITS = 5;
+    static final int MAX_SCALE = 15;
+    static final long MAX_EXACT_MANTISSA = 1L << 53;
+    static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10, 1e11, 1e12, 1e13, 1e14, 1e15
+    };
+
+    /**
+     * Static constants only.
+     */
+    private VecBinaryFormat() {
+    }
+
+    /**
+     * Checks whether a file name has the binary vec extension.
+     *
+     * @param name The file name.
+     * @return Whether the file is a binary vec file.
+     */
+    static boolean isBinaryFileName(String name) {
+        return name.endsWith("." + FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,324 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static thekineticz.vectool.vec.VecBinaryFormat.*;
+
+/**
+ * Reads vec commands from a file in the compact binary vec format.
+ * Every block is checked against its CRC32 before any of its commands are decoded.
+ */
+public class VecBinaryReader implements Closeable {
+
+    private final DataInputStream in;
+    private final CRC32 crc = new CRC32();
+    private final VecCommandTokenizer tokenizer = new VecCommandTokenizer();
+    private byte[] payload = new byte[0];
+    private int payloadLength;
+    private int position;
+    private int remainingCommands;
+    private boolean isDeltaCoordinates;
+    private final long[] previousMantissas = new long[2];
+    private final int[] previousScales = new int[2];
+
+    /**
+     * Creates a new binary reader and checks the file header.
+     *
+     * @param in The stream containing the binary vec file.
+     * @throws IOException Thrown if the stream is not a binary vec file or can't be read.
+     */
+    public VecBinaryReader(InputStream in) throws IOException {
+        this.in = new DataInputStream(in instanceof BufferedInputStream ? in : new BufferedInputStream(in));
+
+        byte[] magic = new byte[MAGIC.length];
+        try {
+            this.in.readFully(magic);
+        } catch (EOFException e) {
+            throw new IOException("File is too short to be a binary vec file.", e);
+        }
+
+        for (int i = 0; i < MAGIC.length; i++) {
+            if (magic[i] != MAGIC[i]) {
+                throw new IOException("File is not a binary vec file.");
+            }
+        }
+
+        int version = this.in.read();
+        if (version != VERSION) {
+            throw new IOException(String.format("Unsupported binary vec file version %d.", version));
+        }
+    }
+
+    /**
+     * Reads every remaining command in the file into a list.
+     *
+     * @param commands The list the commands are added to.
+     * @throws VecCommandException Thrown if a decoded command is invalid.
+     * @throws IOException         Thrown if the file is corrupt or can't be read.
+     */
+    public void readAll(List<VecCommand> commands) throws VecCommandException, IOException {
+        VecCommand command = read();
+        while (command != null) {
+            commands.add(command);
+            command = read();
+        }
+    }
+
+    /**
+     * Reads the next command in the file.
+     *
+     * @return The command, or null if the end of the file was reached.
+     * @throws VecCommandException Thrown if a decoded command is invalid.
+     * @throws IOException         Thrown if the file is corrupt or can't be read.
+     */
+    public VecCommand read() throws VecCommandException, IOException {
+        while (remainingCommands == 0) {
+            if (!readBlock()) {
+                return null;
+            }
+        }
+
+        remainingCommands--;
+        int opcode = readByte();
+
+        switch (opcode) {
+            case OP_PLOT:
+                return new PlotCommand(readPosition());
+            case OP_LINE:
+                return new LineCommand(readPositions(2));
+            case OP_RECTANGLE:
+                return new RectangleCommand(readPositions(2));
+            case OP_ELLIPSE:
+                return new EllipseCommand(readPositions(2));
+            case OP_POLYGON:
+                return new PolygonCommand(readPositions((int) readVarint()));
+            case OP_PEN:
+                return new PenCommand(readColour());
+            case OP_FILL:
+                return new FillCommand(readColour());
+            case OP_FILL_OFF:
+                return new FillCommand(VecColour.NONE);
+            case OP_TEXT:
+                int length = (int) readVarint();
+                checkAvailable(length);
+                tokenizer.reset(new String(payload, position, length, StandardCharsets.UTF_8));
+                position += length;
+                return VecFile.parseVecCommand(tokenizer);
+            default:
+                throw new IOException(String.format("Unknown opcode %d in binary vec file.", opcode));
+        }
+    }
+
+    /**
+     * Reads the next block into the payload buffer and verifies its checksum.
+     *
+     * @return Whether a block was read, false if the end of the file was reached.
+     * @throws IOException Thrown if the block is corrupt or can't be read.
+     */
+    private boolean readBlock() throws IOException {
+        int flags = in.read();
+        if (flags < 0) {
+            return false;
+        }
+
+        crc.reset();
+        crc.update(flags);
+
+        try {
+            long commandCount = readStreamVarint();
+            long length = readStreamVarint();
+            if (commandCount > Integer.MAX_VALUE || length > Integer.MAX_VALUE) {
+                throw new IOException("Corrupt block header in binary vec file.");
+            }
+
+            if (payload.length < length) {
+                payload = new byte[(int) length];
+            }
+            in.readFully(payload, 0, (int) length);
+            crc.update(payload, 0, (int) length);
+
+            if (in.readInt() != (int) crc.getValue()) {
+                throw new IOException("Checksum mismatch in binary vec file block.");
+            }
+
+            remainingCommands = (int) commandCount;
+            payloadLength = (int) length;
+        } catch (EOFException e) {
+            throw new IOException("Binary vec file ends in the middle of a block.", e);
+        }
+
+        position = 0;
+        isDeltaCoordinates = (flags & FLAG_DELTA_COORDINATES) != 0;
+        previousMantissas[0] = previousMantissas[1] = 0;
+        previousScales[0] = previousScales[1] = 0;
+        return true;
+    }
+
+    /**
+     * Reads a varint from the block header in the stream, adding its bytes to the block checksum.
+     *
+     * @return The value of the varint.
+     * @throws IOException Thrown if the stream can't be read.
+     */
+    private long readStreamVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            crc.update(b);
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary vec file.");
+    }
+
+    /**
+     * Makes sure the current block has enough unread bytes left.
+     *
+     * @param length The number of bytes about to be read.
+     * @throws IOException Thrown if the block is too short.
+     */
+    private void checkAvailable(int length) throws IOException {
+        if (length < 0 || payloadLength - position < length) {
+            throw new IOException("Command extends past the end of its block in binary vec file.");
+        }
+    }
+
+    /**
+     * Reads a single unsigned byte from the payload.
+     *
+     * @return The byte.
+     * @throws IOException Thrown if the block is too short.
+     */
+    private int readByte() throws IOException {
+        checkAvailable(1);
+        return payload[position++] & 0xFF;
+    }
+
+    /**
+     * Reads a big-endian 64-bit value from the payload.
+     *
+     * @return The value.
+     * @throws IOException Thrown if the block is too short.
+     */
+    private long readLong() throws IOException {
+        checkAvailable(8);
+        long value = 0;
+        for (int i = 0; i < 8; i++) {
+            value = (value << 8) | (payload[position++] & 0xFF);
+        }
+        return value;
+    }
+
+    /**
+     * Reads an unsigned LEB128 varint from the payload.
+     *
+     * @return The value.
+     * @throws IOException Thrown if the varint is malformed or the block is too short.
+     */
+    private long readVarint() throws IOException {
+        long value = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = readByte();
+            value |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0) {
+                return value;
+            }
+        }
+        throw new IOException("Malformed varint in binary vec file.");
+    }
+
+    /**
+     * Reads a packed 24-bit RGB colour.
+     *
+     * @return The packed colour.
+     * @throws IOException Thrown if the block is too short.
+     */
+    private int readColour() throws IOException {
+        return (readByte() << 16) | (readByte() << 8) | readByte();
+    }
+
+    /**
+     * Reads a number of positions.
+     *
+     * @param count The number of positions.
+     * @return The positions.
+     * @throws IOException Thrown if the block is too short.
+     */
+    private ArrayList<Position> readPositions(int count) throws IOException {
+        //Every position takes at least two bytes, which bounds the count of a corrupt command
+        checkAvailable(count * 2);
+        ArrayList<Position> positions = new ArrayList<>(count);
+        for (int i = 0; i < count; i++) {
+            positions.add(readPosition());
+        }
+        return positions;
+    }
+
+    /**
+     * Reads a single position.
+     *
+     * @return The position.
+     * @throws IOException Thrown if the block is too short.
+     */
+    private Position readPosition() throws IOException {
+        double x = readCoordinate(0);
+        double y = readCoordinate(1);
+        return new Position(x, y);
+    }
+
+    /**
+     * Reads a coordinate written by VecBinaryWriter.writeCoordinate.
+     *
+     * @param axis 0 for x coordinates and 1 for y coordinates.
+     * @return The coordinate.
+     * @throws IOException Thrown if the coordinate is malformed or the block is too short.
+     */
+    private double readCoordinate(int axis) throws IOException {
+        if (!isDeltaCoordinates) {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        long header = readVarint();
+        int scaleTag = (int) (header & ((1 << SCALE_BITS) - 1));
+        if (scaleTag == 0) {
+            return Double.longBitsToDouble(readLong());
+        }
+
+        int scale = scaleTag - 1;
+        if (scale > MAX_SCALE) {
+            throw new IOException("Invalid coordinate scale in binary vec file.");
+        }
+
+        long zigzag = header >>> SCALE_BITS;
+        long delta = (zigzag >>> 1) ^ -(zigzag & 1);
+        long previous = previousScales[axis] == scale ? previousMantissas[axis] : 0;
+        long mantissa = previous + delta;
+
+        previousMantissas[axis] = mantissa;
+        previousScales[axis] = scale;
+        return mantissa / POWERS_OF_TEN[scale];
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException Thrown if an issue occurs while closing the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        in.close();
+    }
+}
@@ -0,0 +1,313 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandRegistry;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.zip.CRC32;
+
+import static thekineticz.vectool.vec.VecBinaryFormat.*;
+
+/**
+ * Writes vec commands in the compact binary vec format.
+ * Commands are collected into checksummed blocks which are written out once they are full.
+ */
+public class VecBinaryWriter implements Closeable {
+
+    private static final int MAX_BLOCK_COMMANDS = 4096;
+    private static final int MAX_BLOCK_PAYLOAD = 64 * 1024;
+
+    private final OutputStream out;
+    private final boolean isDeltaCoordinates;
+    private final CRC32 crc = new CRC32();
+    private byte[] payload = new byte[MAX_BLOCK_PAYLOAD + 1024];
+    private int payloadLength;
+    private int blockCommands;
+    private final byte[] blockHeader = new byte[1 + 5 + 5];
+    private final long[] previousMantissas = new long[2];
+    private final int[] previousScales = new int[2];
+
+    /**
+     * Creates a new binary writer for a new file, using delta encoded coordinates.
+     *
+     * @param out The stream the file is written to.
+     * @throws IOException Thrown if an issue occurs while writing the file header.
+     */
+    public VecBinaryWriter(OutputStream out) throws IOException {
+        this(out, true, false);
+    }
+
+    /**
+     * Creates a new binary writer.
+     *
+     * @param out                The stream the file is written to.
+     * @param isDeltaCoordinates Whether coordinates are delta encoded; if not, they are written as raw doubles.
+     * @param isAppending        Whether the stream is positioned at the end of an existing binary vec file,
+     *                           in which case the file header is not written again.
+     * @throws IOException Thrown if an issue occurs while writing the file header.
+     */
+    public VecBinaryWriter(OutputStream out, boolean isDeltaCoordinates, boolean isAppending) throws IOException {
+        this.out = out;
+        this.isDeltaCoordinates = isDeltaCoordinates;
+
+        if (!isAppending) {
+            out.write(MAGIC);
+            out.write(VERSION);
+        }
+    }
+
+    /**
+     * Writes every command in a list.
+     *
+     * @param commands The commands.
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    public void writeAll(List<? extends VecCommand> commands) throws IOException {
+        for (VecCommand command : commands) {
+            write(command);
+        }
+    }
+
+    /**
+     * Adds a command to the current block, writing the block out if it is full.
+     *
+     * @param command The command.
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    public void write(VecCommand command) throws IOException {
+        if (command instanceof PlotCommand) {
+            writeByte(OP_PLOT);
+            writePosition(((PlotCommand) command).getPosition());
+        } else if (command instanceof LineCommand) {
+            writeByte(OP_LINE);
+            writePositions(((LineCommand) command).getPositions());
+        } else if (command instanceof RectangleCommand) {
+            writeByte(OP_RECTANGLE);
+            writePositions(((RectangleCommand) command).getPositions());
+        } else if (command instanceof EllipseCommand) {
+            writeByte(OP_ELLIPSE);
+            writePositions(((EllipseCommand) command).getPositions());
+        } else if (command instanceof PolygonCommand) {
+            ArrayList<Position> vertices = ((PolygonCommand) command).getVertices();
+            writeByte(OP_POLYGON);
+            writeVarint(vertices.size());
+            writePositions(vertices);
+        } else if (command instanceof PenCommand) {
+            writeByte(OP_PEN);
+            writeColour(((PenCommand) command).getRgb());
+        } else if (command instanceof FillCommand && ((FillCommand) command).getRgb() == VecColour.NONE) {
+            writeByte(OP_FILL_OFF);
+        } else if (command instanceof FillCommand) {
+            writeByte(OP_FILL);
+            writeColour(((FillCommand) command).getRgb());
+        } else {
+            //Commands of types that aren't built in are kept in their text form
+            byte[] text = VecCommandRegistry.serialize(command).getBytes(StandardCharsets.UTF_8);
+            writeByte(OP_TEXT);
+            writeVarint(text.length);
+            ensurePayloadCapacity(text.length);
+            System.arraycopy(text, 0, payload, payloadLength, text.length);
+            payloadLength += text.length;
+        }
+
+        blockCommands++;
+        if (blockCommands >= MAX_BLOCK_COMMANDS || payloadLength >= MAX_BLOCK_PAYLOAD) {
+            flushBlock();
+        }
+    }
+
+    /**
+     * Writes a packed 24-bit RGB colour.
+     *
+     * @param rgb The packed colour.
+     */
+    private void writeColour(int rgb) {
+        writeByte(rgb >>> 16);
+        writeByte(rgb >>> 8);
+        writeByte(rgb);
+    }
+
+    /**
+     * Writes every position in a list.
+     *
+     * @param positions The positions.
+     */
+    private void writePositions(ArrayList<Position> positions) {
+        for (Position position : positions) {
+            writePosition(position);
+        }
+    }
+
+    /**
+     * Writes a single position.
+     *
+     * @param position The position.
+     */
+    private void writePosition(Position position) {
+        writeCoordinate(0, position.getX());
+        writeCoordinate(1, position.getY());
+    }
+
+    /**
+     * Writes a coordinate, either raw or as a delta of its shortest exact decimal mantissa.
+     * A decimal mantissa m with scale k is only used if m / 10^k gives back exactly the same double.
+     *
+     * @param axis  0 for x coordinates and 1 for y coordinates; each axis is delta encoded separately.
+     * @param value The coordinate.
+     */
+    private void writeCoordinate(int axis, double value) {
+        if (!isDeltaCoordinates) {
+            writeLong(Double.doubleToRawLongBits(value));
+            return;
+        }
+
+        for (int scale = 0; scale <= MAX_SCALE; scale++) {
+            double scaled = value * POWERS_OF_TEN[scale];
+            if (Math.abs(scaled) >= MAX_EXACT_MANTISSA) {
+                break;
+            }
+
+            long mantissa = Math.round(scaled);
+            double decoded = mantissa / POWERS_OF_TEN[scale];
+            if (Double.doubleToRawLongBits(decoded) == Double.doubleToRawLongBits(value)) {
+                long previous = previousScales[axis] == scale ? previousMantissas[axis] : 0;
+                long delta = mantissa - previous;
+                long zigzag = (delta << 1) ^ (delta >> 63);
+
+                writeVarint((zigzag << SCALE_BITS) | (scale + 1));
+                previousMantissas[axis] = mantissa;
+                previousScales[axis] = scale;
+                return;
+            }
+        }
+
+        writeVarint(0);
+        writeLong(Double.doubleToRawLongBits(value));
+    }
+
+    /**
+     * Writes a single byte to the block payload.
+     *
+     * @param value The byte, in the low 8 bits.
+     */
+    private void writeByte(int value) {
+        ensurePayloadCapacity(1);
+        payload[payloadLength++] = (byte) value;
+    }
+
+    /**
+     * Writes a big-endian 64-bit value to the block payload.
+     *
+     * @param value The value.
+     */
+    private void writeLong(long value) {
+        ensurePayloadCapacity(8);
+        for (int shift = 56; shift >= 0; shift -= 8) {
+            payload[payloadLength++] = (byte) (value >>> shift);
+        }
+    }
+
+    /**
+     * Writes an unsigned LEB128 varint to the block payload.
+     *
+     * @param value The value, treated as unsigned.
+     */
+    private void writeVarint(long value) {
+        ensurePayloadCapacity(10);
+        payloadLength = putVarint(payload, payloadLength, value);
+    }
+
+    /**
+     * Encodes an unsigned LEB128 varint into an array.
+     *
+     * @param array  The destination array.
+     * @param offset The index the varint is written at.
+     * @param value  The value, treated as unsigned.
+     * @return The index after the last byte written.
+     */
+    private static int putVarint(byte[] array, int offset, long value) {
+        while ((value & ~0x7FL) != 0) {
+            array[offset++] = (byte) ((value & 0x7F) | 0x80);
+            value >>>= 7;
+        }
+        array[offset++] = (byte) value;
+        return offset;
+    }
+
+    /**
+     * Makes sure the payload array has room for more bytes.
+     *
+     * @param length The number of bytes about to be written.
+     */
+    private void ensurePayloadCapacity(int length) {
+        if (payloadLength + length > payload.length) {
+            payload = Arrays.copyOf(payload, Math.max(payload.length * 2, payloadLength + length));
+        }
+    }
+
+    /**
+     * Writes the current block to the stream, if it contains any commands, and starts a new one.
+     *
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    private void flushBlock() throws IOException {
+        if (blockCommands == 0) {
+            return;
+        }
+
+        int headerLength = 0;
+        blockHeader[headerLength++] = (byte) (isDeltaCoordinates ? FLAG_DELTA_COORDINATES : 0);
+        headerLength = putVarint(blockHeader, headerLength, blockCommands);
+        headerLength = putVarint(blockHeader, headerLength, payloadLength);
+
+        crc.reset();
+        crc.update(blockHeader, 0, headerLength);
+        crc.update(payload, 0, payloadLength);
+        int checksum = (int) crc.getValue();
+
+        out.write(blockHeader, 0, headerLength);
+        out.write(payload, 0, payloadLength);
+        out.write(checksum >>> 24);
+        out.write(checksum >>> 16);
+        out.write(checksum >>> 8);
+        out.write(checksum);
+
+        payloadLength = 0;
+        blockCommands = 0;
+        previousMantissas[0] = previousMantissas[1] = 0;
+        previousScales[0] = previousScales[1] = 0;
+    }
+
+    /**
+     * Writes any buffered commands as a final block and flushes the stream.
+     *
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    public void flush() throws IOException {
+        flushBlock();
+        out.flush();
+    }
+
+    /**
+     * Writes any buffered commands and closes the stream.
+     *
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        try {
+            flushBlock();
+        } finally {
+            out.close();
+        }
+    }
+}
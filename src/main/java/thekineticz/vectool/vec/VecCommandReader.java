@@ -0,0 +1,160 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.io.Reader;
+import java.util.Arrays;
+
+/**
+ * Reads vec commands from a character stream one line at a time.
+ * Lines are split with the same rules as BufferedReader.readLine, but are tokenized in place in a reusable buffer
+ * instead of being copied into a new string per line.
+ */
+public class VecCommandReader implements Closeable {
+
+    private static final int DEFAULT_BUFFER_SIZE = 64 * 1024;
+
+    private final Reader reader;
+    private final VecCommandTokenizer tokenizer = new VecCommandTokenizer();
+    private char[] buffer;
+    private int position;
+    private int limit;
+    private boolean isEndOfStream;
+    private boolean skipLineFeed;
+    private int lineNumber;
+
+    /**
+     * Creates a new VecCommandReader.
+     *
+     * @param reader The character stream containing vec commands.
+     */
+    public VecCommandReader(Reader reader) {
+        this(reader, DEFAULT_BUFFER_SIZE);
+    }
+
+    /**
+     * Creates a new VecCommandReader with a specific initial buffer size.
+     *
+     * @param reader     The character stream containing vec commands.
+     * @param bufferSize The initial size of the line buffer; it grows if a single line is longer.
+     */
+    public VecCommandReader(Reader reader, int bufferSize) {
+        this.reader = reader;
+        this.buffer = new char[bufferSize];
+    }
+
+    /**
+     * Reads the next line and tokenizes it.
+     * The returned tokenizer is only valid until the next call.
+     *
+     * @return The tokenized line, or null if the end of the stream was reached.
+     * @throws IOException Thrown if an issue occurs while reading from the stream.
+     */
+    public VecCommandTokenizer readLine() throws IOException {
+        while (true) {
+            if (skipLineFeed) {
+                if (position == limit && !fill()) {
+                    return null;
+                }
+                if (buffer[position] == '\n') {
+                    position++;
+                }
+                skipLineFeed = false;
+            }
+
+            for (int i = position; i < limit; i++) {
+                char c = buffer[i];
+                if (c == '\n' || c == '\r') {
+                    tokenizer.reset(buffer, position, i - position);
+                    position = i + 1;
+                    skipLineFeed = c == '\r';
+                    lineNumber++;
+                    return tokenizer;
+                }
+            }
+
+            if (!fill()) {
+                if (position == limit) {
+                    return null;
+                }
+
+                //The final line of the stream has no terminator
+                tokenizer.reset(buffer, position, limit - position);
+                position = limit;
+                lineNumber++;
+                return tokenizer;
+            }
+        }
+    }
+
+    /**
+     * Reads and parses the next command in the stream.
+     * If the line is invalid, the reader still moves past it, so reading can continue on the following line.
+     *
+     * @return The command, or null if the end of the stream was reached.
+     * @throws VecCommandException Thrown if the line is not a valid vec command.
+     * @throws IOException         Thrown if an issue occurs while reading from the stream.
+     */
+    public VecCommand read() throws VecCommandException, IOException {
+        VecCommandTokenizer line = readLine();
+        return line == null ? null : VecFile.parseVecCommand(line);
+    }
+
+    /**
+     * Moves unread characters to the start of the buffer and reads more from the stream.
+     * The buffer is grown if a single line fills it completely.
+     *
+     * @return Whether any more characters were read.
+     * @throws IOException Thrown if an issue occurs while reading from the stream.
+     */
+    private boolean fill() throws IOException {
+        if (isEndOfStream) {
+            return false;
+        }
+
+        int remaining = limit - position;
+        if (remaining == buffer.length) {
+            buffer = Arrays.copyOf(buffer, buffer.length * 2);
+        } else if (position > 0) {
+            System.arraycopy(buffer, position, buffer, 0, remaining);
+        }
+        position = 0;
+        limit = remaining;
+
+        int read = reader.read(buffer, limit, buffer.length - limit);
+        while (read == 0) {
+            read = reader.read(buffer, limit, buffer.length - limit);
+        }
+
+        if (read < 0) {
+            isEndOfStream = true;
+            return false;
+        }
+
+        limit += read;
+        return true;
+    }
+
+    /**
+     * Gets the number of the line that was read last, starting from 1.
+     *
+     * @return The line number.
+     */
+    public int getLineNumber() {
+        return lineNumber;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException Thrown if an issue occurs while closing the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        reader.close();
+    }
+}
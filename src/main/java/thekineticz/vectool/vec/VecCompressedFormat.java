@@ -0,0 +1,59 @@
+package thekineticz.vectool.vec;
+
+/**
+ * Constants shared by the compressed vec reader and writer.
+ * <p>
+ * A compressed vec file is a text vec file stored as a series of gzip members, which any gzip tool can read as a
+ * single stream. Every member holds whole lines of roughly BLOCK_SIZE bytes, and its header has an extra field with
+ * the subfield id "VC" holding the length of the whole member as a little-endian 32-bit integer. The members can
+ * therefore be found without decompressing anything, and decompressed in parallel.
+ * Commands are appended to an existing file by adding new members to the end of it.
+ */
+final class VecCompressedFormat {
+
+    static final String FILE_EXTENSION = VecFile.FILE_EXTENSION + ".gz";
+
+    /**
+     * The number of uncompressed bytes after which a member is ended at the next line terminator.
+     */
+    static final int BLOCK_SIZE = 1024 * 1024;
+
+    static final int ID1 = 0x1f;
+    static final int ID2 = 0x8b;
+    static final int CM_DEFLATE = 8;
+    static final int FLG_FEXTRA = 4;
+    static final int OS_UNKNOWN = 255;
+    static final byte SUBFIELD_ID1 = 'V';
+    static final byte SUBFIELD_ID2 = 'C';
+
+    /**
+     * The length of the fixed part of a gzip header, before any extra field.
+     */
+    static final int FIXED_HEADER_LENGTH = 10;
+
+    /**
+     * The length of the header of a member written by VecCompressedOutputStream.
+     */
+    static final int HEADER_LENGTH = FIXED_HEADER_LENGTH + 2 + 8;
+
+    /**
+     * The length of the CRC32 and uncompressed size at the end of every member.
+     */
+    static final int TRAILER_LENGTH = 8;
+
+    /**
+     * Static constants only.
+     */
+    private VecCompressedFormat() {
+    }
+
+    /**
+     * Checks whether a file name has the compressed vec extension.
+     *
+     * @param name The file name.
+     * @return Whether the file is a compressed vec file.
+     */
+    static boolean isCompressedFileName(String name) {
+        return name.endsWith("." + FILE_EXTENSION);
+    }
+}
@@ -0,0 +1,536 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.file.StandardOpenOption;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+import java.util.zip.CRC32;
+import java.util.zip.DataFormatException;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+import static thekineticz.vectool.vec.VecCompressedFormat.*;
+
+/**
+ * Loads compressed vec files. Files written by VecCompressedOutputStream have the length of every gzip member in
+ * its header, so the members are decompressed and parsed in parallel and stitched back together in file order.
+ * Any other gzip file is decompressed as a single stream instead. A file can also be opened as a
+ * ParallelCommandReader, which hands out each member once it is parsed.
+ */
+class VecCompressedLoader {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+    private static final int STREAM_PART_SIZE = 64 * 1024;
+    private static final int NO_BYTE = -1;
+
+    //The largest array that can be allocated, and the most that deflate can expand its input by, so lengths read
+    //from a file can be checked before anything that size is allocated
+    private static final int MAX_ARRAY_LENGTH = Integer.MAX_VALUE - 8;
+    private static final int MAX_DEFLATE_RATIO = 1032;
+
+    /**
+     * Parses every command in a compressed vec file and appends them to a list in file order.
+     *
+     * @param file     The compressed vec file.
+     * @param commands The list the commands are added to.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command. If several lines are invalid,
+     *                             the error of the first one in the file is thrown.
+     * @throws IOException         Thrown if an issue occurs during file IO, or the file isn't valid gzip.
+     */
+    static void load(File file, List<VecCommand> commands) throws VecCommandException, IOException {
+        try (ParallelCommandReader reader = open(file)) {
+            reader.readAll(commands);
+        }
+    }
+
+    /**
+     * Starts decompressing and parsing every member of a compressed vec file in parallel, so the commands can be
+     * read in file order while the later members are still being parsed. Files without member lengths in their
+     * headers are read as a single stream, in parts of STREAM_PART_SIZE commands.
+     *
+     * @param file The compressed vec file.
+     * @return The reader, which must be closed once it is no longer needed.
+     * @throws IOException Thrown if an issue occurs during file IO.
+     */
+    static ParallelCommandReader open(File file) throws IOException {
+        FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ);
+
+        try {
+            long[] memberOffsets = findMembers(channel);
+            if (memberOffsets == null) {
+                return new MemberReader(file, channel, null);
+            }
+
+            MemberTask[] members = new MemberTask[memberOffsets.length - 1];
+            for (int i = 0; i < members.length; i++) {
+                members[i] = new MemberTask(channel, memberOffsets[i], memberOffsets[i + 1]);
+                ForkJoinPool.commonPool().execute(members[i]);
+            }
+            return new MemberReader(file, channel, members);
+        } catch (IOException e) {
+            channel.close();
+            throw e;
+        }
+    }
+
+    /**
+     * Opens a compressed vec file as a stream of its decompressed text.
+     *
+     * @param file The compressed vec file.
+     * @return The decompressed stream.
+     * @throws IOException Thrown if the file can't be opened or doesn't start with a gzip header.
+     */
+    static InputStream openStream(File file) throws IOException {
+        return openStream(new FileInputStream(file));
+    }
+
+    /**
+     * Wraps a stream of a compressed vec file in a stream of its decompressed text.
+     *
+     * @param in The compressed stream.
+     * @return The decompressed stream.
+     * @throws IOException Thrown if the stream doesn't start with a gzip header.
+     */
+    static InputStream openStream(InputStream in) throws IOException {
+        return new GZIPInputStream(in, STREAM_BUFFER_SIZE);
+    }
+
+    /**
+     * Checks whether the decompressed text of a file ends with a line terminator.
+     * Only the last member is decompressed if the members can be found from their headers.
+     *
+     * @param file The compressed vec file.
+     * @return Whether the text ends with a line terminator.
+     * @throws IOException Thrown if an issue occurs during file IO, or the file isn't valid gzip.
+     */
+    static boolean endsWithLineTerminator(File file) throws IOException {
+        int lastByte = NO_BYTE;
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            long[] memberOffsets = findMembers(channel);
+            if (memberOffsets != null) {
+                //Empty members are skipped, since they don't change the end of the text
+                for (int i = memberOffsets.length - 2; i >= 0 && lastByte == NO_BYTE; i--) {
+                    byte[] text = inflateMember(channel, memberOffsets[i], memberOffsets[i + 1]);
+                    lastByte = text.length > 0 ? text[text.length - 1] : NO_BYTE;
+                }
+                return isLineTerminator(lastByte);
+            }
+        }
+
+        try (InputStream in = openStream(file)) {
+            byte[] buffer = new byte[STREAM_BUFFER_SIZE];
+            for (int read = in.read(buffer); read >= 0; read = in.read(buffer)) {
+                if (read > 0) {
+                    lastByte = buffer[read - 1];
+                }
+            }
+        }
+        return isLineTerminator(lastByte);
+    }
+
+    /**
+     * Finds the offset of every member from the length stored in its header.
+     *
+     * @param channel The channel of the file.
+     * @return The offset of every member followed by the length of the file, or null if any member doesn't
+     * record its length.
+     * @throws IOException Thrown if an issue occurs during file IO.
+     */
+    private static long[] findMembers(FileChannel channel) throws IOException {
+        long size = channel.size();
+        ArrayList<Long> offsets = new ArrayList<>();
+        ByteBuffer header = ByteBuffer.allocate(HEADER_LENGTH);
+        long position = 0;
+
+        while (position < size) {
+            header.clear();
+            while (header.hasRemaining() && channel.read(header, position + header.position()) >= 0) {
+                //Keep reading until the header is complete or the file ends
+            }
+
+            long memberLength = readMemberLength(header);
+            if (memberLength < HEADER_LENGTH + TRAILER_LENGTH || position + memberLength > size) {
+                return null;
+            }
+
+            offsets.add(position);
+            position += memberLength;
+        }
+
+        if (offsets.isEmpty()) {
+            return null;
+        }
+
+        long[] result = new long[offsets.size() + 1];
+        for (int i = 0; i < offsets.size(); i++) {
+            result[i] = offsets.get(i);
+        }
+        result[offsets.size()] = size;
+        return result;
+    }
+
+    /**
+     * Reads the member length from a header written by VecCompressedOutputStream.
+     *
+     * @param header The first HEADER_LENGTH bytes of the member.
+     * @return The length of the member, or -1 if the header doesn't have the expected layout.
+     */
+    private static long readMemberLength(ByteBuffer header) {
+        if (header.position() < HEADER_LENGTH
+                || (header.get(0) & 0xff) != ID1 || (header.get(1) & 0xff) != ID2 || header.get(2) != CM_DEFLATE
+                || header.get(3) != FLG_FEXTRA || readShortLE(header, 10) != 8
+                || header.get(12) != SUBFIELD_ID1 || header.get(13) != SUBFIELD_ID2 || readShortLE(header, 14) != 4) {
+            return -1;
+        }
+
+        return readIntLE(header, 16) & 0xffffffffL;
+    }
+
+    /**
+     * Checks whether a byte ends a line.
+     *
+     * @param b The byte, or NO_BYTE.
+     * @return Whether the byte is a line feed or carriage return.
+     */
+    private static boolean isLineTerminator(int b) {
+        return b == '\n' || b == '\r';
+    }
+
+    /**
+     * Reads and decompresses a single member, checking its CRC32 and length.
+     *
+     * @param channel The channel of the file.
+     * @param start   The offset of the member.
+     * @param end     The offset after the member.
+     * @return The decompressed bytes.
+     * @throws IOException Thrown if an issue occurs during file IO, or a ZipException if the member is corrupt.
+     */
+    private static byte[] inflateMember(FileChannel channel, long start, long end) throws IOException {
+        if (end - start < HEADER_LENGTH + TRAILER_LENGTH || end - start > MAX_ARRAY_LENGTH) {
+            throw new ZipException("Compressed VEC file has a member of an invalid length.");
+        }
+
+        ByteBuffer member = ByteBuffer.allocate((int) (end - start));
+        while (member.hasRemaining()) {
+            if (channel.read(member, start + member.position()) < 0) {
+                throw new EOFException("Compressed VEC file ended unexpectedly.");
+            }
+        }
+
+        //The trailer's length can't be trusted until the member has been decompressed
+        int length = member.capacity();
+        long textLength = readIntLE(member, length - 4) & 0xffffffffL;
+        if (textLength > MAX_ARRAY_LENGTH || textLength > (long) MAX_DEFLATE_RATIO * length) {
+            throw new ZipException("Compressed VEC file has a member of an invalid length.");
+        }
+
+        byte[] text = new byte[(int) textLength];
+        Inflater inflater = new Inflater(true);
+
+        try {
+            inflater.setInput(member.array(), HEADER_LENGTH, length - HEADER_LENGTH - TRAILER_LENGTH);
+            int inflated = 0;
+            while (inflated < text.length && !inflater.finished()) {
+                int read = inflater.inflate(text, inflated, text.length - inflated);
+                if (read == 0 && (inflater.needsInput() || inflater.needsDictionary())) {
+                    break;
+                }
+                inflated += read;
+            }
+
+            //The member must decompress to exactly the length recorded in its trailer
+            if (inflated != text.length || (!inflater.finished() && inflater.inflate(new byte[1]) != 0)) {
+                throw new ZipException("Compressed VEC file is corrupt.");
+            }
+        } catch (DataFormatException e) {
+            ZipException zipException = new ZipException("Compressed VEC file is corrupt.");
+            zipException.initCause(e);
+            throw zipException;
+        } finally {
+            inflater.end();
+        }
+
+        CRC32 crc = new CRC32();
+        crc.update(text);
+        if ((int) crc.getValue() != readIntLE(member, length - TRAILER_LENGTH)) {
+            throw new ZipException("Compressed VEC file is corrupt.");
+        }
+
+        return text;
+    }
+
+    /**
+     * Reads a little-endian 16-bit integer.
+     *
+     * @param buffer The buffer.
+     * @param index  The index of the first byte.
+     * @return The value.
+     */
+    private static int readShortLE(ByteBuffer buffer, int index) {
+        return (buffer.get(index) & 0xff) | (buffer.get(index + 1) & 0xff) << 8;
+    }
+
+    /**
+     * Reads a little-endian 32-bit integer.
+     *
+     * @param buffer The buffer.
+     * @param index  The index of the first byte.
+     * @return The value.
+     */
+    private static int readIntLE(ByteBuffer buffer, int index) {
+        return readShortLE(buffer, index) | readShortLE(buffer, index + 2) << 16;
+    }
+
+    /**
+     * Hands out the commands of every member of a file in file order, as each member finishes parsing.
+     * A member is only handed out once the next one has been parsed, since a line split between them would have
+     * been parsed as two broken lines. If that happens, the rest of the file is read as a single stream instead.
+     */
+    private static class MemberReader implements ParallelCommandReader {
+
+        private final File file;
+        private final FileChannel channel;
+        private final MemberTask[] members;
+        private int nextMember;
+        private MemberTask pendingMember;
+        //The start of the file behaves like the end of a line
+        private int previousLastByte = '\n';
+        private int readCount;
+        private FileInputStream streamIn;
+        private VecCommandReader streamReader;
+        private boolean isStreamed;
+
+        /**
+         * Creates a new member reader.
+         *
+         * @param file    The compressed vec file.
+         * @param channel The channel of the file, which is closed with the reader.
+         * @param members The member tasks, which have already been started, or null to read the file as a stream.
+         */
+        MemberReader(File file, FileChannel channel, MemberTask[] members) {
+            this.file = file;
+            this.channel = channel;
+            this.members = members != null ? members : new MemberTask[0];
+            this.isStreamed = members == null;
+        }
+
+        /**
+         * Waits for the next member to be parsed, or reads the next part of the stream.
+         *
+         * @return The commands of the member or part, or null once every command has been read.
+         * @throws VecCommandException Thrown if an issue occurs while parsing a command.
+         * @throws IOException         Thrown if an issue occurs during file IO, or a member is corrupt.
+         */
+        @Override
+        public CommandBuffer next() throws VecCommandException, IOException {
+            while (!isStreamed && nextMember < members.length) {
+                MemberTask member = members[nextMember];
+                member.finish();
+                nextMember++;
+                if (member.length == 0) {
+                    continue;
+                }
+
+                if (!isLineTerminator(previousLastByte) && member.skippedTerminator == NO_BYTE) {
+                    isStreamed = true;
+                    pendingMember = null;
+                    cancelMembers();
+                    break;
+                }
+
+                //A leading terminator after the end of a line is an empty line
+                member.isEmptyLineFirst = isLineTerminator(previousLastByte) && member.skippedTerminator != NO_BYTE
+                        && !(previousLastByte == '\r' && member.skippedTerminator == '\n');
+                previousLastByte = member.lastByte;
+
+                MemberTask previousMember = pendingMember;
+                pendingMember = member;
+                if (previousMember != null) {
+                    return takeCommands(previousMember);
+                }
+            }
+
+            if (!isStreamed) {
+                MemberTask lastMember = pendingMember;
+                pendingMember = null;
+                return lastMember != null ? takeCommands(lastMember) : null;
+            }
+
+            return readStreamPart();
+        }
+
+        /**
+         * Takes the commands of a member that has been checked against the member after it.
+         *
+         * @param member The member.
+         * @return The commands.
+         * @throws VecCommandException Thrown if the member has an invalid line.
+         */
+        private CommandBuffer takeCommands(MemberTask member) throws VecCommandException {
+            if (member.isEmptyLineFirst) {
+                //Reports the empty line the same way as reading the file line by line
+                VecFile.parseVecCommand(new VecCommandTokenizer(""));
+            }
+            if (member.commandError != null) {
+                throw member.commandError;
+            }
+
+            CommandBuffer commands = member.commands;
+            member.commands = null;
+            readCount += commands.size();
+            return commands;
+        }
+
+        /**
+         * Reads the next part of the file as a stream, skipping the commands already read from members.
+         *
+         * @return The commands of the part, or null once every command has been read.
+         * @throws VecCommandException Thrown if an issue occurs while parsing a command.
+         * @throws IOException         Thrown if an issue occurs during file IO, or the file isn't valid gzip.
+         */
+        private CommandBuffer readStreamPart() throws VecCommandException, IOException {
+            if (streamReader == null) {
+                streamIn = new FileInputStream(file);
+                streamReader = new VecCommandReader(new InputStreamReader(openStream(streamIn)));
+                for (int i = 0; i < readCount; i++) {
+                    streamReader.read();
+                }
+            }
+
+            CommandBuffer commands = new CommandBuffer();
+            for (VecCommand command = streamReader.read(); command != null; command = streamReader.read()) {
+                commands.add(command);
+                if (commands.size() == STREAM_PART_SIZE) {
+                    break;
+                }
+            }
+            return commands.isEmpty() ? null : commands;
+        }
+
+        /**
+         * Gets how much of the file has been read.
+         *
+         * @return The fraction of the members, or of the compressed stream, that has been read, between 0 and 1.
+         */
+        @Override
+        public double getProgress() {
+            if (!isStreamed) {
+                return members.length == 0 ? 1 : (double) nextMember / members.length;
+            }
+
+            try {
+                //Includes bytes that have been buffered but not parsed yet
+                return streamIn == null ? 0 : Math.min(1, (double) streamIn.getChannel().position() / channel.size());
+            } catch (IOException e) {
+                return 0;
+            }
+        }
+
+        /**
+         * Cancels the members that haven't started yet. Members that have already started finish on their own.
+         */
+        private void cancelMembers() {
+            for (int i = nextMember; i < members.length; i++) {
+                members[i].cancel(false);
+            }
+        }
+
+        /**
+         * Cancels the members that haven't been read and closes the file.
+         *
+         * @throws IOException Thrown if an issue occurs while closing the file.
+         */
+        @Override
+        public void close() throws IOException {
+            cancelMembers();
+            channel.close();
+            if (streamReader != null) {
+                streamReader.close();
+            }
+        }
+    }
+
+    /**
+     * Decompresses and parses the lines of a single member.
+     * A member may start with the line terminator of the previous member's last line, which is skipped and
+     * recorded so that the loader can check it once every member is done.
+     * Errors are stored rather than thrown so the loader can report the first error in file order.
+     */
+    private static class MemberTask extends RecursiveAction {
+
+        private final FileChannel channel;
+        private final long start;
+        private final long end;
+        private CommandBuffer commands = new CommandBuffer();
+        private int length;
+        private int skippedTerminator = NO_BYTE;
+        private int lastByte = NO_BYTE;
+        private boolean isEmptyLineFirst;
+        private VecCommandException commandError;
+        private IOException ioError;
+
+        /**
+         * Creates a new member task.
+         *
+         * @param channel The channel of the file.
+         * @param start   The offset of the member.
+         * @param end     The offset after the member.
+         */
+        MemberTask(FileChannel channel, long start, long end) {
+            this.channel = channel;
+            this.start = start;
+            this.end = end;
+        }
+
+        /**
+         * Waits for the member to be parsed, and throws its IO error if there was one. Errors parsing commands are
+         * left for the reader to report in file order.
+         *
+         * @throws IOException Thrown if an issue occurred during file IO, or the member is corrupt.
+         */
+        void finish() throws IOException {
+            join();
+
+            if (ioError != null) {
+                throw ioError;
+            }
+        }
+
+        /**
+         * Decompresses the member and parses every line in it.
+         */
+        @Override
+        protected void compute() {
+            try {
+                byte[] text = inflateMember(channel, start, end);
+                length = text.length;
+                if (length == 0) {
+                    return;
+                }
+                lastByte = text[length - 1];
+
+                int offset = 0;
+                if (text[0] == '\n' || text[0] == '\r') {
+                    skippedTerminator = text[0];
+                    offset = text[0] == '\r' && length > 1 && text[1] == '\n' ? 2 : 1;
+                }
+
+                MappedVecLoader.parseLines(ByteBuffer.wrap(text, offset, length - offset).slice(), (command, lineStart) -> commands.add(command));
+            } catch (VecCommandException e) {
+                commandError = e;
+            } catch (IOException e) {
+                ioError = e;
+            }
+        }
+    }
+}
@@ -0,0 +1,177 @@
+package thekineticz.vectool.vec;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.util.Arrays;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+
+import static thekineticz.vectool.vec.VecCompressedFormat.*;
+
+/**
+ * Compresses the text of a vec file into the block gzip format described by VecCompressedFormat.
+ * Bytes are buffered until a block is full and then written as a gzip member ending at a line terminator, so the
+ * members of the file can be decompressed and parsed independently. Any bytes left are written as a final member
+ * when the stream is closed.
+ */
+public class VecCompressedOutputStream extends OutputStream {
+
+    private final OutputStream out;
+    private final Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, true);
+    private final CRC32 crc = new CRC32();
+    private byte[] block = new byte[BLOCK_SIZE + 1024];
+    private byte[] compressed = new byte[BLOCK_SIZE / 2];
+    private int count;
+    private boolean isMemberWritten;
+    private boolean isClosed;
+
+    /**
+     * Creates a new compressed stream. The stream doesn't write a file header, so it can also be used to append
+     * new members to the end of an existing compressed file.
+     *
+     * @param out The stream that the members are written to.
+     */
+    public VecCompressedOutputStream(OutputStream out) {
+        this.out = out;
+    }
+
+    /**
+     * Writes a single byte.
+     *
+     * @param b The byte.
+     * @throws IOException Thrown if an issue occurs while writing a member.
+     */
+    @Override
+    public void write(int b) throws IOException {
+        write(new byte[]{(byte) b}, 0, 1);
+    }
+
+    /**
+     * Writes bytes, ending members at line terminators whenever a block fills.
+     *
+     * @param bytes  The bytes.
+     * @param offset The offset of the first byte.
+     * @param length The number of bytes.
+     * @throws IOException Thrown if an issue occurs while writing a member.
+     */
+    @Override
+    public void write(byte[] bytes, int offset, int length) throws IOException {
+        if (count + length > block.length) {
+            block = Arrays.copyOf(block, Math.max(block.length * 2, count + length));
+        }
+        System.arraycopy(bytes, offset, block, count, length);
+        count += length;
+
+        if (count >= BLOCK_SIZE) {
+            //A line longer than the block is kept whole, and ends the member once it is terminated
+            int split = findLastLineEnd();
+            if (split > 0) {
+                writeMember(split);
+                System.arraycopy(block, split, block, 0, count - split);
+                count -= split;
+            }
+        }
+    }
+
+    /**
+     * Finds the end of the last complete line in the block. A carriage return at the very end of the block is
+     * skipped, since it may be followed by a line feed that hasn't been written yet.
+     *
+     * @return The index after the last line terminator, or 0 if there is no complete line.
+     */
+    private int findLastLineEnd() {
+        for (int i = count - 1; i >= 0; i--) {
+            if (block[i] == '\n' || (block[i] == '\r' && i + 1 < count)) {
+                return i + 1;
+            }
+        }
+        return 0;
+    }
+
+    /**
+     * Compresses the start of the block and writes it as a single gzip member.
+     *
+     * @param length The number of bytes in the member.
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    private void writeMember(int length) throws IOException {
+        deflater.reset();
+        deflater.setInput(block, 0, length);
+        deflater.finish();
+
+        int compressedLength = 0;
+        while (!deflater.finished()) {
+            if (compressedLength == compressed.length) {
+                compressed = Arrays.copyOf(compressed, compressed.length * 2);
+            }
+            compressedLength += deflater.deflate(compressed, compressedLength, compressed.length - compressedLength);
+        }
+
+        crc.reset();
+        crc.update(block, 0, length);
+
+        byte[] header = {
+                (byte) ID1, (byte) ID2, CM_DEFLATE, FLG_FEXTRA, 0, 0, 0, 0, 0, (byte) OS_UNKNOWN,
+                8, 0, SUBFIELD_ID1, SUBFIELD_ID2, 4, 0, 0, 0, 0, 0
+        };
+        writeIntLE(header, HEADER_LENGTH - 4, HEADER_LENGTH + compressedLength + TRAILER_LENGTH);
+
+        byte[] trailer = new byte[TRAILER_LENGTH];
+        writeIntLE(trailer, 0, (int) crc.getValue());
+        writeIntLE(trailer, 4, length);
+
+        out.write(header);
+        out.write(compressed, 0, compressedLength);
+        out.write(trailer);
+        isMemberWritten = true;
+    }
+
+    /**
+     * Stores a little-endian 32-bit integer in an array.
+     *
+     * @param bytes  The array.
+     * @param offset The offset of the first byte.
+     * @param value  The value.
+     */
+    private static void writeIntLE(byte[] bytes, int offset, int value) {
+        bytes[offset] = (byte) value;
+        bytes[offset + 1] = (byte) (value >>> 8);
+        bytes[offset + 2] = (byte) (value >>> 16);
+        bytes[offset + 3] = (byte) (value >>> 24);
+    }
+
+    /**
+     * Flushes the underlying stream. Bytes in an unfinished block are only written once the block fills or the
+     * stream is closed.
+     *
+     * @throws IOException Thrown if an issue occurs while flushing the stream.
+     */
+    @Override
+    public void flush() throws IOException {
+        out.flush();
+    }
+
+    /**
+     * Writes any remaining bytes as the last member and closes the underlying stream.
+     * An empty member is written if nothing else was, so the result is always a valid gzip file.
+     *
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (isClosed) {
+            return;
+        }
+        isClosed = true;
+
+        try {
+            if (count > 0 || !isMemberWritten) {
+                writeMember(count);
+                count = 0;
+            }
+        } finally {
+            deflater.end();
+            out.close();
+        }
+    }
+}
@@ -3,28 +3,68 @@ package thekineticz.vectool.vec;
 import thekineticz.vectool.exception.VecCommandException;
 import thekineticz.vectool.vec.commands.*;
 import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandRegistry;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
 
 import java.io.*;
 import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
 
 /**
  * The internal representation of a VEC file that contains the file's name and array of commands.
  * When creating or loading a VEC file, an instance of this will be generated for the program to work with internally.
  * When saved, an instance of this class will be exported in the standard VEC file format.
  */
-public class VecFile {
+public class VecFile implements Closeable {
 
     public static final String FILE_EXTENSION = "vec";
+    public static final String BINARY_FILE_EXTENSION = VecBinaryFormat.FILE_EXTENSION;
+    public static final String COMPRESSED_FILE_EXTENSION = VecCompressedFormat.FILE_EXTENSION;
     private static final String FILL_OFF = FillCommand.FILL_OFF;
-    private static final String DEFAULT_PEN_COLOUR = "#000000";
-    private static final String DEFAULT_FILL_COLOUR = FILL_OFF;
+    public static final String DEFAULT_PEN_COLOUR = "#000000";
+    public static final String DEFAULT_FILL_COLOUR = FILL_OFF;
+    public static final int DEFAULT_PEN_RGB = 0x000000;
+    public static final int DEFAULT_FILL_RGB = VecColour.NONE;
+    private static final int NO_PERSISTED_PREFIX = -1;
 
     private String directory;
     private String filename;
+    private String extension;
     private boolean isSaved;
-    private ArrayList<VecCommand> commands;
-    private String latestPenColour = DEFAULT_PEN_COLOUR;
-    private String latestFillColour = DEFAULT_FILL_COLOUR;
+    private boolean isLoading;
+    private boolean isClosed;
+    private List<VecCommand> commands;
+    private int latestPenColour = DEFAULT_PEN_RGB;
+    private int latestFillColour = DEFAULT_FILL_RGB;
+
+    //The number of leading commands that are known to be stored unchanged in the external file
+    private int persistedCount = NO_PERSISTED_PREFIX;
+    private long persistedLength;
+
+    //Counts every change to the commands, so a save can tell whether anything changed while it was being written
+    private long modificationCount;
+    private final ArrayList<VecFileSnapshot> outstandingSnapshots = new ArrayList<>();
+    private final ArrayList<CommandListener> commandListeners = new ArrayList<>();
+
+    //Only built once something asks for it, since paged files may be too large to index
+    private SpatialIndex spatialIndex;
+
+    /**
+     * Receives notice of changes to the commands of a VecFile.
+     */
+    public interface CommandListener {
+
+        /**
+         * Called after commands have been added or removed. Every command before the given index is unchanged,
+         * so commands were only appended if the index is the number of commands there were before the change.
+         *
+         * @param firstChangedIndex The index of the first command that may have changed.
+         */
+        void commandsChanged(int firstChangedIndex);
+    }
 
     /**
      * Creates an internal VEC class from a file.
@@ -34,8 +74,9 @@ public class VecFile {
     public VecFile(File file) throws VecCommandException, IOException {
         this.directory = file.getParent();
         this.filename = removeExtension(file.getName());
+        this.extension = getFormatExtension(file);
         isSaved = true;
-        commands = new ArrayList<>();
+        commands = new CommandBuffer();
         open(file);
         updateLatestColours();
     }
@@ -49,8 +90,9 @@ public class VecFile {
     public VecFile(String directory, String filename) throws VecCommandException, IOException {
         this.directory = directory;
         this.filename = filename;
+        this.extension = FILE_EXTENSION;
         isSaved = true;
-        commands = new ArrayList<>();
+        commands = new CommandBuffer();
         open(directory, filename);
         updateLatestColours();
     }
@@ -63,8 +105,60 @@ public class VecFile {
     public VecFile(String filename) {
         this.directory = null;
         this.filename = filename;
+        this.extension = FILE_EXTENSION;
         isSaved = false;
-        commands = new ArrayList<>();
+        commands = new CommandBuffer();
+    }
+
+    /**
+     * Creates an internal VEC class for a file that hasn't been read yet.
+     * The commands are added in batches from a VecFileLoader with addLoadedCommands, and the VecFile shouldn't be
+     * edited or saved until finishLoading has been called.
+     *
+     * @param file The file being imported.
+     * @return The VecFile, without any commands.
+     */
+    public static VecFile createLoading(File file) {
+        VecFile vecFile = new VecFile(file.getName());
+        vecFile.directory = file.getParent();
+        vecFile.filename = vecFile.removeExtension(file.getName());
+        vecFile.extension = getFormatExtension(file);
+        vecFile.isSaved = true;
+        vecFile.isLoading = true;
+        return vecFile;
+    }
+
+    /**
+     * Adds a batch of commands read by a VecFileLoader to the end of the command array.
+     * Unlike addCommand, every command is kept exactly as it was in the file.
+     *
+     * @param loadedCommands The commands.
+     */
+    public void addLoadedCommands(List<VecCommand> loadedCommands) {
+        int firstChangedIndex = commands.size();
+        if (commands instanceof CommandBuffer && loadedCommands instanceof CommandBuffer) {
+            ((CommandBuffer) commands).append((CommandBuffer) loadedCommands);
+        } else {
+            commands.addAll(loadedCommands);
+        }
+        fireCommandsChanged(firstChangedIndex);
+    }
+
+    /**
+     * Completes loading a VecFile once a VecFileLoader has read every command.
+     *
+     * @param loader The loader that read the file.
+     */
+    public void finishLoading(VecFileLoader loader) {
+        if (loader.getPagedCommands() != null) {
+            commands = loader.getPagedCommands();
+            spatialIndex = null;
+            fireCommandsChanged(0);
+        }
+
+        markPersisted(loader.getFile());
+        updateLatestColours();
+        isLoading = false;
     }
 
     /**
@@ -74,9 +168,48 @@ public class VecFile {
      * @return The output filename, without extension.
      */
     private String removeExtension(String string) {
+        if (VecCompressedFormat.isCompressedFileName(string)) {
+            return string.substring(0, string.length() - COMPRESSED_FILE_EXTENSION.length() - 1);
+        }
         return string.replaceFirst("[.][^.]+$", "");
     }
 
+    /**
+     * Gets the extension of the format a file is stored in, based on its name.
+     * Anything that isn't a binary or compressed VEC file is treated as a text VEC file.
+     *
+     * @param file The file.
+     * @return The extension of the file format.
+     */
+    private static String getFormatExtension(File file) {
+        if (VecBinaryFormat.isBinaryFileName(file.getName())) {
+            return BINARY_FILE_EXTENSION;
+        } else if (VecCompressedFormat.isCompressedFileName(file.getName())) {
+            return COMPRESSED_FILE_EXTENSION;
+        }
+        return FILE_EXTENSION;
+    }
+
+    /**
+     * Checks whether a file is stored in the binary VEC format, based on its name.
+     *
+     * @param file The file.
+     * @return Whether the file is a binary VEC file.
+     */
+    public static boolean isBinaryFile(File file) {
+        return VecBinaryFormat.isBinaryFileName(file.getName());
+    }
+
+    /**
+     * Checks whether a file is a gzip compressed text VEC file, based on its name.
+     *
+     * @param file The file.
+     * @return Whether the file is a compressed VEC file.
+     */
+    public static boolean isCompressedFile(File file) {
+        return VecCompressedFormat.isCompressedFileName(file.getName());
+    }
+
     /**
      * Adds a new command to the end of the command array.
      *
@@ -86,21 +219,23 @@ public class VecFile {
 
         //Optimises colour command creation and updates latest colours.
         if (command instanceof PenCommand) {
-            if (((PenCommand) command).getColour().equals(latestPenColour)) {
+            if (((PenCommand) command).getRgb() == latestPenColour) {
                 return;
             } else {
-                latestPenColour = ((PenCommand) command).getColour();
+                latestPenColour = ((PenCommand) command).getRgb();
             }
         } else if (command instanceof FillCommand) {
-            if (((FillCommand) command).getColour().equals(latestFillColour)) {
+            if (((FillCommand) command).getRgb() == latestFillColour) {
                 return;
             } else {
-                latestFillColour = ((FillCommand) command).getColour();
+                latestFillColour = ((FillCommand) command).getRgb();
             }
         }
 
         commands.add(command);
+        modificationCount++;
         isSaved = false;
+        fireCommandsChanged(commands.size() - 1);
     }
 
     /**
@@ -110,19 +245,70 @@ public class VecFile {
         if (!commands.isEmpty()) {
             commands.remove(commands.size() - 1);
 
-            while (!commands.isEmpty()) {
-                VecCommand latestCommand = commands.get(commands.size() - 1);
-                if (latestCommand instanceof PenCommand) {
-                    commands.remove(commands.size() - 1);
-                } else if (latestCommand instanceof FillCommand) {
-                    commands.remove(commands.size() - 1);
-                } else {
-                    break;
-                }
+            while (!commands.isEmpty() && isColourCommand(commands.size() - 1)) {
+                commands.remove(commands.size() - 1);
+            }
+
+            //The external file can no longer be brought up to date by appending to it
+            if (commands.size() < persistedCount) {
+                persistedCount = NO_PERSISTED_PREFIX;
+            }
+
+            for (VecFileSnapshot snapshot : outstandingSnapshots) {
+                snapshot.recordUndo(commands.size());
             }
 
             updateLatestColours();
+            modificationCount++;
             isSaved = false;
+            fireCommandsChanged(commands.size());
+        }
+    }
+
+    /**
+     * Adds a listener that is told about every change to the commands.
+     *
+     * @param listener The listener.
+     */
+    public void addCommandListener(CommandListener listener) {
+        commandListeners.add(listener);
+    }
+
+    /**
+     * Removes a listener added with addCommandListener.
+     *
+     * @param listener The listener.
+     */
+    public void removeCommandListener(CommandListener listener) {
+        commandListeners.remove(listener);
+    }
+
+    /**
+     * Gets a spatial index over the commands, building it the first time this is called.
+     * From then on it is kept in sync with the commands, before any listeners are told about a change.
+     *
+     * @return The spatial index.
+     */
+    public SpatialIndex getSpatialIndex() {
+        if (spatialIndex == null) {
+            spatialIndex = new SpatialIndex();
+            spatialIndex.update(commands, 0);
+        }
+        return spatialIndex;
+    }
+
+    /**
+     * Tells the listeners that the commands have changed, after updating the spatial index if there is one.
+     *
+     * @param firstChangedIndex The index of the first command that may have changed.
+     */
+    private void fireCommandsChanged(int firstChangedIndex) {
+        if (spatialIndex != null) {
+            spatialIndex.update(commands, firstChangedIndex);
+        }
+
+        for (CommandListener listener : commandListeners) {
+            listener.commandsChanged(firstChangedIndex);
         }
     }
 
@@ -132,13 +318,7 @@ public class VecFile {
      * @throws IOException Thrown if an error occurs while writing to file.
      */
     public void save() throws IOException {
-        if (directory != null) {
-            exportToFile(new File(String.format("%s/%s.%s", directory, filename, FILE_EXTENSION)));
-            isSaved = true;
-        } else {
-            throw new IOException("New file must have a directory specified with saveAs.");
-        }
-
+        writeSnapshot(createSaveSnapshot());
     }
 
     /**
@@ -148,11 +328,7 @@ public class VecFile {
      * @param filename  The name of the file, not including extension.
      */
     public void saveAs(String directory, String filename) throws IOException {
-        exportToFile(new File(String.format("%s/%s.%s", directory, filename, FILE_EXTENSION)));
-
-        this.directory = directory;
-        this.filename = filename;
-        isSaved = true;
+        writeSnapshot(createSaveSnapshot(new File(String.format("%s/%s.%s", directory, filename, extension))));
     }
 
     /**
@@ -161,37 +337,162 @@ public class VecFile {
      * @param file The file to be saved to.
      */
     public void saveAs(File file) throws IOException {
-        if (file.toString().endsWith(VecFile.FILE_EXTENSION)) {
-            exportToFile(file);
-        } else {
-            exportToFile(new File(String.format("%s.%s", file.getAbsolutePath(), VecFile.FILE_EXTENSION)));
+        writeSnapshot(createSaveSnapshot(file));
+    }
+
+    /**
+     * Writes a snapshot on the current thread and completes the save.
+     *
+     * @param snapshot The snapshot.
+     * @throws IOException Thrown if an error occurs while writing to file.
+     */
+    private void writeSnapshot(VecFileSnapshot snapshot) throws IOException {
+        try {
+            snapshot.write(null);
+        } catch (IOException e) {
+            abandonSave(snapshot);
+            throw e;
         }
+        completeSave(snapshot);
+    }
 
-        directory = file.getParent();
-        filename = removeExtension(file.getName());
-        isSaved = true;
+    /**
+     * Takes a snapshot of the current state of the VecFile, to be saved to it's stored filepath.
+     * Only the commands added since the last save are written, unless an undo has removed commands that were
+     * already saved.
+     *
+     * @return The snapshot.
+     * @throws IOException Thrown if the VecFile doesn't have a stored filepath.
+     */
+    public VecFileSnapshot createSaveSnapshot() throws IOException {
+        if (directory == null) {
+            throw new IOException("New file must have a directory specified with saveAs.");
+        }
+
+        File file = new File(String.format("%s/%s.%s", directory, filename, extension));
+
+        //Another snapshot may still change the file before this one is written, so only append if there is none
+        int appendFrom = outstandingSnapshots.isEmpty() && canAppendTo(file) ? persistedCount : VecFileSnapshot.NO_APPEND;
+        return createSnapshot(file, appendFrom);
     }
 
     /**
-     * Writes the current state of the VecFile to a file.
+     * Takes a snapshot of the current state of the VecFile, to be saved to a new filepath.
+     * The format is chosen by the file's extension, and files without a VEC extension are given the text one.
      *
      * @param file The file to be saved to.
-     * @throws IOException Thrown if an error occurs while writing to file.
+     * @return The snapshot.
      */
-    private void exportToFile(File file) throws IOException {
-        //Try to write all the commands in their string form to a new line in the file
-        try (BufferedWriter writer = new BufferedWriter(new FileWriter(file))) {
+    public VecFileSnapshot createSaveSnapshot(File file) {
+        if (!file.toString().endsWith(VecFile.FILE_EXTENSION) && !file.toString().endsWith(VecFile.BINARY_FILE_EXTENSION)
+                && !file.toString().endsWith(VecFile.COMPRESSED_FILE_EXTENSION)) {
+            file = new File(String.format("%s.%s", file.getAbsolutePath(), VecFile.FILE_EXTENSION));
+        }
 
-            if (!commands.isEmpty()) {
-                writer.write(commands.get(0).toString());
+        return createSnapshot(file, VecFileSnapshot.NO_APPEND);
+    }
 
-                for (int i = 1; i < commands.size(); i++) {
-                    writer.newLine();
-                    writer.write(commands.get(i).toString());
-                }
+    /**
+     * Takes a snapshot of the current commands.
+     *
+     * @param file       The file the snapshot will be saved to.
+     * @param appendFrom The index of the first command that isn't already in the file, or NO_APPEND.
+     * @return The snapshot.
+     */
+    private VecFileSnapshot createSnapshot(File file, int appendFrom) {
+        List<VecCommand> copy;
+        if (commands instanceof PagedCommandList) {
+            copy = ((PagedCommandList) commands).snapshot();
+        } else if (commands instanceof CommandBuffer) {
+            copy = ((CommandBuffer) commands).copy();
+        } else {
+            copy = Collections.unmodifiableList(Arrays.asList(commands.toArray(new VecCommand[0])));
+        }
+
+        VecFileSnapshot snapshot = new VecFileSnapshot(file, copy, appendFrom, persistedLength == 0, modificationCount);
+        outstandingSnapshots.add(snapshot);
+        return snapshot;
+    }
+
+    /**
+     * Completes the save of a snapshot that has been written, making its file the stored filepath.
+     * The VecFile is only marked as saved if it hasn't been changed since the snapshot was taken.
+     *
+     * @param snapshot The written snapshot.
+     */
+    public void completeSave(VecFileSnapshot snapshot) {
+        outstandingSnapshots.remove(snapshot);
+        snapshot.release();
+
+        File file = snapshot.getFile();
+        directory = file.getParent();
+        filename = removeExtension(file.getName());
+        extension = getFormatExtension(file);
+
+        //The old index of a replaced paged file no longer matches the file, so move any new commands to the new one
+        PagedCommandList reindexedCommands = snapshot.getReindexedCommands();
+        if (reindexedCommands != null && isClosed) {
+            PagedCommandList.closeIfPaged(reindexedCommands);
+        } else if (reindexedCommands != null) {
+            while (reindexedCommands.size() > snapshot.getLowestSize()) {
+                reindexedCommands.remove(reindexedCommands.size() - 1);
             }
+            for (int i = snapshot.getLowestSize(); i < commands.size(); i++) {
+                reindexedCommands.add(commands.get(i));
+            }
+
+            //The old list still holds the replaced file open, which keeps its space allocated on disk
+            PagedCommandList.closeIfPaged(commands);
+            commands = reindexedCommands;
         }
 
+        //The file can only be appended to if none of the saved commands have been undone since
+        persistedCount = snapshot.getLowestSize() < snapshot.size() ? NO_PERSISTED_PREFIX : snapshot.size();
+        persistedLength = snapshot.getWrittenLength();
+        isSaved = modificationCount == snapshot.getModificationCount();
+    }
+
+    /**
+     * Abandons the save of a snapshot that could not be written.
+     * The file may have been partly written, so the next save will rewrite it completely.
+     *
+     * @param snapshot The snapshot.
+     */
+    public void abandonSave(VecFileSnapshot snapshot) {
+        outstandingSnapshots.remove(snapshot);
+        snapshot.release();
+        persistedCount = NO_PERSISTED_PREFIX;
+    }
+
+    /**
+     * Closes the file that the commands are paged from, if any. The VecFile can't be used afterwards, but saves of
+     * snapshots that were already taken can still be written and completed.
+     */
+    @Override
+    public void close() {
+        isClosed = true;
+        PagedCommandList.closeIfPaged(commands);
+    }
+
+    /**
+     * Checks whether a file can be brought up to date by appending the commands added since the last save.
+     * The file must still hold exactly what was last read or written, and no saved commands may have been undone.
+     *
+     * @param file The file being saved to.
+     * @return Whether the new commands can be appended.
+     */
+    private boolean canAppendTo(File file) {
+        return persistedCount != NO_PERSISTED_PREFIX && file.isFile() && file.length() == persistedLength;
+    }
+
+    /**
+     * Records that every current command is stored in a file.
+     *
+     * @param file The file the commands are stored in.
+     */
+    private void markPersisted(File file) {
+        persistedCount = commands.size();
+        persistedLength = file.length();
     }
 
     /**
@@ -203,6 +504,7 @@ public class VecFile {
      */
     private void open(File file) throws VecCommandException, IOException {
         importFromFile(file);
+        markPersisted(file);
     }
 
     /**
@@ -214,7 +516,7 @@ public class VecFile {
      * @throws IOException         Thrown if an issue occurs during file IO.
      */
     private void open(String directory, String filename) throws VecCommandException, IOException {
-        importFromFile(new File(String.format("%s/%s.%s", directory, filename, FILE_EXTENSION)));
+        open(new File(String.format("%s/%s.%s", directory, filename, FILE_EXTENSION)));
     }
 
     /**
@@ -225,48 +527,93 @@ public class VecFile {
      * @throws IOException         Thrown if an issue occurs during file IO.
      */
     private void importFromFile(File file) throws VecCommandException, IOException {
-        try (BufferedReader reader = new BufferedReader(new FileReader(file))) {
-            String line = reader.readLine();
+        if (VecBinaryFormat.isBinaryFileName(file.getName())) {
+            try (VecBinaryReader reader = new VecBinaryReader(new FileInputStream(file))) {
+                reader.readAll(commands);
+            }
+            return;
+        }
+
+        //Compressed files are decompressed in blocks on every core
+        if (VecCompressedFormat.isCompressedFileName(file.getName())) {
+            VecCompressedLoader.load(file, commands);
+            return;
+        }
+
+        //Very large files are only indexed, and their commands are parsed when they are used
+        if (file.length() >= PagedCommandList.PAGED_THRESHOLD) {
+            commands = MappedVecLoader.index(file, PagedCommandList.PAGE_SIZE);
+            return;
+        }
+
+        //Large files are memory-mapped and parsed on every core
+        if (file.length() >= MappedVecLoader.PARALLEL_THRESHOLD) {
+            MappedVecLoader.load(file, commands);
+            return;
+        }
+
+        try (VecCommandReader reader = new VecCommandReader(new FileReader(file))) {
+            VecCommand command = reader.read();
 
-            while (line != null) {
-                VecCommand command = parseVecCommand(line);
+            while (command != null) {
                 commands.add(command);
-                line = reader.readLine();
+                command = reader.read();
             }
         }
     }
 
     /**
-     * Generates a VecCommand from a vec command in string form.
+     * Generates a VecCommand from a tokenized vec command line.
      *
-     * @param commandString The full string of the command.
+     * @param tokens The tokenized line of the command.
      * @return An initialised VecCommand.
-     * @throws VecCommandException Thrown if an invalid vec command string is input.
-     */
-    private VecCommand parseVecCommand(String commandString) throws VecCommandException {
-        if (commandString.startsWith(PlotCommand.COMMAND_NAME)) {
-            return PlotCommand.fromString(commandString);
-        } else if (commandString.startsWith(LineCommand.COMMAND_NAME)) {
-            return LineCommand.fromString(commandString);
-        } else if (commandString.startsWith(RectangleCommand.COMMAND_NAME)) {
-            return RectangleCommand.fromString(commandString);
-        } else if (commandString.startsWith(EllipseCommand.COMMAND_NAME)) {
-            return EllipseCommand.fromString(commandString);
-        } else if (commandString.startsWith(PolygonCommand.COMMAND_NAME)) {
-            return PolygonCommand.fromString(commandString);
-        } else if (commandString.startsWith(PenCommand.COMMAND_NAME)) {
-            return PenCommand.fromString(commandString);
-        } else if (commandString.startsWith(FillCommand.COMMAND_NAME)) {
-            return FillCommand.fromString(commandString);
-        } else {
-            throw new VecCommandException("Attempted to convert string without a valid identifier to VecCommand.");
+     * @throws VecCommandException Thrown if an invalid vec command line is input.
+     */
+    static VecCommand parseVecCommand(VecCommandTokenizer tokens) throws VecCommandException {
+        return VecCommandRegistry.parse(tokens);
+    }
+
+    /**
+     * Checks whether a command is a pen or fill command, without creating a command object for buffered commands.
+     *
+     * @param index The index of the command.
+     * @return Whether the command is a colour command.
+     */
+    private boolean isColourCommand(int index) {
+        if (commands instanceof CommandBuffer) {
+            byte opcode = ((CommandBuffer) commands).getOpcode(index);
+            return opcode == CommandBuffer.OP_PEN || opcode == CommandBuffer.OP_FILL;
         }
+
+        VecCommand command = commands.get(index);
+        return command instanceof PenCommand || command instanceof FillCommand;
     }
 
     /**
      * Updates the latest colour fields with the current values derived from the commands array.
      */
     private void updateLatestColours() {
+        if (commands instanceof CommandBuffer) {
+            CommandBuffer buffer = (CommandBuffer) commands;
+            int penIndex = buffer.lastIndexOfOpcode(CommandBuffer.OP_PEN, buffer.size());
+            int fillIndex = buffer.lastIndexOfOpcode(CommandBuffer.OP_FILL, buffer.size());
+
+            latestPenColour = penIndex >= 0 ? buffer.getColour(penIndex) : DEFAULT_PEN_RGB;
+            latestFillColour = fillIndex >= 0 ? buffer.getColour(fillIndex) : DEFAULT_FILL_RGB;
+            return;
+        }
+
+        if (commands instanceof PagedCommandList) {
+            //Avoids parsing every page of a file that has no colour commands near its end
+            PagedCommandList pagedCommands = (PagedCommandList) commands;
+            int penIndex = pagedCommands.lastIndexOfType(PenCommand.class);
+            int fillIndex = pagedCommands.lastIndexOfType(FillCommand.class);
+
+            latestPenColour = penIndex >= 0 ? ((PenCommand) commands.get(penIndex)).getRgb() : DEFAULT_PEN_RGB;
+            latestFillColour = fillIndex >= 0 ? ((FillCommand) commands.get(fillIndex)).getRgb() : DEFAULT_FILL_RGB;
+            return;
+        }
+
         boolean isPenColourFound = false;
         boolean isFillColourFound = false;
 
@@ -274,10 +621,10 @@ public class VecFile {
             VecCommand command = commands.get(i);
 
             if (!isPenColourFound && command instanceof PenCommand) {
-                latestPenColour = ((PenCommand) command).getColour();
+                latestPenColour = ((PenCommand) command).getRgb();
                 isPenColourFound = true;
             } else if (!isFillColourFound && command instanceof FillCommand) {
-                latestFillColour = ((FillCommand) command).getColour();
+                latestFillColour = ((FillCommand) command).getRgb();
                 isFillColourFound = true;
             }
 
@@ -287,11 +634,11 @@ public class VecFile {
         }
 
         if (!isPenColourFound){
-            latestPenColour = DEFAULT_PEN_COLOUR;
+            latestPenColour = DEFAULT_PEN_RGB;
         }
 
         if (!isFillColourFound){
-            latestFillColour = DEFAULT_FILL_COLOUR;
+            latestFillColour = DEFAULT_FILL_RGB;
         }
     }
 
@@ -304,12 +651,24 @@ public class VecFile {
         return filename;
     }
 
+    /**
+     * Gets the extension of the format the VEC file is saved in, either FILE_EXTENSION, BINARY_FILE_EXTENSION or
+     * COMPRESSED_FILE_EXTENSION.
+     *
+     * @return The extension of the VEC file.
+     */
+    public String getExtension() {
+        return extension;
+    }
+
     /**
      * Gets the commands of the VEC file.
+     * The commands of very large files are read from the file as they are used, so the list should only be
+     * changed through addCommand and undoLatestCommand.
      *
      * @return The commands of the VEC file.
      */
-    public ArrayList<VecCommand> getCommands() {
+    public List<VecCommand> getCommands() {
         return commands;
     }
 
@@ -319,6 +678,15 @@ public class VecFile {
      * @return The colour.
      */
     public String getLatestPenColour() {
+        return VecColour.toString(latestPenColour);
+    }
+
+    /**
+     * Gets the latest pen colour that was set as a packed value.
+     *
+     * @return The 0xRRGGBB colour.
+     */
+    public int getLatestPenRgb() {
         return latestPenColour;
     }
 
@@ -328,6 +696,15 @@ public class VecFile {
      * @return The colour or the string 'OFF'.
      */
     public String getLatestFillColour() {
+        return VecColour.toString(latestFillColour);
+    }
+
+    /**
+     * Gets the latest fill colour that was set as a packed value.
+     *
+     * @return The 0xRRGGBB colour, or VecColour.NONE if fill is off.
+     */
+    public int getLatestFillRgb() {
         return latestFillColour;
     }
 
@@ -340,6 +717,15 @@ public class VecFile {
         return isSaved;
     }
 
+    /**
+     * Gets whether the VecFile is still being loaded from it's external file.
+     *
+     * @return The boolean corresponding to whether the VecFile is loading.
+     */
+    public boolean isLoading() {
+        return isLoading;
+    }
+
     /**
      * Gets whether an external file exists for the VecFile.
      *
@@ -0,0 +1,217 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.*;
+import java.util.ArrayList;
+import java.util.List;
+
+/**
+ * Reads the commands of a vec file in batches, so that a file can be loaded on a worker thread while the
+ * commands that have already been read are shown. The batches are added to a VecFile made with
+ * VecFile.createLoading, which is then completed with VecFile.finishLoading.
+ * <p>
+ * Large text files and compressed files are parsed in parallel, and their batches are handed out in file order as
+ * each part of the file is parsed. Files that are large enough to be paged are indexed in a single step instead,
+ * and produce no batches.
+ */
+public class VecFileLoader implements Closeable {
+
+    private final File file;
+    private final long length;
+    private final FileInputStream in;
+    private final VecCommandReader textReader;
+    private final VecBinaryReader binaryReader;
+    private final ParallelCommandReader parallelReader;
+    private CommandBuffer part;
+    private int partIndex;
+    private PagedCommandList pagedCommands;
+    private boolean isFinished;
+
+    /**
+     * Opens a vec file for loading.
+     *
+     * @param file The vec file.
+     * @throws IOException Thrown if the file can't be opened, or isn't a valid binary file.
+     */
+    public VecFileLoader(File file) throws IOException {
+        this.file = file;
+        this.length = file.length();
+
+        //Large files are read the same way as VecFile reads them, so every core is used
+        if (isPaged()) {
+            in = null;
+            textReader = null;
+            binaryReader = null;
+            parallelReader = null;
+        } else if (VecFile.isBinaryFile(file)) {
+            in = new FileInputStream(file);
+            textReader = null;
+            binaryReader = new VecBinaryReader(in);
+            parallelReader = null;
+        } else if (VecFile.isCompressedFile(file)) {
+            in = null;
+            textReader = null;
+            binaryReader = null;
+            parallelReader = VecCompressedLoader.open(file);
+        } else if (length >= MappedVecLoader.PARALLEL_THRESHOLD) {
+            in = null;
+            textReader = null;
+            binaryReader = null;
+            parallelReader = MappedVecLoader.open(file);
+        } else {
+            in = new FileInputStream(file);
+            textReader = new VecCommandReader(new InputStreamReader(in));
+            binaryReader = null;
+            parallelReader = null;
+        }
+    }
+
+    /**
+     * Gets whether the file is large enough to be paged rather than loaded into memory.
+     *
+     * @return Whether the file is paged.
+     */
+    public boolean isPaged() {
+        return !VecFile.isBinaryFile(file) && !VecFile.isCompressedFile(file) && length >= PagedCommandList.PAGED_THRESHOLD;
+    }
+
+    /**
+     * Reads the next batch of commands. A paged file is indexed by the first call instead.
+     *
+     * @param maxCommands The maximum number of commands in the batch.
+     * @return The commands, or an empty list once every command has been read.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command.
+     * @throws IOException         Thrown if an issue occurs during file IO.
+     */
+    public List<VecCommand> readBatch(int maxCommands) throws VecCommandException, IOException {
+        ArrayList<VecCommand> batch = new ArrayList<>();
+        if (isFinished) {
+            return batch;
+        }
+
+        if (isPaged()) {
+            pagedCommands = MappedVecLoader.index(file, PagedCommandList.PAGE_SIZE);
+            isFinished = true;
+            return batch;
+        }
+
+        if (parallelReader != null) {
+            return readParallelBatch(maxCommands);
+        }
+
+        while (batch.size() < maxCommands) {
+            VecCommand command = textReader != null ? textReader.read() : binaryReader.read();
+            if (command == null) {
+                isFinished = true;
+                break;
+            }
+            batch.add(command);
+        }
+
+        return batch;
+    }
+
+    /**
+     * Reads the next batch of commands from the parts of a file that is parsed in parallel, waiting for each part
+     * to be parsed once it is needed. The commands are copied in columns, without creating a command object each.
+     *
+     * @param maxCommands The maximum number of commands in the batch.
+     * @return The commands, or an empty list once every command has been read.
+     * @throws VecCommandException Thrown if an issue occurs while parsing a command.
+     * @throws IOException         Thrown if an issue occurs during file IO.
+     */
+    private CommandBuffer readParallelBatch(int maxCommands) throws VecCommandException, IOException {
+        CommandBuffer batch = new CommandBuffer();
+
+        while (batch.size() < maxCommands) {
+            if (part == null || partIndex == part.size()) {
+                part = parallelReader.next();
+                partIndex = 0;
+                if (part == null) {
+                    isFinished = true;
+                    break;
+                }
+                continue;
+            }
+
+            int count = Math.min(maxCommands - batch.size(), part.size() - partIndex);
+            batch.append(part, partIndex, partIndex + count);
+            partIndex += count;
+        }
+
+        return batch;
+    }
+
+    /**
+     * Gets how much of the file has been read.
+     *
+     * @return The fraction of the file that has been read, between 0 and 1.
+     */
+    public double getProgress() {
+        if (isFinished || length == 0) {
+            return 1;
+        } else if (parallelReader != null) {
+            return parallelReader.getProgress();
+        } else if (in == null) {
+            return 0;
+        }
+
+        try {
+            //Includes bytes that have been buffered but not parsed yet
+            return Math.min(1, (double) in.getChannel().position() / length);
+        } catch (IOException e) {
+            return 0;
+        }
+    }
+
+    /**
+     * Gets the file being loaded.
+     *
+     * @return The file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets whether every command has been read.
+     *
+     * @return Whether the file has been read.
+     */
+    public boolean isFinished() {
+        return isFinished;
+    }
+
+    /**
+     * Gets the commands of a paged file once it has been indexed.
+     *
+     * @return The paged list, or null if the file isn't paged or hasn't been indexed yet.
+     */
+    PagedCommandList getPagedCommands() {
+        return pagedCommands;
+    }
+
+    /**
+     * Closes the commands of a paged file that won't be finished loading, since they hold the file open.
+     */
+    public void discardPagedCommands() {
+        PagedCommandList.closeIfPaged(pagedCommands);
+    }
+
+    /**
+     * Closes the file, and stops parsing any parts of it that haven't been read.
+     *
+     * @throws IOException Thrown if an issue occurs while closing the file.
+     */
+    @Override
+    public void close() throws IOException {
+        if (in != null) {
+            in.close();
+        }
+        if (parallelReader != null) {
+            parallelReader.close();
+        }
+    }
+}
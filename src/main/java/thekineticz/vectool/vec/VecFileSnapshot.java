@@ -0,0 +1,338 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandRegistry;
+import thekineticz.vectool.vec.common.VecTextFormatter;
+
+import java.io.*;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.FileChannel;
+import java.nio.file.Files;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.StandardOpenOption;
+import java.util.List;
+
+/**
+ * An unchanging copy of the commands of a VecFile, taken so that they can be saved on another thread while the
+ * VecFile continues to be edited. Snapshots are created by VecFile.createSaveSnapshot, written with write, and then
+ * handed back to VecFile.completeSave or VecFile.abandonSave on the thread that edits the VecFile.
+ * Snapshots of the same VecFile must be written in the order that they were created.
+ */
+public class VecFileSnapshot {
+
+    static final int NO_APPEND = -1;
+    private static final int PROGRESS_INTERVAL = 4096;
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final File file;
+    private final List<VecCommand> commands;
+    private final int appendFrom;
+    private final boolean isPersistedEmpty;
+    private final long modificationCount;
+
+    //The smallest size the VecFile has been undone to since the snapshot was taken
+    private int lowestSize;
+    private long writtenLength;
+    private PagedCommandList reindexedCommands;
+
+    /**
+     * Creates a new snapshot.
+     *
+     * @param file              The file the snapshot will be saved to.
+     * @param commands          The copied commands.
+     * @param appendFrom        The index of the first command that isn't already in the file, or NO_APPEND if
+     *                          the whole file must be written.
+     * @param isPersistedEmpty  Whether the file held no bytes when it was last read or written.
+     * @param modificationCount The modification count of the VecFile when the snapshot was taken.
+     */
+    VecFileSnapshot(File file, List<VecCommand> commands, int appendFrom, boolean isPersistedEmpty, long modificationCount) {
+        this.file = file;
+        this.commands = commands;
+        this.appendFrom = appendFrom;
+        this.isPersistedEmpty = isPersistedEmpty;
+        this.modificationCount = modificationCount;
+        this.lowestSize = commands.size();
+    }
+
+    /**
+     * Receives updates on how much of a snapshot has been written.
+     */
+    public interface ProgressListener {
+
+        /**
+         * Called periodically while commands are being written.
+         *
+         * @param written The number of commands written so far.
+         * @param total   The number of commands being written.
+         */
+        void progressChanged(int written, int total);
+    }
+
+    /**
+     * Writes the snapshot to its file. This can be called from any thread.
+     *
+     * @param listener The listener that is told about progress, or null.
+     * @throws IOException Thrown if an error occurs while writing to file.
+     */
+    public void write(ProgressListener listener) throws IOException {
+        //A paged file is only rewritten if commands read from it have been undone, since appending leaves the
+        //lines it reads from untouched
+        if (appendFrom != NO_APPEND) {
+            appendToFile(listener);
+        } else if (commands instanceof PagedCommandList && ((PagedCommandList) commands).isBackedBy(file)) {
+            replacePagedFile(listener);
+        } else {
+            exportToFile(listener);
+        }
+
+        writtenLength = file.length();
+    }
+
+    /**
+     * Writes every command to the file, replacing its contents.
+     *
+     * @param listener The listener that is told about progress, or null.
+     * @throws IOException Thrown if an error occurs while writing to file.
+     */
+    private void exportToFile(ProgressListener listener) throws IOException {
+        if (VecBinaryFormat.isBinaryFileName(file.getName())) {
+            try (VecBinaryWriter writer = new VecBinaryWriter(new BufferedOutputStream(new FileOutputStream(file)))) {
+                writeBinaryCommands(writer, 0, listener);
+            }
+
+        } else if (VecCompressedFormat.isCompressedFileName(file.getName())) {
+            try (OutputStream out = new VecCompressedOutputStream(new FileOutputStream(file))) {
+                writeCommands(out, 0, false, listener);
+            }
+
+        } else {
+            //Try to write all the commands in their string form to a new line in the file
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(file))) {
+                writeCommands(out, 0, false, listener);
+            }
+        }
+    }
+
+    /**
+     * Rewrites the file that the paged commands are read from.
+     * The commands are written to a temporary file first, since they are still being read from the original,
+     * and the new file is indexed again once it has replaced the original.
+     *
+     * @param listener The listener that is told about progress, or null.
+     * @throws IOException Thrown if an error occurs while writing to file.
+     */
+    private void replacePagedFile(ProgressListener listener) throws IOException {
+        File temporaryFile = File.createTempFile("vec", ".tmp", file.getAbsoluteFile().getParentFile());
+
+        try {
+            try (OutputStream out = new BufferedOutputStream(new FileOutputStream(temporaryFile))) {
+                writeCommands(out, 0, false, listener);
+            }
+
+            //The snapshot is done reading the original, so don't hold it open while it is replaced
+            release();
+            Files.move(temporaryFile.toPath(), file.toPath(), StandardCopyOption.REPLACE_EXISTING, StandardCopyOption.ATOMIC_MOVE);
+        } finally {
+            Files.deleteIfExists(temporaryFile.toPath());
+        }
+
+        try {
+            reindexedCommands = MappedVecLoader.index(file, PagedCommandList.PAGE_SIZE);
+        } catch (VecCommandException e) {
+            throw new IOException("Saved file could not be read back.", e);
+        }
+    }
+
+    /**
+     * Stops the snapshot reading from the file its commands were paged from, if any.
+     * This is done when the save is completed or abandoned, after which the snapshot can't be written again.
+     */
+    void release() {
+        PagedCommandList.closeIfPaged(commands);
+    }
+
+    /**
+     * Appends the commands that aren't in the file yet to the end of it.
+     *
+     * @param listener The listener that is told about progress, or null.
+     * @throws IOException Thrown if an error occurs while writing to file.
+     */
+    private void appendToFile(ProgressListener listener) throws IOException {
+        boolean isCompressed = VecCompressedFormat.isCompressedFileName(file.getName());
+        if (isCompressed && appendFrom == commands.size()) {
+            //Avoids adding an empty member when there is nothing to append
+            return;
+        }
+
+        boolean isNewLineFirst;
+        if (isCompressed) {
+            isNewLineFirst = !isPersistedEmpty && !VecCompressedLoader.endsWithLineTerminator(file);
+        } else {
+            isNewLineFirst = !isPersistedEmpty && !endsWithLineTerminator(file);
+        }
+
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.WRITE, StandardOpenOption.APPEND)) {
+            OutputStream out = new BufferedOutputStream(Channels.newOutputStream(channel));
+
+            if (VecBinaryFormat.isBinaryFileName(file.getName())) {
+                try (VecBinaryWriter writer = new VecBinaryWriter(out, true, true)) {
+                    writeBinaryCommands(writer, appendFrom, listener);
+                }
+            } else if (isCompressed) {
+                //New gzip members are added after the existing ones
+                try (OutputStream compressedOut = new VecCompressedOutputStream(out)) {
+                    writeCommands(compressedOut, appendFrom, isNewLineFirst, listener);
+                }
+            } else {
+                writeCommands(out, appendFrom, isNewLineFirst, listener);
+                out.flush();
+            }
+        }
+    }
+
+    /**
+     * Writes commands in their string form, one per line, without a trailing line terminator.
+     * The lines are formatted into a reused buffer, which is written out whenever it fills.
+     *
+     * @param out            The stream of the file.
+     * @param from           The index of the first command to write.
+     * @param isNewLineFirst Whether a line terminator is needed before the first command.
+     * @param listener       The listener that is told about progress, or null.
+     * @throws IOException Thrown if an error occurs while writing to file.
+     */
+    private void writeCommands(OutputStream out, int from, boolean isNewLineFirst, ProgressListener listener) throws IOException {
+        VecTextFormatter formatter = new VecTextFormatter();
+        CommandBuffer buffer = commands instanceof CommandBuffer ? (CommandBuffer) commands : null;
+
+        for (int i = from; i < commands.size(); i++) {
+            if (i > from || isNewLineFirst) {
+                formatter.appendLineSeparator();
+            }
+
+            //Buffered commands are formatted straight from their columns
+            if (buffer != null) {
+                buffer.appendTo(i, formatter);
+            } else {
+                VecCommandRegistry.serialize(commands.get(i), formatter);
+            }
+
+            if (formatter.length() >= WRITE_BUFFER_SIZE) {
+                formatter.writeTo(out);
+            }
+            reportProgress(listener, i - from + 1, commands.size() - from);
+        }
+
+        formatter.writeTo(out);
+    }
+
+    /**
+     * Writes commands in the binary format.
+     *
+     * @param writer   The binary writer of the file.
+     * @param from     The index of the first command to write.
+     * @param listener The listener that is told about progress, or null.
+     * @throws IOException Thrown if an error occurs while writing to file.
+     */
+    private void writeBinaryCommands(VecBinaryWriter writer, int from, ProgressListener listener) throws IOException {
+        for (int i = from; i < commands.size(); i++) {
+            writer.write(commands.get(i));
+            reportProgress(listener, i - from + 1, commands.size() - from);
+        }
+    }
+
+    /**
+     * Tells a listener about progress every PROGRESS_INTERVAL commands, and once the last command is written.
+     *
+     * @param listener The listener, or null.
+     * @param written  The number of commands written so far.
+     * @param total    The number of commands being written.
+     */
+    private static void reportProgress(ProgressListener listener, int written, int total) {
+        if (listener != null && (written % PROGRESS_INTERVAL == 0 || written == total)) {
+            listener.progressChanged(written, total);
+        }
+    }
+
+    /**
+     * Checks whether the last byte of a file is a line terminator.
+     *
+     * @param file The file.
+     * @return Whether the file ends with a line terminator.
+     * @throws IOException Thrown if an error occurs while reading the file.
+     */
+    private static boolean endsWithLineTerminator(File file) throws IOException {
+        try (FileChannel channel = FileChannel.open(file.toPath(), StandardOpenOption.READ)) {
+            ByteBuffer lastByte = ByteBuffer.allocate(1);
+            if (channel.size() == 0 || channel.read(lastByte, channel.size() - 1) != 1) {
+                return false;
+            }
+            return lastByte.get(0) == '\n' || lastByte.get(0) == '\r';
+        }
+    }
+
+    /**
+     * Records that the VecFile has been undone to a size, if it is smaller than any size so far.
+     *
+     * @param size The new size of the VecFile.
+     */
+    void recordUndo(int size) {
+        lowestSize = Math.min(lowestSize, size);
+    }
+
+    /**
+     * Gets the file the snapshot is saved to.
+     *
+     * @return The file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the number of commands in the snapshot.
+     *
+     * @return The number of commands.
+     */
+    public int size() {
+        return commands.size();
+    }
+
+    /**
+     * Gets the modification count of the VecFile when the snapshot was taken.
+     *
+     * @return The modification count.
+     */
+    long getModificationCount() {
+        return modificationCount;
+    }
+
+    /**
+     * Gets the smallest size the VecFile has been undone to since the snapshot was taken.
+     * The first lowestSize commands of the VecFile are still the same as the snapshot's.
+     *
+     * @return The size.
+     */
+    int getLowestSize() {
+        return lowestSize;
+    }
+
+    /**
+     * Gets the length of the file once the snapshot was written.
+     *
+     * @return The length of the file in bytes.
+     */
+    long getWrittenLength() {
+        return writtenLength;
+    }
+
+    /**
+     * Gets the new index of a paged file that the snapshot replaced.
+     *
+     * @return The paged list of the new file, or null if no paged file was replaced.
+     */
+    PagedCommandList getReindexedCommands() {
+        return reindexedCommands;
+    }
+}
@@ -0,0 +1,137 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+
+import java.io.*;
+import java.util.zip.ZipException;
+
+/**
+ * Checks every line of a vec file without loading it, collecting all of the errors into a VecValidationReport
+ * instead of stopping at the first one like VecFile does.
+ * Exceptions for invalid lines are created without stack traces, so bad lines cost about as much as good ones.
+ */
+public class VecFileValidator {
+
+    /**
+     * The number of diagnostics that are kept unless another maximum is given.
+     */
+    public static final int DEFAULT_MAX_DIAGNOSTICS = 1000;
+
+    /**
+     * Static methods only.
+     */
+    private VecFileValidator() {
+    }
+
+    /**
+     * Validates a vec file in the format given by its extension, keeping up to DEFAULT_MAX_DIAGNOSTICS diagnostics.
+     *
+     * @param file The vec file.
+     * @return The report.
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public static VecValidationReport validate(File file) throws IOException {
+        return validate(file, DEFAULT_MAX_DIAGNOSTICS);
+    }
+
+    /**
+     * Validates a vec file in the format given by its extension.
+     * A corrupt binary or compressed file is reported as an error at the point where it could no longer be read.
+     *
+     * @param file           The vec file.
+     * @param maxDiagnostics The maximum number of diagnostics to keep.
+     * @return The report.
+     * @throws IOException Thrown if the file can't be read.
+     */
+    public static VecValidationReport validate(File file, int maxDiagnostics) throws IOException {
+        VecValidationReport report = new VecValidationReport(file, maxDiagnostics);
+        boolean wasStackTraceSuppressed = VecCommandException.isStackTraceSuppressed();
+        VecCommandException.setStackTraceSuppressed(true);
+
+        try {
+            if (VecFile.isBinaryFile(file)) {
+                validateBinary(file, report);
+            } else if (VecFile.isCompressedFile(file)) {
+                try (InputStream in = VecCompressedLoader.openStream(file)) {
+                    validateText(new InputStreamReader(in), report);
+                } catch (ZipException | EOFException e) {
+                    report.addError(report.getLineCount() + 1, 1, "Compressed VEC file is corrupt: " + e.getMessage());
+                }
+            } else {
+                try (Reader reader = new FileReader(file)) {
+                    validateText(reader, report);
+                }
+            }
+        } finally {
+            VecCommandException.setStackTraceSuppressed(wasStackTraceSuppressed);
+        }
+
+        return report;
+    }
+
+    /**
+     * Parses every line of a text vec stream, recording the errors.
+     *
+     * @param in     The text stream.
+     * @param report The report the results are added to.
+     * @throws IOException Thrown if the stream can't be read.
+     */
+    private static void validateText(Reader in, VecValidationReport report) throws IOException {
+        VecCommandReader reader = new VecCommandReader(in);
+
+        for (VecCommandTokenizer line = reader.readLine(); line != null; line = reader.readLine()) {
+            try {
+                VecFile.parseVecCommand(line);
+                report.addLine(true);
+            } catch (VecCommandException e) {
+                report.addLine(false);
+                report.addError(reader.getLineNumber(), getColumn(line, e.getTokenIndex()), e.getMessage());
+            }
+        }
+    }
+
+    /**
+     * Reads every command of a binary vec file, recording the errors. Reading stops at the first corrupt block,
+     * since the commands after it can't be found.
+     *
+     * @param file   The binary vec file.
+     * @param report The report the results are added to.
+     * @throws IOException Thrown if the file can't be opened or isn't a binary vec file.
+     */
+    private static void validateBinary(File file, VecValidationReport report) throws IOException {
+        try (VecBinaryReader reader = new VecBinaryReader(new BufferedInputStream(new FileInputStream(file)))) {
+            while (true) {
+                try {
+                    if (reader.read() == null) {
+                        break;
+                    }
+                    report.addLine(true);
+                } catch (VecCommandException e) {
+                    report.addLine(false);
+                    report.addError(report.getLineCount(), 1, e.getMessage());
+                } catch (IOException e) {
+                    report.addError(report.getLineCount() + 1, 1, e.getMessage());
+                    break;
+                }
+            }
+        }
+    }
+
+    /**
+     * Finds the column of the token that an error is about.
+     *
+     * @param line       The tokenized line.
+     * @param tokenIndex The index of the token, or UNKNOWN_TOKEN.
+     * @return The column, starting from 1.
+     */
+    private static int getColumn(VecCommandTokenizer line, int tokenIndex) {
+        if (tokenIndex == VecCommandException.UNKNOWN_TOKEN) {
+            return 1;
+        } else if (tokenIndex >= line.getTokenCount()) {
+            //A missing argument belongs just after the end of the line
+            return line.getLength() + 1;
+        }
+        return line.getTokenOffset(tokenIndex) + 1;
+    }
+}
@@ -0,0 +1,234 @@
+package thekineticz.vectool.vec;
+
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecRenderer;
+import thekineticz.vectool.vec.common.VecViewport;
+
+import javax.imageio.ImageIO;
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.RenderedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ForkJoinPool;
+import java.util.concurrent.RecursiveAction;
+
+/**
+ * Renders commands to an image of any size, splitting the image into tiles that are drawn in parallel.
+ * Every tile draws into the same image through a graphics context clipped to the tile, and only draws the commands that a
+ * spatial index finds inside it, so the result is the same as drawing every command on one thread. Commands the index
+ * finds hidden under a later opaque shape aren't drawn at all.
+ * <p>
+ * It draws through the same VecRenderer as the canvas, onto the same white background, so images match what the
+ * canvas shows at that size. Nothing here needs a display, so it can be used headlessly.
+ */
+public class VecRasterizer {
+
+    /**
+     * The width and height of the tiles that are drawn in parallel, in pixels.
+     */
+    public static final int TILE_SIZE = 256;
+
+    /**
+     * The image format written by writePng.
+     */
+    public static final String PNG_FORMAT = "png";
+
+    private static final Color BACKGROUND_COLOUR = Color.WHITE;
+
+    private final CommandBuffer commands;
+    private final SpatialIndex spatialIndex;
+
+    /**
+     * Creates a new rasterizer for a snapshot of some commands. The commands are copied, so they can be changed
+     * while the rasterizer is in use.
+     *
+     * @param commands The commands.
+     */
+    public VecRasterizer(List<VecCommand> commands) {
+        if (commands instanceof CommandBuffer) {
+            this.commands = ((CommandBuffer) commands).copy();
+        } else {
+            this.commands = new CommandBuffer();
+            this.commands.addAll(commands);
+        }
+
+        spatialIndex = new SpatialIndex();
+        spatialIndex.update(this.commands, 0);
+    }
+
+    /**
+     * Creates a new rasterizer for a snapshot of the commands of a VecFile.
+     *
+     * @param vecFile The VecFile.
+     */
+    public VecRasterizer(VecFile vecFile) {
+        this(vecFile.getCommands());
+    }
+
+    /**
+     * Renders the commands on the common fork join pool.
+     *
+     * @param width  The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @return The image.
+     */
+    public BufferedImage render(int width, int height) {
+        return render(width, height, ForkJoinPool.commonPool());
+    }
+
+    /**
+     * Renders the commands, drawing the tiles on a fork join pool.
+     *
+     * @param width  The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param pool   The pool the tiles are drawn on.
+     * @return The image.
+     */
+    public BufferedImage render(int width, int height, ForkJoinPool pool) {
+        BufferedImage image = new BufferedImage(width, height, BufferedImage.TYPE_INT_RGB);
+        int tileColumns = (width + TILE_SIZE - 1) / TILE_SIZE;
+        int tileRows = (height + TILE_SIZE - 1) / TILE_SIZE;
+
+        ConcurrentLinkedQueue<TileContext> contexts = new ConcurrentLinkedQueue<>();
+        try {
+            pool.invoke(new TileTask(image, contexts, tileColumns, 0, tileColumns * tileRows));
+        } finally {
+            for (TileContext context : contexts) {
+                context.graphics.dispose();
+            }
+        }
+        return image;
+    }
+
+    /**
+     * Renders the commands on the common fork join pool, and writes the image to a PNG file.
+     *
+     * @param width  The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     * @param file   The file to write.
+     * @throws IOException Thrown if an issue occurs while writing the file.
+     */
+    public void renderToPng(int width, int height, File file) throws IOException {
+        writePng(render(width, height), file);
+    }
+
+    /**
+     * Writes an image to a PNG file.
+     *
+     * @param image The image.
+     * @param file  The file to write.
+     * @throws IOException Thrown if an issue occurs while writing the file.
+     */
+    public static void writePng(RenderedImage image, File file) throws IOException {
+        if (!ImageIO.write(image, PNG_FORMAT, file)) {
+            throw new IOException("No image writer is available for " + PNG_FORMAT);
+        }
+    }
+
+    /**
+     * Draws a range of tiles, splitting it in half until there is only one tile to draw.
+     */
+    private class TileTask extends RecursiveAction {
+
+        private final BufferedImage image;
+        private final ConcurrentLinkedQueue<TileContext> contexts;
+        private final int tileColumns;
+        private final int from;
+        private final int to;
+
+        /**
+         * Creates a new task.
+         *
+         * @param image       The image being drawn.
+         * @param contexts    The contexts that aren't drawing a tile at the moment.
+         * @param tileColumns The number of tiles in each row.
+         * @param from        The index of the first tile, counting across rows.
+         * @param to          The index after the last tile.
+         */
+        TileTask(BufferedImage image, ConcurrentLinkedQueue<TileContext> contexts, int tileColumns, int from, int to) {
+            this.image = image;
+            this.contexts = contexts;
+            this.tileColumns = tileColumns;
+            this.from = from;
+            this.to = to;
+        }
+
+        /**
+         * Draws the tiles.
+         */
+        @Override
+        protected void compute() {
+            if (to - from > 1) {
+                int middle = (from + to) >>> 1;
+                invokeAll(new TileTask(image, contexts, tileColumns, from, middle), new TileTask(image, contexts, tileColumns, middle, to));
+            } else if (to > from) {
+                int x = (from % tileColumns) * TILE_SIZE;
+                int y = (from / tileColumns) * TILE_SIZE;
+                renderTile(image, contexts, new Rectangle(x, y, Math.min(TILE_SIZE, image.getWidth() - x), Math.min(TILE_SIZE, image.getHeight() - y)));
+            }
+        }
+    }
+
+    /**
+     * A graphics context for an image and a renderer that draws through it, which tiles take turns to use.
+     * Reusing them means each renderer only allocates the mask it draws clipped ellipses on once.
+     */
+    private static class TileContext {
+
+        private final Graphics2D graphics;
+        private final VecRenderer renderer;
+
+        /**
+         * Creates a new context.
+         *
+         * @param image The image being drawn.
+         */
+        TileContext(BufferedImage image) {
+            graphics = image.createGraphics();
+            renderer = new VecRenderer(image, graphics, VecViewport.FULL);
+        }
+    }
+
+    /**
+     * Draws the commands that fall inside one tile of an image, clipped to the tile.
+     *
+     * @param image    The image.
+     * @param contexts The contexts that aren't drawing a tile at the moment, which the tile borrows one of.
+     * @param tile     The tile's region in pixels.
+     */
+    private void renderTile(BufferedImage image, ConcurrentLinkedQueue<TileContext> contexts, Rectangle tile) {
+        TileContext context = contexts.poll();
+        if (context == null) {
+            context = new TileContext(image);
+        }
+
+        try {
+            Graphics2D g = context.graphics;
+            g.setClip(tile);
+            g.setColor(BACKGROUND_COLOUR);
+            g.fillRect(tile.x, tile.y, tile.width, tile.height);
+
+            VecRenderer renderer = context.renderer;
+            renderer.graphicsChanged();
+            //Allow for outlines and rounding to pixels on every side
+            double minX = (tile.x - 2.0) / image.getWidth();
+            double minY = (tile.y - 2.0) / image.getHeight();
+            double maxX = (tile.x + tile.width + 2.0) / image.getWidth();
+            double maxY = (tile.y + tile.height + 2.0) / image.getHeight();
+
+            for (int index : spatialIndex.query(minX, minY, maxX, maxY, 0, commands.size())) {
+                if (spatialIndex.isOccluded(index, commands.size())) {
+                    continue;
+                }
+                renderer.setPenColour(spatialIndex.getPenColour(index));
+                renderer.setFillColour(spatialIndex.getFillColour(index));
+                commands.render(index, index + 1, renderer);
+            }
+        } finally {
+            contexts.add(context);
+        }
+    }
+}
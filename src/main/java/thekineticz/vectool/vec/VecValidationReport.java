@@ -0,0 +1,203 @@
+package thekineticz.vectool.vec;
+
+import java.io.File;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+/**
+ * The result of validating a vec file with VecFileValidator, listing every invalid line that was found.
+ * Only the first few diagnostics are kept for files with very many errors, but every error is still counted.
+ */
+public class VecValidationReport {
+
+    private final File file;
+    private final int maxDiagnostics;
+    private final ArrayList<Diagnostic> diagnostics = new ArrayList<>();
+    private int errorCount;
+    private int lineCount;
+    private int commandCount;
+
+    /**
+     * Creates a new empty report.
+     *
+     * @param file           The file being validated.
+     * @param maxDiagnostics The maximum number of diagnostics to keep.
+     */
+    VecValidationReport(File file, int maxDiagnostics) {
+        this.file = file;
+        this.maxDiagnostics = maxDiagnostics;
+    }
+
+    /**
+     * A single error found in a vec file.
+     */
+    public static class Diagnostic {
+
+        private final int lineNumber;
+        private final int column;
+        private final String message;
+
+        /**
+         * Creates a new diagnostic.
+         *
+         * @param lineNumber The number of the line, starting from 1.
+         * @param column     The column of the error in the line, starting from 1.
+         * @param message    The error message.
+         */
+        Diagnostic(int lineNumber, int column, String message) {
+            this.lineNumber = lineNumber;
+            this.column = column;
+            this.message = message;
+        }
+
+        /**
+         * Gets the number of the line with the error. For binary files this is the number of the command.
+         *
+         * @return The line number, starting from 1.
+         */
+        public int getLineNumber() {
+            return lineNumber;
+        }
+
+        /**
+         * Gets the column of the token that caused the error. Missing arguments are reported just after the
+         * end of the line, and errors that aren't about one token are reported at the start of the line.
+         *
+         * @return The column, starting from 1.
+         */
+        public int getColumn() {
+            return column;
+        }
+
+        /**
+         * Gets the error message.
+         *
+         * @return The message.
+         */
+        public String getMessage() {
+            return message;
+        }
+
+        /**
+         * Gets the diagnostic in the form "line:column: message".
+         *
+         * @return The diagnostic in string form.
+         */
+        @Override
+        public String toString() {
+            return lineNumber + ":" + column + ": " + message;
+        }
+    }
+
+    /**
+     * Records an error.
+     *
+     * @param lineNumber The number of the line, starting from 1.
+     * @param column     The column of the error in the line, starting from 1.
+     * @param message    The error message.
+     */
+    void addError(int lineNumber, int column, String message) {
+        if (diagnostics.size() < maxDiagnostics) {
+            diagnostics.add(new Diagnostic(lineNumber, column, message));
+        }
+        errorCount++;
+    }
+
+    /**
+     * Records a line that was read, and whether it held a valid command.
+     *
+     * @param isValid Whether the line is a valid command.
+     */
+    void addLine(boolean isValid) {
+        lineCount++;
+        if (isValid) {
+            commandCount++;
+        }
+    }
+
+    /**
+     * Gets the file that was validated.
+     *
+     * @return The file.
+     */
+    public File getFile() {
+        return file;
+    }
+
+    /**
+     * Gets the errors that were found, in file order.
+     *
+     * @return The diagnostics, of which there are at most the maximum given to the validator.
+     */
+    public List<Diagnostic> getDiagnostics() {
+        return Collections.unmodifiableList(diagnostics);
+    }
+
+    /**
+     * Gets the number of errors that were found, including any that weren't kept as diagnostics.
+     *
+     * @return The number of errors.
+     */
+    public int getErrorCount() {
+        return errorCount;
+    }
+
+    /**
+     * Gets the number of lines that were read.
+     *
+     * @return The number of lines.
+     */
+    public int getLineCount() {
+        return lineCount;
+    }
+
+    /**
+     * Gets the number of lines that were valid commands.
+     *
+     * @return The number of valid commands.
+     */
+    public int getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Gets whether the file has no errors.
+     *
+     * @return Whether the file is valid.
+     */
+    public boolean isValid() {
+        return errorCount == 0;
+    }
+
+    /**
+     * Gets whether some errors weren't kept as diagnostics.
+     *
+     * @return Whether the diagnostics are incomplete.
+     */
+    public boolean isTruncated() {
+        return errorCount > diagnostics.size();
+    }
+
+    /**
+     * Gets the report with one "file:line:column: message" line per diagnostic.
+     *
+     * @return The report in string form.
+     */
+    @Override
+    public String toString() {
+        StringBuilder string = new StringBuilder();
+        for (Diagnostic diagnostic : diagnostics) {
+            if (string.length() > 0) {
+                string.append(System.lineSeparator());
+            }
+            string.append(file.getPath()).append(':').append(diagnostic);
+        }
+
+        if (isTruncated()) {
+            string.append(System.lineSeparator()).append(String.format("%s: %d more errors", file.getPath(), errorCount - diagnostics.size()));
+        }
+
+        return string.toString();
+    }
+}
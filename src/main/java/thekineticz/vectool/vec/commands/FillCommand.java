@@ -1,8 +1,7 @@
 package thekineticz.vectool.vec.commands;
 
 import thekineticz.vectool.exception.VecCommandException;
-import thekineticz.vectool.vec.common.ColourHexMatcher;
-import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.*;
 
 /**
  * The internal structure of a fill vec command.
@@ -10,10 +9,11 @@ import thekineticz.vectool.vec.common.VecCommand;
 public class FillCommand extends VecCommand {
 
     public static final String COMMAND_NAME = "FILL";
-    public static final String FILL_OFF = "OFF";
+    public static final String FILL_OFF = VecColour.NONE_STRING;
     private static final int REQUIRED_ARGUMENTS = 1;
+    private static final String ARGUMENT_COUNT_ERROR = String.format("%s command string must contain exactly %d arguments", COMMAND_NAME, REQUIRED_ARGUMENTS);
 
-    private String colour;
+    private final int colour;
 
     /**
      * Constructs a new fill command.
@@ -23,10 +23,25 @@ public class FillCommand extends VecCommand {
      */
     public FillCommand(String colour) throws VecCommandException {
         super(COMMAND_NAME);
+        this.colour = colour.equals(FILL_OFF) ? VecColour.NONE : VecColour.parse(colour);
 
-        if (!(colour.equals(FILL_OFF) || ColourHexMatcher.isValid(colour))) {
+        if (this.colour == VecColour.NONE && !colour.equals(FILL_OFF)) {
             throw new VecCommandException(String.format("Invalid colour argument '%s' for %s command.", colour, COMMAND_NAME));
         }
+    }
+
+    /**
+     * Constructs a new fill command from a packed colour.
+     *
+     * @param colour The packed 0xRRGGBB colour value for the fill, or VecColour.NONE to turn fill off.
+     * @throws VecCommandException Thrown if the value isn't a 24-bit colour or NONE.
+     */
+    public FillCommand(int colour) throws VecCommandException {
+        super(COMMAND_NAME);
+
+        if (colour != VecColour.NONE && (colour & ~0xFFFFFF) != 0) {
+            throw new VecCommandException(String.format("Invalid colour value %d for %s command.", colour, COMMAND_NAME));
+        }
 
         this.colour = colour;
     }
@@ -39,25 +54,48 @@ public class FillCommand extends VecCommand {
      * @throws VecCommandException Thrown if an error occurs while parsing the string.
      */
     public static FillCommand fromString(String command) throws VecCommandException {
-        String[] commandArray = command.split(" ");
+        return fromTokens(new VecCommandTokenizer(command));
+    }
 
-        if (commandArray.length - 1 != REQUIRED_ARGUMENTS) {
-            throw new VecCommandException(String.format("%s command string must contain exactly %d arguments", COMMAND_NAME, REQUIRED_ARGUMENTS));
+    /**
+     * Constructs a new fill command from a tokenized vec command.
+     *
+     * @param tokens The tokenized command line.
+     * @return The FillCommand object representing the command line.
+     * @throws VecCommandException Thrown if an error occurs while parsing the line.
+     */
+    public static FillCommand fromTokens(VecCommandTokenizer tokens) throws VecCommandException {
+        if (tokens.getTokenCount() - 1 != REQUIRED_ARGUMENTS) {
+            throw new VecCommandException(ARGUMENT_COUNT_ERROR, Math.min(tokens.getTokenCount(), REQUIRED_ARGUMENTS + 1));
         }
 
-        if (!commandArray[0].equals(COMMAND_NAME)) {
-            throw new VecCommandException("Attempted to generate FillCommand from string with incorrect identifier.");
+        if (!tokens.tokenEquals(0, COMMAND_NAME)) {
+            throw new VecCommandException("Attempted to generate FillCommand from string with incorrect identifier.", 0);
         }
 
-        return new FillCommand(commandArray[1]);
+        //Points an invalid colour at its token
+        try {
+            return new FillCommand(tokens.getToken(1));
+        } catch (VecCommandException e) {
+            throw new VecCommandException(e.getMessage(), 1);
+        }
     }
 
     /**
-     * Gets the fill colour.
+     * Gets the fill colour, in upper case 6-digit hexadecimal string form.
      *
-     * @return The fill colour.
+     * @return The fill colour, or the OFF command.
      */
     public String getColour() {
+        return VecColour.toString(colour);
+    }
+
+    /**
+     * Gets the fill colour as a packed value.
+     *
+     * @return The 0xRRGGBB fill colour, or VecColour.NONE if fill is off.
+     */
+    public int getRgb() {
         return colour;
     }
 
@@ -69,4 +107,35 @@ public class FillCommand extends VecCommand {
     public String getArgs() {
         return getColour();
     }
+
+    /**
+     * The command type of fill commands.
+     */
+    public static class Type implements VecCommandType {
+
+        @Override
+        public String getCommandName() {
+            return COMMAND_NAME;
+        }
+
+        @Override
+        public Class<FillCommand> getCommandClass() {
+            return FillCommand.class;
+        }
+
+        @Override
+        public FillCommand parse(VecCommandTokenizer tokens) throws VecCommandException {
+            return fromTokens(tokens);
+        }
+
+        @Override
+        public void serialize(VecCommand command, VecTextFormatter formatter) {
+            formatter.append(COMMAND_NAME).append(' ').appendColour(((FillCommand) command).getRgb());
+        }
+
+        @Override
+        public void render(VecCommand command, VecRenderer renderer) {
+            renderer.setFillColour(((FillCommand) command).getRgb());
+        }
+    }
 }
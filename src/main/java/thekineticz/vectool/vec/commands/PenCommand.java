@@ -1,8 +1,7 @@
 package thekineticz.vectool.vec.commands;
 
 import thekineticz.vectool.exception.VecCommandException;
-import thekineticz.vectool.vec.common.ColourHexMatcher;
-import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.*;
 
 /**
  * The internal structure of a pen vec command.
@@ -11,8 +10,9 @@ public class PenCommand extends VecCommand {
 
     public static final String COMMAND_NAME = "PEN";
     private static final int REQUIRED_ARGUMENTS = 1;
+    private static final String ARGUMENT_COUNT_ERROR = String.format("%s command string must contain exactly %d arguments", COMMAND_NAME, REQUIRED_ARGUMENTS);
 
-    private String colour;
+    private final int colour;
 
     /**
      * Constructs a new pen command.
@@ -22,10 +22,25 @@ public class PenCommand extends VecCommand {
      */
     public PenCommand(String colour) throws VecCommandException {
         super(COMMAND_NAME);
+        this.colour = VecColour.parse(colour);
 
-        if (!ColourHexMatcher.isValid(colour)) {
+        if (this.colour == VecColour.NONE) {
             throw new VecCommandException(String.format("Invalid colour argument '%s' for %s command.", colour, COMMAND_NAME));
         }
+    }
+
+    /**
+     * Constructs a new pen command from a packed colour.
+     *
+     * @param colour The packed 0xRRGGBB colour value for the pen.
+     * @throws VecCommandException Thrown if the value isn't a 24-bit colour.
+     */
+    public PenCommand(int colour) throws VecCommandException {
+        super(COMMAND_NAME);
+
+        if ((colour & ~0xFFFFFF) != 0) {
+            throw new VecCommandException(String.format("Invalid colour value %d for %s command.", colour, COMMAND_NAME));
+        }
 
         this.colour = colour;
     }
@@ -38,25 +53,48 @@ public class PenCommand extends VecCommand {
      * @throws VecCommandException Thrown if an error occurs while parsing the string.
      */
     public static PenCommand fromString(String command) throws VecCommandException {
-        String[] commandArray = command.split(" ");
+        return fromTokens(new VecCommandTokenizer(command));
+    }
 
-        if (commandArray.length - 1 != REQUIRED_ARGUMENTS) {
-            throw new VecCommandException(String.format("%s command string must contain exactly %d arguments", COMMAND_NAME, REQUIRED_ARGUMENTS));
+    /**
+     * Constructs a new pen command from a tokenized vec command.
+     *
+     * @param tokens The tokenized command line.
+     * @return The PenCommand object representing the command line.
+     * @throws VecCommandException Thrown if an error occurs while parsing the line.
+     */
+    public static PenCommand fromTokens(VecCommandTokenizer tokens) throws VecCommandException {
+        if (tokens.getTokenCount() - 1 != REQUIRED_ARGUMENTS) {
+            throw new VecCommandException(ARGUMENT_COUNT_ERROR, Math.min(tokens.getTokenCount(), REQUIRED_ARGUMENTS + 1));
         }
 
-        if (!commandArray[0].equals(COMMAND_NAME)) {
-            throw new VecCommandException("Attempted to generate PenCommand from string with incorrect identifier.");
+        if (!tokens.tokenEquals(0, COMMAND_NAME)) {
+            throw new VecCommandException("Attempted to generate PenCommand from string with incorrect identifier.", 0);
         }
 
-        return new PenCommand(commandArray[1]);
+        //Points an invalid colour at its token
+        try {
+            return new PenCommand(tokens.getToken(1));
+        } catch (VecCommandException e) {
+            throw new VecCommandException(e.getMessage(), 1);
+        }
     }
 
     /**
-     * Gets the colour of the pen.
+     * Gets the colour of the pen, in upper case 6-digit hexadecimal string form.
      *
      * @return The colour of the pen.
      */
     public String getColour() {
+        return VecColour.toString(colour);
+    }
+
+    /**
+     * Gets the colour of the pen as a packed value.
+     *
+     * @return The 0xRRGGBB colour of the pen.
+     */
+    public int getRgb() {
         return colour;
     }
 
@@ -68,4 +106,35 @@ public class PenCommand extends VecCommand {
     public String getArgs() {
         return getColour();
     }
+
+    /**
+     * The command type of pen commands.
+     */
+    public static class Type implements VecCommandType {
+
+        @Override
+        public String getCommandName() {
+            return COMMAND_NAME;
+        }
+
+        @Override
+        public Class<PenCommand> getCommandClass() {
+            return PenCommand.class;
+        }
+
+        @Override
+        public PenCommand parse(VecCommandTokenizer tokens) throws VecCommandException {
+            return fromTokens(tokens);
+        }
+
+        @Override
+        public void serialize(VecCommand command, VecTextFormatter formatter) {
+            formatter.append(COMMAND_NAME).append(' ').appendColour(((PenCommand) command).getRgb());
+        }
+
+        @Override
+        public void render(VecCommand command, VecRenderer renderer) {
+            renderer.setPenColour(((PenCommand) command).getRgb());
+        }
+    }
 }
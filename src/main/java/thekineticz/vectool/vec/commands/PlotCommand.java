@@ -3,6 +3,10 @@ package thekineticz.vectool.vec.commands;
 import thekineticz.vectool.exception.VecCommandException;
 import thekineticz.vectool.vec.common.Position;
 import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+import thekineticz.vectool.vec.common.VecCommandType;
+import thekineticz.vectool.vec.common.VecRenderer;
+import thekineticz.vectool.vec.common.VecTextFormatter;
 
 /**
  * The internal structure of a plot vec command.
@@ -11,6 +15,8 @@ public class PlotCommand extends VecCommand {
 
     public static final String COMMAND_NAME = "PLOT";
     private static final int REQUIRED_POSITION_VALUES = 2;
+    private static final String ARGUMENT_COUNT_ERROR = String.format("%s command string must contain %d arguments, separated by a space.", COMMAND_NAME, REQUIRED_POSITION_VALUES + 1);
+    private static final String INVALID_POSITION_ERROR = String.format("Attempted to parse invalid argument for %s command position.", COMMAND_NAME);
 
     private Position position;
 
@@ -32,26 +38,37 @@ public class PlotCommand extends VecCommand {
      * @throws VecCommandException Thrown if an error occurs while parsing the string.
      */
     public static PlotCommand fromString(String command) throws VecCommandException {
-        String[] commandArray = command.split(" ");
+        return fromTokens(new VecCommandTokenizer(command));
+    }
 
+    /**
+     * Constructs a PlotCommand object from a tokenized plot command.
+     *
+     * @param tokens The tokenized command line.
+     * @return The PlotCommand object representing the command line.
+     * @throws VecCommandException Thrown if an error occurs while parsing the line.
+     */
+    public static PlotCommand fromTokens(VecCommandTokenizer tokens) throws VecCommandException {
         //Check the input string for valid amount of arguments
-        if (commandArray.length - 1 != REQUIRED_POSITION_VALUES) {
-            throw new VecCommandException(String.format("%s command string must contain %d arguments, separated by a space.", COMMAND_NAME, REQUIRED_POSITION_VALUES + 1));
+        if (tokens.getTokenCount() - 1 != REQUIRED_POSITION_VALUES) {
+            throw new VecCommandException(ARGUMENT_COUNT_ERROR, Math.min(tokens.getTokenCount(), REQUIRED_POSITION_VALUES + 1));
         }
 
         //Check the input string for valid identifier
-        if (!commandArray[0].equals(COMMAND_NAME)) {
-            throw new VecCommandException("Attempted to generate PlotCommand from string with incorrect identifier.");
+        if (!tokens.tokenEquals(0, COMMAND_NAME)) {
+            throw new VecCommandException("Attempted to generate PlotCommand from string with incorrect identifier.", 0);
         }
 
-        Double x, y;
+        double x, y;
 
         //Try to parse the position arguments
+        int tokenIndex = 1;
         try {
-            x = Double.valueOf(commandArray[1]);
-            y = Double.valueOf(commandArray[2]);
+            x = tokens.getDouble(tokenIndex);
+            tokenIndex++;
+            y = tokens.getDouble(tokenIndex);
         } catch (Exception e) {
-            throw new VecCommandException(String.format("Attempted to parse invalid argument for %s command position.", COMMAND_NAME), e);
+            throw new VecCommandException(INVALID_POSITION_ERROR, tokenIndex, e);
         }
 
         return new PlotCommand(new Position(x, y));
@@ -74,4 +91,35 @@ public class PlotCommand extends VecCommand {
     public String getArgs() {
         return position.toString();
     }
+
+    /**
+     * The command type of plot commands.
+     */
+    public static class Type implements VecCommandType {
+
+        @Override
+        public String getCommandName() {
+            return COMMAND_NAME;
+        }
+
+        @Override
+        public Class<PlotCommand> getCommandClass() {
+            return PlotCommand.class;
+        }
+
+        @Override
+        public PlotCommand parse(VecCommandTokenizer tokens) throws VecCommandException {
+            return fromTokens(tokens);
+        }
+
+        @Override
+        public void serialize(VecCommand command, VecTextFormatter formatter) {
+            formatter.append(COMMAND_NAME).append(' ').append(((PlotCommand) command).getPosition());
+        }
+
+        @Override
+        public void render(VecCommand command, VecRenderer renderer) {
+            renderer.plot(((PlotCommand) command).getPosition());
+        }
+    }
 }
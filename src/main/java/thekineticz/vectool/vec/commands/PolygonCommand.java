@@ -3,6 +3,10 @@ package thekineticz.vectool.vec.commands;
 import thekineticz.vectool.exception.VecCommandException;
 import thekineticz.vectool.vec.common.Position;
 import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+import thekineticz.vectool.vec.common.VecCommandType;
+import thekineticz.vectool.vec.common.VecRenderer;
+import thekineticz.vectool.vec.common.VecTextFormatter;
 
 import java.util.ArrayList;
 
@@ -12,6 +16,10 @@ import java.util.ArrayList;
 public class PolygonCommand extends VecCommand {
 
     public static final String COMMAND_NAME = "POLYGON";
+    private static final String EMPTY_ERROR = String.format("Attempted to create %s from empty string.", COMMAND_NAME);
+    private static final String NO_VERTICES_ERROR = String.format("Attempted to create %s from string with no vertex arguments.", COMMAND_NAME);
+    private static final String ODD_ARGUMENTS_ERROR = String.format("Attempted to create %s from command string an invalid amount of position arguments.", COMMAND_NAME);
+    private static final String INVALID_POSITION_ERROR = String.format("Attempted to parse invalid argument for %s command position.", COMMAND_NAME);
 
     private ArrayList<Position> vertices;
 
@@ -36,38 +44,51 @@ public class PolygonCommand extends VecCommand {
      * @throws VecCommandException Thrown if an error occurs while parsing the string.
      */
     public static PolygonCommand fromString(String command) throws VecCommandException {
-        String[] commandArray = command.split(" ");
+        return fromTokens(new VecCommandTokenizer(command));
+    }
+
+    /**
+     * Constructs a new PolygonCommand from a tokenized polygon command.
+     *
+     * @param tokens The tokenized command line.
+     * @return The PolygonCommand object representing the command line.
+     * @throws VecCommandException Thrown if an error occurs while parsing the line.
+     */
+    public static PolygonCommand fromTokens(VecCommandTokenizer tokens) throws VecCommandException {
+        int tokenCount = tokens.getTokenCount();
 
         //Check whether the input string is empty
-        if (commandArray.length == 0) {
-            throw new VecCommandException(String.format("Attempted to create %s from empty string.", COMMAND_NAME));
+        if (tokenCount == 0) {
+            throw new VecCommandException(EMPTY_ERROR, 0);
         }
 
         //Check whether the input string is empty
-        if (!commandArray[0].equals(COMMAND_NAME)) {
-            throw new VecCommandException("Attempted to generate PolygonCommand from string with incorrect identifier.");
+        if (!tokens.tokenEquals(0, COMMAND_NAME)) {
+            throw new VecCommandException("Attempted to generate PolygonCommand from string with incorrect identifier.", 0);
         }
 
         //Check whether the input string has any vertex arguments
-        if (commandArray.length == 1) {
-            throw new VecCommandException(String.format("Attempted to create %s from string with no vertex arguments.", COMMAND_NAME));
+        if (tokenCount == 1) {
+            throw new VecCommandException(NO_VERTICES_ERROR, 1);
         }
 
         //Check if the input string has a valid count of vertex commands for creating position pairs
-        if ((commandArray.length - 1) % 2 != 0) {
-            throw new VecCommandException(String.format("Attempted to create %s from command string an invalid amount of position arguments.", COMMAND_NAME));
+        if ((tokenCount - 1) % 2 != 0) {
+            throw new VecCommandException(ODD_ARGUMENTS_ERROR, tokenCount - 1);
         }
 
-        ArrayList<Position> positions = new ArrayList<>();
-        Double x, y;
+        ArrayList<Position> positions = new ArrayList<>(tokenCount / 2);
+        double x, y;
 
         //Try to parse the position arguments
-        for (int i = 0; i < commandArray.length / 2; i++) {
+        for (int i = 0; i < tokenCount / 2; i++) {
+            int tokenIndex = 1 + i * 2;
             try {
-                x = Double.valueOf(commandArray[1 + i * 2]);
-                y = Double.valueOf(commandArray[2 + i * 2]);
+                x = tokens.getDouble(tokenIndex);
+                tokenIndex++;
+                y = tokens.getDouble(tokenIndex);
             } catch (Exception e) {
-                throw new VecCommandException(String.format("Attempted to parse invalid argument for %s command position.", COMMAND_NAME), e);
+                throw new VecCommandException(INVALID_POSITION_ERROR, tokenIndex, e);
             }
             positions.add(new Position(x, y));
         }
@@ -90,12 +111,37 @@ public class PolygonCommand extends VecCommand {
      * @return The vertices of the polygon in string form.
      */
     public String getArgs() {
-        StringBuilder string = new StringBuilder(vertices.get(0).toString());
-        for (int i = 1; i < vertices.size(); i++) {
-            string.append(" ");
-            string.append(vertices.get(i).toString());
+        return new VecTextFormatter().append(vertices).toString();
+    }
+
+    /**
+     * The command type of polygon commands.
+     */
+    public static class Type implements VecCommandType {
+
+        @Override
+        public String getCommandName() {
+            return COMMAND_NAME;
+        }
+
+        @Override
+        public Class<PolygonCommand> getCommandClass() {
+            return PolygonCommand.class;
+        }
+
+        @Override
+        public PolygonCommand parse(VecCommandTokenizer tokens) throws VecCommandException {
+            return fromTokens(tokens);
+        }
+
+        @Override
+        public void serialize(VecCommand command, VecTextFormatter formatter) {
+            formatter.appendCommand(COMMAND_NAME, ((PolygonCommand) command).getVertices());
         }
 
-        return string.toString();
+        @Override
+        public void render(VecCommand command, VecRenderer renderer) {
+            renderer.drawPolygon(((PolygonCommand) command).getVertices());
+        }
     }
 }
@@ -3,6 +3,11 @@ package thekineticz.vectool.vec.commands;
 import thekineticz.vectool.exception.VecCommandException;
 import thekineticz.vectool.vec.common.Position;
 import thekineticz.vectool.vec.common.ShapeCommand;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandTokenizer;
+import thekineticz.vectool.vec.common.VecCommandType;
+import thekineticz.vectool.vec.common.VecRenderer;
+import thekineticz.vectool.vec.common.VecTextFormatter;
 
 import java.util.ArrayList;
 
@@ -14,6 +19,8 @@ public class RectangleCommand extends ShapeCommand {
     public static final String COMMAND_NAME = "RECTANGLE";
     private static final int REQUIRED_POSITION_VALUES = 4;
     private static final int REQUIRED_POSITIONS = 2;
+    private static final String ARGUMENT_COUNT_ERROR = String.format("%s command string must contain %d arguments, separated by a space.", COMMAND_NAME, REQUIRED_POSITION_VALUES + 1);
+    private static final String INVALID_POSITION_ERROR = String.format("Attempted to parse invalid argument for %s command position.", COMMAND_NAME);
 
     /**
      * Constructs a new RectangleCommand.
@@ -25,42 +32,83 @@ public class RectangleCommand extends ShapeCommand {
     }
 
     /**
-     * Constructs a RectangleCommand object from a line command string.
+     * Constructs a RectangleCommand object from a rectangle command string.
      *
      * @param command The command string.
      * @return The RectangleCommand object representing the command string.
      * @throws VecCommandException Thrown if an error occurs while parsing the string.
      */
     public static RectangleCommand fromString(String command) throws VecCommandException {
-        String[] commandArray = command.split(" ");
+        return fromTokens(new VecCommandTokenizer(command));
+    }
 
+    /**
+     * Constructs a RectangleCommand object from a tokenized rectangle command.
+     *
+     * @param tokens The tokenized command line.
+     * @return The RectangleCommand object representing the command line.
+     * @throws VecCommandException Thrown if an error occurs while parsing the line.
+     */
+    public static RectangleCommand fromTokens(VecCommandTokenizer tokens) throws VecCommandException {
         //Check the input string for valid amount of arguments
-        if (commandArray.length - 1 != REQUIRED_POSITION_VALUES) {
-            throw new VecCommandException(String.format("%s command string must contain %d arguments, separated by a space.", COMMAND_NAME, REQUIRED_POSITION_VALUES + 1));
+        if (tokens.getTokenCount() - 1 != REQUIRED_POSITION_VALUES) {
+            throw new VecCommandException(ARGUMENT_COUNT_ERROR, Math.min(tokens.getTokenCount(), REQUIRED_POSITION_VALUES + 1));
         }
 
         //Check the input string for valid identifier
-        if (!commandArray[0].equals(COMMAND_NAME)) {
-            throw new VecCommandException("Attempted to generate RectangleCommand from string with incorrect identifier.");
+        if (!tokens.tokenEquals(0, COMMAND_NAME)) {
+            throw new VecCommandException("Attempted to generate RectangleCommand from string with incorrect identifier.", 0);
         }
 
-        ArrayList<Position> positions = new ArrayList<>();
-        Double x;
-        Double y;
+        ArrayList<Position> positions = new ArrayList<>(REQUIRED_POSITIONS);
+        double x, y;
 
         //Get positions from string arguments
         for (int i = 0; i < REQUIRED_POSITIONS; i++) {
 
             //Try to parse the position arguments
+            int tokenIndex = 1 + i * 2;
             try {
-                x = Double.valueOf(commandArray[1 + i * 2]);
-                y = Double.valueOf(commandArray[2 + i * 2]);
+                x = tokens.getDouble(tokenIndex);
+                tokenIndex++;
+                y = tokens.getDouble(tokenIndex);
             } catch (Exception e) {
-                throw new VecCommandException(String.format("Attempted to parse invalid argument for %s command position.", COMMAND_NAME), e);
+                throw new VecCommandException(INVALID_POSITION_ERROR, tokenIndex, e);
             }
             positions.add(new Position(x, y));
         }
 
         return new RectangleCommand(positions);
     }
+
+    /**
+     * The command type of rectangle commands.
+     */
+    public static class Type implements VecCommandType {
+
+        @Override
+        public String getCommandName() {
+            return COMMAND_NAME;
+        }
+
+        @Override
+        public Class<RectangleCommand> getCommandClass() {
+            return RectangleCommand.class;
+        }
+
+        @Override
+        public RectangleCommand parse(VecCommandTokenizer tokens) throws VecCommandException {
+            return fromTokens(tokens);
+        }
+
+        @Override
+        public void serialize(VecCommand command, VecTextFormatter formatter) {
+            formatter.appendCommand(COMMAND_NAME, ((RectangleCommand) command).getPositions());
+        }
+
+        @Override
+        public void render(VecCommand command, VecRenderer renderer) {
+            renderer.drawRectangle(((RectangleCommand) command).getPositions());
+        }
+    }
 }
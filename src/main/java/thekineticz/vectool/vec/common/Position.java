@@ -4,8 +4,8 @@ package thekineticz.vectool.vec.common;
  * Class representing a position pair.
  */
 public class Position {
-    private final Double x;
-    private final Double y;
+    private final double x;
+    private final double y;
 
     /**
      * Creates a new position pair.
@@ -13,7 +13,7 @@ public class Position {
      * @param x The first element of the pair.
      * @param y The second element of the pair.
      */
-    public Position(Double x, Double y) {
+    public Position(double x, double y) {
         this.x = x;
         this.y = y;
     }
@@ -23,7 +23,7 @@ public class Position {
      *
      * @return The first element of the pair.
      */
-    public Double getX() {
+    public double getX() {
         return x;
     }
 
@@ -32,7 +32,7 @@ public class Position {
      *
      * @return The second element of the pair.
      */
-    public Double getY() {
+    public double getY() {
         return y;
     }
 
@@ -43,7 +43,7 @@ public class Position {
      */
     @Override
     public int hashCode() {
-        return x.hashCode() ^ y.hashCode();
+        return Double.hashCode(x) ^ Double.hashCode(y);
     }
 
     /**
@@ -59,7 +59,8 @@ public class Position {
         }
 
         Position pos2 = (Position) o;
-        return x.equals(pos2.x) && y.equals(pos2.y);
+        //Compares like Double.equals, so NaN equals itself and 0.0 doesn't equal -0.0
+        return Double.compare(x, pos2.x) == 0 && Double.compare(y, pos2.y) == 0;
     }
 
     /**
@@ -79,6 +80,6 @@ public class Position {
      */
     @Override
     public String toString() {
-        return String.format("%s %s", x.toString(), y.toString());
+        return new VecTextFormatter().append(this).toString();
     }
 }
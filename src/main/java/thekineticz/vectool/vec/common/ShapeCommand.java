@@ -45,12 +45,6 @@ public class ShapeCommand extends VecCommand {
      */
     @Override
     public String getArgs() {
-        StringBuilder string = new StringBuilder(positions.get(0).toString());
-        for (int i = 1; i < positions.size(); i++) {
-            string.append(" ");
-            string.append(positions.get(i).toString());
-        }
-
-        return string.toString();
+        return new VecTextFormatter().append(positions).toString();
     }
 }
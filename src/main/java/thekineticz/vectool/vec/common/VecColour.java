@@ -0,0 +1,91 @@
+package thekineticz.vectool.vec.common;
+
+import java.awt.*;
+
+/**
+ * Converts between the packed 0xRRGGBB colours that commands hold and the colour strings of vec files.
+ * Colour strings are only parsed when a file is read and only formatted when one is written.
+ */
+public final class VecColour {
+
+    /**
+     * The colour of a fill command that turns fill off.
+     */
+    public static final int NONE = -1;
+
+    /**
+     * The string form of NONE in vec files.
+     */
+    public static final String NONE_STRING = "OFF";
+
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+    private static final int HEX_LENGTH = 7;
+
+    /**
+     * Static methods only.
+     */
+    private VecColour() {
+    }
+
+    /**
+     * Parses a 6-digit hexadecimal colour string, such as #FF00a0, in either case.
+     *
+     * @param hex The colour string.
+     * @return The packed colour, or NONE if the string isn't a valid colour.
+     */
+    public static int parse(CharSequence hex) {
+        if (hex.length() != HEX_LENGTH || hex.charAt(0) != '#') {
+            return NONE;
+        }
+
+        int rgb = 0;
+        for (int i = 1; i < HEX_LENGTH; i++) {
+            int digit = Character.digit(hex.charAt(i), 16);
+            if (digit < 0 || hex.charAt(i) > 'f') {
+                return NONE;
+            }
+            rgb = (rgb << 4) | digit;
+        }
+        return rgb;
+    }
+
+    /**
+     * Formats a packed colour as an upper case 6-digit hexadecimal colour string.
+     *
+     * @param rgb The packed colour, or NONE.
+     * @return The colour string, or 'OFF' for NONE.
+     */
+    public static String toString(int rgb) {
+        if (rgb == NONE) {
+            return NONE_STRING;
+        }
+
+        char[] hex = new char[HEX_LENGTH];
+        hex[0] = '#';
+        for (int i = HEX_LENGTH - 1; i > 0; i--) {
+            hex[i] = HEX_DIGITS[rgb & 0xF];
+            rgb >>>= 4;
+        }
+        return new String(hex);
+    }
+
+    /**
+     * Packs an AWT colour, ignoring its alpha.
+     *
+     * @param colour The colour, or null.
+     * @return The packed colour, or NONE for null.
+     */
+    public static int fromColor(Color colour) {
+        return colour == null ? NONE : colour.getRGB() & 0xFFFFFF;
+    }
+
+    /**
+     * Creates an AWT colour from a packed colour.
+     *
+     * @param rgb The packed colour, or NONE.
+     * @return The colour, or null for NONE.
+     */
+    public static Color toColor(int rgb) {
+        return rgb == NONE ? null : new Color(rgb);
+    }
+}
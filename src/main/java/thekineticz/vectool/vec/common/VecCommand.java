@@ -39,6 +39,6 @@ public abstract class VecCommand {
      */
     @Override
     public String toString() {
-        return String.format("%s %s", commandName, getArgs());
+        return commandName + " " + getArgs();
     }
 }
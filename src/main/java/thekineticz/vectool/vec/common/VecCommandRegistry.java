@@ -0,0 +1,178 @@
+package thekineticz.vectool.vec.common;
+
+import thekineticz.vectool.exception.VecCommandException;
+
+import java.util.*;
+
+/**
+ * The command types that are available, loaded once with a ServiceLoader.
+ * <p>
+ * Lines are matched to their type with a hash table keyed on the first token of the line, and commands are matched
+ * to their type by class, so neither lookup gets slower as more types are added.
+ */
+public final class VecCommandRegistry {
+
+    //The package of the command types that come with the application
+    private static final String BUILT_IN_PACKAGE = "thekineticz.vectool.vec.commands";
+
+    private static final List<VecCommandType> TYPES;
+    private static final Map<Class<? extends VecCommand>, VecCommandType> TYPES_BY_CLASS;
+
+    //Open addressing table of the types, indexed by the hash of the command name
+    private static final VecCommandType[] TABLE;
+    private static final int[] TABLE_HASHES;
+
+    private static final ClassValue<VecCommandType> COMMAND_TYPES = new ClassValue<VecCommandType>() {
+        @Override
+        protected VecCommandType computeValue(Class<?> type) {
+            //Subclasses of a registered command class are handled by the same type
+            for (Class<?> c = type; c != null; c = c.getSuperclass()) {
+                VecCommandType commandType = TYPES_BY_CLASS.get(c);
+                if (commandType != null) {
+                    return commandType;
+                }
+            }
+            return null;
+        }
+    };
+
+    static {
+        ArrayList<VecCommandType> types = new ArrayList<>();
+        HashMap<Class<? extends VecCommand>, VecCommandType> typesByClass = new HashMap<>();
+        HashSet<String> names = new HashSet<>();
+
+        //The registry's own class loader is used, since the first lookup may happen on a pool thread whose context
+        //class loader can't see the application's classes
+        ArrayList<ServiceLoader.Provider<VecCommandType>> providers = new ArrayList<>();
+        ServiceLoader.load(VecCommandType.class, VecCommandType.class.getClassLoader()).stream().forEach(providers::add);
+
+        //The first type found with a command name is used. The built in types are taken before any others, since
+        //providers come in class path order and a plugin earlier on the class path would otherwise replace them
+        providers.sort(Comparator.comparing(provider -> !BUILT_IN_PACKAGE.equals(provider.type().getPackageName())));
+        for (ServiceLoader.Provider<VecCommandType> provider : providers) {
+            VecCommandType type = provider.get();
+            if (names.add(type.getCommandName())) {
+                types.add(type);
+                typesByClass.putIfAbsent(type.getCommandClass(), type);
+            }
+        }
+
+        int capacity = Integer.highestOneBit(Math.max(types.size(), 1) * 4);
+        TABLE = new VecCommandType[capacity];
+        TABLE_HASHES = new int[capacity];
+        for (VecCommandType type : types) {
+            int hash = type.getCommandName().hashCode();
+            int slot = hash & (capacity - 1);
+            while (TABLE[slot] != null) {
+                slot = (slot + 1) & (capacity - 1);
+            }
+            TABLE[slot] = type;
+            TABLE_HASHES[slot] = hash;
+        }
+
+        TYPES = Collections.unmodifiableList(types);
+        TYPES_BY_CLASS = typesByClass;
+    }
+
+    private VecCommandRegistry() {
+    }
+
+    /**
+     * Gets every registered command type, in the order they were loaded.
+     *
+     * @return The command types.
+     */
+    public static List<VecCommandType> getTypes() {
+        return TYPES;
+    }
+
+    /**
+     * Finds the type whose command name is the first token of a command line.
+     *
+     * @param tokens The tokenized command line.
+     * @return The command type, or null if the first token isn't a command name.
+     */
+    public static VecCommandType find(VecCommandTokenizer tokens) {
+        if (tokens.getTokenCount() == 0) {
+            return null;
+        }
+
+        int hash = tokens.tokenHashCode(0);
+        for (int slot = hash & (TABLE.length - 1); TABLE[slot] != null; slot = (slot + 1) & (TABLE.length - 1)) {
+            if (TABLE_HASHES[slot] == hash && tokens.tokenEquals(0, TABLE[slot].getCommandName())) {
+                return TABLE[slot];
+            }
+        }
+
+        return null;
+    }
+
+    /**
+     * Finds the type with a command name.
+     *
+     * @param commandName The command name.
+     * @return The command type, or null if there is no type with the name.
+     */
+    public static VecCommandType forName(String commandName) {
+        return find(new VecCommandTokenizer(commandName));
+    }
+
+    /**
+     * Finds the type of a command.
+     *
+     * @param command The command.
+     * @return The command type, or null if the class of the command isn't registered.
+     */
+    public static VecCommandType forCommand(VecCommand command) {
+        return COMMAND_TYPES.get(command.getClass());
+    }
+
+    /**
+     * Parses a tokenized command line with the type named by its first token.
+     *
+     * @param tokens The tokenized command line.
+     * @return The command.
+     * @throws VecCommandException Thrown if the line isn't a valid command.
+     */
+    public static VecCommand parse(VecCommandTokenizer tokens) throws VecCommandException {
+        VecCommandType type = find(tokens);
+        if (type != null) {
+            return type.parse(tokens);
+        }
+
+        //Lines that only begin with a command name are left to that type, so it can report what is wrong with them
+        for (VecCommandType prefixType : TYPES) {
+            if (tokens.lineStartsWith(prefixType.getCommandName())) {
+                return prefixType.parse(tokens);
+            }
+        }
+
+        throw new VecCommandException("Attempted to convert string without a valid identifier to VecCommand.", 0);
+    }
+
+    /**
+     * Converts a command to the line that is written to a vec file.
+     *
+     * @param command The command.
+     * @return The command line.
+     */
+    public static String serialize(VecCommand command) {
+        VecCommandType type = forCommand(command);
+        return type != null ? type.serialize(command) : command.toString();
+    }
+
+    /**
+     * Appends the line of a command to a formatter.
+     *
+     * @param command   The command.
+     * @param formatter The formatter.
+     */
+    public static void serialize(VecCommand command, VecTextFormatter formatter) {
+        VecCommandType type = forCommand(command);
+        if (type != null) {
+            type.serialize(command, formatter);
+        } else {
+            formatter.append(command.toString());
+        }
+    }
+}
@@ -0,0 +1,315 @@
+package thekineticz.vectool.vec.common;
+
+import java.nio.ByteBuffer;
+import java.util.Arrays;
+
+/**
+ * Reusable cursor over a single vec command line.
+ * The line is split into tokens using the same rules as String.split(" "), but only token boundaries are recorded,
+ * so commands can be parsed straight from a char or byte window without creating intermediate strings.
+ */
+public class VecCommandTokenizer {
+
+    private static final int INITIAL_LINE_CAPACITY = 128;
+    private static final int INITIAL_TOKEN_CAPACITY = 16;
+    private static final int MAX_FAST_PATH_DIGITS = 18;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = {
+            1e0, 1e1, 1e2, 1e3, 1e4, 1e5, 1e6, 1e7, 1e8, 1e9, 1e10,
+            1e11, 1e12, 1e13, 1e14, 1e15, 1e16, 1e17, 1e18, 1e19, 1e20, 1e21, 1e22
+    };
+
+    private char[] line = new char[INITIAL_LINE_CAPACITY];
+    private char[] buffer;
+    private int start;
+    private int end;
+
+    private int[] tokenStarts = new int[INITIAL_TOKEN_CAPACITY];
+    private int[] tokenEnds = new int[INITIAL_TOKEN_CAPACITY];
+    private int tokenCount;
+
+    /**
+     * Creates an empty tokenizer.
+     */
+    public VecCommandTokenizer() {
+        reset(line, 0, 0);
+    }
+
+    /**
+     * Creates a tokenizer over a command string.
+     *
+     * @param command The command string.
+     */
+    public VecCommandTokenizer(CharSequence command) {
+        reset(command);
+    }
+
+    /**
+     * Points the tokenizer at a window of a char array. The array is not copied, so it must not be modified while
+     * the tokenizer is in use.
+     *
+     * @param buffer The array containing the line.
+     * @param offset The index of the first character of the line.
+     * @param length The length of the line, not including any line terminator.
+     */
+    public void reset(char[] buffer, int offset, int length) {
+        this.buffer = buffer;
+        this.start = offset;
+        this.end = offset + length;
+        tokenize();
+    }
+
+    /**
+     * Points the tokenizer at a window of a byte buffer containing an ASCII line.
+     * The bytes are widened into an internal array that is reused between lines.
+     *
+     * @param buffer The buffer containing the line.
+     * @param offset The absolute index of the first byte of the line.
+     * @param length The length of the line, not including any line terminator.
+     */
+    public void reset(ByteBuffer buffer, int offset, int length) {
+        ensureLineCapacity(length);
+        for (int i = 0; i < length; i++) {
+            line[i] = (char) (buffer.get(offset + i) & 0xFF);
+        }
+        reset(line, 0, length);
+    }
+
+    /**
+     * Points the tokenizer at a copy of a character sequence.
+     *
+     * @param command The command string.
+     */
+    public void reset(CharSequence command) {
+        int length = command.length();
+        ensureLineCapacity(length);
+        for (int i = 0; i < length; i++) {
+            line[i] = command.charAt(i);
+        }
+        reset(line, 0, length);
+    }
+
+    /**
+     * Records the token boundaries of the current line using String.split(" ") semantics:
+     * every space is a separator, an empty line is a single empty token and trailing empty tokens are dropped.
+     */
+    private void tokenize() {
+        tokenCount = 0;
+
+        if (start == end) {
+            addToken(start, end);
+            return;
+        }
+
+        int tokenStart = start;
+        for (int i = start; i < end; i++) {
+            if (buffer[i] == ' ') {
+                addToken(tokenStart, i);
+                tokenStart = i + 1;
+            }
+        }
+        addToken(tokenStart, end);
+
+        while (tokenCount > 0 && tokenStarts[tokenCount - 1] == tokenEnds[tokenCount - 1]) {
+            tokenCount--;
+        }
+    }
+
+    /**
+     * Appends a token boundary, growing the boundary arrays if required.
+     *
+     * @param tokenStart The index of the first character of the token.
+     * @param tokenEnd   The index after the last character of the token.
+     */
+    private void addToken(int tokenStart, int tokenEnd) {
+        if (tokenCount == tokenStarts.length) {
+            int capacity = tokenStarts.length * 2;
+            tokenStarts = Arrays.copyOf(tokenStarts, capacity);
+            tokenEnds = Arrays.copyOf(tokenEnds, capacity);
+        }
+
+        tokenStarts[tokenCount] = tokenStart;
+        tokenEnds[tokenCount] = tokenEnd;
+        tokenCount++;
+    }
+
+    /**
+     * Makes sure the internal line array can hold a line of the given length.
+     *
+     * @param length The required length.
+     */
+    private void ensureLineCapacity(int length) {
+        if (line.length < length) {
+            line = new char[Math.max(length, line.length * 2)];
+        }
+    }
+
+    /**
+     * Gets the number of tokens on the line, matching the length of the array String.split(" ") would return.
+     *
+     * @return The number of tokens.
+     */
+    public int getTokenCount() {
+        return tokenCount;
+    }
+
+    /**
+     * Gets the length of the current line.
+     *
+     * @return The length of the line.
+     */
+    public int getLength() {
+        return end - start;
+    }
+
+    /**
+     * Checks whether the whole line starts with a prefix.
+     *
+     * @param prefix The prefix.
+     * @return Whether the line starts with the prefix.
+     */
+    public boolean lineStartsWith(String prefix) {
+        int length = prefix.length();
+        if (end - start < length) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[start + i] != prefix.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Checks whether a token is equal to a string.
+     *
+     * @param index  The index of the token.
+     * @param string The string to compare against.
+     * @return Whether the token matches the string.
+     */
+    public boolean tokenEquals(int index, String string) {
+        int tokenStart = tokenStarts[index];
+        int length = tokenEnds[index] - tokenStart;
+        if (length != string.length()) {
+            return false;
+        }
+
+        for (int i = 0; i < length; i++) {
+            if (buffer[tokenStart + i] != string.charAt(i)) {
+                return false;
+            }
+        }
+
+        return true;
+    }
+
+    /**
+     * Gets a token as a new string.
+     *
+     * @param index The index of the token.
+     * @return The token in string form.
+     */
+    public String getToken(int index) {
+        return new String(buffer, tokenStarts[index], tokenEnds[index] - tokenStarts[index]);
+    }
+
+    /**
+     * Parses a token as a double, accepting exactly the same strings as Double.valueOf.
+     * Plain decimal tokens are converted without allocating; anything else falls back to Double.parseDouble.
+     *
+     * @param index The index of the token.
+     * @return The value of the token.
+     * @throws NumberFormatException Thrown if the token is not a valid double.
+     */
+    public double getDouble(int index) {
+        int tokenStart = tokenStarts[index];
+        int tokenEnd = tokenEnds[index];
+        int i = tokenStart;
+        boolean isNegative = false;
+
+        if (i < tokenEnd && (buffer[i] == '-' || buffer[i] == '+')) {
+            isNegative = buffer[i] == '-';
+            i++;
+        }
+
+        long mantissa = 0;
+        int digits = 0;
+        int fractionDigits = 0;
+        boolean isFraction = false;
+
+        for (; i < tokenEnd; i++) {
+            char c = buffer[i];
+            if (c >= '0' && c <= '9') {
+                if (++digits > MAX_FAST_PATH_DIGITS) {
+                    return parseDoubleSlow(tokenStart, tokenEnd);
+                }
+                mantissa = mantissa * 10 + (c - '0');
+                if (isFraction) {
+                    fractionDigits++;
+                }
+            } else if (c == '.' && !isFraction) {
+                isFraction = true;
+            } else {
+                return parseDoubleSlow(tokenStart, tokenEnd);
+            }
+        }
+
+        //Only mantissas and powers of ten that are exact doubles give a correctly rounded quotient
+        if (digits == 0 || mantissa > MAX_EXACT_MANTISSA || fractionDigits >= POWERS_OF_TEN.length) {
+            return parseDoubleSlow(tokenStart, tokenEnd);
+        }
+
+        double value = (double) mantissa / POWERS_OF_TEN[fractionDigits];
+        return isNegative ? -value : value;
+    }
+
+    /**
+     * Parses a token that the fast path could not handle.
+     *
+     * @param tokenStart The index of the first character of the token.
+     * @param tokenEnd   The index after the last character of the token.
+     * @return The value of the token.
+     * @throws NumberFormatException Thrown if the token is not a valid double.
+     */
+    private double parseDoubleSlow(int tokenStart, int tokenEnd) {
+        return Double.parseDouble(new String(buffer, tokenStart, tokenEnd - tokenStart));
+    }
+
+    /**
+     * Gets where a token starts in the current line.
+     *
+     * @param index The index of the token.
+     * @return The number of characters before the token in the line.
+     */
+    public int getTokenOffset(int index) {
+        return tokenStarts[index] - start;
+    }
+
+    /**
+     * Computes the hash code of a token without creating a string, matching String.hashCode for the same characters.
+     *
+     * @param index The index of the token.
+     * @return The hash code of the token.
+     */
+    public int tokenHashCode(int index) {
+        int hash = 0;
+        for (int i = tokenStarts[index]; i < tokenEnds[index]; i++) {
+            hash = 31 * hash + buffer[i];
+        }
+
+        return hash;
+    }
+
+    /**
+     * Gets the current line in string form.
+     *
+     * @return The current line.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, start, end - start);
+    }
+}
@@ -0,0 +1,66 @@
+package thekineticz.vectool.vec.common;
+
+import thekineticz.vectool.exception.VecCommandException;
+
+/**
+ * Describes how one kind of vec command is parsed, written and drawn.
+ * <p>
+ * Types are found with a ServiceLoader, so a command type can be added by listing its implementation in a
+ * META-INF/services/thekineticz.vectool.vec.common.VecCommandType file on the classpath.
+ * Implementations must be public and have a public constructor without arguments.
+ */
+public interface VecCommandType {
+
+    /**
+     * Gets the name that begins every line of a command of this type.
+     *
+     * @return The command name.
+     */
+    String getCommandName();
+
+    /**
+     * Gets the class of the commands of this type.
+     *
+     * @return The command class.
+     */
+    Class<? extends VecCommand> getCommandClass();
+
+    /**
+     * Parses a tokenized command line of this type.
+     *
+     * @param tokens The tokenized command line.
+     * @return The command.
+     * @throws VecCommandException Thrown if the line isn't a valid command of this type.
+     */
+    VecCommand parse(VecCommandTokenizer tokens) throws VecCommandException;
+
+    /**
+     * Converts a command of this type to the line that is written to a vec file.
+     *
+     * @param command The command.
+     * @return The command line.
+     */
+    default String serialize(VecCommand command) {
+        return command.toString();
+    }
+
+    /**
+     * Appends the line of a command of this type to a formatter, which is used when saving.
+     * Types whose arguments are coordinates should append them to the formatter directly, so that they are
+     * written without creating strings and in the precision of the formatter.
+     *
+     * @param command   The command.
+     * @param formatter The formatter.
+     */
+    default void serialize(VecCommand command, VecTextFormatter formatter) {
+        formatter.append(serialize(command));
+    }
+
+    /**
+     * Draws a command of this type, or updates the state of the renderer.
+     *
+     * @param command  The command.
+     * @param renderer The renderer of the image being drawn.
+     */
+    void render(VecCommand command, VecRenderer renderer);
+}
@@ -0,0 +1,686 @@
+package thekineticz.vectool.vec.common;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBuffer;
+import java.awt.image.DataBufferInt;
+import java.awt.image.IndexColorModel;
+import java.awt.image.SinglePixelPackedSampleModel;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Draws the shapes of vec commands onto a graphics context of a given size, keeping track of the current pen and
+ * fill colours. Positions are scaled by the width and height, so (1.0, 1.0) is the bottom-right corner, unless a
+ * viewport is given, in which case positions are scaled so that the viewport's window fills the image.
+ * <p>
+ * With level of detail on, shapes that would only cover a single pixel are drawn as that one pixel, and a run of
+ * points on the same pixel in the same colour, like a cluster of plots drawn at a low zoom, is drawn only once.
+ * Points outside the image are skipped altogether. This gives exactly the same pixels as drawing every shape in
+ * full, so long as nothing else draws on the graphics context in between, or graphicsChanged is called when
+ * something does.
+ * <p>
+ * A renderer created for a BufferedImage with int pixels writes points straight into the image's pixel array
+ * rather than drawing them through the graphics context, which is much faster and stores the same values.
+ * The graphics context must then have no transform and a rectangular clip, and graphicsChanged must be called
+ * whenever the clip changes.
+ * <p>
+ * Java2D flattens the curves of an ellipse differently when the clip cuts through it, so a renderer created for a
+ * BufferedImage draws such ellipses whole onto a mask in the same coordinates as the image, and copies the clipped
+ * part of them. An image drawn in clipped parts then has exactly the same pixels as one drawn all at once.
+ * <p>
+ * Every shape can also be drawn from device coordinates, which are positions already scaled to pixels by
+ * toDeviceX and toDeviceY, so that callers that draw the same shapes repeatedly can scale them only once.
+ */
+public class VecRenderer {
+
+    private final Graphics g;
+    private final int width;
+    private final int height;
+    private final VecViewport viewport;
+
+    private Color penColour = Color.BLACK;
+    private Color fillColour = null;
+
+    //The packed forms of the colours, so that setting an unchanged packed colour doesn't create a Color
+    private int penRgb = 0;
+    private int fillRgb = VecColour.NONE;
+
+    //Reused between polygons, so drawing one doesn't allocate
+    private int[] xPoints = new int[0];
+    private int[] yPoints = new int[0];
+
+    //The last point drawn with level of detail on, if nothing has been drawn over it since
+    private boolean isLevelOfDetail;
+    private boolean hasLastPoint;
+    private int lastPointX;
+    private int lastPointY;
+    private int lastPointRgb;
+
+    //Whether the renderer draws onto a BufferedImage, and the mask that ellipses the clip cuts through are drawn on,
+    //along with a view of it that shows the mask in the last colour used
+    private final boolean isImage;
+    private BufferedImage ellipseMask;
+    private Graphics2D ellipseMaskGraphics;
+    private BufferedImage colouredMask;
+    private int colouredMaskRgb;
+
+    //The image's pixels, if points are written to them directly, and the part of the image the clip allows
+    private final int[] pixels;
+    private final int pixelOffset;
+    private final int scanlineStride;
+    private int clipLeft;
+    private int clipTop;
+    private int clipRight;
+    private int clipBottom;
+
+    /**
+     * Creates a new renderer with a black pen and no fill.
+     *
+     * @param g      The graphics context to draw on.
+     * @param width  The width of the image in pixels.
+     * @param height The height of the image in pixels.
+     */
+    public VecRenderer(Graphics g, int width, int height) {
+        this(g, width, height, VecViewport.FULL);
+    }
+
+    /**
+     * Creates a new renderer with a black pen and no fill, that draws the part of the image inside a viewport.
+     *
+     * @param g        The graphics context to draw on.
+     * @param width    The width of the image in pixels.
+     * @param height   The height of the image in pixels.
+     * @param viewport The viewport whose window fills the image.
+     */
+    public VecRenderer(Graphics g, int width, int height, VecViewport viewport) {
+        this(g, width, height, viewport, false, null, 0, 0);
+    }
+
+    /**
+     * Creates a new renderer with a black pen and no fill, that draws the part of the image inside a viewport onto
+     * a BufferedImage. If the image stores its pixels as ints, points are written to them directly.
+     *
+     * @param image    The image.
+     * @param g        A graphics context for the image, with no transform and a rectangular clip if any.
+     * @param viewport The viewport whose window fills the image.
+     */
+    public VecRenderer(BufferedImage image, Graphics g, VecViewport viewport) {
+        this(g, image.getWidth(), image.getHeight(), viewport, true, getPixels(image), getPixelOffset(image), getScanlineStride(image));
+    }
+
+    /**
+     * Creates a new renderer with a black pen and no fill.
+     *
+     * @param g              The graphics context to draw on.
+     * @param width          The width of the image in pixels.
+     * @param height         The height of the image in pixels.
+     * @param viewport       The viewport whose window fills the image.
+     * @param isImage        Whether the graphics context draws onto a BufferedImage of the given size.
+     * @param pixels         The image's pixels, or null to draw points through the graphics context.
+     * @param pixelOffset    The index of the top left pixel.
+     * @param scanlineStride The distance between the starts of rows of pixels.
+     */
+    private VecRenderer(Graphics g, int width, int height, VecViewport viewport, boolean isImage, int[] pixels, int pixelOffset, int scanlineStride) {
+        this.g = g;
+        this.width = width;
+        this.height = height;
+        this.viewport = viewport;
+        this.isImage = isImage;
+        this.pixels = pixels;
+        this.pixelOffset = pixelOffset;
+        this.scanlineStride = scanlineStride;
+        graphicsChanged();
+    }
+
+    /**
+     * Gets the int pixels of an image, if it stores one per pixel in a single bank.
+     * Taking the array means the image can no longer be cached by the graphics hardware, which back buffers that
+     * are drawn to constantly gain little from anyway.
+     *
+     * @param image The image.
+     * @return The pixels, or null if the image stores them some other way.
+     */
+    private static int[] getPixels(BufferedImage image) {
+        int type = image.getType();
+        if ((type == BufferedImage.TYPE_INT_RGB || type == BufferedImage.TYPE_INT_ARGB)
+                && image.getRaster().getDataBuffer() instanceof DataBufferInt
+                && image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel
+                && image.getRaster().getParent() == null) {
+            return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+        }
+        return null;
+    }
+
+    /**
+     * Gets the index of an image's top left pixel in its int pixels.
+     *
+     * @param image The image.
+     * @return The index.
+     */
+    private static int getPixelOffset(BufferedImage image) {
+        return image.getRaster().getDataBuffer().getOffset();
+    }
+
+    /**
+     * Gets the distance between the starts of rows in an image's int pixels.
+     *
+     * @param image The image.
+     * @return The distance, or 0 if the image doesn't store its pixels in rows of ints.
+     */
+    private static int getScanlineStride(BufferedImage image) {
+        if (image.getRaster().getSampleModel() instanceof SinglePixelPackedSampleModel) {
+            return ((SinglePixelPackedSampleModel) image.getRaster().getSampleModel()).getScanlineStride();
+        }
+        return 0;
+    }
+
+    /**
+     * Turns level of detail on or off.
+     *
+     * @param isLevelOfDetail Whether single pixel shapes are drawn as points, and repeated points are skipped.
+     */
+    public void setLevelOfDetail(boolean isLevelOfDetail) {
+        this.isLevelOfDetail = isLevelOfDetail;
+        hasLastPoint = false;
+    }
+
+    /**
+     * Tells the renderer that something other than it has drawn on the graphics context, or that the context's
+     * clip has changed, so that it forgets the last point drawn and reads the clip again.
+     */
+    public void graphicsChanged() {
+        hasLastPoint = false;
+
+        clipLeft = 0;
+        clipTop = 0;
+        clipRight = width;
+        clipBottom = height;
+        Rectangle clip = g.getClipBounds();
+        if (clip != null) {
+            clipLeft = Math.max(clipLeft, clip.x);
+            clipTop = Math.max(clipTop, clip.y);
+            clipRight = Math.min(clipRight, clip.x + clip.width);
+            clipBottom = Math.min(clipBottom, clip.y + clip.height);
+        }
+    }
+
+    /**
+     * Gets the colour that outlines are drawn with.
+     *
+     * @return The pen colour.
+     */
+    public Color getPenColour() {
+        return penColour;
+    }
+
+    /**
+     * Sets the colour that outlines are drawn with.
+     *
+     * @param penColour The pen colour.
+     */
+    public void setPenColour(Color penColour) {
+        this.penColour = penColour;
+        this.penRgb = VecColour.fromColor(penColour);
+    }
+
+    /**
+     * Sets the colour that outlines are drawn with.
+     *
+     * @param penRgb The packed 0xRRGGBB pen colour.
+     */
+    public void setPenColour(int penRgb) {
+        if (penRgb != this.penRgb) {
+            this.penRgb = penRgb;
+            this.penColour = VecColour.toColor(penRgb);
+        }
+    }
+
+    /**
+     * Gets the colour that shapes are filled with.
+     *
+     * @return The fill colour, or null if shapes aren't filled.
+     */
+    public Color getFillColour() {
+        return fillColour;
+    }
+
+    /**
+     * Sets the colour that shapes are filled with.
+     *
+     * @param fillColour The fill colour, or null if shapes shouldn't be filled.
+     */
+    public void setFillColour(Color fillColour) {
+        this.fillColour = fillColour;
+        this.fillRgb = VecColour.fromColor(fillColour);
+    }
+
+    /**
+     * Sets the colour that shapes are filled with.
+     *
+     * @param fillRgb The packed 0xRRGGBB fill colour, or VecColour.NONE if shapes shouldn't be filled.
+     */
+    public void setFillColour(int fillRgb) {
+        if (fillRgb != this.fillRgb) {
+            this.fillRgb = fillRgb;
+            this.fillColour = VecColour.toColor(fillRgb);
+        }
+    }
+
+    /**
+     * Plots a single pixel in the pen colour.
+     *
+     * @param position The position of the pixel.
+     */
+    public void plot(Position position) {
+        plot(position.getX(), position.getY());
+    }
+
+    /**
+     * Plots a single pixel in the pen colour.
+     *
+     * @param x The x coordinate of the pixel.
+     * @param y The y coordinate of the pixel.
+     */
+    public void plot(double x, double y) {
+        plotPixel(toDeviceX(x), toDeviceY(y));
+    }
+
+    /**
+     * Plots a run of single pixels in the pen colour.
+     *
+     * @param coordinates The array holding the pixels as alternating x and y coordinates.
+     * @param offset      The index of the x coordinate of the first pixel.
+     * @param n           The number of pixels.
+     */
+    public void plot(double[] coordinates, int offset, int n) {
+        for (int i = 0; i < n; i++) {
+            plotPixel(toDeviceX(coordinates[offset + 2 * i]), toDeviceY(coordinates[offset + 2 * i + 1]));
+        }
+    }
+
+    /**
+     * Plots a run of single pixels in the pen colour, from device coordinates.
+     *
+     * @param points The array holding the pixels as alternating x and y device coordinates.
+     * @param offset The index of the x coordinate of the first pixel.
+     * @param n      The number of pixels.
+     */
+    public void plotDevice(int[] points, int offset, int n) {
+        for (int i = 0; i < n; i++) {
+            plotPixel(points[offset + 2 * i], points[offset + 2 * i + 1]);
+        }
+    }
+
+    /**
+     * Plots a single pixel in the pen colour, skipping it with level of detail on if it can't change the image.
+     *
+     * @param pixelX The x coordinate of the pixel.
+     * @param pixelY The y coordinate of the pixel.
+     */
+    private void plotPixel(int pixelX, int pixelY) {
+        if (isLevelOfDetail) {
+            if (pixelX < 0 || pixelY < 0 || pixelX >= width || pixelY >= height) {
+                return;
+            }
+
+            if (hasLastPoint && pixelX == lastPointX && pixelY == lastPointY && penRgb == lastPointRgb) {
+                return;
+            }
+            hasLastPoint = true;
+            lastPointX = pixelX;
+            lastPointY = pixelY;
+            lastPointRgb = penRgb;
+        }
+
+        if (pixels != null) {
+            //Opaque colours replace the pixel, which Java2D stores with its alpha bits set for both image types
+            if (pixelX >= clipLeft && pixelY >= clipTop && pixelX < clipRight && pixelY < clipBottom) {
+                pixels[pixelOffset + pixelY * scanlineStride + pixelX] = 0xFF000000 | penRgb;
+            }
+            return;
+        }
+
+        g.setColor(penColour);
+        g.drawLine(pixelX, pixelY, pixelX, pixelY);
+    }
+
+    /**
+     * Checks whether level of detail is on and a shape only covers one pixel, in which case it is drawn as a point.
+     * Outlines are drawn after fills, so a single pixel shape always ends up in the pen colour.
+     * Any other shape is about to be drawn in full, so the last point is forgotten if the shape may cover it.
+     *
+     * @param left   The left edge of the shape in pixels.
+     * @param top    The top edge of the shape in pixels.
+     * @param right  The right edge of the shape in pixels.
+     * @param bottom The bottom edge of the shape in pixels.
+     * @return Whether the shape was drawn as a point.
+     */
+    private boolean plotIfSinglePixel(int left, int top, int right, int bottom) {
+        if (!isLevelOfDetail) {
+            return false;
+        } else if (left == right && top == bottom) {
+            plotPixel(left, top);
+            return true;
+        }
+
+        //Shapes elsewhere leave the point alone, so plots either side of them can still be merged
+        if (lastPointX >= Math.min(left, right) - 1 && lastPointX <= Math.max(left, right) + 1
+                && lastPointY >= Math.min(top, bottom) - 1 && lastPointY <= Math.max(top, bottom) + 1) {
+            hasLastPoint = false;
+        }
+        return false;
+    }
+
+    /**
+     * Draws a line in the pen colour.
+     *
+     * @param positions The line endpoints.
+     */
+    public void drawLine(List<Position> positions) {
+        drawLine(positions.get(0).getX(), positions.get(0).getY(), positions.get(1).getX(), positions.get(1).getY());
+    }
+
+    /**
+     * Draws a line in the pen colour.
+     *
+     * @param x1 The x coordinate of the first endpoint.
+     * @param y1 The y coordinate of the first endpoint.
+     * @param x2 The x coordinate of the second endpoint.
+     * @param y2 The y coordinate of the second endpoint.
+     */
+    public void drawLine(double x1, double y1, double x2, double y2) {
+        drawDeviceLine(toDeviceX(x1), toDeviceY(y1), toDeviceX(x2), toDeviceY(y2));
+    }
+
+    /**
+     * Draws a line in the pen colour, from device coordinates.
+     *
+     * @param x1 The x device coordinate of the first endpoint.
+     * @param y1 The y device coordinate of the first endpoint.
+     * @param x2 The x device coordinate of the second endpoint.
+     * @param y2 The y device coordinate of the second endpoint.
+     */
+    public void drawDeviceLine(int x1, int y1, int x2, int y2) {
+        if (plotIfSinglePixel(x1, y1, x2, y2)) {
+            return;
+        }
+
+        g.setColor(penColour);
+        g.drawLine(x1, y1, x2, y2);
+    }
+
+    /**
+     * Draws a rectangle, filling it if there is a fill colour.
+     *
+     * @param positions The rectangle corners.
+     */
+    public void drawRectangle(List<Position> positions) {
+        drawRectangle(positions.get(0).getX(), positions.get(0).getY(), positions.get(1).getX(), positions.get(1).getY());
+    }
+
+    /**
+     * Draws a rectangle, filling it if there is a fill colour.
+     *
+     * @param x1 The x coordinate of the first corner.
+     * @param y1 The y coordinate of the first corner.
+     * @param x2 The x coordinate of the opposite corner.
+     * @param y2 The y coordinate of the opposite corner.
+     */
+    public void drawRectangle(double x1, double y1, double x2, double y2) {
+        drawDeviceRectangle(toDeviceX(x1), toDeviceY(y1), toDeviceX(x2), toDeviceY(y2));
+    }
+
+    /**
+     * Draws a rectangle, filling it if there is a fill colour, from device coordinates.
+     *
+     * @param x1 The x device coordinate of the first corner.
+     * @param y1 The y device coordinate of the first corner.
+     * @param x2 The x device coordinate of the opposite corner.
+     * @param y2 The y device coordinate of the opposite corner.
+     */
+    public void drawDeviceRectangle(int x1, int y1, int x2, int y2) {
+        int left = Math.min(x1, x2);
+        int top = Math.min(y1, y2);
+        int width = Math.abs(x2 - x1);
+        int height = Math.abs(y2 - y1);
+        if (plotIfSinglePixel(left, top, left + width, top + height)) {
+            return;
+        }
+
+        if (fillColour != null) {
+            g.setColor(fillColour);
+            g.fillRect(left, top, width, height);
+        }
+        g.setColor(penColour);
+        g.drawRect(left, top, width, height);
+    }
+
+    /**
+     * Draws an ellipse, filling it if there is a fill colour.
+     *
+     * @param positions The ellipse corners.
+     */
+    public void drawEllipse(List<Position> positions) {
+        drawEllipse(positions.get(0).getX(), positions.get(0).getY(), positions.get(1).getX(), positions.get(1).getY());
+    }
+
+    /**
+     * Draws an ellipse, filling it if there is a fill colour.
+     *
+     * @param x1 The x coordinate of the first corner of its bounds.
+     * @param y1 The y coordinate of the first corner of its bounds.
+     * @param x2 The x coordinate of the opposite corner of its bounds.
+     * @param y2 The y coordinate of the opposite corner of its bounds.
+     */
+    public void drawEllipse(double x1, double y1, double x2, double y2) {
+        drawDeviceEllipse(toDeviceX(x1), toDeviceY(y1), toDeviceX(x2), toDeviceY(y2));
+    }
+
+    /**
+     * Draws an ellipse, filling it if there is a fill colour, from device coordinates.
+     *
+     * @param x1 The x device coordinate of the first corner of its bounds.
+     * @param y1 The y device coordinate of the first corner of its bounds.
+     * @param x2 The x device coordinate of the opposite corner of its bounds.
+     * @param y2 The y device coordinate of the opposite corner of its bounds.
+     */
+    public void drawDeviceEllipse(int x1, int y1, int x2, int y2) {
+        int left = Math.min(x1, x2);
+        int top = Math.min(y1, y2);
+        int width = Math.abs(x2 - x1);
+        int height = Math.abs(y2 - y1);
+        if (plotIfSinglePixel(left, top, left + width, top + height)) {
+            return;
+        }
+
+        if (fillColour != null) {
+            g.setColor(fillColour);
+            drawOval(left, top, width, height, true);
+        }
+        g.setColor(penColour);
+        drawOval(left, top, width, height, false);
+    }
+
+    /**
+     * Fills or outlines an ellipse in the current colour of the graphics context, exactly as Graphics.fillOval or
+     * drawOval would with no clip other than the edges of the image.
+     *
+     * @param left   The left edge of the ellipse's bounds.
+     * @param top    The top edge of the ellipse's bounds.
+     * @param width  The width of the ellipse's bounds.
+     * @param height The height of the ellipse's bounds.
+     * @param isFill Whether to fill the ellipse rather than outline it.
+     */
+    private void drawOval(int left, int top, int width, int height, boolean isFill) {
+        //The part of the image the ellipse's width + 1 by height + 1 pixels can cover
+        int boundsLeft = Math.max(left, 0);
+        int boundsTop = Math.max(top, 0);
+        int boundsRight = (int) Math.min((long) left + width + 1, this.width);
+        int boundsBottom = (int) Math.min((long) top + height + 1, this.height);
+
+        boolean isCut = boundsLeft < clipRight && boundsTop < clipBottom && boundsRight > clipLeft && boundsBottom > clipTop
+                && (boundsLeft < clipLeft || boundsTop < clipTop || boundsRight > clipRight || boundsBottom > clipBottom);
+        if (!isImage || !isCut) {
+            if (isFill) {
+                g.fillOval(left, top, width, height);
+            } else {
+                g.drawOval(left, top, width, height);
+            }
+            return;
+        }
+
+        //The mask only has to reach the ellipse, since its edges there don't cut through it. Java2D draws ellipses
+        //onto one bit images differently, so the mask has a byte per pixel
+        if (ellipseMask == null || ellipseMask.getWidth() < boundsRight || ellipseMask.getHeight() < boundsBottom) {
+            int maskWidth = ellipseMask == null ? boundsRight : Math.max(ellipseMask.getWidth(), boundsRight);
+            int maskHeight = ellipseMask == null ? boundsBottom : Math.max(ellipseMask.getHeight(), boundsBottom);
+            if (ellipseMaskGraphics != null) {
+                ellipseMaskGraphics.dispose();
+            }
+
+            ellipseMask = new BufferedImage(maskWidth, maskHeight, BufferedImage.TYPE_BYTE_GRAY);
+            ellipseMaskGraphics = ellipseMask.createGraphics();
+            if (g instanceof Graphics2D) {
+                ellipseMaskGraphics.setRenderingHints(((Graphics2D) g).getRenderingHints());
+            }
+            colouredMask = null;
+        }
+
+        ellipseMaskGraphics.setColor(Color.WHITE);
+        if (isFill) {
+            ellipseMaskGraphics.fillOval(left, top, width, height);
+        } else {
+            ellipseMaskGraphics.drawOval(left, top, width, height);
+        }
+
+        //The set pixels of the mask are drawn in the current colour, and the rest are transparent
+        int rgb = g.getColor().getRGB();
+        if (colouredMask == null || rgb != colouredMaskRgb) {
+            int[] colourMap = new int[256];
+            Arrays.fill(colourMap, 1, colourMap.length, rgb);
+            IndexColorModel colourModel = new IndexColorModel(8, colourMap.length, colourMap, 0, true, 0, DataBuffer.TYPE_BYTE);
+            colouredMask = new BufferedImage(colourModel, ellipseMask.getRaster(), false, null);
+            colouredMaskRgb = rgb;
+        }
+        g.drawImage(colouredMask, boundsLeft, boundsTop, boundsRight, boundsBottom, boundsLeft, boundsTop, boundsRight, boundsBottom, null);
+
+        ellipseMaskGraphics.setColor(Color.BLACK);
+        ellipseMaskGraphics.fillRect(boundsLeft, boundsTop, boundsRight - boundsLeft, boundsBottom - boundsTop);
+    }
+
+    /**
+     * Draws a polygon, filling it if there is a fill colour.
+     *
+     * @param vertices The polygon vertices.
+     */
+    public void drawPolygon(List<Position> vertices) {
+        int n = vertices.size();
+        ensurePolygonCapacity(n);
+
+        for (int i = 0; i < n; i++) {
+            xPoints[i] = toDeviceX(vertices.get(i).getX());
+            yPoints[i] = toDeviceY(vertices.get(i).getY());
+        }
+
+        drawPolygon(n);
+    }
+
+    /**
+     * Draws a polygon, filling it if there is a fill colour.
+     *
+     * @param coordinates The array holding the vertices as alternating x and y coordinates.
+     * @param offset      The index of the x coordinate of the first vertex.
+     * @param n           The number of vertices.
+     */
+    public void drawPolygon(double[] coordinates, int offset, int n) {
+        ensurePolygonCapacity(n);
+
+        for (int i = 0; i < n; i++) {
+            xPoints[i] = toDeviceX(coordinates[offset + 2 * i]);
+            yPoints[i] = toDeviceY(coordinates[offset + 2 * i + 1]);
+        }
+
+        drawPolygon(n);
+    }
+
+    /**
+     * Draws a polygon, filling it if there is a fill colour, from device coordinates.
+     *
+     * @param points The array holding the vertices as alternating x and y device coordinates.
+     * @param offset The index of the x coordinate of the first vertex.
+     * @param n      The number of vertices.
+     */
+    public void drawDevicePolygon(int[] points, int offset, int n) {
+        ensurePolygonCapacity(n);
+
+        for (int i = 0; i < n; i++) {
+            xPoints[i] = points[offset + 2 * i];
+            yPoints[i] = points[offset + 2 * i + 1];
+        }
+
+        drawPolygon(n);
+    }
+
+    /**
+     * Draws the polygon whose scaled vertices are in the point arrays.
+     *
+     * @param n The number of vertices.
+     */
+    private void drawPolygon(int n) {
+        if (isLevelOfDetail) {
+            int left = xPoints[0];
+            int top = yPoints[0];
+            int right = left;
+            int bottom = top;
+            for (int i = 1; i < n; i++) {
+                left = Math.min(left, xPoints[i]);
+                top = Math.min(top, yPoints[i]);
+                right = Math.max(right, xPoints[i]);
+                bottom = Math.max(bottom, yPoints[i]);
+            }
+            if (plotIfSinglePixel(left, top, right, bottom)) {
+                return;
+            }
+        }
+
+        if (fillColour != null) {
+            g.setColor(fillColour);
+            g.fillPolygon(xPoints, yPoints, n);
+        }
+        g.setColor(penColour);
+        g.drawPolygon(xPoints, yPoints, n);
+    }
+
+    /**
+     * Grows the reused point arrays to hold a polygon.
+     *
+     * @param n The number of vertices.
+     */
+    private void ensurePolygonCapacity(int n) {
+        if (xPoints.length < n) {
+            xPoints = new int[n];
+            yPoints = new int[n];
+        }
+    }
+
+    /**
+     * Scales an x coordinate to the width of the image, through the viewport.
+     *
+     * @param x The x coordinate.
+     * @return The x device coordinate, in pixels.
+     */
+    public int toDeviceX(double x) {
+        return (int) Math.round(width * viewport.toViewX(x));
+    }
+
+    /**
+     * Scales a y coordinate to the height of the image, through the viewport.
+     *
+     * @param y The y coordinate.
+     * @return The y device coordinate, in pixels.
+     */
+    public int toDeviceY(double y) {
+        return (int) Math.round(height * viewport.toViewY(y));
+    }
+}
@@ -0,0 +1,366 @@
+package thekineticz.vectool.vec.common;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Arrays;
+import java.util.List;
+
+/**
+ * Formats the text of vec commands into a reusable byte buffer, without creating strings for their coordinates.
+ * <p>
+ * By default coordinates are written as the shortest decimal that parses back to exactly the same double.
+ * A fixed precision can be given instead, which rounds coordinates to that many decimal places.
+ */
+public class VecTextFormatter {
+
+    /**
+     * The precision that writes every coordinate as the shortest decimal that parses back to the same value.
+     */
+    public static final int SHORTEST = -1;
+
+    /**
+     * The largest fixed precision that can be used.
+     */
+    public static final int MAX_PRECISION = 17;
+
+    private static final int INITIAL_CAPACITY = 64;
+
+    //Doubles from 10^-3 up to 10^7 are written without an exponent by Double.toString
+    private static final double MIN_PLAIN_VALUE = 1e-3;
+    private static final double MAX_PLAIN_VALUE = 1e7;
+    private static final long MAX_EXACT_MANTISSA = 1L << 53;
+    private static final double[] POWERS_OF_TEN = new double[MAX_PRECISION + 1];
+    private static final long[] LONG_POWERS_OF_TEN = new long[MAX_PRECISION + 1];
+    private static final char[] HEX_DIGITS = "0123456789ABCDEF".toCharArray();
+
+    static {
+        POWERS_OF_TEN[0] = 1;
+        LONG_POWERS_OF_TEN[0] = 1;
+        for (int i = 1; i <= MAX_PRECISION; i++) {
+            POWERS_OF_TEN[i] = POWERS_OF_TEN[i - 1] * 10;
+            LONG_POWERS_OF_TEN[i] = LONG_POWERS_OF_TEN[i - 1] * 10;
+        }
+    }
+
+    private final int precision;
+    private byte[] buffer = new byte[INITIAL_CAPACITY];
+    private int length;
+
+    /**
+     * Creates a new formatter that writes the shortest decimal for each coordinate.
+     */
+    public VecTextFormatter() {
+        this(SHORTEST);
+    }
+
+    /**
+     * Creates a new formatter.
+     *
+     * @param precision The number of decimal places to round coordinates to, or SHORTEST.
+     * @throws IllegalArgumentException Thrown if the precision isn't SHORTEST or between 0 and MAX_PRECISION.
+     */
+    public VecTextFormatter(int precision) {
+        if (precision != SHORTEST && (precision < 0 || precision > MAX_PRECISION)) {
+            throw new IllegalArgumentException(String.format("Coordinate precision must be between 0 and %d.", MAX_PRECISION));
+        }
+
+        this.precision = precision;
+    }
+
+    /**
+     * Gets the number of decimal places coordinates are rounded to.
+     *
+     * @return The precision, or SHORTEST.
+     */
+    public int getPrecision() {
+        return precision;
+    }
+
+    /**
+     * Appends a string, encoded with the default charset like a FileWriter would.
+     *
+     * @param string The string.
+     * @return This formatter.
+     */
+    public VecTextFormatter append(String string) {
+        int n = string.length();
+        ensureCapacity(n);
+
+        for (int i = 0; i < n; i++) {
+            char c = string.charAt(i);
+            if (c >= 0x80) {
+                //Leave strings that aren't plain ASCII to the charset
+                appendBytes(string.getBytes(Charset.defaultCharset()));
+                return this;
+            }
+            buffer[length + i] = (byte) c;
+        }
+
+        length += n;
+        return this;
+    }
+
+    /**
+     * Appends a single ASCII character.
+     *
+     * @param c The character.
+     * @return This formatter.
+     */
+    public VecTextFormatter append(char c) {
+        ensureCapacity(1);
+        buffer[length++] = (byte) c;
+        return this;
+    }
+
+    /**
+     * Appends a coordinate.
+     *
+     * @param value The coordinate.
+     * @return This formatter.
+     */
+    public VecTextFormatter append(double value) {
+        if (precision == SHORTEST) {
+            appendShortest(value);
+        } else {
+            appendFixed(value);
+        }
+        return this;
+    }
+
+    /**
+     * Appends a packed colour as an upper case 6-digit hexadecimal colour string.
+     *
+     * @param rgb The packed colour, or VecColour.NONE to append 'OFF'.
+     * @return This formatter.
+     */
+    public VecTextFormatter appendColour(int rgb) {
+        if (rgb == VecColour.NONE) {
+            return append(VecColour.NONE_STRING);
+        }
+
+        ensureCapacity(7);
+        buffer[length] = '#';
+        for (int i = 6; i > 0; i--) {
+            buffer[length + i] = (byte) HEX_DIGITS[rgb & 0xF];
+            rgb >>>= 4;
+        }
+        length += 7;
+        return this;
+    }
+
+    /**
+     * Appends both coordinates of a position, separated by a space.
+     *
+     * @param position The position.
+     * @return This formatter.
+     */
+    public VecTextFormatter append(Position position) {
+        append(position.getX());
+        append(' ');
+        return append(position.getY());
+    }
+
+    /**
+     * Appends a list of positions, separated by spaces.
+     *
+     * @param positions The positions.
+     * @return This formatter.
+     */
+    public VecTextFormatter append(List<Position> positions) {
+        for (int i = 0; i < positions.size(); i++) {
+            if (i > 0) {
+                append(' ');
+            }
+            append(positions.get(i));
+        }
+        return this;
+    }
+
+    /**
+     * Appends the line of a command with a name followed by positions.
+     *
+     * @param commandName The command name.
+     * @param positions   The positions.
+     * @return This formatter.
+     */
+    public VecTextFormatter appendCommand(String commandName, List<Position> positions) {
+        append(commandName);
+        append(' ');
+        return append(positions);
+    }
+
+    /**
+     * Appends the platform line separator.
+     *
+     * @return This formatter.
+     */
+    public VecTextFormatter appendLineSeparator() {
+        return append(System.lineSeparator());
+    }
+
+    /**
+     * Writes a coordinate as the shortest decimal that parses back to the same double, falling back to
+     * Double.toString for values that can't be written exactly without an exponent.
+     *
+     * @param value The coordinate.
+     */
+    private void appendShortest(double value) {
+        double magnitude = Math.abs(value);
+        if (magnitude != 0 && (magnitude < MIN_PLAIN_VALUE || magnitude >= MAX_PLAIN_VALUE) || Double.isNaN(value)) {
+            append(Double.toString(value));
+            return;
+        }
+
+        //Find the fewest decimal places where the scaled integer divides back to exactly the same value
+        for (int places = 1; places <= MAX_PRECISION; places++) {
+            double scaled = magnitude * POWERS_OF_TEN[places];
+            if (scaled >= MAX_EXACT_MANTISSA) {
+                break;
+            }
+
+            long digits = Math.round(scaled);
+            if (digits / POWERS_OF_TEN[places] == magnitude) {
+                appendDecimal(value, digits, places);
+                return;
+            }
+        }
+
+        append(Double.toString(value));
+    }
+
+    /**
+     * Writes a coordinate rounded to the fixed number of decimal places, without trailing zeros.
+     *
+     * @param value The coordinate.
+     */
+    private void appendFixed(double value) {
+        double scaled = Math.abs(value) * POWERS_OF_TEN[precision];
+        if (scaled >= MAX_EXACT_MANTISSA || Double.isNaN(value)) {
+            appendShortest(value);
+            return;
+        }
+
+        long digits = Math.round(scaled);
+        int places = precision;
+        while (places > 1 && digits % 10 == 0) {
+            digits /= 10;
+            places--;
+        }
+
+        //Always keep one decimal place, as Double.toString does
+        if (places == 0) {
+            digits *= 10;
+            places = 1;
+        }
+
+        appendDecimal(value, digits, places);
+    }
+
+    /**
+     * Writes digits / 10^places in plain decimal form, with the sign of a value.
+     *
+     * @param value  The value, which only gives the sign.
+     * @param digits The unsigned digits.
+     * @param places The number of digits after the decimal point.
+     */
+    private void appendDecimal(double value, long digits, int places) {
+        ensureCapacity(MAX_PRECISION * 2 + 3);
+
+        if (Double.doubleToRawLongBits(value) < 0) {
+            buffer[length++] = '-';
+        }
+
+        long integerPart = digits / LONG_POWERS_OF_TEN[places];
+        long fractionPart = digits % LONG_POWERS_OF_TEN[places];
+
+        appendLong(integerPart);
+        buffer[length++] = '.';
+
+        //Pad the fraction with leading zeros up to the number of places
+        int end = length + places;
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + fractionPart % 10);
+            fractionPart /= 10;
+        }
+        length = end;
+    }
+
+    /**
+     * Writes a non-negative long in decimal form.
+     *
+     * @param value The value.
+     */
+    private void appendLong(long value) {
+        int digitCount = 1;
+        for (long rest = value / 10; rest > 0; rest /= 10) {
+            digitCount++;
+        }
+
+        int end = length + digitCount;
+        for (int i = end - 1; i >= length; i--) {
+            buffer[i] = (byte) ('0' + value % 10);
+            value /= 10;
+        }
+        length = end;
+    }
+
+    /**
+     * Appends raw bytes.
+     *
+     * @param bytes The bytes.
+     */
+    private void appendBytes(byte[] bytes) {
+        ensureCapacity(bytes.length);
+        System.arraycopy(bytes, 0, buffer, length, bytes.length);
+        length += bytes.length;
+    }
+
+    /**
+     * Grows the buffer so that it can hold more bytes.
+     *
+     * @param extra The number of bytes that will be appended.
+     */
+    private void ensureCapacity(int extra) {
+        if (length + extra > buffer.length) {
+            buffer = Arrays.copyOf(buffer, Math.max(buffer.length * 2, length + extra));
+        }
+    }
+
+    /**
+     * Gets the number of bytes that have been formatted.
+     *
+     * @return The number of bytes.
+     */
+    public int length() {
+        return length;
+    }
+
+    /**
+     * Clears the formatted text, keeping the buffer for reuse.
+     */
+    public void reset() {
+        length = 0;
+    }
+
+    /**
+     * Writes the formatted text to a stream and clears it.
+     *
+     * @param out The stream.
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    public void writeTo(OutputStream out) throws IOException {
+        out.write(buffer, 0, length);
+        length = 0;
+    }
+
+    /**
+     * Gets the formatted text as a string.
+     *
+     * @return The formatted text.
+     */
+    @Override
+    public String toString() {
+        return new String(buffer, 0, length, Charset.defaultCharset());
+    }
+}
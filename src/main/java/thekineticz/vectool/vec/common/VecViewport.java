@@ -0,0 +1,169 @@
+package thekineticz.vectool.vec.common;
+
+/**
+ * The part of a vec image that is shown, as a square window into the 0 to 1 coordinate space.
+ * A viewport with a zoom of 2 shows a quarter of the image, so each side covers half as many coordinates.
+ * The window always stays inside the image, and viewports are immutable, so zooming or panning returns a new one.
+ * <p>
+ * View coordinates also run from 0 to 1, across the visible window rather than the whole image, so they can be
+ * scaled by the size of a canvas in the same way as image coordinates.
+ */
+public class VecViewport {
+
+    /**
+     * The largest zoom, at which one pixel of a 1000 pixel canvas covers about a millionth of the image.
+     */
+    public static final double MAX_ZOOM = 1024;
+
+    /**
+     * The viewport that shows the whole image.
+     */
+    public static final VecViewport FULL = new VecViewport(1, 0, 0);
+
+    private final double zoom;
+    private final double left;
+    private final double top;
+
+    /**
+     * Creates a new viewport. The zoom is clamped between 1 and MAX_ZOOM, and the window is moved back inside the
+     * image if it would go past an edge.
+     *
+     * @param zoom The zoom.
+     * @param left The x coordinate of the left edge of the window.
+     * @param top  The y coordinate of the top edge of the window.
+     */
+    public VecViewport(double zoom, double left, double top) {
+        this.zoom = Math.max(1, Math.min(MAX_ZOOM, zoom));
+        this.left = clampEdge(left, this.zoom);
+        this.top = clampEdge(top, this.zoom);
+    }
+
+    /**
+     * Gets the zoom.
+     *
+     * @return The zoom, which is at least 1.
+     */
+    public double getZoom() {
+        return zoom;
+    }
+
+    /**
+     * Gets the x coordinate of the left edge of the window.
+     *
+     * @return The x coordinate.
+     */
+    public double getLeft() {
+        return left;
+    }
+
+    /**
+     * Gets the y coordinate of the top edge of the window.
+     *
+     * @return The y coordinate.
+     */
+    public double getTop() {
+        return top;
+    }
+
+    /**
+     * Converts an image x coordinate to a view x coordinate.
+     *
+     * @param x The image x coordinate.
+     * @return The view x coordinate, which is outside 0 to 1 if the coordinate isn't visible.
+     */
+    public double toViewX(double x) {
+        return (x - left) * zoom;
+    }
+
+    /**
+     * Converts an image y coordinate to a view y coordinate.
+     *
+     * @param y The image y coordinate.
+     * @return The view y coordinate, which is outside 0 to 1 if the coordinate isn't visible.
+     */
+    public double toViewY(double y) {
+        return (y - top) * zoom;
+    }
+
+    /**
+     * Converts a view x coordinate to an image x coordinate.
+     *
+     * @param viewX The view x coordinate.
+     * @return The image x coordinate.
+     */
+    public double fromViewX(double viewX) {
+        return left + viewX / zoom;
+    }
+
+    /**
+     * Converts a view y coordinate to an image y coordinate.
+     *
+     * @param viewY The view y coordinate.
+     * @return The image y coordinate.
+     */
+    public double fromViewY(double viewY) {
+        return top + viewY / zoom;
+    }
+
+    /**
+     * Zooms by a factor, keeping the image coordinate under a point of the view in the same place where possible.
+     *
+     * @param factor The factor to multiply the zoom by, which zooms out if it is less than 1.
+     * @param viewX  The view x coordinate of the point.
+     * @param viewY  The view y coordinate of the point.
+     * @return The zoomed viewport.
+     */
+    public VecViewport zoomAbout(double factor, double viewX, double viewY) {
+        double newZoom = Math.max(1, Math.min(MAX_ZOOM, zoom * factor));
+        return new VecViewport(newZoom, fromViewX(viewX) - viewX / newZoom, fromViewY(viewY) - viewY / newZoom);
+    }
+
+    /**
+     * Moves the window so that the image follows a drag across the view.
+     *
+     * @param viewDx The distance dragged across the view, as a fraction of its width.
+     * @param viewDy The distance dragged down the view, as a fraction of its height.
+     * @return The moved viewport.
+     */
+    public VecViewport pan(double viewDx, double viewDy) {
+        return new VecViewport(zoom, left - viewDx / zoom, top - viewDy / zoom);
+    }
+
+    /**
+     * Checks for equality between the viewport and another object.
+     *
+     * @param o The other object.
+     * @return Whether the other object is a viewport showing the same window.
+     */
+    @Override
+    public boolean equals(Object o) {
+        if (!(o instanceof VecViewport)) {
+            return false;
+        }
+
+        VecViewport viewport = (VecViewport) o;
+        return Double.compare(zoom, viewport.zoom) == 0 && Double.compare(left, viewport.left) == 0
+                && Double.compare(top, viewport.top) == 0;
+    }
+
+    /**
+     * Gets the hash code of the viewport.
+     *
+     * @return The hash code.
+     */
+    @Override
+    public int hashCode() {
+        return Double.hashCode(zoom) * 31 * 31 + Double.hashCode(left) * 31 + Double.hashCode(top);
+    }
+
+    /**
+     * Keeps an edge of the window where the window stays inside the image.
+     *
+     * @param edge The coordinate of the left or top edge.
+     * @param zoom The zoom.
+     * @return The clamped coordinate.
+     */
+    private static double clampEdge(double edge, double zoom) {
+        return Math.max(0, Math.min(1 - 1 / zoom, edge));
+    }
+}
@@ -0,0 +1,75 @@
+package thekineticz.vectool.vec.stream;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.FillCommand;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.IOException;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.function.UnaryOperator;
+
+/**
+ * A pipeline stage that changes the colours of pen and fill commands.
+ * Fill commands that turn the fill off are passed on unchanged.
+ */
+public class ColourRemapStage extends VecCommandStage {
+
+    private final UnaryOperator<String> remap;
+
+    /**
+     * Creates a new colour remap stage from a function.
+     *
+     * @param remap The function from a 6-digit hexadecimal colour string to a new one.
+     * @param next  The sink that receives the remapped commands.
+     */
+    public ColourRemapStage(UnaryOperator<String> remap, VecCommandSink next) {
+        super(next);
+        this.remap = remap;
+    }
+
+    /**
+     * Creates a new colour remap stage from a table of colours.
+     * Colours are matched regardless of case, and colours not in the table are kept.
+     *
+     * @param colours The table from 6-digit hexadecimal colour strings to new ones.
+     * @param next    The sink that receives the remapped commands.
+     */
+    public ColourRemapStage(Map<String, String> colours, VecCommandSink next) {
+        this(toUpperCaseLookup(colours), next);
+    }
+
+    /**
+     * Creates a case-insensitive lookup function from a table of colours.
+     *
+     * @param colours The table of colours.
+     * @return The lookup function.
+     */
+    private static UnaryOperator<String> toUpperCaseLookup(Map<String, String> colours) {
+        HashMap<String, String> table = new HashMap<>();
+        for (Map.Entry<String, String> entry : colours.entrySet()) {
+            table.put(entry.getKey().toUpperCase(), entry.getValue());
+        }
+        return colour -> table.getOrDefault(colour.toUpperCase(), colour);
+    }
+
+    /**
+     * Remaps the colour of pen and fill commands, and passes on every command.
+     *
+     * @param command The command.
+     * @throws VecCommandException Thrown if a colour is remapped to an invalid colour string.
+     * @throws IOException         Thrown if an issue occurs while writing the command.
+     */
+    @Override
+    public void accept(VecCommand command) throws VecCommandException, IOException {
+        if (command instanceof PenCommand) {
+            next.accept(new PenCommand(remap.apply(((PenCommand) command).getColour())));
+        } else if (command instanceof FillCommand && ((FillCommand) command).getRgb() != VecColour.NONE) {
+            next.accept(new FillCommand(remap.apply(((FillCommand) command).getColour())));
+        } else {
+            next.accept(command);
+        }
+    }
+}
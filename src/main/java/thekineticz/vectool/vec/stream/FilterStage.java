@@ -0,0 +1,40 @@
+package thekineticz.vectool.vec.stream;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.IOException;
+import java.util.function.Predicate;
+
+/**
+ * A pipeline stage that only passes on the commands that match a predicate.
+ */
+public class FilterStage extends VecCommandStage {
+
+    private final Predicate<VecCommand> predicate;
+
+    /**
+     * Creates a new filter stage.
+     *
+     * @param predicate The predicate that commands must match to be kept.
+     * @param next      The sink that receives the kept commands.
+     */
+    public FilterStage(Predicate<VecCommand> predicate, VecCommandSink next) {
+        super(next);
+        this.predicate = predicate;
+    }
+
+    /**
+     * Passes the command on if it matches the predicate.
+     *
+     * @param command The command.
+     * @throws VecCommandException Thrown if a later stage can't transform the command.
+     * @throws IOException         Thrown if an issue occurs while writing the command.
+     */
+    @Override
+    public void accept(VecCommand command) throws VecCommandException, IOException {
+        if (predicate.test(command)) {
+            next.accept(command);
+        }
+    }
+}
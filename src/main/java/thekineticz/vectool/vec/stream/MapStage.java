@@ -0,0 +1,55 @@
+package thekineticz.vectool.vec.stream;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.IOException;
+
+/**
+ * A pipeline stage that replaces every command with the result of a function.
+ */
+public class MapStage extends VecCommandStage {
+
+    private final CommandMapper mapper;
+
+    /**
+     * Creates a new map stage.
+     *
+     * @param mapper The function applied to every command.
+     * @param next   The sink that receives the mapped commands.
+     */
+    public MapStage(CommandMapper mapper, VecCommandSink next) {
+        super(next);
+        this.mapper = mapper;
+    }
+
+    /**
+     * Maps the command and passes on the result, unless the command was dropped.
+     *
+     * @param command The command.
+     * @throws VecCommandException Thrown if the command can't be mapped to a valid command.
+     * @throws IOException         Thrown if an issue occurs while writing the command.
+     */
+    @Override
+    public void accept(VecCommand command) throws VecCommandException, IOException {
+        VecCommand mapped = mapper.map(command);
+        if (mapped != null) {
+            next.accept(mapped);
+        }
+    }
+
+    /**
+     * A function from a command to a new command.
+     */
+    public interface CommandMapper {
+
+        /**
+         * Maps a command.
+         *
+         * @param command The command.
+         * @return The new command, or null to drop the command.
+         * @throws VecCommandException Thrown if the new command is invalid.
+         */
+        VecCommand map(VecCommand command) throws VecCommandException;
+    }
+}
@@ -0,0 +1,86 @@
+package thekineticz.vectool.vec.stream;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.IOException;
+import java.util.ArrayList;
+
+/**
+ * A pipeline stage that scales and then translates the coordinates of every shape command.
+ * Colour commands are passed on unchanged.
+ */
+public class TransformStage extends VecCommandStage {
+
+    private final double scaleX;
+    private final double scaleY;
+    private final double offsetX;
+    private final double offsetY;
+
+    /**
+     * Creates a new coordinate transform stage, which maps (x, y) to (x * scaleX + offsetX, y * scaleY + offsetY).
+     *
+     * @param scaleX  The scale of x coordinates.
+     * @param scaleY  The scale of y coordinates.
+     * @param offsetX The offset added to x coordinates after scaling.
+     * @param offsetY The offset added to y coordinates after scaling.
+     * @param next    The sink that receives the transformed commands.
+     */
+    public TransformStage(double scaleX, double scaleY, double offsetX, double offsetY, VecCommandSink next) {
+        super(next);
+        this.scaleX = scaleX;
+        this.scaleY = scaleY;
+        this.offsetX = offsetX;
+        this.offsetY = offsetY;
+    }
+
+    /**
+     * Transforms the coordinates of the command and passes it on.
+     *
+     * @param command The command.
+     * @throws VecCommandException Thrown if the transformed command is invalid.
+     * @throws IOException         Thrown if an issue occurs while writing the command.
+     */
+    @Override
+    public void accept(VecCommand command) throws VecCommandException, IOException {
+        if (command instanceof PlotCommand) {
+            next.accept(new PlotCommand(transform(((PlotCommand) command).getPosition())));
+        } else if (command instanceof LineCommand) {
+            next.accept(new LineCommand(transform(((LineCommand) command).getPositions())));
+        } else if (command instanceof RectangleCommand) {
+            next.accept(new RectangleCommand(transform(((RectangleCommand) command).getPositions())));
+        } else if (command instanceof EllipseCommand) {
+            next.accept(new EllipseCommand(transform(((EllipseCommand) command).getPositions())));
+        } else if (command instanceof PolygonCommand) {
+            next.accept(new PolygonCommand(transform(((PolygonCommand) command).getVertices())));
+        } else {
+            next.accept(command);
+        }
+    }
+
+    /**
+     * Transforms a list of positions.
+     *
+     * @param positions The positions.
+     * @return The transformed positions.
+     */
+    private ArrayList<Position> transform(ArrayList<Position> positions) {
+        ArrayList<Position> transformed = new ArrayList<>(positions.size());
+        for (Position position : positions) {
+            transformed.add(transform(position));
+        }
+        return transformed;
+    }
+
+    /**
+     * Transforms a single position.
+     *
+     * @param position The position.
+     * @return The transformed position.
+     */
+    private Position transform(Position position) {
+        return new Position(position.getX() * scaleX + offsetX, position.getY() * scaleY + offsetY);
+    }
+}
@@ -0,0 +1,31 @@
+package thekineticz.vectool.vec.stream;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.Closeable;
+import java.io.IOException;
+
+/**
+ * The receiving end of a stream of vec commands, such as a transformation stage or a file writer.
+ * Commands are pushed one at a time in file order, and the sink is closed once the stream has ended.
+ */
+public interface VecCommandSink extends Closeable {
+
+    /**
+     * Receives the next command in the stream.
+     *
+     * @param command The command.
+     * @throws VecCommandException Thrown if the command can't be transformed into a valid command.
+     * @throws IOException         Thrown if an issue occurs while writing the command.
+     */
+    void accept(VecCommand command) throws VecCommandException, IOException;
+
+    /**
+     * Ends the stream, flushing and closing any output.
+     *
+     * @throws IOException Thrown if an issue occurs while closing the output.
+     */
+    @Override
+    void close() throws IOException;
+}
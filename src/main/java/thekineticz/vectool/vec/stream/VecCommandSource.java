@@ -0,0 +1,112 @@
+package thekineticz.vectool.vec.stream;
+
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.VecBinaryReader;
+import thekineticz.vectool.vec.VecCommandReader;
+import thekineticz.vectool.vec.VecFile;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.*;
+import java.util.zip.GZIPInputStream;
+
+/**
+ * Reads the commands of a vec file one at a time and pushes them into a pipeline,
+ * without ever holding more than one command in memory.
+ */
+public class VecCommandSource implements Closeable {
+
+    private static final int STREAM_BUFFER_SIZE = 64 * 1024;
+
+    private final VecCommandReader textReader;
+    private final VecBinaryReader binaryReader;
+
+    /**
+     * Creates a new source from a text vec stream or a binary vec stream.
+     *
+     * @param textReader   The text reader, or null if the stream is binary.
+     * @param binaryReader The binary reader, or null if the stream is text.
+     */
+    private VecCommandSource(VecCommandReader textReader, VecBinaryReader binaryReader) {
+        this.textReader = textReader;
+        this.binaryReader = binaryReader;
+    }
+
+    /**
+     * Creates a new source that reads a vec file, in the format given by its extension.
+     *
+     * @param file The vec file.
+     * @return The source.
+     * @throws IOException Thrown if the file can't be opened.
+     */
+    public static VecCommandSource fromFile(File file) throws IOException {
+        if (VecFile.isBinaryFile(file)) {
+            return new VecCommandSource(null, new VecBinaryReader(new FileInputStream(file)));
+        } else if (VecFile.isCompressedFile(file)) {
+            return fromStream(new GZIPInputStream(new FileInputStream(file), STREAM_BUFFER_SIZE), false);
+        } else {
+            return new VecCommandSource(new VecCommandReader(new FileReader(file)), null);
+        }
+    }
+
+    /**
+     * Creates a new source that reads a vec stream.
+     *
+     * @param in       The stream.
+     * @param isBinary Whether the stream is in the binary vec format rather than the text format.
+     * @return The source.
+     * @throws IOException Thrown if the header of a binary stream can't be read.
+     */
+    public static VecCommandSource fromStream(InputStream in, boolean isBinary) throws IOException {
+        if (isBinary) {
+            return new VecCommandSource(null, new VecBinaryReader(in));
+        } else {
+            return new VecCommandSource(new VecCommandReader(new InputStreamReader(in)), null);
+        }
+    }
+
+    /**
+     * Reads the next command.
+     *
+     * @return The command, or null if the end of the stream was reached.
+     * @throws VecCommandException Thrown if the next command is invalid.
+     * @throws IOException         Thrown if an issue occurs while reading the stream.
+     */
+    public VecCommand read() throws VecCommandException, IOException {
+        return textReader != null ? textReader.read() : binaryReader.read();
+    }
+
+    /**
+     * Pushes every remaining command into a sink. The sink is not closed.
+     *
+     * @param sink The sink.
+     * @return The number of commands read.
+     * @throws VecCommandException Thrown if a command is invalid or can't be transformed.
+     * @throws IOException         Thrown if an issue occurs while reading the stream or writing the output.
+     */
+    public long pushTo(VecCommandSink sink) throws VecCommandException, IOException {
+        long count = 0;
+        VecCommand command = read();
+
+        while (command != null) {
+            sink.accept(command);
+            count++;
+            command = read();
+        }
+
+        return count;
+    }
+
+    /**
+     * Closes the underlying stream.
+     *
+     * @throws IOException Thrown if an issue occurs while closing the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (textReader != null) {
+            textReader.close();
+        } else {
+            binaryReader.close();
+        }
+    }
+}
@@ -0,0 +1,31 @@
+package thekineticz.vectool.vec.stream;
+
+import java.io.IOException;
+
+/**
+ * The base class for a stage of a streaming pipeline, which passes commands on to the next sink.
+ * Stages only look at one command at a time, so a pipeline runs in constant memory.
+ */
+public abstract class VecCommandStage implements VecCommandSink {
+
+    protected final VecCommandSink next;
+
+    /**
+     * Creates a new stage.
+     *
+     * @param next The sink that receives the output of the stage.
+     */
+    public VecCommandStage(VecCommandSink next) {
+        this.next = next;
+    }
+
+    /**
+     * Ends the stream for the rest of the pipeline.
+     *
+     * @throws IOException Thrown if an issue occurs while closing the output.
+     */
+    @Override
+    public void close() throws IOException {
+        next.close();
+    }
+}
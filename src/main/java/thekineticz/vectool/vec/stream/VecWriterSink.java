@@ -0,0 +1,147 @@
+package thekineticz.vectool.vec.stream;
+
+import thekineticz.vectool.vec.VecBinaryWriter;
+import thekineticz.vectool.vec.VecCompressedOutputStream;
+import thekineticz.vectool.vec.VecFile;
+import thekineticz.vectool.vec.commands.FillCommand;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandRegistry;
+import thekineticz.vectool.vec.common.VecTextFormatter;
+
+import java.io.*;
+
+/**
+ * The end of a pipeline, which writes commands to a vec file or stream.
+ * Like VecFile.addCommand, pen and fill commands that don't change the current colour are dropped.
+ */
+public class VecWriterSink implements VecCommandSink {
+
+    private static final int WRITE_BUFFER_SIZE = 64 * 1024;
+
+    private final OutputStream textOut;
+    private final VecTextFormatter formatter;
+    private final VecBinaryWriter binaryWriter;
+    private int latestPenColour = VecFile.DEFAULT_PEN_RGB;
+    private int latestFillColour = VecFile.DEFAULT_FILL_RGB;
+    private long commandCount;
+
+    /**
+     * Creates a new writer sink for a vec file, in the format given by its extension.
+     *
+     * @param file The vec file.
+     * @throws IOException Thrown if the file can't be created.
+     */
+    public VecWriterSink(File file) throws IOException {
+        this(file, VecTextFormatter.SHORTEST);
+    }
+
+    /**
+     * Creates a new writer sink for a vec file, in the format given by its extension, which rounds the coordinates
+     * of text commands.
+     *
+     * @param file      The vec file.
+     * @param precision The number of decimal places to round coordinates to, or VecTextFormatter.SHORTEST.
+     * @throws IOException Thrown if the file can't be created.
+     */
+    public VecWriterSink(File file, int precision) throws IOException {
+        this(VecFile.isCompressedFile(file) ? new VecCompressedOutputStream(new FileOutputStream(file)) : new FileOutputStream(file),
+                VecFile.isBinaryFile(file), precision);
+    }
+
+    /**
+     * Creates a new writer sink for a stream.
+     *
+     * @param out      The stream.
+     * @param isBinary Whether to write the binary vec format rather than the text format.
+     * @throws IOException Thrown if the header of a binary stream can't be written.
+     */
+    public VecWriterSink(OutputStream out, boolean isBinary) throws IOException {
+        this(out, isBinary, VecTextFormatter.SHORTEST);
+    }
+
+    /**
+     * Creates a new writer sink for a stream, which rounds the coordinates of text commands.
+     * Binary streams always hold the exact coordinates.
+     *
+     * @param out       The stream.
+     * @param isBinary  Whether to write the binary vec format rather than the text format.
+     * @param precision The number of decimal places to round coordinates to, or VecTextFormatter.SHORTEST.
+     * @throws IOException Thrown if the header of a binary stream can't be written.
+     */
+    public VecWriterSink(OutputStream out, boolean isBinary, int precision) throws IOException {
+        OutputStream bufferedOut = new BufferedOutputStream(out);
+        formatter = new VecTextFormatter(precision);
+
+        if (isBinary) {
+            textOut = null;
+            binaryWriter = new VecBinaryWriter(bufferedOut);
+        } else {
+            textOut = bufferedOut;
+            binaryWriter = null;
+        }
+    }
+
+    /**
+     * Writes a command, unless it is a colour command that doesn't change the current colour.
+     *
+     * @param command The command.
+     * @throws IOException Thrown if an issue occurs while writing the command.
+     */
+    @Override
+    public void accept(VecCommand command) throws IOException {
+        if (command instanceof PenCommand) {
+            if (((PenCommand) command).getRgb() == latestPenColour) {
+                return;
+            } else {
+                latestPenColour = ((PenCommand) command).getRgb();
+            }
+        } else if (command instanceof FillCommand) {
+            if (((FillCommand) command).getRgb() == latestFillColour) {
+                return;
+            } else {
+                latestFillColour = ((FillCommand) command).getRgb();
+            }
+        }
+
+        if (binaryWriter != null) {
+            binaryWriter.write(command);
+        } else {
+            //Commands are separated by line terminators, with none after the last one
+            if (commandCount > 0) {
+                formatter.appendLineSeparator();
+            }
+            VecCommandRegistry.serialize(command, formatter);
+
+            if (formatter.length() >= WRITE_BUFFER_SIZE) {
+                formatter.writeTo(textOut);
+            }
+        }
+        commandCount++;
+    }
+
+    /**
+     * Gets the number of commands written so far.
+     *
+     * @return The number of commands.
+     */
+    public long getCommandCount() {
+        return commandCount;
+    }
+
+    /**
+     * Flushes any buffered commands and closes the stream.
+     *
+     * @throws IOException Thrown if an issue occurs while writing to the stream.
+     */
+    @Override
+    public void close() throws IOException {
+        if (binaryWriter != null) {
+            binaryWriter.close();
+        } else {
+            try (OutputStream out = textOut) {
+                formatter.writeTo(out);
+            }
+        }
+    }
+}
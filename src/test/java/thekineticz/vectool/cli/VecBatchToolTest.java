@@ -0,0 +1,116 @@
+package thekineticz.vectool.cli;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.vec.VecFile;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.PrintStream;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.nio.file.Path;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecBatchTool class.
+ */
+public class VecBatchToolTest {
+
+    /**
+     * Creates a directory tree with two valid vec files and one invalid one.
+     *
+     * @return The root of the tree.
+     */
+    private static Path createTree() throws Exception {
+        Path root = Files.createTempDirectory("batch");
+        Files.createDirectories(root.resolve("nested"));
+        Files.writeString(root.resolve("a.vec"), "PLOT 0.5 0.5\nPEN #FF0000\nLINE 0 0 1 1\n");
+        Files.writeString(root.resolve("nested/b.vec"), "RECTANGLE 0.1 0.1 0.9 0.9\n");
+        Files.writeString(root.resolve("nested/bad.vec"), "PLOT 0.5\nPLOT 0.5 0.5\nELLIPSE 0 0 1\n");
+        Files.writeString(root.resolve("notes.txt"), "Not a vec file");
+        root.toFile().deleteOnExit();
+        return root;
+    }
+
+    /**
+     * Runs the tool and captures its output.
+     *
+     * @param output The buffer the output is written to.
+     * @param args   The arguments.
+     * @return The exit status.
+     */
+    private static int run(ByteArrayOutputStream output, String... args) {
+        PrintStream out = new PrintStream(output, true, StandardCharsets.UTF_8);
+        return VecBatchTool.run(args, out, out);
+    }
+
+    @Test
+    public void testValidate() {
+        assertDoesNotThrow(() -> {
+            Path root = createTree();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            assertEquals(VecBatchTool.EXIT_FAILURE, run(output, "validate", "--threads", "2", root.toString()));
+            String text = output.toString(StandardCharsets.UTF_8);
+            assertTrue(text.contains("FAIL " + root.resolve("nested/bad.vec")));
+            assertTrue(text.contains(root.resolve("nested/bad.vec") + ":1:9: "));
+            assertTrue(text.contains(root.resolve("nested/bad.vec") + ":3:14: "));
+            assertTrue(text.contains("3 files, 1 failed"));
+
+            output.reset();
+            assertEquals(VecBatchTool.EXIT_SUCCESS, run(output, "validate", root.resolve("a.vec").toString()));
+        });
+    }
+
+    @Test
+    public void testConvert() {
+        assertDoesNotThrow(() -> {
+            Path root = createTree();
+            Files.delete(root.resolve("nested/bad.vec"));
+            File outputDirectory = Files.createTempDirectory("converted").toFile();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            assertEquals(VecBatchTool.EXIT_SUCCESS, run(output, "convert", "--to", VecFile.BINARY_FILE_EXTENSION,
+                    "--out", outputDirectory.getPath(), root.toString()));
+
+            //Relative paths are kept in the output directory
+            VecFile converted = new VecFile(new File(outputDirectory, "nested/b." + VecFile.BINARY_FILE_EXTENSION));
+            assertEquals(new VecFile(root.resolve("nested/b.vec").toFile()).getCommands().toString(), converted.getCommands().toString());
+            assertEquals(3, new VecFile(new File(outputDirectory, "a." + VecFile.BINARY_FILE_EXTENSION)).getCommands().size());
+        });
+    }
+
+    @Test
+    public void testRender() {
+        assertDoesNotThrow(() -> {
+            Path root = createTree();
+            File outputDirectory = Files.createTempDirectory("rendered").toFile();
+            ByteArrayOutputStream output = new ByteArrayOutputStream();
+
+            assertEquals(VecBatchTool.EXIT_FAILURE, run(output, "render", "--size", "40x20", "--out", outputDirectory.getPath(), root.toString()));
+            assertTrue(output.toString(StandardCharsets.UTF_8).contains("FAIL " + root.resolve("nested/bad.vec")));
+            assertFalse(new File(outputDirectory, "nested/bad.png").exists());
+
+            BufferedImage image = ImageIO.read(new File(outputDirectory, "a.png"));
+            assertEquals(40, image.getWidth());
+            assertEquals(20, image.getHeight());
+            assertEquals(0xFF0000, image.getRGB(10, 5) & 0xFFFFFF);
+            assertEquals(0xFFFFFF, image.getRGB(30, 5) & 0xFFFFFF);
+            assertTrue(new File(outputDirectory, "nested/b.png").exists());
+        });
+    }
+
+    @Test
+    public void testInvalidArguments() {
+        ByteArrayOutputStream output = new ByteArrayOutputStream();
+        assertEquals(VecBatchTool.EXIT_USAGE, run(output));
+        assertEquals(VecBatchTool.EXIT_USAGE, run(output, "convert", "drawings"));
+        assertEquals(VecBatchTool.EXIT_USAGE, run(output, "validate", "--threads", "0", "drawings"));
+        assertEquals(VecBatchTool.EXIT_USAGE, run(output, "validate", "--colour", "drawings"));
+        assertEquals(VecBatchTool.EXIT_USAGE, run(output, "render", "--size", "20x0", "drawings"));
+        assertEquals(VecBatchTool.EXIT_USAGE, run(output, "render", "--to", "vecb", "drawings"));
+    }
+}
@@ -0,0 +1,350 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecViewport;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the CheckpointedRaster class.
+ */
+public class CheckpointedRasterTest {
+
+    private static final int SIZE = 256;
+
+    /**
+     * Creates a command of a random type at random positions, mostly small enough to only cover a few tiles.
+     *
+     * @param random The random number generator.
+     * @return The command.
+     */
+    private static VecCommand createRandomCommand(Random random) throws Exception {
+        double x = random.nextDouble();
+        double y = random.nextDouble();
+        double size = random.nextInt(10) == 0 ? 1.0 : 0.2;
+        ArrayList<Position> corners = new ArrayList<>(List.of(new Position(x, y),
+                new Position(x + size * (random.nextDouble() - 0.5), y + size * (random.nextDouble() - 0.5))));
+
+        switch (random.nextInt(6)) {
+            case 0:
+                return new PenCommand(random.nextInt(0x1000000));
+            case 1:
+                return new FillCommand(random.nextBoolean() ? VecColour.NONE : random.nextInt(0x1000000));
+            case 2:
+                return new LineCommand(corners);
+            case 3:
+                return new RectangleCommand(corners);
+            case 4:
+                return new EllipseCommand(corners);
+            default:
+                return new PlotCommand(corners.get(0));
+        }
+    }
+
+    /**
+     * Renders commands onto a new raster in one go.
+     *
+     * @param commands The commands.
+     * @return The image.
+     */
+    private static BufferedImage renderFresh(List<VecCommand> commands) {
+        CheckpointedRaster raster = new CheckpointedRaster(SIZE, SIZE, 0);
+        raster.update(commands);
+        return raster.getImage();
+    }
+
+    /**
+     * Asserts that two images have exactly the same pixels.
+     *
+     * @param expected The expected image.
+     * @param actual   The actual image.
+     */
+    private static void assertSamePixels(BufferedImage expected, BufferedImage actual) {
+        assertArrayEquals(expected.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE), actual.getRGB(0, 0, SIZE, SIZE, null, 0, SIZE));
+    }
+
+    @Test
+    public void testIncrementalMatchesFullRender() {
+        assertDoesNotThrow(() -> {
+            Random random = new Random(17);
+            CommandBuffer commands = new CommandBuffer();
+
+            //Small enough that the checkpoints have to be thinned out several times
+            CheckpointedRaster raster = new CheckpointedRaster(SIZE, SIZE, 3L * 4 * SIZE * SIZE);
+
+            for (int i = 0; i < 10000; i++) {
+                commands.add(createRandomCommand(random));
+                raster.invalidateFrom(commands.size() - 1);
+                if (i % 7 == 0) {
+                    raster.update(commands);
+                }
+            }
+            raster.update(commands);
+
+            assertEquals(commands.size(), raster.getRenderedCount());
+            assertTrue(raster.getCheckpointCount() <= 3);
+            assertSamePixels(renderFresh(commands), raster.getImage());
+        });
+    }
+
+    /**
+     * Checks that removing commands leaves the same image as drawing the remaining commands from scratch.
+     *
+     * @param useSpatialIndex Whether the raster is given a spatial index.
+     */
+    private static void checkUndo(boolean useSpatialIndex) throws Exception {
+        Random random = new Random(3);
+        CommandBuffer commands = new CommandBuffer();
+        CheckpointedRaster raster = new CheckpointedRaster(SIZE, SIZE, CheckpointedRaster.DEFAULT_CHECKPOINT_BUDGET);
+        SpatialIndex index = new SpatialIndex();
+        if (useSpatialIndex) {
+            raster.setSpatialIndex(index);
+        }
+
+        for (int i = 0; i < 5000; i++) {
+            commands.add(createRandomCommand(random));
+        }
+        index.update(commands, 0);
+        raster.update(commands);
+
+        //Removing commands rolls back to a checkpoint, including the colours that were set before it
+        for (int size : new int[]{4999, 4097, 4096, 3000, 10, 0}) {
+            while (commands.size() > size) {
+                commands.remove(commands.size() - 1);
+            }
+            index.update(commands, size);
+            raster.invalidateFrom(size);
+            raster.update(commands);
+
+            assertEquals(size, raster.getRenderedCount());
+            assertSamePixels(renderFresh(commands), raster.getImage());
+
+            //Commands added after an undo are drawn with the colours left by the rollback
+            commands.add(createRandomCommand(random));
+            commands.add(new PlotCommand(new Position(random.nextDouble(), random.nextDouble())));
+            index.update(commands, size);
+            raster.update(commands);
+            assertSamePixels(renderFresh(commands), raster.getImage());
+            commands.remove(commands.size() - 1);
+            commands.remove(commands.size() - 1);
+            index.update(commands, size);
+            raster.invalidateFrom(size);
+        }
+    }
+
+    @Test
+    public void testUndo() {
+        assertDoesNotThrow(() -> checkUndo(false));
+    }
+
+    @Test
+    public void testUndoWithSpatialIndex() {
+        assertDoesNotThrow(() -> checkUndo(true));
+    }
+
+    @Test
+    public void testDirtyRegions() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer commands = new CommandBuffer();
+            CheckpointedRaster raster = new CheckpointedRaster(256, 256, CheckpointedRaster.DEFAULT_CHECKPOINT_BUDGET);
+            raster.update(commands);
+            assertTrue(raster.takeDirtyRegions().isEmpty());
+
+            commands.add(new PenCommand("#FF0000"));
+            commands.add(new PlotCommand(new Position(0.1, 0.1)));
+            raster.update(commands);
+            assertEquals(List.of(new Rectangle(0, 0, 64, 64)), raster.takeDirtyRegions());
+
+            //The outline can reach one pixel past the ends, so a line on a tile edge dirties the tiles on both sides
+            commands.add(new LineCommand(new ArrayList<>(List.of(new Position(0.5, 0.5), new Position(0.75, 0.5)))));
+            raster.update(commands);
+            List<Rectangle> lineRegions = List.of(new Rectangle(64, 64, 192, 64), new Rectangle(64, 128, 192, 64));
+            assertEquals(lineRegions, raster.takeDirtyRegions());
+
+            commands.remove(commands.size() - 1);
+            raster.invalidateFrom(commands.size());
+            raster.update(commands);
+            assertEquals(lineRegions, raster.takeDirtyRegions());
+            assertEquals(0xFF0000, raster.getImage().getRGB(26, 26) & 0xFFFFFF);
+            assertEquals(0xFFFFFF, raster.getImage().getRGB(150, 128) & 0xFFFFFF);
+        });
+    }
+
+    @Test
+    public void testLevelOfDetail() {
+        assertDoesNotThrow(() -> {
+            Random random = new Random(5);
+            CommandBuffer commands = new CommandBuffer();
+
+            //Clusters of plots and shapes that are mostly smaller than a pixel, with a few larger ones between them
+            for (int i = 0; i < 20000; i++) {
+                if (random.nextInt(50) == 0) {
+                    commands.add(createRandomCommand(random));
+                    continue;
+                }
+
+                double x = 0.5 + random.nextGaussian() * 0.05;
+                double y = 0.5 + random.nextGaussian() * 0.05;
+                ArrayList<Position> corners = new ArrayList<>(List.of(new Position(x, y), new Position(x + random.nextDouble() / SIZE, y)));
+                switch (random.nextInt(5)) {
+                    case 0:
+                        commands.add(new PenCommand(random.nextInt(4) * 0x3F0000));
+                        break;
+                    case 1:
+                        commands.add(new RectangleCommand(corners));
+                        break;
+                    case 2:
+                        commands.add(new EllipseCommand(corners));
+                        break;
+                    case 3:
+                        corners.add(new Position(x, y + random.nextDouble() / SIZE));
+                        commands.add(new PolygonCommand(corners));
+                        break;
+                    default:
+                        commands.add(new PlotCommand(corners.get(0)));
+                }
+            }
+
+            CheckpointedRaster raster = new CheckpointedRaster(SIZE, SIZE, CheckpointedRaster.DEFAULT_CHECKPOINT_BUDGET, VecViewport.FULL, true);
+            raster.update(commands);
+            assertSamePixels(renderFresh(commands), raster.getImage());
+
+            //Undoing restores checkpoints under the renderer, which it has to forget its points for
+            while (commands.size() > 15000) {
+                commands.remove(commands.size() - 1);
+            }
+            raster.invalidateFrom(commands.size());
+            raster.update(commands);
+            commands.add(new PlotCommand(new Position(0.5, 0.5)));
+            raster.update(commands);
+            assertSamePixels(renderFresh(commands), raster.getImage());
+        });
+    }
+
+    @Test
+    public void testViewportWithSpatialIndex() {
+        assertDoesNotThrow(() -> {
+            Random random = new Random(9);
+            CommandBuffer commands = new CommandBuffer();
+            for (int i = 0; i < 5000; i++) {
+                commands.add(createRandomCommand(random));
+            }
+            SpatialIndex index = new SpatialIndex();
+            index.update(commands, 0);
+
+            VecViewport viewport = VecViewport.FULL.zoomAbout(6, 0.3, 0.7);
+            CheckpointedRaster expected = new CheckpointedRaster(SIZE, SIZE, 0, viewport, false);
+            expected.update(commands);
+
+            //Only the visible commands are drawn, giving the same image
+            CheckpointedRaster actual = new CheckpointedRaster(SIZE, SIZE, CheckpointedRaster.DEFAULT_CHECKPOINT_BUDGET, viewport, true);
+            actual.setSpatialIndex(index);
+            actual.update(commands);
+            assertSamePixels(expected.getImage(), actual.getImage());
+
+            while (commands.size() > 3000) {
+                commands.remove(commands.size() - 1);
+            }
+            index.update(commands, commands.size());
+            actual.invalidateFrom(commands.size());
+            actual.update(commands);
+
+            expected = new CheckpointedRaster(SIZE, SIZE, 0, viewport, false);
+            expected.update(commands);
+            assertSamePixels(expected.getImage(), actual.getImage());
+        });
+    }
+
+    @Test
+    public void testUndoReusesDeviceCoordinates() {
+        assertDoesNotThrow(() -> {
+            Random random = new Random(13);
+            CommandBuffer commands = new CommandBuffer();
+            for (int i = 0; i < 5000; i++) {
+                commands.add(createRandomCommand(random));
+            }
+
+            //Most shapes are off the image, so they are skipped when commands are drawn again after an undo
+            VecViewport viewport = VecViewport.FULL.zoomAbout(4, 0.6, 0.2);
+            CheckpointedRaster actual = new CheckpointedRaster(SIZE, SIZE, CheckpointedRaster.DEFAULT_CHECKPOINT_BUDGET, viewport, false);
+            actual.update(commands);
+
+            for (int size : new int[]{4500, 4100, 2000}) {
+                while (commands.size() > size) {
+                    commands.remove(commands.size() - 1);
+                }
+                actual.invalidateFrom(size);
+                commands.add(createRandomCommand(random));
+                actual.update(commands);
+
+                CheckpointedRaster expected = new CheckpointedRaster(SIZE, SIZE, 0, viewport, false);
+                expected.update(commands);
+                assertSamePixels(expected.getImage(), actual.getImage());
+            }
+        });
+    }
+
+    @Test
+    public void testOcclusionMatchesFullRender() {
+        assertDoesNotThrow(() -> {
+            Random random = new Random(21);
+            CommandBuffer commands = new CommandBuffer();
+
+            //Layers of shapes, each mostly covered by opaque rectangles in the next layer
+            for (int i = 0; i < 8000; i++) {
+                double x = random.nextDouble();
+                double y = random.nextDouble();
+                double size = 0.05 + 0.3 * random.nextDouble();
+                if (random.nextInt(20) != 0) {
+                    commands.add(createRandomCommand(random));
+                } else if (random.nextBoolean()) {
+                    commands.add(new FillCommand(random.nextInt(0x1000000)));
+                    commands.add(new RectangleCommand(new ArrayList<>(List.of(new Position(x, y), new Position(x - size, y + size)))));
+                } else {
+                    commands.add(new FillCommand(random.nextInt(0x1000000)));
+                    commands.add(new PolygonCommand(new ArrayList<>(List.of(new Position(x, y), new Position(x, y + size),
+                            new Position(x + size, y + size), new Position(x + size, y)))));
+                }
+            }
+
+            SpatialIndex index = new SpatialIndex();
+            index.update(commands, 0);
+            int occludedCount = 0;
+            for (int i = 0; i < commands.size(); i++) {
+                occludedCount += index.isOccluded(i, commands.size()) ? 1 : 0;
+            }
+            assertTrue(occludedCount > 1000);
+
+            for (VecViewport viewport : new VecViewport[]{VecViewport.FULL, VecViewport.FULL.zoomAbout(3, 0.4, 0.6)}) {
+                List<VecCommand> remaining = commands.copy();
+                index.update(remaining, 0);
+                CheckpointedRaster actual = new CheckpointedRaster(SIZE, SIZE, CheckpointedRaster.DEFAULT_CHECKPOINT_BUDGET, viewport, true);
+                actual.setSpatialIndex(index);
+
+                //Undoing uncovers commands that weren't drawn, from both before and after the latest checkpoint
+                for (int size : new int[]{remaining.size(), 7000, 4100, 4000, 100}) {
+                    while (remaining.size() > size) {
+                        remaining.remove(remaining.size() - 1);
+                    }
+                    index.update(remaining, size);
+                    actual.invalidateFrom(size);
+                    actual.update(remaining);
+
+                    CheckpointedRaster expected = new CheckpointedRaster(SIZE, SIZE, 0, viewport, false);
+                    expected.update(remaining);
+                    assertSamePixels(expected.getImage(), actual.getImage());
+                }
+            }
+        });
+    }
+}
@@ -0,0 +1,149 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecColour;
+import thekineticz.vectool.vec.common.VecCommand;
+import thekineticz.vectool.vec.common.VecCommandRegistry;
+import thekineticz.vectool.vec.common.VecTextFormatter;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the CommandBuffer class.
+ */
+public class CommandBufferTest {
+
+    /**
+     * Creates one of every built in command.
+     *
+     * @return The commands.
+     */
+    private static List<VecCommand> createCommands() throws Exception {
+        ArrayList<Position> corners = new ArrayList<>(List.of(new Position(0.1, 0.2), new Position(0.9, 0.8)));
+        ArrayList<Position> vertices = new ArrayList<>(List.of(new Position(0.0, 0.0), new Position(1.0, 0.0), new Position(0.5, 1.0)));
+
+        return List.of(new PenCommand("#FF0000"), new PlotCommand(new Position(0.5, 0.25)), new LineCommand(corners),
+                new FillCommand("#00ff00"), new RectangleCommand(corners), new EllipseCommand(corners),
+                new FillCommand(FillCommand.FILL_OFF), new PolygonCommand(vertices), new PenCommand("#FF0000"));
+    }
+
+    @Test
+    public void testRoundTrip() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer buffer = new CommandBuffer();
+            List<VecCommand> commands = createCommands();
+            buffer.addAll(commands);
+
+            assertEquals(commands.size(), buffer.size());
+            for (int i = 0; i < commands.size(); i++) {
+                assertEquals(commands.get(i).getClass(), buffer.get(i).getClass());
+                assertEquals(commands.get(i).toString(), buffer.get(i).toString());
+
+                VecTextFormatter formatter = new VecTextFormatter();
+                buffer.appendTo(i, formatter);
+                assertEquals(VecCommandRegistry.serialize(commands.get(i)), formatter.toString());
+            }
+        });
+    }
+
+    @Test
+    public void testColumns() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer buffer = new CommandBuffer();
+            buffer.addAll(createCommands());
+
+            assertEquals(CommandBuffer.OP_POLYGON, buffer.getOpcode(7));
+            assertEquals(3, buffer.getPositionCount(7));
+            assertEquals(0.5, buffer.getX(7, 2));
+            assertEquals(1.0, buffer.getY(7, 2));
+            assertEquals(0, buffer.getPositionCount(0));
+            assertEquals(0x00FF00, buffer.getColour(3));
+            assertEquals(VecColour.NONE, buffer.getColour(6));
+            assertEquals(8, buffer.lastIndexOfOpcode(CommandBuffer.OP_PEN, buffer.size()));
+            assertEquals(0, buffer.lastIndexOfOpcode(CommandBuffer.OP_PEN, 8));
+
+            assertThrows(IndexOutOfBoundsException.class, () -> buffer.getX(1, 1));
+            assertThrows(IllegalArgumentException.class, () -> buffer.getColour(1));
+        });
+    }
+
+    @Test
+    public void testRemoveAndCopy() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer buffer = new CommandBuffer();
+            buffer.addAll(createCommands());
+            CommandBuffer copy = buffer.copy();
+
+            assertThrows(UnsupportedOperationException.class, () -> buffer.remove(0));
+            assertEquals("PEN #FF0000", buffer.remove(buffer.size() - 1).toString());
+            buffer.add(new PlotCommand(new Position(0.75, 0.75)));
+
+            //The copy doesn't see later changes
+            assertEquals("PEN #FF0000", copy.get(copy.size() - 1).toString());
+            assertEquals("PLOT 0.75 0.75", buffer.get(buffer.size() - 1).toString());
+            assertEquals(copy.size(), buffer.size());
+        });
+    }
+
+    @Test
+    public void testAppend() {
+        assertDoesNotThrow(() -> {
+            VecCommand other = new VecCommand("OTHER") {
+                @Override
+                public String getArgs() {
+                    return "1";
+                }
+            };
+
+            CommandBuffer buffer = new CommandBuffer();
+            buffer.add(other);
+            buffer.addAll(createCommands());
+            CommandBuffer appended = new CommandBuffer();
+            appended.addAll(createCommands());
+            appended.add(other);
+
+            ArrayList<VecCommand> expected = new ArrayList<>(buffer);
+            expected.addAll(appended);
+            buffer.append(appended);
+
+            assertEquals(expected.size(), buffer.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).toString(), buffer.get(i).toString());
+            }
+            assertSame(other, buffer.get(buffer.size() - 1));
+        });
+    }
+
+    @Test
+    public void testAppendRange() {
+        assertDoesNotThrow(() -> {
+            VecCommand other = new VecCommand("OTHER") {
+                @Override
+                public String getArgs() {
+                    return "1";
+                }
+            };
+
+            CommandBuffer appended = new CommandBuffer();
+            appended.addAll(createCommands());
+            appended.add(other);
+            appended.addAll(createCommands());
+
+            CommandBuffer buffer = new CommandBuffer();
+            buffer.add(other);
+            buffer.append(appended, 2, appended.size() - 1);
+
+            assertEquals(appended.size() - 2, buffer.size());
+            assertSame(other, buffer.get(0));
+            for (int i = 1; i < buffer.size(); i++) {
+                assertEquals(appended.get(i + 1).toString(), buffer.get(i).toString());
+            }
+            assertThrows(IndexOutOfBoundsException.class, () -> buffer.append(appended, 1, appended.size() + 1));
+        });
+    }
+}
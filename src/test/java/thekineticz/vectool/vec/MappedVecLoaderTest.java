@@ -0,0 +1,121 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.FillCommand;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.File;
+import java.io.FileReader;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the MappedVecLoader class.
+ */
+public class MappedVecLoaderTest {
+
+    private static final String[] LINE_TERMINATORS = {"\n", "\r\n", "\r"};
+
+    /**
+     * Writes random commands to a temporary vec file that is large enough to be loaded in parallel.
+     * Lines have random lengths and line terminators, so they straddle the borders of the chunks.
+     * Pen commands only appear in the first quarter of the file, so the latest pen colour is in a different chunk
+     * to the latest fill colour.
+     *
+     * @param invalidLines Lines that replace commands at evenly spaced places in the file.
+     * @return The file.
+     */
+    private static File writeLargeFile(String... invalidLines) throws Exception {
+        Random random = new Random(7);
+        StringBuilder builder = new StringBuilder();
+        long length = MappedVecLoader.PARALLEL_THRESHOLD * 3 / 2;
+        int invalidIndex = 0;
+
+        while (builder.length() < length) {
+            if (invalidIndex < invalidLines.length && builder.length() >= length * (invalidIndex + 1) / (invalidLines.length + 1)) {
+                builder.append(invalidLines[invalidIndex++]);
+            } else if (random.nextInt(50) == 0 && builder.length() < length / 4) {
+                builder.append(String.format("PEN #%06X", random.nextInt(0x1000000)));
+            } else if (random.nextInt(50) == 0) {
+                builder.append(random.nextBoolean() ? String.format("FILL #%06X", random.nextInt(0x1000000)) : "FILL OFF");
+            } else if (random.nextBoolean()) {
+                builder.append(String.format("PLOT %s %s", random.nextDouble(), random.nextInt(100) / 100.0));
+            } else {
+                builder.append(String.format("RECTANGLE %s %s %s %s", random.nextInt(10) / 10.0, random.nextDouble(), random.nextDouble(), random.nextInt(1000) / 1000.0));
+            }
+            builder.append(LINE_TERMINATORS[random.nextInt(LINE_TERMINATORS.length)]);
+        }
+
+        File file = File.createTempFile("mapped", ".vec");
+        file.deleteOnExit();
+        Files.write(file.toPath(), builder.toString().getBytes());
+        assertTrue(file.length() >= MappedVecLoader.PARALLEL_THRESHOLD);
+        return file;
+    }
+
+    /**
+     * Reads every command of a vec file one line at a time.
+     *
+     * @param file The file.
+     * @return The commands.
+     */
+    private static ArrayList<VecCommand> readSequentially(File file) throws Exception {
+        ArrayList<VecCommand> commands = new ArrayList<>();
+        try (VecCommandReader reader = new VecCommandReader(new FileReader(file))) {
+            for (VecCommand command = reader.read(); command != null; command = reader.read()) {
+                commands.add(command);
+            }
+        }
+        return commands;
+    }
+
+    @Test
+    public void testMatchesSequentialRead() {
+        assertDoesNotThrow(() -> {
+            File file = writeLargeFile();
+            ArrayList<VecCommand> expected = readSequentially(file);
+
+            ArrayList<VecCommand> actual = new ArrayList<>();
+            MappedVecLoader.load(file, actual);
+            assertEquals(expected.size(), actual.size());
+            for (int i = 0; i < expected.size(); i++) {
+                assertEquals(expected.get(i).toString(), actual.get(i).toString());
+            }
+
+            String expectedPenColour = null;
+            String expectedFillColour = null;
+            for (VecCommand command : expected) {
+                if (command instanceof PenCommand) {
+                    expectedPenColour = ((PenCommand) command).getColour();
+                } else if (command instanceof FillCommand) {
+                    expectedFillColour = ((FillCommand) command).getColour();
+                }
+            }
+
+            //The colours are rebuilt from the stitched commands, across chunks
+            VecFile vecFile = new VecFile(file);
+            assertEquals(expected.size(), vecFile.getCommands().size());
+            assertEquals(expectedPenColour, vecFile.getLatestPenColour());
+            assertEquals(expectedFillColour, vecFile.getLatestFillColour());
+        });
+    }
+
+    @Test
+    public void testFirstErrorReported() {
+        assertDoesNotThrow(() -> {
+            //The invalid lines are in different chunks, and the later chunk may finish parsing first
+            File file = writeLargeFile("PLOT 0.5", "RECTANGLE 0.1 0.2 0.3 nope", "CIRCLE 0.5 0.5");
+            VecCommandException expected = assertThrows(VecCommandException.class, () -> readSequentially(file));
+
+            ArrayList<VecCommand> commands = new ArrayList<>();
+            VecCommandException actual = assertThrows(VecCommandException.class, () -> MappedVecLoader.load(file, commands));
+            assertEquals(expected.getMessage(), actual.getMessage());
+            assertTrue(commands.isEmpty());
+        });
+    }
+}
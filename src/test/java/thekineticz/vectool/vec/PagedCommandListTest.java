@@ -0,0 +1,160 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.FillCommand;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.commands.PlotCommand;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.UncheckedIOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the PagedCommandList class.
+ */
+public class PagedCommandListTest {
+
+    private static final int PAGE_SIZE = 7;
+
+    /**
+     * Generates the lines of a vec file with a pen command near the start and fill commands throughout.
+     *
+     * @param count The number of lines.
+     * @return The lines.
+     */
+    private static ArrayList<String> randomLines(int count) {
+        Random rand = new Random(302);
+        ArrayList<String> lines = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            if (i == 3) {
+                lines.add("PEN #FF0000");
+            } else if (rand.nextInt(50) == 0) {
+                lines.add("FILL #00FF00");
+            } else {
+                lines.add(String.format("PLOT %s %s", rand.nextDouble(), rand.nextDouble()));
+            }
+        }
+
+        return lines;
+    }
+
+    /**
+     * Writes lines to a temporary vec file.
+     *
+     * @param lines      The lines.
+     * @param terminator The line terminator.
+     * @return The file.
+     */
+    private static File writeFile(ArrayList<String> lines, String terminator) throws IOException {
+        File file = File.createTempFile("paged", ".vec");
+        file.deleteOnExit();
+        Files.write(file.toPath(), String.join(terminator, lines).getBytes());
+        return file;
+    }
+
+    @Test
+    public void testReadsEveryCommand() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = randomLines(1000);
+
+            for (String terminator : new String[]{"\n", "\r\n", "\r"}) {
+                PagedCommandList commands = MappedVecLoader.index(writeFile(lines, terminator), PAGE_SIZE);
+                assertEquals(lines.size(), commands.size());
+
+                //Reading backwards after a forward pass forces evicted pages to be parsed again
+                for (int i = 0; i < lines.size(); i++) {
+                    assertEquals(lines.get(i), commands.get(i).toString());
+                }
+                for (int i = lines.size() - 1; i >= 0; i--) {
+                    assertEquals(lines.get(i), commands.get(i).toString());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testAddAndRemove() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = randomLines(100);
+            PagedCommandList commands = MappedVecLoader.index(writeFile(lines, "\n"), PAGE_SIZE);
+
+            commands.add(new PlotCommand(new Position(0.5, 0.5)));
+            assertEquals(101, commands.size());
+            assertEquals("PLOT 0.5 0.5", commands.get(100).toString());
+
+            commands.remove(100);
+            commands.remove(99);
+            assertEquals(99, commands.size());
+            assertEquals(lines.get(98), commands.get(98).toString());
+            assertThrows(IndexOutOfBoundsException.class, () -> commands.get(99));
+            assertThrows(UnsupportedOperationException.class, () -> commands.remove(0));
+        });
+    }
+
+    @Test
+    public void testLastIndexOfType() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = randomLines(1000);
+            PagedCommandList commands = MappedVecLoader.index(writeFile(lines, "\n"), PAGE_SIZE);
+
+            assertEquals(3, commands.lastIndexOfType(PenCommand.class));
+            assertEquals(lines.lastIndexOf("FILL #00FF00"), commands.lastIndexOfType(FillCommand.class));
+
+            while (commands.size() > 3) {
+                commands.remove(commands.size() - 1);
+            }
+            assertEquals(-1, commands.lastIndexOfType(PenCommand.class));
+
+            commands.add(new PenCommand("#0000FF"));
+            assertEquals(3, commands.lastIndexOfType(PenCommand.class));
+            assertEquals(-1, commands.lastIndexOfType(FillCommand.class));
+        });
+    }
+
+    @Test
+    public void testInvalidFile() {
+        ArrayList<String> lines = randomLines(100);
+        lines.set(50, "PLOT 0.5");
+        assertThrows(VecCommandException.class, () -> MappedVecLoader.index(writeFile(lines, "\n"), PAGE_SIZE));
+    }
+
+    @Test
+    public void testIteration() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = randomLines(500);
+            PagedCommandList commands = MappedVecLoader.index(writeFile(lines, "\n"), PAGE_SIZE);
+
+            int i = 0;
+            for (VecCommand command : commands) {
+                assertEquals(lines.get(i++), command.toString());
+            }
+            assertEquals(lines.size(), i);
+        });
+    }
+
+    @Test
+    public void testClose() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = randomLines(500);
+            PagedCommandList commands = MappedVecLoader.index(writeFile(lines, "\n"), PAGE_SIZE);
+            PagedCommandList snapshot = commands.snapshot();
+
+            //The snapshot keeps the file open after the list it was taken from is closed
+            commands.close();
+            commands.close();
+            assertEquals(lines.get(0), snapshot.get(0).toString());
+
+            snapshot.close();
+            assertThrows(UncheckedIOException.class, () -> snapshot.get(lines.size() - 1));
+        });
+    }
+}
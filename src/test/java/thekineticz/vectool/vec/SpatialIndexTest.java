@@ -0,0 +1,150 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecColour;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the SpatialIndex class.
+ */
+public class SpatialIndexTest {
+
+    /**
+     * Finds the commands in a range that intersect a region by checking every one of them.
+     *
+     * @param commands The commands.
+     * @param minX     The smallest x coordinate of the region.
+     * @param minY     The smallest y coordinate of the region.
+     * @param maxX     The largest x coordinate of the region.
+     * @param maxY     The largest y coordinate of the region.
+     * @param to       The index after the last command to check.
+     * @return The indexes of the commands, in order.
+     */
+    private static int[] queryAll(CommandBuffer commands, double minX, double minY, double maxX, double maxY, int to) {
+        ArrayList<Integer> found = new ArrayList<>();
+        double[] bounds = new double[4];
+        for (int i = 0; i < to; i++) {
+            if (SpatialIndex.getBounds(commands, i, bounds) && bounds[0] <= maxX && bounds[2] >= minX
+                    && bounds[1] <= maxY && bounds[3] >= minY) {
+                found.add(i);
+            }
+        }
+        return found.stream().mapToInt(Integer::intValue).toArray();
+    }
+
+    @Test
+    public void testQueryMatchesEveryCommand() {
+        assertDoesNotThrow(() -> {
+            Random random = new Random(5);
+            CommandBuffer commands = new CommandBuffer();
+            SpatialIndex index = new SpatialIndex();
+
+            for (int i = 0; i < 3000; i++) {
+                double x = random.nextDouble();
+                double y = random.nextDouble();
+                double size = random.nextInt(20) == 0 ? 1.5 : 0.05;
+                ArrayList<Position> corners = new ArrayList<>(List.of(new Position(x, y),
+                        new Position(x + size * random.nextDouble(), y + size * random.nextDouble())));
+
+                if (random.nextInt(4) == 0) {
+                    commands.add(new PenCommand(random.nextInt(0x1000000)));
+                } else {
+                    commands.add(random.nextBoolean() ? new RectangleCommand(corners) : new PlotCommand(corners.get(0)));
+                }
+                index.update(commands, commands.size() - 1);
+            }
+
+            for (int i = 0; i < 50; i++) {
+                double x = random.nextDouble();
+                double y = random.nextDouble();
+                assertArrayEquals(queryAll(commands, x, y, x + 0.1, y + 0.1, commands.size()),
+                        index.query(x, y, x + 0.1, y + 0.1, 0, commands.size()));
+            }
+
+            //Undoing removes commands from the end of the index
+            while (commands.size() > 1234) {
+                commands.remove(commands.size() - 1);
+            }
+            index.update(commands, commands.size());
+            assertEquals(1234, index.size());
+            assertArrayEquals(queryAll(commands, 0.2, 0.2, 0.6, 0.6, 1234), index.query(0.2, 0.2, 0.6, 0.6, 0, 1234));
+            assertArrayEquals(queryAll(commands, 0.2, 0.2, 0.6, 0.6, 1000), index.query(0.2, 0.2, 0.6, 0.6, 0, 1000));
+        });
+    }
+
+    @Test
+    public void testColours() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer commands = new CommandBuffer();
+            commands.add(new PlotCommand(new Position(0.5, 0.5)));
+            commands.add(new PenCommand("#FF0000"));
+            commands.add(new FillCommand("#00FF00"));
+            commands.add(new PlotCommand(new Position(0.5, 0.5)));
+            commands.add(new FillCommand(FillCommand.FILL_OFF));
+
+            SpatialIndex index = new SpatialIndex();
+            index.update(commands, 0);
+
+            assertEquals(VecFile.DEFAULT_PEN_RGB, index.getPenColour(0));
+            assertEquals(VecFile.DEFAULT_FILL_RGB, index.getFillColour(0));
+            assertEquals(0xFF0000, index.getPenColour(3));
+            assertEquals(0x00FF00, index.getFillColour(3));
+            assertEquals(VecColour.NONE, index.getFillColour(4));
+            assertArrayEquals(new int[]{0, 3}, index.query(0, 0, 1, 1, 0, 5));
+        });
+    }
+
+    @Test
+    public void testOcclusion() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer commands = new CommandBuffer();
+            commands.add(new PlotCommand(new Position(0.5, 0.5)));
+            commands.add(new LineCommand(new ArrayList<>(List.of(new Position(0.3, 0.3), new Position(0.9, 0.5)))));
+
+            //Rectangles without a fill only draw their outline, so they hide nothing
+            commands.add(new FillCommand(FillCommand.FILL_OFF));
+            commands.add(new RectangleCommand(new ArrayList<>(List.of(new Position(0.2, 0.2), new Position(0.8, 0.8)))));
+            commands.add(new FillCommand("#00FF00"));
+
+            //A polygon whose edges cross isn't a rectangle, even with the same corners
+            commands.add(new PolygonCommand(new ArrayList<>(List.of(new Position(0.2, 0.2), new Position(0.8, 0.8),
+                    new Position(0.8, 0.2), new Position(0.2, 0.8)))));
+            commands.add(new PolygonCommand(new ArrayList<>(List.of(new Position(0.8, 0.2), new Position(0.8, 0.8),
+                    new Position(0.2, 0.8), new Position(0.2, 0.2)))));
+            commands.add(new RectangleCommand(new ArrayList<>(List.of(new Position(1.0, 1.0), new Position(0.0, 0.0)))));
+
+            SpatialIndex index = new SpatialIndex();
+            index.update(commands, 0);
+
+            //The plot is hidden by the first opaque shape over it, but only if that shape is drawn too
+            assertTrue(index.isOccluded(0, 8));
+            assertTrue(index.isOccluded(0, 7));
+            assertFalse(index.isOccluded(0, 6));
+            assertTrue(index.isOccluded(1, 8));
+            assertFalse(index.isOccluded(1, 7));
+            assertTrue(index.isOccluded(3, 8));
+            assertTrue(index.isOccluded(5, 8));
+            assertFalse(index.isOccluded(2, 8));
+            assertFalse(index.isOccluded(7, 8));
+
+            //Undoing the shapes that hid commands uncovers them
+            commands.remove(7);
+            commands.remove(6);
+            index.update(commands, 6);
+            assertFalse(index.isOccluded(0, 6));
+            assertFalse(index.isOccluded(1, 6));
+
+            commands.add(new RectangleCommand(new ArrayList<>(List.of(new Position(0.4, 0.4), new Position(0.6, 0.6)))));
+            index.update(commands, 6);
+            assertTrue(index.isOccluded(0, 7));
+            assertFalse(index.isOccluded(1, 7));
+        });
+    }
+}
@@ -0,0 +1,141 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecBinaryWriter and VecBinaryReader classes.
+ */
+public class VecBinaryFormatTest {
+
+    /**
+     * Generates a list of random commands of every type.
+     *
+     * @param count The number of commands.
+     * @return The commands.
+     */
+    private static ArrayList<VecCommand> randomCommands(int count) throws VecCommandException {
+        Random rand = new Random(302);
+        ArrayList<VecCommand> commands = new ArrayList<>();
+
+        for (int i = 0; i < count; i++) {
+            switch (rand.nextInt(7)) {
+                case 0:
+                    commands.add(new PlotCommand(new Position(rand.nextDouble(), Math.round(rand.nextDouble() * 1000) / 1000.0)));
+                    break;
+                case 1:
+                    commands.add(LineCommand.fromString("LINE 0.25 0.5 -1.5E-7 " + rand.nextDouble()));
+                    break;
+                case 2:
+                    commands.add(RectangleCommand.fromString("RECTANGLE 0 0 1 " + rand.nextInt(100) / 100.0));
+                    break;
+                case 3:
+                    commands.add(EllipseCommand.fromString("ELLIPSE -0.0 NaN Infinity 1E300"));
+                    break;
+                case 4:
+                    ArrayList<Position> vertices = new ArrayList<>();
+                    for (int j = 0; j < 1 + rand.nextInt(20); j++) {
+                        vertices.add(new Position(rand.nextDouble(), rand.nextDouble()));
+                    }
+                    commands.add(new PolygonCommand(vertices));
+                    break;
+                case 5:
+                    commands.add(new PenCommand(rand.nextBoolean() ? "#FF00AA" : "#ff00Aa"));
+                    break;
+                default:
+                    commands.add(new FillCommand(rand.nextBoolean() ? FillCommand.FILL_OFF : "#123ABC"));
+                    break;
+            }
+        }
+
+        return commands;
+    }
+
+    /**
+     * Writes commands to a byte array in the binary format.
+     *
+     * @param commands           The commands.
+     * @param isDeltaCoordinates Whether coordinates are delta encoded.
+     * @return The binary file.
+     */
+    private static byte[] write(ArrayList<VecCommand> commands, boolean isDeltaCoordinates) throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        try (VecBinaryWriter writer = new VecBinaryWriter(out, isDeltaCoordinates, false)) {
+            writer.writeAll(commands);
+        }
+        return out.toByteArray();
+    }
+
+    /**
+     * Reads commands from a binary file in a byte array.
+     *
+     * @param bytes The binary file.
+     * @return The commands.
+     */
+    private static ArrayList<VecCommand> read(byte[] bytes) throws IOException, VecCommandException {
+        ArrayList<VecCommand> commands = new ArrayList<>();
+        try (VecBinaryReader reader = new VecBinaryReader(new ByteArrayInputStream(bytes))) {
+            reader.readAll(commands);
+        }
+        return commands;
+    }
+
+    @Test
+    public void testLosslessRoundTrip() {
+        assertDoesNotThrow(() -> {
+            ArrayList<VecCommand> commands = randomCommands(20000);
+
+            for (boolean isDeltaCoordinates : new boolean[]{true, false}) {
+                ArrayList<VecCommand> decoded = read(write(commands, isDeltaCoordinates));
+                assertEquals(commands.size(), decoded.size());
+
+                for (int i = 0; i < commands.size(); i++) {
+                    assertEquals(commands.get(i).toString(), decoded.get(i).toString());
+                }
+            }
+        });
+    }
+
+    @Test
+    public void testEmptyFile() {
+        assertDoesNotThrow(() -> assertTrue(read(write(new ArrayList<>(), true)).isEmpty()));
+    }
+
+    @Test
+    public void testDeltaCoordinatesAreSmaller() {
+        assertDoesNotThrow(() -> {
+            ArrayList<VecCommand> commands = new ArrayList<>();
+            for (int i = 0; i < 1000; i++) {
+                commands.add(PlotCommand.fromString(String.format("PLOT 0.%03d 0.5", i)));
+            }
+
+            assertTrue(write(commands, true).length < write(commands, false).length);
+        });
+    }
+
+    @Test
+    public void testCorruptBlock() {
+        assertDoesNotThrow(() -> {
+            byte[] bytes = write(randomCommands(100), true);
+            bytes[bytes.length / 2] ^= 0x10;
+            assertThrows(IOException.class, () -> read(bytes));
+        });
+    }
+
+    @Test
+    public void testInvalidHeader() {
+        assertThrows(IOException.class, () -> read(new byte[]{'P', 'L', 'O', 'T', 1}));
+        assertThrows(IOException.class, () -> read(new byte[]{'V', 'E'}));
+    }
+}
@@ -0,0 +1,239 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.commands.PlotCommand;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.*;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecCompressedOutputStream and VecCompressedLoader classes.
+ */
+public class VecCompressedFormatTest {
+
+    /**
+     * Creates a temporary file path for a compressed vec file.
+     *
+     * @return The file.
+     */
+    private static File temporaryFile() throws Exception {
+        File file = File.createTempFile("compressed", "." + VecFile.COMPRESSED_FILE_EXTENSION);
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Decompresses a file with the standard gzip stream.
+     *
+     * @param file The file.
+     * @return The decompressed text.
+     */
+    private static String decompress(File file) throws Exception {
+        try (InputStream in = new GZIPInputStream(new FileInputStream(file))) {
+            return new String(in.readAllBytes(), StandardCharsets.UTF_8);
+        }
+    }
+
+    /**
+     * Writes text to a file with the standard gzip stream, as a single member.
+     *
+     * @param file The file.
+     * @param text The text.
+     */
+    private static void compress(File file, String text) throws Exception {
+        try (OutputStream out = new GZIPOutputStream(new FileOutputStream(file))) {
+            out.write(text.getBytes(StandardCharsets.UTF_8));
+        }
+    }
+
+    /**
+     * Creates a VecFile with enough commands to fill several blocks.
+     *
+     * @param count The number of plot commands.
+     * @return The VecFile.
+     */
+    private static VecFile largeFile(int count) throws Exception {
+        VecFile vecFile = new VecFile("test");
+        for (int i = 0; i < count; i++) {
+            if (i % 1000 == 0) {
+                vecFile.addCommand(new PenCommand(i % 2000 == 0 ? "#FF0000" : "#0000FF"));
+            }
+            vecFile.addCommand(new PlotCommand(new Position(i / (double) count, 0.5)));
+        }
+        return vecFile;
+    }
+
+    /**
+     * Converts commands to their string forms.
+     *
+     * @param commands The commands.
+     * @return The strings.
+     */
+    private static ArrayList<String> toStrings(List<VecCommand> commands) {
+        ArrayList<String> strings = new ArrayList<>();
+        commands.forEach(command -> strings.add(command.toString()));
+        return strings;
+    }
+
+    @Test
+    public void testRoundTrip() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            VecFile vecFile = largeFile(100000);
+            vecFile.saveAs(file);
+
+            VecFile loaded = new VecFile(file);
+            assertEquals(VecFile.COMPRESSED_FILE_EXTENSION, loaded.getExtension());
+            assertEquals(toStrings(vecFile.getCommands()), toStrings(loaded.getCommands()));
+
+            //The blocks are ordinary gzip members, so any gzip reader sees the whole text
+            assertEquals(String.join(System.lineSeparator(), toStrings(vecFile.getCommands())), decompress(file));
+            assertTrue(file.length() * 4 < decompress(file).length());
+        });
+    }
+
+    @Test
+    public void testAppend() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            VecFile vecFile = largeFile(50000);
+            vecFile.saveAs(file);
+
+            long length = file.length();
+            vecFile.addCommand(new PlotCommand(new Position(0.25, 0.75)));
+            vecFile.save();
+
+            //Only a new member was added to the end of the file
+            assertTrue(file.length() - length < 100);
+            assertEquals(toStrings(vecFile.getCommands()), toStrings(new VecFile(file).getCommands()));
+            assertEquals(String.join(System.lineSeparator(), toStrings(vecFile.getCommands())), decompress(file));
+        });
+    }
+
+    @Test
+    public void testStandardGzipFile() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            compress(file, "PLOT 0.5 0.5\r\nPEN #FF0000\nPLOT 0.25 0.25\n");
+
+            VecFile vecFile = new VecFile(file);
+            assertEquals(3, vecFile.getCommands().size());
+            assertEquals("#FF0000", vecFile.getLatestPenColour());
+
+            //The file already ends with a line terminator, so none is added before the appended command
+            vecFile.addCommand(new PlotCommand(new Position(0.75, 0.75)));
+            vecFile.save();
+            assertEquals("PLOT 0.5 0.5\r\nPEN #FF0000\nPLOT 0.25 0.25\nPLOT 0.75 0.75", decompress(file));
+            assertEquals(4, new VecFile(file).getCommands().size());
+        });
+    }
+
+    @Test
+    public void testLineSplitBetweenMembers() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            try (OutputStream out = new FileOutputStream(file)) {
+                for (String member : new String[]{"PLOT 0.5 0.5\nPLOT 0.", "25 0.25\r", "\nPEN #FF0000"}) {
+                    VecCompressedOutputStream compressedOut = new VecCompressedOutputStream(new FilterOutputStream(out) {
+                        @Override
+                        public void close() {
+                        }
+                    });
+                    compressedOut.write(member.getBytes(StandardCharsets.UTF_8));
+                    compressedOut.close();
+                }
+            }
+
+            assertEquals(toStrings(new VecFile(file).getCommands()), List.of("PLOT 0.5 0.5", "PLOT 0.25 0.25", "PEN #FF0000"));
+
+            ArrayList<VecCommand> commands = new ArrayList<>();
+            try (VecFileLoader loader = new VecFileLoader(file)) {
+                while (!loader.isFinished()) {
+                    commands.addAll(loader.readBatch(1));
+                }
+            }
+            assertEquals(toStrings(commands), List.of("PLOT 0.5 0.5", "PLOT 0.25 0.25", "PEN #FF0000"));
+        });
+    }
+
+    @Test
+    public void testInvalidCommand() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            File textFile = File.createTempFile("compressed", "." + VecFile.FILE_EXTENSION);
+            textFile.deleteOnExit();
+
+            VecFile vecFile = largeFile(50000);
+            vecFile.saveAs(file);
+            String text = decompress(file) + System.lineSeparator() + System.lineSeparator() + "PLOT 0.5";
+            compress(file, text);
+            Files.write(textFile.toPath(), text.getBytes(StandardCharsets.UTF_8));
+
+            VecCommandException expected = assertThrows(VecCommandException.class, () -> new VecFile(textFile));
+            VecCommandException actual = assertThrows(VecCommandException.class, () -> new VecFile(file));
+            assertEquals(expected.getMessage(), actual.getMessage());
+        });
+    }
+
+    @Test
+    public void testCorruptFile() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            largeFile(1000).saveAs(file);
+
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            bytes[bytes.length / 2] ^= 0x55;
+            Files.write(file.toPath(), bytes);
+            assertThrows(IOException.class, () -> new VecFile(file));
+        });
+    }
+
+    @Test
+    public void testCorruptMemberLength() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            largeFile(1000).saveAs(file);
+            byte[] bytes = Files.readAllBytes(file.toPath());
+            int memberLength = (bytes[16] & 0xff) | (bytes[17] & 0xff) << 8 | (bytes[18] & 0xff) << 16 | (bytes[19] & 0xff) << 24;
+
+            //Lengths in the trailer that are negative as an int, or far more than the member could inflate to
+            for (int textLength : new int[]{-1, 0x7FFFFFFF, 2000 * memberLength}) {
+                for (int i = 0; i < 4; i++) {
+                    bytes[memberLength - 4 + i] = (byte) (textLength >>> (8 * i));
+                }
+                Files.write(file.toPath(), bytes);
+                assertThrows(ZipException.class, () -> VecCompressedLoader.load(file, new ArrayList<>()));
+            }
+        });
+    }
+
+    @Test
+    public void testBatchedLoad() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            VecFile vecFile = largeFile(20000);
+            vecFile.saveAs(file);
+
+            ArrayList<VecCommand> commands = new ArrayList<>();
+            try (VecFileLoader loader = new VecFileLoader(file)) {
+                assertFalse(loader.isPaged());
+                while (!loader.isFinished()) {
+                    commands.addAll(loader.readBatch(1000));
+                }
+            }
+            assertEquals(toStrings(vecFile.getCommands()), toStrings(commands));
+        });
+    }
+}
@@ -0,0 +1,136 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.PlotCommand;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecCommand;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecFileLoader class.
+ */
+public class VecFileLoaderTest {
+
+    /**
+     * Writes lines to a temporary vec file.
+     *
+     * @param lines The lines.
+     * @return The file.
+     */
+    private static File writeFile(List<String> lines) throws Exception {
+        File file = File.createTempFile("loader", ".vec");
+        file.deleteOnExit();
+        Files.write(file.toPath(), lines);
+        return file;
+    }
+
+    /**
+     * Loads a file in batches into a loading VecFile.
+     *
+     * @param file      The file.
+     * @param batchSize The number of commands in each batch.
+     * @return The loaded VecFile.
+     */
+    private static VecFile load(File file, int batchSize) throws Exception {
+        VecFile vecFile = VecFile.createLoading(file);
+        assertTrue(vecFile.isLoading());
+
+        try (VecFileLoader loader = new VecFileLoader(file)) {
+            while (!loader.isFinished()) {
+                List<VecCommand> batch = loader.readBatch(batchSize);
+                assertTrue(batch.size() <= batchSize);
+                vecFile.addLoadedCommands(batch);
+            }
+            assertEquals(1, loader.getProgress());
+            vecFile.finishLoading(loader);
+        }
+
+        return vecFile;
+    }
+
+    @Test
+    public void testBatchedLoad() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = new ArrayList<>();
+            lines.add("PEN #FF0000");
+            lines.add("FILL #00FF00");
+            for (int i = 0; i < 1000; i++) {
+                lines.add(String.format("PLOT %s 0.5", i / 1000.0));
+            }
+            lines.add("PEN #FF0000");
+
+            VecFile vecFile = load(writeFile(lines), 64);
+            assertFalse(vecFile.isLoading());
+            assertTrue(vecFile.isSaved());
+            assertEquals(lines.size(), vecFile.getCommands().size());
+            assertEquals("#FF0000", vecFile.getLatestPenColour());
+            assertEquals("#00FF00", vecFile.getLatestFillColour());
+
+            //Every line is kept, including the redundant colour command
+            for (int i = 0; i < lines.size(); i++) {
+                assertEquals(lines.get(i), vecFile.getCommands().get(i).toString());
+            }
+        });
+    }
+
+    @Test
+    public void testLoadedFileCanBeSaved() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = new ArrayList<>();
+            lines.add("PLOT 0.5 0.5");
+            File file = writeFile(lines);
+
+            VecFile vecFile = load(file, 64);
+            vecFile.addCommand(new PlotCommand(new Position(0.25, 0.25)));
+            vecFile.save();
+            assertEquals(2, new VecFile(file).getCommands().size());
+        });
+    }
+
+    @Test
+    public void testInvalidFile() {
+        ArrayList<String> lines = new ArrayList<>();
+        lines.add("PLOT 0.5 0.5");
+        lines.add("PLOT 0.5");
+
+        assertThrows(VecCommandException.class, () -> load(writeFile(lines), 64));
+    }
+
+    @Test
+    public void testParallelLoad() {
+        assertDoesNotThrow(() -> {
+            ArrayList<String> lines = new ArrayList<>();
+            lines.add("PEN #FF0000");
+            long length = 0;
+            for (int i = 0; length <= MappedVecLoader.PARALLEL_THRESHOLD; i++) {
+                String line = String.format("LINE %s 0.25 0.5 %s", i / 1000000.0, (i % 1000) / 1000.0);
+                lines.add(line);
+                length += line.length() + 1;
+            }
+            File file = writeFile(lines);
+
+            //Batches are smaller than the chunks, and don't line up with them
+            VecFile vecFile = load(file, 10007);
+            assertEquals(lines.size(), vecFile.getCommands().size());
+            assertEquals("#FF0000", vecFile.getLatestPenColour());
+            for (int i = 0; i < lines.size(); i += 997) {
+                assertEquals(lines.get(i), vecFile.getCommands().get(i).toString());
+            }
+
+            //Only the first invalid line is reported, like when the whole file is read at once
+            lines.set(lines.size() / 2, "PLOT 0.5");
+            lines.set(lines.size() - 1, "PLOT");
+            File invalidFile = writeFile(lines);
+            VecCommandException expected = assertThrows(VecCommandException.class, () -> new VecFile(invalidFile));
+            VecCommandException actual = assertThrows(VecCommandException.class, () -> load(invalidFile, 10007));
+            assertEquals(expected.getMessage(), actual.getMessage());
+        });
+    }
+}
@@ -0,0 +1,147 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.commands.PlotCommand;
+import thekineticz.vectool.vec.common.Position;
+
+import java.io.File;
+import java.io.IOException;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecFileSnapshot class.
+ */
+public class VecFileSnapshotTest {
+
+    /**
+     * Creates a temporary file path for a vec file.
+     *
+     * @return The file.
+     */
+    private static File temporaryFile() throws Exception {
+        File file = File.createTempFile("snapshot", ".vec");
+        file.deleteOnExit();
+        return file;
+    }
+
+    /**
+     * Reads the commands of a vec file as strings.
+     *
+     * @param file The file.
+     * @return The commands.
+     */
+    private static ArrayList<String> readCommands(File file) throws Exception {
+        ArrayList<String> commands = new ArrayList<>();
+        new VecFile(file).getCommands().forEach(command -> commands.add(command.toString()));
+        return commands;
+    }
+
+    @Test
+    public void testEditDuringSave() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PlotCommand(new Position(0.1, 0.1)));
+
+            VecFileSnapshot snapshot = vecFile.createSaveSnapshot(file);
+            vecFile.addCommand(new PlotCommand(new Position(0.2, 0.2)));
+            snapshot.write(null);
+            vecFile.completeSave(snapshot);
+
+            //The file only holds the snapshot, so the VecFile still has unsaved changes
+            assertFalse(vecFile.isSaved());
+            assertFalse(vecFile.isNewFile());
+            assertEquals(1, readCommands(file).size());
+
+            vecFile.save();
+            assertTrue(vecFile.isSaved());
+            assertEquals(2, readCommands(file).size());
+        });
+    }
+
+    @Test
+    public void testUndoDuringSave() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PenCommand("#FF0000"));
+            vecFile.addCommand(new PlotCommand(new Position(0.1, 0.1)));
+            vecFile.addCommand(new PlotCommand(new Position(0.2, 0.2)));
+            vecFile.saveAs(file);
+
+            vecFile.addCommand(new PlotCommand(new Position(0.3, 0.3)));
+            VecFileSnapshot snapshot = vecFile.createSaveSnapshot();
+            vecFile.undoLatestCommand();
+            vecFile.undoLatestCommand();
+            vecFile.addCommand(new PlotCommand(new Position(0.4, 0.4)));
+            snapshot.write(null);
+            vecFile.completeSave(snapshot);
+            assertEquals(4, readCommands(file).size());
+
+            //A saved command was undone while writing, so the next save can't just append
+            vecFile.save();
+            assertTrue(vecFile.isSaved());
+            assertEquals(Files.readAllLines(file.toPath()), readCommands(file));
+            assertEquals("PLOT 0.4 0.4", readCommands(file).get(2));
+            assertEquals(3, readCommands(file).size());
+        });
+    }
+
+    @Test
+    public void testSnapshotIsUnchanged() {
+        assertDoesNotThrow(() -> {
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PlotCommand(new Position(0.1, 0.1)));
+
+            VecFileSnapshot snapshot = vecFile.createSaveSnapshot(temporaryFile());
+            vecFile.addCommand(new PlotCommand(new Position(0.2, 0.2)));
+            vecFile.undoLatestCommand();
+            vecFile.undoLatestCommand();
+            assertEquals(1, snapshot.size());
+        });
+    }
+
+    @Test
+    public void testAbandonedSave() {
+        assertDoesNotThrow(() -> {
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PlotCommand(new Position(0.1, 0.1)));
+
+            VecFileSnapshot snapshot = vecFile.createSaveSnapshot(new File("/nonexistent/directory/test.vec"));
+            assertThrows(IOException.class, () -> snapshot.write(null));
+            vecFile.abandonSave(snapshot);
+            assertFalse(vecFile.isSaved());
+            assertTrue(vecFile.isNewFile());
+        });
+    }
+
+    @Test
+    public void testPagedFileSavedInPlace() {
+        assertDoesNotThrow(() -> {
+            File file = temporaryFile();
+            Files.write(file.toPath(), "PLOT 0.1 0.1\nPEN #FF0000\nPLOT 0.2 0.2".getBytes());
+            PagedCommandList commands = MappedVecLoader.index(file, 2);
+
+            //New commands are appended to the file the list reads from, so it doesn't need indexing again
+            commands.add(new PlotCommand(new Position(0.3, 0.3)));
+            VecFileSnapshot snapshot = new VecFileSnapshot(file, commands.snapshot(), 3, false, 0);
+            snapshot.write(null);
+            assertNull(snapshot.getReindexedCommands());
+            assertEquals("PLOT 0.2 0.2", commands.get(2).toString());
+            assertEquals(List.of("PLOT 0.1 0.1", "PEN #FF0000", "PLOT 0.2 0.2", "PLOT 0.3 0.3"), readCommands(file));
+
+            //Undoing commands that were read from the file means it has to be rewritten
+            commands.remove(3);
+            commands.remove(2);
+            snapshot = new VecFileSnapshot(file, commands.snapshot(), VecFileSnapshot.NO_APPEND, false, 0);
+            snapshot.write(null);
+            assertEquals(2, snapshot.getReindexedCommands().size());
+            assertEquals(List.of("PLOT 0.1 0.1", "PEN #FF0000"), readCommands(file));
+        });
+    }
+}
@@ -0,0 +1,179 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.commands.PlotCommand;
+import thekineticz.vectool.vec.common.Position;
+
+import java.io.File;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecFile class.
+ */
+public class VecFileTest {
+
+    /**
+     * Writes bytes to a temporary file.
+     *
+     * @param suffix The suffix of the file's name, including its extension.
+     * @param bytes  The bytes.
+     * @return The file.
+     */
+    private static File writeFile(String suffix, byte[] bytes) throws Exception {
+        File file = File.createTempFile("vecfile", suffix);
+        file.deleteOnExit();
+        Files.write(file.toPath(), bytes);
+        return file;
+    }
+
+    /**
+     * Reads the commands of a vec file as strings.
+     *
+     * @param file The file.
+     * @return The commands.
+     */
+    private static ArrayList<String> readCommands(File file) throws Exception {
+        ArrayList<String> commands = new ArrayList<>();
+        new VecFile(file).getCommands().forEach(command -> commands.add(command.toString()));
+        return commands;
+    }
+
+    /**
+     * Opens a text file, adds a command and saves it in place, checking the file was appended to.
+     *
+     * @param text The text of the file.
+     * @return The saved file.
+     */
+    private static File appendToTextFile(String text) throws Exception {
+        byte[] persisted = text.getBytes();
+        File file = writeFile(".vec", persisted);
+        VecFile vecFile = new VecFile(file);
+        vecFile.addCommand(new PlotCommand(new Position(0.3, 0.3)));
+        vecFile.save();
+
+        byte[] saved = Files.readAllBytes(file.toPath());
+        assertArrayEquals(persisted, Arrays.copyOf(saved, persisted.length));
+        return file;
+    }
+
+    @Test
+    public void testAppendAfterLineTerminator() {
+        assertDoesNotThrow(() -> {
+            File file = appendToTextFile("PEN #FF0000\nPLOT 0.1 0.1\n");
+
+            //No empty line is left between the old and the new commands
+            assertEquals(List.of("PEN #FF0000", "PLOT 0.1 0.1", "PLOT 0.3 0.3"), Files.readAllLines(file.toPath()));
+        });
+    }
+
+    @Test
+    public void testAppendWithoutLineTerminator() {
+        assertDoesNotThrow(() -> {
+            File file = appendToTextFile("PEN #FF0000\nPLOT 0.1 0.1");
+            assertEquals(List.of("PEN #FF0000", "PLOT 0.1 0.1", "PLOT 0.3 0.3"), Files.readAllLines(file.toPath()));
+        });
+    }
+
+    @Test
+    public void testAppendAfterCrlf() {
+        assertDoesNotThrow(() -> {
+            File file = appendToTextFile("PEN #FF0000\r\nPLOT 0.1 0.1\r\n");
+            assertEquals(List.of("PEN #FF0000", "PLOT 0.1 0.1", "PLOT 0.3 0.3"), Files.readAllLines(file.toPath()));
+        });
+    }
+
+    @Test
+    public void testAppendBinary() {
+        assertDoesNotThrow(() -> {
+            File file = writeFile(".vecb", new byte[0]);
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PenCommand("#FF0000"));
+            vecFile.addCommand(new PlotCommand(new Position(0.1, 0.1)));
+            vecFile.saveAs(file);
+            byte[] persisted = Files.readAllBytes(file.toPath());
+
+            vecFile.addCommand(new PlotCommand(new Position(0.2, 0.2)));
+            vecFile.save();
+            byte[] saved = Files.readAllBytes(file.toPath());
+            assertTrue(saved.length > persisted.length);
+            assertArrayEquals(persisted, Arrays.copyOf(saved, persisted.length));
+            assertEquals(List.of("PEN #FF0000", "PLOT 0.1 0.1", "PLOT 0.2 0.2"), readCommands(file));
+        });
+    }
+
+    @Test
+    public void testRewriteAfterUndoingSavedCommands() {
+        assertDoesNotThrow(() -> {
+            File file = writeFile(".vec", new byte[0]);
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PlotCommand(new Position(0.1, 0.1)));
+            vecFile.addCommand(new PlotCommand(new Position(0.2, 0.2)));
+            vecFile.addCommand(new PlotCommand(new Position(0.3, 0.3)));
+            vecFile.saveAs(file);
+
+            //Undoing below what was saved means appending would leave the undone commands in the file
+            vecFile.undoLatestCommand();
+            vecFile.undoLatestCommand();
+            vecFile.addCommand(new PlotCommand(new Position(0.4, 0.4)));
+            vecFile.save();
+            assertEquals(List.of("PLOT 0.1 0.1", "PLOT 0.4 0.4"), Files.readAllLines(file.toPath()));
+
+            //The rewritten file can be appended to again
+            byte[] persisted = Files.readAllBytes(file.toPath());
+            vecFile.addCommand(new PlotCommand(new Position(0.5, 0.5)));
+            vecFile.save();
+            byte[] saved = Files.readAllBytes(file.toPath());
+            assertArrayEquals(persisted, Arrays.copyOf(saved, persisted.length));
+            assertEquals(List.of("PLOT 0.1 0.1", "PLOT 0.4 0.4", "PLOT 0.5 0.5"), Files.readAllLines(file.toPath()));
+        });
+    }
+
+    @Test
+    public void testCommandListener() {
+        assertDoesNotThrow(() -> {
+            VecFile vecFile = new VecFile("test");
+            ArrayList<Integer> changes = new ArrayList<>();
+            vecFile.addCommandListener(changes::add);
+
+            vecFile.addCommand(new PlotCommand(new Position(0.5, 0.5)));
+            vecFile.addCommand(new PenCommand("#FF0000"));
+            vecFile.addCommand(new PlotCommand(new Position(0.25, 0.25)));
+
+            //A colour command that changes nothing isn't added, so it isn't a change either
+            vecFile.addCommand(new PenCommand("#FF0000"));
+            assertEquals(List.of(0, 1, 2), changes);
+
+            //The plot and the pen command before it are both undone
+            vecFile.undoLatestCommand();
+            assertEquals(List.of(0, 1, 2, 1), changes);
+
+            vecFile.addLoadedCommands(List.of(new PlotCommand(new Position(0.0, 0.0)), new PlotCommand(new Position(1.0, 1.0))));
+            assertEquals(List.of(0, 1, 2, 1, 1), changes);
+        });
+    }
+
+    @Test
+    public void testSpatialIndexFollowsCommands() {
+        assertDoesNotThrow(() -> {
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PlotCommand(new Position(0.1, 0.1)));
+            SpatialIndex index = vecFile.getSpatialIndex();
+
+            vecFile.addCommand(new PenCommand("#FF0000"));
+            vecFile.addCommand(new PlotCommand(new Position(0.9, 0.9)));
+            assertEquals(3, index.size());
+            assertArrayEquals(new int[]{2}, index.query(0.5, 0.5, 1, 1, 0, 3));
+            assertEquals(0xFF0000, index.getPenColour(2));
+
+            vecFile.undoLatestCommand();
+            assertEquals(1, index.size());
+            assertArrayEquals(new int[0], index.query(0.5, 0.5, 1, 1, 0, 1));
+        });
+    }
+}
@@ -0,0 +1,109 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.PlotCommand;
+import thekineticz.vectool.vec.common.Position;
+
+import java.io.File;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.List;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecFileValidator class.
+ */
+public class VecFileValidatorTest {
+
+    /**
+     * Writes text to a temporary vec file.
+     *
+     * @param text The text.
+     * @return The file.
+     */
+    private static File textFile(String text) throws Exception {
+        File file = File.createTempFile("validator", "." + VecFile.FILE_EXTENSION);
+        file.deleteOnExit();
+        Files.write(file.toPath(), text.getBytes(StandardCharsets.UTF_8));
+        return file;
+    }
+
+    @Test
+    public void testValidFile() {
+        assertDoesNotThrow(() -> {
+            VecValidationReport report = VecFileValidator.validate(textFile("PLOT 0.5 0.5\nPEN #FF0000\nPOLYGON 0 0 1 0 1 1\n"));
+            assertTrue(report.isValid());
+            assertEquals(3, report.getLineCount());
+            assertEquals(3, report.getCommandCount());
+            assertEquals("", report.toString());
+        });
+    }
+
+    @Test
+    public void testEveryErrorReported() {
+        assertDoesNotThrow(() -> {
+            File file = textFile("PLOT 0.5 0.5\nPLOT 0.5\nLINE 0.1 abc 0.3 0.4\nPEN #GGGGGG\n\nCIRCLE 0.5\nFILL OFF\n");
+            VecValidationReport report = VecFileValidator.validate(file);
+
+            assertFalse(report.isValid());
+            assertEquals(7, report.getLineCount());
+            assertEquals(2, report.getCommandCount());
+            assertEquals(5, report.getErrorCount());
+
+            List<VecValidationReport.Diagnostic> diagnostics = report.getDiagnostics();
+            assertEquals(List.of(2, 3, 4, 5, 6), diagnostics.stream().map(VecValidationReport.Diagnostic::getLineNumber).toList());
+
+            //A missing argument is reported after the end of the line, a bad one at its own column
+            assertEquals(9, diagnostics.get(0).getColumn());
+            assertEquals(10, diagnostics.get(1).getColumn());
+            assertEquals(5, diagnostics.get(2).getColumn());
+            assertEquals(1, diagnostics.get(4).getColumn());
+            assertTrue(report.toString().startsWith(file.getPath() + ":2:9: "));
+        });
+    }
+
+    @Test
+    public void testMaxDiagnostics() {
+        assertDoesNotThrow(() -> {
+            VecValidationReport report = VecFileValidator.validate(textFile("PLOT\n".repeat(100)), 10);
+            assertEquals(100, report.getErrorCount());
+            assertEquals(10, report.getDiagnostics().size());
+            assertTrue(report.isTruncated());
+        });
+    }
+
+    @Test
+    public void testCompressedFile() {
+        assertDoesNotThrow(() -> {
+            File file = File.createTempFile("validator", "." + VecFile.COMPRESSED_FILE_EXTENSION);
+            file.deleteOnExit();
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new PlotCommand(new Position(0.5, 0.5)));
+            vecFile.saveAs(file);
+
+            VecValidationReport report = VecFileValidator.validate(file);
+            assertTrue(report.isValid());
+            assertEquals(1, report.getCommandCount());
+        });
+    }
+
+    @Test
+    public void testStackTraceSettingRestored() {
+        assertDoesNotThrow(() -> {
+            File file = textFile("PLOT 0.5\n");
+            VecFileValidator.validate(file);
+            assertFalse(VecCommandException.isStackTraceSuppressed());
+
+            //A caller that already suppresses stack traces keeps them suppressed
+            VecCommandException.setStackTraceSuppressed(true);
+            try {
+                VecFileValidator.validate(file);
+                assertTrue(VecCommandException.isStackTraceSuppressed());
+            } finally {
+                VecCommandException.setStackTraceSuppressed(false);
+            }
+        });
+    }
+}
@@ -0,0 +1,125 @@
+package thekineticz.vectool.vec;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.vec.commands.*;
+import thekineticz.vectool.vec.common.Position;
+import thekineticz.vectool.vec.common.VecColour;
+
+import javax.imageio.ImageIO;
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.ForkJoinPool;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecRasterizer class.
+ */
+public class VecRasterizerTest {
+
+    /**
+     * Creates random commands of every built in type.
+     *
+     * @param count The number of commands.
+     * @return The commands.
+     */
+    private static CommandBuffer createRandomCommands(int count) throws Exception {
+        Random random = new Random(11);
+        CommandBuffer commands = new CommandBuffer();
+
+        for (int i = 0; i < count; i++) {
+            double x = random.nextDouble();
+            double y = random.nextDouble();
+            double size = random.nextInt(10) == 0 ? 1.0 : 0.1;
+            ArrayList<Position> positions = new ArrayList<>();
+            for (int p = 0; p < 5; p++) {
+                positions.add(new Position(x + size * (random.nextDouble() - 0.5), y + size * (random.nextDouble() - 0.5)));
+            }
+
+            switch (random.nextInt(7)) {
+                case 0:
+                    commands.add(new PenCommand(random.nextInt(0x1000000)));
+                    break;
+                case 1:
+                    commands.add(new FillCommand(random.nextBoolean() ? VecColour.NONE : random.nextInt(0x1000000)));
+                    break;
+                case 2:
+                    commands.add(new LineCommand(new ArrayList<>(positions.subList(0, 2))));
+                    break;
+                case 3:
+                    commands.add(new RectangleCommand(new ArrayList<>(positions.subList(0, 2))));
+                    break;
+                case 4:
+                    commands.add(new EllipseCommand(new ArrayList<>(positions.subList(0, 2))));
+                    break;
+                case 5:
+                    commands.add(new PolygonCommand(positions));
+                    break;
+                default:
+                    commands.add(new PlotCommand(positions.get(0)));
+            }
+        }
+        return commands;
+    }
+
+    @Test
+    public void testMatchesSingleThreadedRender() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer commands = createRandomCommands(5000);
+
+            //Sizes that aren't a multiple of the tile size leave partial tiles on the right and bottom
+            int width = 3 * VecRasterizer.TILE_SIZE + 37;
+            int height = 2 * VecRasterizer.TILE_SIZE + 5;
+
+            CheckpointedRaster expected = new CheckpointedRaster(width, height, 0);
+            expected.update(commands);
+
+            ForkJoinPool pool = new ForkJoinPool(4);
+            try {
+                BufferedImage actual = new VecRasterizer(commands).render(width, height, pool);
+                assertArrayEquals(expected.getImage().getRGB(0, 0, width, height, null, 0, width),
+                        actual.getRGB(0, 0, width, height, null, 0, width));
+            } finally {
+                pool.shutdown();
+            }
+        });
+    }
+
+    @Test
+    public void testSnapshot() {
+        assertDoesNotThrow(() -> {
+            CommandBuffer commands = new CommandBuffer();
+            commands.add(new PlotCommand(new Position(0.5, 0.5)));
+            VecRasterizer rasterizer = new VecRasterizer(commands);
+
+            //Commands added afterwards aren't drawn
+            commands.add(new PlotCommand(new Position(0.25, 0.25)));
+            BufferedImage image = rasterizer.render(100, 100);
+            assertEquals(0x000000, image.getRGB(50, 50) & 0xFFFFFF);
+            assertEquals(0xFFFFFF, image.getRGB(25, 25) & 0xFFFFFF);
+        });
+    }
+
+    @Test
+    public void testRenderToPng() {
+        assertDoesNotThrow(() -> {
+            VecFile vecFile = new VecFile("test");
+            vecFile.addCommand(new FillCommand("#00FF00"));
+            vecFile.addCommand(new RectangleCommand(new ArrayList<>(List.of(new Position(0.25, 0.25), new Position(0.75, 0.75)))));
+
+            //The image doesn't have to be square, and reads back with exactly the rendered pixels
+            File file = File.createTempFile("render", "." + VecRasterizer.PNG_FORMAT);
+            file.deleteOnExit();
+            VecRasterizer rasterizer = new VecRasterizer(vecFile);
+            rasterizer.renderToPng(300, 100, file);
+
+            BufferedImage expected = rasterizer.render(300, 100);
+            BufferedImage actual = ImageIO.read(file);
+            assertArrayEquals(expected.getRGB(0, 0, 300, 100, null, 0, 300), actual.getRGB(0, 0, 300, 100, null, 0, 300));
+            assertEquals(0x00FF00, actual.getRGB(150, 50) & 0xFFFFFF);
+        });
+    }
+}
@@ -122,7 +122,7 @@ public class FillCommandTest {
     public void testToStringConversion() {
         try {
             FillCommand pc = new FillCommand("#Ff0032");
-            assertEquals("FILL #Ff0032", pc.toString());
+            assertEquals("FILL #FF0032", pc.toString());
 
             FillCommand pc2 = new FillCommand(FillCommand.FILL_OFF);
             assertEquals(String.format("FILL %s", FillCommand.FILL_OFF), pc2.toString());
@@ -108,7 +108,7 @@ public class PenCommandTest {
     public void testToStringConversion() {
         try {
             PenCommand pc = new PenCommand("#Ff0032");
-            assertEquals("PEN #Ff0032", pc.toString());
+            assertEquals("PEN #FF0032", pc.toString());
         } catch (Exception e) {
             e.printStackTrace();
         }
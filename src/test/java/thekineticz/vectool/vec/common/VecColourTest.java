@@ -0,0 +1,49 @@
+package thekineticz.vectool.vec.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecColour class.
+ */
+public class VecColourTest {
+
+    @Test
+    public void testParse() {
+        assertEquals(0xFF0032, VecColour.parse("#FF0032"));
+        assertEquals(0xFF0032, VecColour.parse("#Ff0032"));
+        assertEquals(0x000000, VecColour.parse("#000000"));
+        assertEquals(0xABCDEF, VecColour.parse("#abcdef"));
+    }
+
+    @Test
+    public void testParseInvalid() {
+        assertEquals(VecColour.NONE, VecColour.parse(""));
+        assertEquals(VecColour.NONE, VecColour.parse("FF0032"));
+        assertEquals(VecColour.NONE, VecColour.parse("#FF003"));
+        assertEquals(VecColour.NONE, VecColour.parse("#FF00320"));
+        assertEquals(VecColour.NONE, VecColour.parse("#FF003G"));
+        assertEquals(VecColour.NONE, VecColour.parse("#FF003\uFF11"));
+        assertEquals(VecColour.NONE, VecColour.parse(VecColour.NONE_STRING));
+    }
+
+    @Test
+    public void testToString() {
+        assertEquals("#FF0032", VecColour.toString(0xFF0032));
+        assertEquals("#000000", VecColour.toString(0));
+        assertEquals(VecColour.NONE_STRING, VecColour.toString(VecColour.NONE));
+        assertEquals("#ABCDEF", new VecTextFormatter().appendColour(0xABCDEF).toString());
+        assertEquals(VecColour.NONE_STRING, new VecTextFormatter().appendColour(VecColour.NONE).toString());
+    }
+
+    @Test
+    public void testAwtColours() {
+        assertEquals(0x123456, VecColour.fromColor(new Color(0x12, 0x34, 0x56)));
+        assertEquals(VecColour.NONE, VecColour.fromColor(null));
+        assertEquals(new Color(0x12, 0x34, 0x56), VecColour.toColor(0x123456));
+        assertNull(VecColour.toColor(VecColour.NONE));
+    }
+}
@@ -0,0 +1,82 @@
+package thekineticz.vectool.vec.common;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.*;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecCommandRegistry class.
+ */
+public class VecCommandRegistryTest {
+
+    @Test
+    public void testBuiltInTypes() {
+        String[] names = {
+                PlotCommand.COMMAND_NAME, LineCommand.COMMAND_NAME, RectangleCommand.COMMAND_NAME,
+                EllipseCommand.COMMAND_NAME, PolygonCommand.COMMAND_NAME, PenCommand.COMMAND_NAME, FillCommand.COMMAND_NAME
+        };
+
+        for (String name : names) {
+            VecCommandType type = VecCommandRegistry.forName(name);
+            assertNotNull(type);
+            assertEquals(name, type.getCommandName());
+        }
+
+        assertNull(VecCommandRegistry.forName("PLOTS"));
+        assertNull(VecCommandRegistry.forName("plot"));
+        assertEquals(PenCommand.class, VecCommandRegistry.forName("PEN").getCommandClass());
+    }
+
+    @Test
+    public void testParse() {
+        assertDoesNotThrow(() -> {
+            String[] lines = {"PLOT 0.5 0.5", "LINE 0.0 0.0 1.0 1.0", "RECTANGLE 0.1 0.1 0.9 0.9", "ELLIPSE 0.1 0.1 0.9 0.9",
+                    "POLYGON 0.0 0.0 1.0 0.0 1.0 1.0", "PEN #FF0000", "FILL OFF"};
+
+            for (String line : lines) {
+                VecCommand command = VecCommandRegistry.parse(new VecCommandTokenizer(line));
+                assertEquals(line, VecCommandRegistry.serialize(command));
+                assertSame(VecCommandRegistry.forName(command.getCommandName()), VecCommandRegistry.forCommand(command));
+            }
+        });
+    }
+
+    @Test
+    public void testParseInvalidIdentifier() {
+        VecCommandException e = assertThrows(VecCommandException.class, () -> VecCommandRegistry.parse(new VecCommandTokenizer("POINT 0.5 0.5")));
+        assertEquals("Attempted to convert string without a valid identifier to VecCommand.", e.getMessage());
+        assertThrows(VecCommandException.class, () -> VecCommandRegistry.parse(new VecCommandTokenizer("")));
+
+        //A line that only starts with a command name is still reported by that command
+        e = assertThrows(VecCommandException.class, () -> VecCommandRegistry.parse(new VecCommandTokenizer("PLOTS 0.5 0.5")));
+        assertEquals("Attempted to generate PlotCommand from string with incorrect identifier.", e.getMessage());
+    }
+
+    @Test
+    public void testRender() {
+        assertDoesNotThrow(() -> {
+            BufferedImage image = new BufferedImage(10, 10, BufferedImage.TYPE_INT_RGB);
+            Graphics g = image.getGraphics();
+            VecRenderer renderer = new VecRenderer(g, image.getWidth(), image.getHeight());
+
+            String[] lines = {"PEN #FF0000", "FILL #00FF00", "RECTANGLE 0.0 0.0 0.5 0.5", "FILL OFF", "PLOT 0.8 0.8"};
+            for (String line : lines) {
+                VecCommand command = VecCommandRegistry.parse(new VecCommandTokenizer(line));
+                VecCommandRegistry.forCommand(command).render(command, renderer);
+            }
+            g.dispose();
+
+            assertNull(renderer.getFillColour());
+            assertEquals(Color.RED, renderer.getPenColour());
+            assertEquals(0xFF0000, image.getRGB(0, 0) & 0xFFFFFF);
+            assertEquals(0x00FF00, image.getRGB(2, 2) & 0xFFFFFF);
+            assertEquals(0xFF0000, image.getRGB(8, 8) & 0xFFFFFF);
+            assertEquals(0x000000, image.getRGB(7, 7) & 0xFFFFFF);
+        });
+    }
+}
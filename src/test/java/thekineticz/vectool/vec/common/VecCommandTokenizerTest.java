@@ -0,0 +1,82 @@
+package thekineticz.vectool.vec.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.nio.ByteBuffer;
+import java.nio.charset.StandardCharsets;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecCommandTokenizer class.
+ */
+public class VecCommandTokenizerTest {
+
+    @Test
+    public void testTokenCountMatchesSplit() {
+        String[] lines = {"", " ", "   ", "PLOT", "PLOT 0.5 0.5", "PLOT 0.5 0.5 ", "PLOT  0.5 0.5", " PLOT 0.5", "POLYGON 0 0 1 1  "};
+        VecCommandTokenizer tokens = new VecCommandTokenizer();
+
+        for (String line : lines) {
+            tokens.reset(line);
+            String[] split = line.split(" ");
+            assertEquals(split.length, tokens.getTokenCount());
+
+            for (int i = 0; i < split.length; i++) {
+                assertEquals(split[i], tokens.getToken(i));
+            }
+        }
+    }
+
+    @Test
+    public void testTokenEquality() {
+        VecCommandTokenizer tokens = new VecCommandTokenizer("PEN #FF0000");
+        assertTrue(tokens.tokenEquals(0, "PEN"));
+        assertTrue(tokens.tokenEquals(1, "#FF0000"));
+        assertFalse(tokens.tokenEquals(0, "PE"));
+        assertFalse(tokens.tokenEquals(0, "pen"));
+        assertTrue(tokens.lineStartsWith("PE"));
+        assertFalse(tokens.lineStartsWith("PEN #FF0000 "));
+    }
+
+    @Test
+    public void testDoubleParsing() {
+        String[] values = {"0", "1", "01", "0.5", "-0.25", "+0.75", ".5", "1.", "-0", "0.30000000000000004",
+                "1e-3", "2.5E2", "1d", "0x1p3", "NaN", "-Infinity", "123456789012345678901234567890"};
+        VecCommandTokenizer tokens = new VecCommandTokenizer();
+
+        for (String value : values) {
+            tokens.reset("PLOT " + value);
+            assertEquals(Double.valueOf(value), tokens.getDouble(1));
+        }
+
+        Random rand = new Random(302);
+        for (int i = 0; i < 1000; i++) {
+            String value = Double.toString(rand.nextDouble());
+            tokens.reset(value);
+            assertEquals(Double.valueOf(value), tokens.getDouble(0));
+        }
+    }
+
+    @Test
+    public void testInvalidDoubles() {
+        VecCommandTokenizer tokens = new VecCommandTokenizer("PLOT  . - 1.2.3 abc");
+        for (int i = 1; i < tokens.getTokenCount(); i++) {
+            int index = i;
+            assertThrows(NumberFormatException.class, () -> tokens.getDouble(index));
+        }
+    }
+
+    @Test
+    public void testByteBufferWindow() {
+        ByteBuffer buffer = ByteBuffer.wrap("PLOT 0.1 0.2\nLINE 0 0 1 1".getBytes(StandardCharsets.US_ASCII));
+        VecCommandTokenizer tokens = new VecCommandTokenizer();
+
+        tokens.reset(buffer, 13, 12);
+        assertEquals(5, tokens.getTokenCount());
+        assertTrue(tokens.tokenEquals(0, "LINE"));
+        assertEquals(1.0, tokens.getDouble(4));
+        assertEquals("LINE 0 0 1 1", tokens.toString());
+    }
+}
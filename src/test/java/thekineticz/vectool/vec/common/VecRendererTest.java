@@ -0,0 +1,119 @@
+package thekineticz.vectool.vec.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.awt.*;
+import java.awt.image.BufferedImage;
+import java.awt.image.DataBufferInt;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.assertArrayEquals;
+
+/**
+ * Tests the functionality of the VecRenderer class.
+ */
+public class VecRendererTest {
+
+    private static final int SIZE = 100;
+
+    /**
+     * Plots random points, some outside the image, with pen colour changes and a rectangle between them.
+     *
+     * @param renderer The renderer.
+     */
+    private static void plotRandomPoints(VecRenderer renderer) {
+        Random random = new Random(7);
+        double[] coordinates = new double[2000];
+        for (int i = 0; i < coordinates.length; i++) {
+            coordinates[i] = random.nextDouble() * 1.2 - 0.1;
+        }
+
+        renderer.plot(coordinates, 0, 500);
+        renderer.setPenColour(0x123456);
+        renderer.drawRectangle(0.2, 0.2, 0.8, 0.8);
+        renderer.plot(coordinates, 1000, 500);
+    }
+
+    /**
+     * Draws random filled and outlined ellipses of many sizes, some of them past the edges of the image.
+     *
+     * @param renderer The renderer.
+     */
+    private static void drawRandomEllipses(VecRenderer renderer) {
+        Random random = new Random(13);
+        for (int i = 0; i < 300; i++) {
+            int size = random.nextBoolean() ? 20 : 300;
+            int x = random.nextInt(SIZE * 2) - SIZE / 2;
+            int y = random.nextInt(SIZE * 2) - SIZE / 2;
+
+            renderer.setPenColour(random.nextInt(0x1000000));
+            renderer.setFillColour(random.nextBoolean() ? VecColour.NONE : random.nextInt(0x1000000));
+            renderer.drawDeviceEllipse(x, y, x + random.nextInt(size) - size / 2, y + random.nextInt(size) - size / 2);
+        }
+    }
+
+    /**
+     * Gets the pixels of an image exactly as stored.
+     *
+     * @param image The image.
+     * @return The pixels.
+     */
+    private static int[] getData(BufferedImage image) {
+        return ((DataBufferInt) image.getRaster().getDataBuffer()).getData();
+    }
+
+    @Test
+    public void testDirectPlotsMatchGraphics() {
+        for (int type : new int[]{BufferedImage.TYPE_INT_RGB, BufferedImage.TYPE_INT_ARGB}) {
+            for (Rectangle clip : new Rectangle[]{null, new Rectangle(10, 20, 50, 30), new Rectangle()}) {
+                BufferedImage expected = new BufferedImage(SIZE, SIZE, type);
+                Graphics2D expectedGraphics = expected.createGraphics();
+                expectedGraphics.setClip(clip);
+                plotRandomPoints(new VecRenderer(expectedGraphics, SIZE, SIZE));
+
+                BufferedImage actual = new BufferedImage(SIZE, SIZE, type);
+                Graphics2D actualGraphics = actual.createGraphics();
+                actualGraphics.setClip(clip);
+                plotRandomPoints(new VecRenderer(actual, actualGraphics, VecViewport.FULL));
+
+                assertArrayEquals(getData(expected), getData(actual));
+            }
+        }
+    }
+
+    @Test
+    public void testEllipsesMatchGraphics() {
+        //Draws the same ellipses straight through Java2D, with nothing clipping them but the edges of the image
+        BufferedImage expected = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        Graphics2D expectedGraphics = expected.createGraphics();
+        drawRandomEllipses(new VecRenderer(expectedGraphics, SIZE, SIZE) {
+            @Override
+            public void drawDeviceEllipse(int x1, int y1, int x2, int y2) {
+                int left = Math.min(x1, x2);
+                int top = Math.min(y1, y2);
+                if (getFillColour() != null) {
+                    expectedGraphics.setColor(getFillColour());
+                    expectedGraphics.fillOval(left, top, Math.abs(x2 - x1), Math.abs(y2 - y1));
+                }
+                expectedGraphics.setColor(getPenColour());
+                expectedGraphics.drawOval(left, top, Math.abs(x2 - x1), Math.abs(y2 - y1));
+            }
+        });
+
+        BufferedImage unclipped = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        drawRandomEllipses(new VecRenderer(unclipped, unclipped.createGraphics(), VecViewport.FULL));
+        assertArrayEquals(getData(expected), getData(unclipped));
+
+        //Drawing the image in clipped tiles gives the same pixels, even though the clips cut through the ellipses
+        BufferedImage tiled = new BufferedImage(SIZE, SIZE, BufferedImage.TYPE_INT_RGB);
+        for (int y = 0; y < SIZE; y += 30) {
+            for (int x = 0; x < SIZE; x += 30) {
+                Graphics2D tileGraphics = tiled.createGraphics();
+                tileGraphics.setClip(x, y, 30, 30);
+                drawRandomEllipses(new VecRenderer(tiled, tileGraphics, VecViewport.FULL));
+                tileGraphics.dispose();
+            }
+        }
+        assertArrayEquals(getData(expected), getData(tiled));
+    }
+}
@@ -0,0 +1,86 @@
+package thekineticz.vectool.vec.common;
+
+import org.junit.jupiter.api.Test;
+
+import java.io.ByteArrayOutputStream;
+import java.util.ArrayList;
+import java.util.Random;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecTextFormatter class.
+ */
+public class VecTextFormatterTest {
+
+    /**
+     * Formats a single coordinate.
+     *
+     * @param formatter The formatter.
+     * @param value     The coordinate.
+     * @return The formatted coordinate.
+     */
+    private static String format(VecTextFormatter formatter, double value) {
+        formatter.reset();
+        return formatter.append(value).toString();
+    }
+
+    @Test
+    public void testMatchesDoubleToString() {
+        double[] values = {0.0, 1.0, 0.5, 0.25, 0.1, 0.3, 0.123456789, -0.75, 1234.5, 0.001, 0.0015, 1e-4, 1e7, 2.5e-10, -0.0};
+        VecTextFormatter formatter = new VecTextFormatter();
+
+        for (double value : values) {
+            assertEquals(Double.toString(value), format(formatter, value));
+        }
+    }
+
+    @Test
+    public void testRoundTrip() {
+        Random random = new Random(302);
+        VecTextFormatter formatter = new VecTextFormatter();
+        VecCommandTokenizer tokens = new VecCommandTokenizer();
+
+        for (int i = 0; i < 100000; i++) {
+            double value = i % 2 == 0 ? random.nextDouble() : (random.nextDouble() - 0.5) * Math.pow(10, random.nextInt(20) - 10);
+            String string = format(formatter, value);
+
+            assertEquals(value, Double.parseDouble(string));
+            assertTrue(string.length() <= Double.toString(value).length());
+            tokens.reset(string);
+            assertEquals(value, tokens.getDouble(0));
+        }
+    }
+
+    @Test
+    public void testFixedPrecision() {
+        VecTextFormatter formatter = new VecTextFormatter(3);
+        assertEquals("0.123", format(formatter, 0.123456));
+        assertEquals("0.5", format(formatter, 0.5));
+        assertEquals("0.001", format(formatter, 0.0005));
+        assertEquals("1.0", format(formatter, 0.9999));
+        assertEquals("0.0", format(formatter, 0.0001));
+        assertEquals("-0.25", format(formatter, -0.25));
+
+        assertEquals("3.0", format(new VecTextFormatter(0), 2.5));
+        assertThrows(IllegalArgumentException.class, () -> new VecTextFormatter(VecTextFormatter.MAX_PRECISION + 1));
+    }
+
+    @Test
+    public void testPositions() {
+        assertDoesNotThrow(() -> {
+            ArrayList<Position> positions = new ArrayList<>();
+            positions.add(new Position(0.1, 0.2));
+            positions.add(new Position(1.0, 0.0));
+
+            VecTextFormatter formatter = new VecTextFormatter();
+            formatter.appendCommand("LINE", positions).appendLineSeparator().append("PEN #FF0000");
+
+            ByteArrayOutputStream out = new ByteArrayOutputStream();
+            formatter.writeTo(out);
+            assertEquals("LINE 0.1 0.2 1.0 0.0" + System.lineSeparator() + "PEN #FF0000", out.toString());
+            assertEquals(0, formatter.length());
+            assertEquals("0.1 0.2", positions.get(0).toString());
+        });
+    }
+}
@@ -0,0 +1,39 @@
+package thekineticz.vectool.vec.common;
+
+import org.junit.jupiter.api.Test;
+
+import static org.junit.jupiter.api.Assertions.assertEquals;
+
+/**
+ * Tests the functionality of the VecViewport class.
+ */
+public class VecViewportTest {
+
+    @Test
+    public void testZoomAbout() {
+        VecViewport viewport = VecViewport.FULL.zoomAbout(4, 0.25, 0.5);
+        assertEquals(4, viewport.getZoom());
+
+        //The point under the zoom stays in the same place
+        assertEquals(0.25, viewport.toViewX(0.25), 1e-12);
+        assertEquals(0.5, viewport.toViewY(0.5), 1e-12);
+        assertEquals(0.25, viewport.fromViewX(viewport.toViewX(0.25)), 1e-12);
+
+        assertEquals(VecViewport.FULL, viewport.zoomAbout(0.25, 0.5, 0.5));
+        assertEquals(VecViewport.MAX_ZOOM, viewport.zoomAbout(1e9, 0.5, 0.5).getZoom());
+    }
+
+    @Test
+    public void testStaysInsideImage() {
+        VecViewport viewport = new VecViewport(2, 0.25, 0.25);
+
+        //Dragging the image right moves the window left, until it reaches the edge
+        assertEquals(0.0, viewport.pan(1, 0).getLeft());
+        assertEquals(0.5, viewport.pan(-1, 0).getLeft());
+        assertEquals(0.5, viewport.pan(0, -0.5).getTop());
+
+        //Zooming out near an edge pushes the window back inside
+        assertEquals(0.0, new VecViewport(4, 0, 0).zoomAbout(0.5, 0.9, 0.9).getLeft(), 1e-12);
+        assertEquals(VecViewport.FULL, new VecViewport(0.5, 0.5, -1));
+    }
+}
@@ -0,0 +1,121 @@
+package thekineticz.vectool.vec.stream;
+
+import org.junit.jupiter.api.Test;
+import thekineticz.vectool.exception.VecCommandException;
+import thekineticz.vectool.vec.commands.PenCommand;
+import thekineticz.vectool.vec.commands.PlotCommand;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Collections;
+
+import static org.junit.jupiter.api.Assertions.*;
+
+/**
+ * Tests the functionality of the VecCommandSource, pipeline stage and VecWriterSink classes.
+ */
+public class VecCommandPipelineTest {
+
+    private static final String INPUT = String.join("\n",
+            "PEN #000000",
+            "PLOT 0.5 0.25",
+            "PEN #ff0000",
+            "LINE 0.0 0.0 1.0 1.0",
+            "FILL #00FF00",
+            "RECTANGLE 0.0 0.0 0.5 0.5",
+            "FILL OFF",
+            "POLYGON 0.0 0.0 0.5 0.0 0.5 0.5");
+
+    /**
+     * Pushes the test input through a pipeline ending in a text writer sink.
+     *
+     * @param pipeline Builds the pipeline in front of the writer sink.
+     * @return The text written by the sink.
+     */
+    private static String run(PipelineBuilder pipeline) throws VecCommandException, IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+
+        try (VecCommandSource source = VecCommandSource.fromStream(new ByteArrayInputStream(INPUT.getBytes()), false);
+             VecCommandSink sink = pipeline.build(new VecWriterSink(out, false))) {
+            source.pushTo(sink);
+        }
+
+        return out.toString();
+    }
+
+    /**
+     * Builds the stages of a pipeline in front of a sink.
+     */
+    private interface PipelineBuilder {
+        VecCommandSink build(VecCommandSink sink);
+    }
+
+    @Test
+    public void testRedundantColoursDropped() {
+        assertDoesNotThrow(() -> {
+            String output = run(sink -> sink);
+            assertFalse(output.contains("PEN #000000"));
+            assertTrue(output.startsWith("PLOT 0.5 0.25" + System.lineSeparator() + "PEN #FF0000"));
+            assertFalse(output.endsWith(System.lineSeparator()));
+        });
+    }
+
+    @Test
+    public void testFilterStage() {
+        assertDoesNotThrow(() -> assertEquals("PLOT 0.5 0.25", run(sink -> new FilterStage(command -> command instanceof PlotCommand, sink))));
+    }
+
+    @Test
+    public void testMapStage() {
+        assertDoesNotThrow(() -> {
+            String output = run(sink -> new MapStage(command -> command instanceof PenCommand ? null : command, sink));
+            assertFalse(output.contains("PEN"));
+            assertEquals(6, output.split(System.lineSeparator()).length);
+        });
+    }
+
+    @Test
+    public void testColourRemapStage() {
+        assertDoesNotThrow(() -> {
+            String output = run(sink -> new ColourRemapStage(Collections.singletonMap("#FF0000", "#0000FF"), sink));
+            assertTrue(output.contains("PEN #0000FF"));
+            assertTrue(output.contains("FILL #00FF00"));
+            assertTrue(output.contains("FILL OFF"));
+        });
+
+        assertThrows(VecCommandException.class, () -> run(sink -> new ColourRemapStage(colour -> "red", sink)));
+    }
+
+    @Test
+    public void testTransformStage() {
+        assertDoesNotThrow(() -> {
+            String output = run(sink -> new TransformStage(0.5, 2.0, 0.25, 0.0, sink));
+            assertTrue(output.contains("PLOT 0.5 0.5"));
+            assertTrue(output.contains("LINE 0.25 0.0 0.75 2.0"));
+            assertTrue(output.contains("POLYGON 0.25 0.0 0.5 0.0 0.5 1.0"));
+        });
+    }
+
+    @Test
+    public void testBinaryRoundTrip() {
+        assertDoesNotThrow(() -> {
+            ByteArrayOutputStream binary = new ByteArrayOutputStream();
+            try (VecCommandSource source = VecCommandSource.fromStream(new ByteArrayInputStream(INPUT.getBytes()), false);
+                 VecWriterSink sink = new VecWriterSink(binary, true)) {
+                assertEquals(8, source.pushTo(sink));
+                assertEquals(7, sink.getCommandCount());
+            }
+
+            ByteArrayOutputStream text = new ByteArrayOutputStream();
+            try (VecCommandSource source = VecCommandSource.fromStream(new ByteArrayInputStream(binary.toByteArray()), true);
+                 VecWriterSink sink = new VecWriterSink(text, false)) {
+                source.pushTo(sink);
+            }
+
+            //Colours are written back in upper case
+            String expected = INPUT.substring(INPUT.indexOf('\n') + 1).replace("#ff0000", "#FF0000");
+            assertEquals(expected.replace("\n", System.lineSeparator()), text.toString());
+        });
+    }
+}